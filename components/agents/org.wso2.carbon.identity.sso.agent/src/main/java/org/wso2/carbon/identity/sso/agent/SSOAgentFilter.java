@@ -45,6 +45,9 @@ public class SSOAgentFilter implements Filter {
 
     private static final Logger LOGGER = Logger.getLogger(SSOAgentConstants.LOGGER_NAME);
 
+    // SAML2SSOManager keeps no request state, so one instance is shared until the config changes
+    private volatile SAML2SSOManager cachedSAML2SSOManager = null;
+
     /**
      * @see Filter#init(FilterConfig)
      */
@@ -87,12 +90,12 @@ public class SSOAgentFilter implements Filter {
 
             if (resolver.isSLORequest()) {
 
-                samlSSOManager = new SAML2SSOManager(ssoAgentConfig);
+                samlSSOManager = getSAML2SSOManager(ssoAgentConfig);
                 samlSSOManager.doSLO(request);
 
             } else if (resolver.isSAML2SSOResponse()) {
 
-                samlSSOManager = new SAML2SSOManager(ssoAgentConfig);
+                samlSSOManager = getSAML2SSOManager(ssoAgentConfig);
                 try {
                     samlSSOManager.processResponse(request, response);
                 } catch (SSOAgentException e) {
@@ -110,7 +113,7 @@ public class SSOAgentFilter implements Filter {
 
             } else if (resolver.isSLOURL()) {
 
-                samlSSOManager = new SAML2SSOManager(ssoAgentConfig);
+                samlSSOManager = getSAML2SSOManager(ssoAgentConfig);
                 if (resolver.isHttpPostBinding()) {
 
                     ssoAgentConfig.getSAML2().setPassiveAuthn(false);
@@ -126,7 +129,7 @@ public class SSOAgentFilter implements Filter {
 
             } else if (resolver.isSAML2SSOURL()) {
 
-                samlSSOManager = new SAML2SSOManager(ssoAgentConfig);
+                samlSSOManager = getSAML2SSOManager(ssoAgentConfig);
                 if (resolver.isHttpPostBinding()) {
                     ssoAgentConfig.getSAML2().setPassiveAuthn(false);
                     String htmlPayload = samlSSOManager.buildPostRequest(request, response, false);
@@ -146,7 +149,7 @@ public class SSOAgentFilter implements Filter {
 
             } else if (resolver.isPassiveAuthnRequest()) {
 
-                samlSSOManager = new SAML2SSOManager(ssoAgentConfig);
+                samlSSOManager = getSAML2SSOManager(ssoAgentConfig);
                 ssoAgentConfig.getSAML2().setPassiveAuthn(true);
                 response.sendRedirect(samlSSOManager.buildRedirectRequest(request, false));
                 return;
@@ -175,6 +178,26 @@ public class SSOAgentFilter implements Filter {
         return;
     }
 
+    /**
+     * Returns the SAML2SSOManager of the given config, building a new one only if the config has changed. The
+     * manager reads the config on each call, so it can only be reused for the same config instance. Filters which
+     * build a config per request, like CarbonSSOAgentFilter, get a new manager per request, which is cheap as the
+     * signature validator and OpenSAML are only initialized once.
+     *
+     * @param ssoAgentConfig config of the request
+     * @return SAML2SSOManager built with the config
+     * @throws SSOAgentException if the SAML2SSOManager can not be built
+     */
+    protected SAML2SSOManager getSAML2SSOManager(SSOAgentConfig ssoAgentConfig) throws SSOAgentException {
+
+        SAML2SSOManager manager = this.cachedSAML2SSOManager;
+        if (manager == null || manager.getSsoAgentConfig() != ssoAgentConfig) {
+            manager = new SAML2SSOManager(ssoAgentConfig);
+            this.cachedSAML2SSOManager = manager;
+        }
+        return manager;
+    }
+
     protected void handleException(HttpServletRequest request, SSOAgentException e)
             throws SSOAgentException {
 
@@ -122,7 +122,10 @@ public class SAML2SSOManager {
         //load custom Signature Validator Class
         String signerClassName = ssoAgentConfig.getSAML2().getSignatureValidatorImplClass();
         try {
-            if (signerClassName != null) {
+            Object signatureValidator = SSOAgentDataHolder.getInstance().getSignatureValidator();
+            // the validator is shared, so it is only loaded again if another class is configured
+            if (signerClassName != null && (signatureValidator == null ||
+                    !signerClassName.equals(signatureValidator.getClass().getName()))) {
                 SSOAgentDataHolder.getInstance().setSignatureValidator(Class.forName(signerClassName).newInstance());
             }
         } catch (ClassNotFoundException e) {
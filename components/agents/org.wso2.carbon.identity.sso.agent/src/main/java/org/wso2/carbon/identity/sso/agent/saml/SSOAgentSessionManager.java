@@ -24,10 +24,12 @@ import org.wso2.carbon.identity.sso.agent.SSOAgentConstants;
 import org.wso2.carbon.identity.sso.agent.bean.LoggedInSessionBean;
 
 import javax.servlet.http.HttpSession;
-import java.util.HashMap;
+import java.util.Collections;
 import java.util.HashSet;
-import java.util.Map;
 import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 
 public class SSOAgentSessionManager {
@@ -35,9 +37,11 @@ public class SSOAgentSessionManager {
     /*
      * Session Index at the IdP is mapped to the session at the SP so that a single logout request
      * can be handled by invalidating the SP session mapped to IdP Session Index.
+     * Sessions are weakly referenced so that sessions dropped by the container without notifying
+     * the listener do not leak. Each set of sessions is guarded by its own monitor.
      */
-    private static Map<String, Set<HttpSession>> ssoSessionsMap =
-            new HashMap<String, Set<HttpSession>>();
+    private static ConcurrentMap<String, Set<HttpSession>> ssoSessionsMap =
+            new ConcurrentHashMap<String, Set<HttpSession>>();
 
     private SSOAgentSessionManager() {
     }
@@ -49,7 +53,14 @@ public class SSOAgentSessionManager {
             String sessionIndex = sessionBean.getSAML2SSO().getSessionIndex();
             if (sessionIndex != null) {
                 Set<HttpSession> sessions = ssoSessionsMap.get(sessionIndex);
-                sessions.remove(session);
+                if (sessions != null) {
+                    synchronized (sessions) {
+                        sessions.remove(session);
+                        if (sessions.isEmpty()) {
+                            ssoSessionsMap.remove(sessionIndex, sessions);
+                        }
+                    }
+                }
             }
         }
     }
@@ -57,36 +68,44 @@ public class SSOAgentSessionManager {
     public static Set<HttpSession> invalidateAllSessions(HttpSession session) {
         LoggedInSessionBean sessionBean = (LoggedInSessionBean) session.getAttribute(
                 SSOAgentConstants.SESSION_BEAN_NAME);
-        Set<HttpSession> sessions = new HashSet<HttpSession>();
         if (sessionBean != null && sessionBean.getSAML2SSO() != null) {
             String sessionIndex = sessionBean.getSAML2SSO().getSessionIndex();
             if (sessionIndex != null) {
-                sessions = ssoSessionsMap.remove(sessionIndex);
+                return invalidateAllSessions(sessionIndex);
             }
         }
-        if (sessions == null) {
-            sessions = new HashSet<HttpSession>();
-        }
-        return sessions;
+        return new HashSet<HttpSession>();
     }
 
     public static Set<HttpSession> invalidateAllSessions(String sessionIndex) {
         Set<HttpSession> sessions = ssoSessionsMap.remove(sessionIndex);
         if (sessions == null) {
-            sessions = new HashSet<HttpSession>();
+            return new HashSet<HttpSession>();
+        }
+        synchronized (sessions) {
+            return new HashSet<HttpSession>(sessions);
         }
-        return sessions;
     }
 
     public static void addAuthenticatedSession(HttpSession session) {
         String sessionIndex = ((LoggedInSessionBean) session.getAttribute(
                 SSOAgentConstants.SESSION_BEAN_NAME)).getSAML2SSO().getSessionIndex();
-        if (ssoSessionsMap.get(sessionIndex) != null) {
-            ssoSessionsMap.get(sessionIndex).add(session);
-        } else {
-            Set<HttpSession> sessions = new HashSet<HttpSession>();
-            sessions.add(session);
-            ssoSessionsMap.put(sessionIndex, sessions);
+        while (true) {
+            Set<HttpSession> sessions = ssoSessionsMap.get(sessionIndex);
+            if (sessions == null) {
+                Set<HttpSession> newSessions = Collections.newSetFromMap(new WeakHashMap<HttpSession, Boolean>());
+                sessions = ssoSessionsMap.putIfAbsent(sessionIndex, newSessions);
+                if (sessions == null) {
+                    sessions = newSessions;
+                }
+            }
+            synchronized (sessions) {
+                // the set may have been removed by a logout or by its last session being invalidated
+                if (ssoSessionsMap.get(sessionIndex) == sessions) {
+                    sessions.add(session);
+                    return;
+                }
+            }
         }
     }
 }
@@ -0,0 +1,185 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.sso.agent.saml;
+
+import junit.framework.TestCase;
+import org.wso2.carbon.identity.sso.agent.SSOAgentConstants;
+import org.wso2.carbon.identity.sso.agent.bean.LoggedInSessionBean;
+
+import javax.servlet.http.HttpSession;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Logs sessions in and out of {@link SSOAgentSessionManager} from concurrent threads, as done by the SSO agent filter
+ * and the session listener, and checks that each session is handed out by single logout exactly once
+ */
+public class SSOAgentSessionManagerTest extends TestCase {
+
+    private static final int THREADS = 8;
+    private static final int LOGINS_PER_THREAD = 5000;
+    private static final int SESSION_INDEXES = 50;
+
+    public void testConcurrentLoginsAndLogouts() throws Exception {
+
+        final ConcurrentMap<HttpSession, AtomicInteger> loggedOut =
+                new ConcurrentHashMap<HttpSession, AtomicInteger>();
+        final Set<HttpSession> expired = Collections.newSetFromMap(new ConcurrentHashMap<HttpSession, Boolean>());
+        final Map<HttpSession, String> loggedIn = new ConcurrentHashMap<HttpSession, String>();
+        final CountDownLatch start = new CountDownLatch(1);
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        List<Future<?>> futures = new ArrayList<Future<?>>();
+        for (int t = 0; t < THREADS; t++) {
+            final int thread = t;
+            futures.add(executor.submit(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        throw new IllegalStateException(e);
+                    }
+                    for (int i = 0; i < LOGINS_PER_THREAD; i++) {
+                        String sessionIndex = "concurrent-" + (i + thread) % SESSION_INDEXES;
+                        HttpSession session = newSession(sessionIndex);
+                        loggedIn.put(session, sessionIndex);
+                        SSOAgentSessionManager.addAuthenticatedSession(session);
+                        if (i % 7 == 0) {
+                            // session invalidated by the container, the listener removes it from the registry
+                            expired.add(session);
+                            SSOAgentSessionManager.invalidateSession(session);
+                        }
+                        if (i % 3 == 0) {
+                            // single logout request of another session index
+                            String logoutIndex = "concurrent-" + (i * 31 + thread) % SESSION_INDEXES;
+                            for (HttpSession loggedOutSession :
+                                    SSOAgentSessionManager.invalidateAllSessions(logoutIndex)) {
+                                countLogout(loggedOut, loggedOutSession);
+                            }
+                        }
+                    }
+                }
+            }));
+        }
+        start.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(60, TimeUnit.SECONDS));
+        for (Future<?> future : futures) {
+            // rethrows any failure of the thread
+            future.get();
+        }
+
+        for (int i = 0; i < SESSION_INDEXES; i++) {
+            for (HttpSession session : SSOAgentSessionManager.invalidateAllSessions("concurrent-" + i)) {
+                countLogout(loggedOut, session);
+            }
+        }
+
+        assertEquals(THREADS * LOGINS_PER_THREAD, loggedIn.size());
+        for (Map.Entry<HttpSession, String> entry : loggedIn.entrySet()) {
+            AtomicInteger logouts = loggedOut.get(entry.getKey());
+            if (expired.contains(entry.getKey())) {
+                assertTrue("expired session of " + entry.getValue() + " logged out more than once",
+                        logouts == null || logouts.get() == 1);
+            } else {
+                assertNotNull("session of " + entry.getValue() + " was not logged out", logouts);
+                assertEquals("session of " + entry.getValue() + " logged out more than once", 1, logouts.get());
+            }
+        }
+    }
+
+    public void testSessionInvalidatedAfterLogout() {
+
+        HttpSession session = newSession("logout");
+        SSOAgentSessionManager.addAuthenticatedSession(session);
+
+        assertEquals(Collections.singleton(session), SSOAgentSessionManager.invalidateAllSessions("logout"));
+        // the listener is called back when the logged out session is invalidated
+        SSOAgentSessionManager.invalidateSession(session);
+        assertTrue(SSOAgentSessionManager.invalidateAllSessions("logout").isEmpty());
+    }
+
+    public void testLastInvalidatedSessionRemovesSessionIndex() {
+
+        HttpSession session1 = newSession("expiry");
+        HttpSession session2 = newSession("expiry");
+        SSOAgentSessionManager.addAuthenticatedSession(session1);
+        SSOAgentSessionManager.addAuthenticatedSession(session2);
+
+        SSOAgentSessionManager.invalidateSession(session1);
+        SSOAgentSessionManager.invalidateSession(session2);
+        assertTrue(SSOAgentSessionManager.invalidateAllSessions("expiry").isEmpty());
+
+        SSOAgentSessionManager.addAuthenticatedSession(session1);
+        assertEquals(Collections.singleton(session1), SSOAgentSessionManager.invalidateAllSessions("expiry"));
+    }
+
+    private static void countLogout(ConcurrentMap<HttpSession, AtomicInteger> loggedOut, HttpSession session) {
+
+        AtomicInteger logouts = loggedOut.putIfAbsent(session, new AtomicInteger(1));
+        if (logouts != null) {
+            logouts.incrementAndGet();
+        }
+    }
+
+    /**
+     * Session holding a session bean with the given IdP session index
+     */
+    private static HttpSession newSession(String sessionIndex) {
+
+        LoggedInSessionBean sessionBean = new LoggedInSessionBean();
+        LoggedInSessionBean.SAML2SSO saml2SSO = sessionBean.new SAML2SSO();
+        saml2SSO.setSessionIndex(sessionIndex);
+        sessionBean.setSAML2SSO(saml2SSO);
+        final Map<String, Object> attributes = new ConcurrentHashMap<String, Object>();
+        attributes.put(SSOAgentConstants.SESSION_BEAN_NAME, sessionBean);
+
+        return (HttpSession) Proxy.newProxyInstance(SSOAgentSessionManagerTest.class.getClassLoader(),
+                new Class[]{HttpSession.class}, new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        if ("getAttribute".equals(method.getName())) {
+                            return attributes.get(args[0]);
+                        } else if ("hashCode".equals(method.getName())) {
+                            return System.identityHashCode(proxy);
+                        } else if ("equals".equals(method.getName())) {
+                            return proxy == args[0];
+                        } else if ("toString".equals(method.getName())) {
+                            return "session@" + System.identityHashCode(proxy);
+                        }
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+}
@@ -0,0 +1,46 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.application.authenticator.fido.cache;
+
+import org.wso2.carbon.identity.application.common.cache.BaseCache;
+
+/**
+ * Cache of the FIDO devices registered by users. Users without registered devices are cached too.
+ */
+public class DeviceRegistrationCache extends BaseCache<DeviceRegistrationCacheKey, DeviceRegistrationCacheEntry> {
+
+    private static final String DEVICE_REGISTRATION_CACHE_NAME = "FIDODeviceRegistrationCache";
+
+    private static volatile DeviceRegistrationCache instance;
+
+    private DeviceRegistrationCache() {
+        super(DEVICE_REGISTRATION_CACHE_NAME);
+    }
+
+    public static DeviceRegistrationCache getInstance() {
+        if (instance == null) {
+            synchronized (DeviceRegistrationCache.class) {
+                if (instance == null) {
+                    instance = new DeviceRegistrationCache();
+                }
+            }
+        }
+        return instance;
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.application.authenticator.fido.cache;
+
+import com.yubico.u2f.data.DeviceRegistration;
+import org.wso2.carbon.identity.application.common.cache.CacheEntry;
+
+import java.io.Serializable;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+public class DeviceRegistrationCacheEntry extends CacheEntry {
+
+    private static final long serialVersionUID = -2094837561029384756L;
+
+    private List<RegisteredDevice> registeredDevices;
+
+    public DeviceRegistrationCacheEntry(List<RegisteredDevice> registeredDevices) {
+        this.registeredDevices = Collections.unmodifiableList(new ArrayList<>(registeredDevices));
+    }
+
+    public List<RegisteredDevice> getRegisteredDevices() {
+        return registeredDevices;
+    }
+
+    /**
+     * Device Registration of a user as stored. The parsed form is kept with it and parsed again if the entry was
+     * serialized.
+     */
+    public static class RegisteredDevice implements Serializable {
+
+        private static final long serialVersionUID = 6159327480912736458L;
+
+        private String deviceData;
+        private Timestamp timeRegistered;
+        private transient volatile DeviceRegistration registration;
+
+        public RegisteredDevice(String deviceData, Timestamp timeRegistered, DeviceRegistration registration) {
+            this.deviceData = deviceData;
+            this.timeRegistered = timeRegistered;
+            this.registration = registration;
+        }
+
+        public String getDeviceData() {
+            return deviceData;
+        }
+
+        public Timestamp getTimeRegistered() {
+            return timeRegistered;
+        }
+
+        public DeviceRegistration getRegistration() {
+            if (registration == null) {
+                registration = DeviceRegistration.fromJson(deviceData);
+            }
+            return registration;
+        }
+    }
+}
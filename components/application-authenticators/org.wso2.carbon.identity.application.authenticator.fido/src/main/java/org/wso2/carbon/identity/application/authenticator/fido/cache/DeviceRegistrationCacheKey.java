@@ -0,0 +1,72 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.application.authenticator.fido.cache;
+
+import org.wso2.carbon.identity.application.common.cache.CacheKey;
+
+public class DeviceRegistrationCacheKey extends CacheKey {
+
+    private static final long serialVersionUID = 4726591038473902615L;
+
+    private int tenantId;
+    private String userStoreDomain;
+    private String username;
+
+    public DeviceRegistrationCacheKey(int tenantId, String userStoreDomain, String username) {
+        this.tenantId = tenantId;
+        this.userStoreDomain = userStoreDomain;
+        this.username = username;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        if (!super.equals(o)) {
+            return false;
+        }
+
+        DeviceRegistrationCacheKey that = (DeviceRegistrationCacheKey) o;
+
+        if (tenantId != that.tenantId) {
+            return false;
+        }
+        if (!userStoreDomain.equals(that.userStoreDomain)) {
+            return false;
+        }
+        if (!username.equals(that.username)) {
+            return false;
+        }
+
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = super.hashCode();
+        result = 31 * result + tenantId;
+        result = 31 * result + userStoreDomain.hashCode();
+        result = 31 * result + username.hashCode();
+        return result;
+    }
+}
@@ -18,11 +18,13 @@
 
 package org.wso2.carbon.identity.application.authenticator.fido.dao;
 
-import com.google.common.collect.ArrayListMultimap;
-import com.google.common.collect.Multimap;
 import com.yubico.u2f.data.DeviceRegistration;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.wso2.carbon.identity.application.authenticator.fido.cache.DeviceRegistrationCache;
+import org.wso2.carbon.identity.application.authenticator.fido.cache.DeviceRegistrationCacheEntry;
+import org.wso2.carbon.identity.application.authenticator.fido.cache.DeviceRegistrationCacheEntry.RegisteredDevice;
+import org.wso2.carbon.identity.application.authenticator.fido.cache.DeviceRegistrationCacheKey;
 import org.wso2.carbon.identity.application.authenticator.fido.exception.FIDOAuthenticatorServerException;
 import org.wso2.carbon.identity.application.authenticator.fido.util.FIDOAuthenticatorConstants;
 import org.wso2.carbon.identity.core.util.IdentityCoreConstants;
@@ -37,7 +39,9 @@ import java.sql.Timestamp;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Collection;
+import java.util.List;
 import java.util.TimeZone;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Performs DAO operations related to the FIDO Device Store.
@@ -46,6 +50,11 @@ public class DeviceStoreDAO {
 
     private static Log log = LogFactory.getLog(DeviceStoreDAO.class);
 
+    private final DeviceRegistrationCache deviceRegistrationCache = DeviceRegistrationCache.getInstance();
+
+    // incremented on each change of the store, so that registrations loaded during a change are not cached
+    private final AtomicLong registrationVersion = new AtomicLong();
+
     private DeviceStoreDAO(){
 
     }
@@ -99,50 +108,84 @@ public class DeviceStoreDAO {
                                                        FIDOAuthenticatorConstants.SQLQueries.ADD_DEVICE_REGISTRATION_QUERY, e);
         } finally {
             IdentityDatabaseUtil.closeAllConnections(connection, null, preparedStatement);
+            clearCachedRegistrations(username, tenantDomain, userStoreDomain);
         }
     }
 
     /**
-     * Retrieves Device Registration data from store.
+     * Update Device Registration in store, e.g. with the counter of the device after a successful authentication.
      *
-     * @param username The username of the Device Registration.
-     * @return Collection of Device Registration.
+     * @param username     The username of Device Registration.
+     * @param registration The FIDO Registration.
      * @throws FIDOAuthenticatorServerException when SQL statement can not be executed.
      */
-    public Collection getDeviceRegistration(String username,String tenantDomain, String userStoreDomain)
-            throws FIDOAuthenticatorServerException {
+    public void updateDeviceRegistration(String username, DeviceRegistration registration, String tenantDomain,
+                                         String userStoreDomain) throws FIDOAuthenticatorServerException {
 
         if (log.isDebugEnabled()) {
-            log.debug("getDeviceRegistration inputs {username: " + username + ", tenantDomain: " + tenantDomain +
-                      ", userStoreDomain : " + userStoreDomain +"}");
+            log.debug("updateDeviceRegistration inputs {username: " + username + ", tenantDomain: " + tenantDomain +
+                      ", userStoreDomain : " + userStoreDomain + ", keyHandle :" + registration.getKeyHandle() + "}");
         }
         Connection connection = IdentityDatabaseUtil.getDBConnection();
         PreparedStatement preparedStatement = null;
-        ResultSet resultSet = null;
-        Multimap<String, String> devices = ArrayListMultimap.create();
+        String deviceData = registration.toJson();
 
         try {
-            preparedStatement = connection.prepareStatement(FIDOAuthenticatorConstants.SQLQueries.GET_DEVICE_REGISTRATION_QUERY);
-            preparedStatement.setInt(1, IdentityTenantUtil.getTenantId(tenantDomain));
-            preparedStatement.setString(2, userStoreDomain);
-            preparedStatement.setString(3, username);
-            resultSet = preparedStatement.executeQuery();
-            while (resultSet.next()) {
-                String keyHandle = resultSet.getString(FIDOAuthenticatorConstants.U2F_KEY_HANDLE);
-                String deviceData = resultSet.getString(FIDOAuthenticatorConstants.U2F_DEVICE_DATA);
-                devices.put(keyHandle, deviceData);
-
+            preparedStatement = connection.prepareStatement(FIDOAuthenticatorConstants.SQLQueries
+                                                                    .UPDATE_DEVICE_REGISTRATION_QUERY);
+            preparedStatement.setString(1, deviceData);
+            preparedStatement.setInt(2, IdentityTenantUtil.getTenantId(tenantDomain));
+            preparedStatement.setString(3, userStoreDomain);
+            preparedStatement.setString(4, username);
+            preparedStatement.setString(5, registration.getKeyHandle());
+            preparedStatement.executeUpdate();
+            if (!connection.getAutoCommit()) {
+                connection.commit();
             }
         } catch (SQLException e) {
-            throw new FIDOAuthenticatorServerException(
-                    "Error executing get device registration SQL : " +
-                    FIDOAuthenticatorConstants.SQLQueries.GET_DEVICE_REGISTRATION_QUERY, e
-            );
+            throw new FIDOAuthenticatorServerException("Error when executing FIDO update registration SQL : " +
+                                                       FIDOAuthenticatorConstants.SQLQueries
+                                                               .UPDATE_DEVICE_REGISTRATION_QUERY, e);
         } finally {
-            IdentityDatabaseUtil.closeAllConnections(connection, resultSet, preparedStatement);
+            IdentityDatabaseUtil.closeAllConnections(connection, null, preparedStatement);
+            clearCachedRegistrations(username, tenantDomain, userStoreDomain);
         }
+    }
+
+    /**
+     * Retrieves Device Registration data from store.
+     *
+     * @param username The username of the Device Registration.
+     * @return Collection of Device Registration.
+     * @throws FIDOAuthenticatorServerException when SQL statement can not be executed.
+     */
+    public Collection getDeviceRegistration(String username,String tenantDomain, String userStoreDomain)
+            throws FIDOAuthenticatorServerException {
 
-        return devices.values();
+        List<String> devices = new ArrayList<String>();
+        for (RegisteredDevice registeredDevice : getRegisteredDevices(username, tenantDomain, userStoreDomain)) {
+            devices.add(registeredDevice.getDeviceData());
+        }
+        return devices;
+    }
+
+    /**
+     * Retrieves parsed Device Registrations of a user. The registrations are cached per user and shared by
+     * concurrent authentications of the user.
+     *
+     * @param username The username of the Device Registration.
+     * @return List of Device Registration.
+     * @throws FIDOAuthenticatorServerException when SQL statement can not be executed.
+     */
+    public List<DeviceRegistration> getDeviceRegistrations(String username, String tenantDomain,
+                                                           String userStoreDomain)
+            throws FIDOAuthenticatorServerException {
+
+        List<DeviceRegistration> registrations = new ArrayList<DeviceRegistration>();
+        for (RegisteredDevice registeredDevice : getRegisteredDevices(username, tenantDomain, userStoreDomain)) {
+            registrations.add(registeredDevice.getRegistration());
+        }
+        return registrations;
     }
 
     /**
@@ -155,37 +198,25 @@ public class DeviceStoreDAO {
     public ArrayList<String> getDeviceMetadata(String username, String tenantDomain, String userStoreDomain)
             throws FIDOAuthenticatorServerException {
 
-        ResultSet resultSet = null;
         ArrayList<String> devicesMetadata = new ArrayList<String>();
-        if (log.isDebugEnabled()) {
-            log.debug("getDeviceRegistration inputs {username: " + username + ", tenantDomain: " + tenantDomain +
-                      ", userStoreDomain : " + userStoreDomain +"}");
-        }
-        Connection connection = IdentityDatabaseUtil.getDBConnection();
-        PreparedStatement preparedStatement = null;
-
-        try {
-            preparedStatement = connection.prepareStatement(FIDOAuthenticatorConstants.SQLQueries.GET_DEVICE_REGISTRATION_QUERY);
-            preparedStatement.setInt(1, IdentityTenantUtil.getTenantId(tenantDomain));
-            preparedStatement.setString(2, userStoreDomain);
-            preparedStatement.setString(3, username);
-            resultSet = preparedStatement.executeQuery();
-            while (resultSet.next()) {
-                String deviceRemark = resultSet.getTimestamp(FIDOAuthenticatorConstants.U2F_DEVICE_METADATA).toString();
-                devicesMetadata.add(deviceRemark);
-            }
-        } catch (SQLException e) {
-            throw new FIDOAuthenticatorServerException(
-                    "Error executing get device registration SQL : " +
-                    FIDOAuthenticatorConstants.SQLQueries.GET_DEVICE_REGISTRATION_QUERY, e
-            );
-        } finally {
-            IdentityDatabaseUtil.closeAllConnections(connection, resultSet, preparedStatement);
+        for (RegisteredDevice registeredDevice : getRegisteredDevices(username, tenantDomain, userStoreDomain)) {
+            devicesMetadata.add(registeredDevice.getTimeRegistered().toString());
         }
-
         return devicesMetadata;
     }
 
+    /**
+     * Drops the cached Device Registrations of a user, so that they are read from the store again.
+     *
+     * @param username
+     * @param tenantDomain
+     * @param userStoreDomain
+     */
+    public void clearCachedRegistrations(String username, String tenantDomain, String userStoreDomain) {
+        registrationVersion.incrementAndGet();
+        deviceRegistrationCache.clearCacheEntry(getCacheKey(username, tenantDomain, userStoreDomain));
+    }
+
     /**
      * Remove all registered device from store.
      *
@@ -220,6 +251,7 @@ public class DeviceStoreDAO {
             );
         } finally {
             IdentityDatabaseUtil.closeAllConnections(connection, null, preparedStatement);
+            clearCachedRegistrations(username, tenantDomain, userStoreDomain);
         }
     }
 
@@ -259,6 +291,7 @@ public class DeviceStoreDAO {
             );
         } finally {
             IdentityDatabaseUtil.closeAllConnections(connection, null, preparedStatement);
+            clearCachedRegistrations(username, tenantDomain, userStoreDomain);
         }
     }
 
@@ -294,6 +327,7 @@ public class DeviceStoreDAO {
                                                        FIDOAuthenticatorConstants.SQLQueries.UPDATE_USER_DOMAIN_NAME, e);
         } finally {
             IdentityDatabaseUtil.closeAllConnections(connection, null, preparedStatement);
+            clearCachedRegistrations();
         }
 
     }
@@ -329,12 +363,22 @@ public class DeviceStoreDAO {
             );
         } finally {
             IdentityDatabaseUtil.closeAllConnections(connection, null, preparedStatement);
+            clearCachedRegistrations();
         }
 
     }
 
-    private ResultSet getDeviceData(String username, String tenantDomain, String userStoreDomain)
+    private List<RegisteredDevice> getRegisteredDevices(String username, String tenantDomain,
+                                                        String userStoreDomain)
             throws FIDOAuthenticatorServerException {
+
+        DeviceRegistrationCacheKey cacheKey = getCacheKey(username, tenantDomain, userStoreDomain);
+        DeviceRegistrationCacheEntry cacheEntry = deviceRegistrationCache.getValueFromCache(cacheKey);
+        if (cacheEntry != null) {
+            return cacheEntry.getRegisteredDevices();
+        }
+        long version = registrationVersion.get();
+
         if (log.isDebugEnabled()) {
             log.debug("getDeviceRegistration inputs {username: " + username + ", tenantDomain: " + tenantDomain +
                       ", userStoreDomain : " + userStoreDomain +"}");
@@ -342,7 +386,7 @@ public class DeviceStoreDAO {
         Connection connection = IdentityDatabaseUtil.getDBConnection();
         PreparedStatement preparedStatement = null;
         ResultSet resultSet = null;
-        ArrayList<String> devicesMetadata = new ArrayList<String>();
+        List<RegisteredDevice> registeredDevices = new ArrayList<RegisteredDevice>();
 
         try {
             preparedStatement = connection.prepareStatement(FIDOAuthenticatorConstants.SQLQueries.GET_DEVICE_REGISTRATION_QUERY);
@@ -350,6 +394,12 @@ public class DeviceStoreDAO {
             preparedStatement.setString(2, userStoreDomain);
             preparedStatement.setString(3, username);
             resultSet = preparedStatement.executeQuery();
+            while (resultSet.next()) {
+                String deviceData = resultSet.getString(FIDOAuthenticatorConstants.U2F_DEVICE_DATA);
+                Timestamp timeRegistered = resultSet.getTimestamp(FIDOAuthenticatorConstants.U2F_DEVICE_METADATA);
+                registeredDevices.add(new RegisteredDevice(deviceData, timeRegistered,
+                                                           DeviceRegistration.fromJson(deviceData)));
+            }
         } catch (SQLException e) {
             throw new FIDOAuthenticatorServerException(
                     "Error executing get device registration SQL : " +
@@ -358,6 +408,20 @@ public class DeviceStoreDAO {
         } finally {
             IdentityDatabaseUtil.closeAllConnections(connection, resultSet, preparedStatement);
         }
-        return resultSet;
+
+        cacheEntry = new DeviceRegistrationCacheEntry(registeredDevices);
+        if (registrationVersion.get() == version) {
+            deviceRegistrationCache.addToCache(cacheKey, cacheEntry);
+        }
+        return cacheEntry.getRegisteredDevices();
+    }
+
+    private void clearCachedRegistrations() {
+        registrationVersion.incrementAndGet();
+        deviceRegistrationCache.clear();
+    }
+
+    private DeviceRegistrationCacheKey getCacheKey(String username, String tenantDomain, String userStoreDomain) {
+        return new DeviceRegistrationCacheKey(IdentityTenantUtil.getTenantId(tenantDomain), userStoreDomain, username);
     }
 }
@@ -74,16 +74,8 @@ public class U2FService {
     private Iterable<DeviceRegistration> getRegistrations(final FIDOUser user)
             throws FIDOAuthenticatorServerException {
 
-        Collection<String> serializedRegistrations = null;
-        serializedRegistrations = DeviceStoreDAO.getInstance().getDeviceRegistration(user.getUserName(),
-                user.getTenantDomain(), user.getUserStoreDomain());
-
-        List<DeviceRegistration> registrations = new ArrayList<DeviceRegistration>();
-        for (String serialized : serializedRegistrations) {
-            registrations.add(DeviceRegistration.fromJson(serialized));
-        }
-
-        return registrations;
+        return DeviceStoreDAO.getInstance().getDeviceRegistrations(user.getUserName(), user.getTenantDomain(),
+                user.getUserStoreDomain());
     }
 
     /**
@@ -133,10 +125,17 @@ public class U2FService {
             authenticateRequest = AuthenticateRequestData
                     .fromJson(requestStorage.remove(user.getAuthenticateResponse().getRequestId()));
 
-            u2f.finishAuthentication(authenticateRequest, user.getAuthenticateResponse(),
-                    getRegistrations(user));
+            DeviceRegistration registration = u2f.finishAuthentication(authenticateRequest,
+                    user.getAuthenticateResponse(), getRegistrations(user));
+
+            // Persist the updated counter of the device
+            DeviceStoreDAO.getInstance().updateDeviceRegistration(user.getUserName(), registration,
+                    user.getTenantDomain(), user.getUserStoreDomain());
 
         } catch (Exception e) {
+            // A failed authentication may have flagged a cached registration as compromised
+            DeviceStoreDAO.getInstance().clearCachedRegistrations(user.getUserName(), user.getTenantDomain(),
+                    user.getUserStoreDomain());
             throw new AuthenticationFailedException("Could not complete FIDO authentication", e);
         }
     }
@@ -178,8 +177,8 @@ public class U2FService {
     }
 
     public boolean isDeviceRegistered(FIDOUser user) throws FIDOAuthenticatorServerException {
-        Collection<String> registrations = DeviceStoreDAO.getInstance().getDeviceRegistration(user.getUserName(),
-                user.getTenantDomain(), user.getUserStoreDomain());
+        List<DeviceRegistration> registrations = DeviceStoreDAO.getInstance().getDeviceRegistrations(
+                user.getUserName(), user.getTenantDomain(), user.getUserStoreDomain());
         if (!registrations.isEmpty()) {
             return true;
         } else {
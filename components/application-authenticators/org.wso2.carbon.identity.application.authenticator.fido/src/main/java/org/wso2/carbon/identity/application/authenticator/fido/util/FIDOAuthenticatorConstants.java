@@ -43,6 +43,9 @@ public class FIDOAuthenticatorConstants {
                                                                    " USER_NAME, TIME_REGISTERED, KEY_HANDLE, DEVICE_DATA ) VALUES (?, ?, ?, ?, ?, ?)";
         public static final String GET_DEVICE_REGISTRATION_QUERY = "SELECT * FROM FIDO_DEVICE_STORE WHERE TENANT_ID = ? " +
                                                                    "AND DOMAIN_NAME = ? AND USER_NAME = ?";
+        public static final String UPDATE_DEVICE_REGISTRATION_QUERY = "UPDATE FIDO_DEVICE_STORE SET DEVICE_DATA = ? " +
+                                                                      "WHERE TENANT_ID = ? AND DOMAIN_NAME = ? AND " +
+                                                                      "USER_NAME = ? AND KEY_HANDLE = ?";
         public static final String REMOVE_ALL_REGISTRATION_QUERY = "DELETE FROM FIDO_DEVICE_STORE WHERE TENANT_ID = ? " +
                                                                "AND DOMAIN_NAME = ? AND USER_NAME = ?";
         public static final String REMOVE_REGISTRATION_QUERY = "DELETE FROM FIDO_DEVICE_STORE WHERE TENANT_ID = ? " +
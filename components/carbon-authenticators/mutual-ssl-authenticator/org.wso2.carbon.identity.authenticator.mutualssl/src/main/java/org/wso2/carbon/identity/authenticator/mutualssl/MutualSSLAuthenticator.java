@@ -33,6 +33,7 @@ import org.wso2.carbon.core.security.AuthenticatorsConfiguration;
 import org.wso2.carbon.core.services.authentication.CarbonServerAuthenticator;
 import org.wso2.carbon.core.services.util.CarbonAuthenticationUtil;
 import org.wso2.carbon.identity.authenticator.mutualssl.internal.MutualSSLAuthenticatorServiceComponent;
+import org.wso2.carbon.identity.base.KnownUserCache;
 import org.wso2.carbon.user.api.TenantManager;
 import org.wso2.carbon.user.api.UserStoreManager;
 import org.wso2.carbon.utils.AuthenticationObserver;
@@ -43,8 +44,13 @@ import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.security.cert.CertificateEncodingException;
 import java.security.cert.X509Certificate;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * Authenticator for certificate based two-way authentication
@@ -70,6 +76,20 @@ public class MutualSSLAuthenticator implements CarbonServerAuthenticator {
      */
     private static final String WHITE_LIST_ENABLED = "WhiteListEnabled";
 
+    /**
+     * Configuration parameter name for the time in seconds an existing user is cached without checking the user
+     * store again. Caching is disabled when it is zero or less.
+     */
+    private static final String USER_CACHE_TIMEOUT = "UserCacheTimeout";
+
+    /**
+     * Configuration parameter name for the maximum number of cached users and client certificate thumbprints
+     */
+    private static final String MAX_CACHE_SIZE = "MaxCacheSize";
+
+    private static final long DEFAULT_USER_CACHE_TIMEOUT = 60;
+    private static final int DEFAULT_MAX_CACHE_SIZE = 1000;
+
     /**
      * Attribute name for reading client certificate in the request
      */
@@ -86,9 +106,14 @@ public class MutualSSLAuthenticator implements CarbonServerAuthenticator {
     private static final Log log = LogFactory.getLog(MutualSSLAuthenticator.class);
 
     private static String usernameHeaderName = "UserName";
-    private static String[] whiteList;
+    private static volatile Set<String> whiteList;
     private static boolean whiteListEnabled = false;
     private static boolean authenticatorInitialized = false;
+    private static int maxCacheSize = DEFAULT_MAX_CACHE_SIZE;
+
+    private static final ConcurrentMap<String, CachedThumbprint> thumbprintCache = new ConcurrentHashMap<>();
+    private static volatile KnownUserCache userCache =
+            new KnownUserCache(DEFAULT_USER_CACHE_TIMEOUT * 1000, DEFAULT_MAX_CACHE_SIZE);
 
 
     /**
@@ -122,23 +147,17 @@ public class MutualSSLAuthenticator implements CarbonServerAuthenticator {
                 if (whiteListEnabled) {
                     // List of trusted thumbprints for clients is enabled
                     if (configParameters.containsKey(WHITE_LIST)) {
-                        whiteList = configParameters.get(WHITE_LIST).trim().split(",");
-                        int index = 0;
-                        // Remove whitespaces in the thumbprints of white list
-                        for (String thumbprint : whiteList) {
-                            thumbprint = thumbprint.trim();
-                            whiteList[index] = thumbprint;
-
-                            if (log.isDebugEnabled()) {
-                                log.debug("Client thumbprint " + thumbprint + " added to the white list");
-                            }
-                            index++;
-                        }
+                        loadWhiteList(configParameters.get(WHITE_LIST));
                     } else {
                         log.error("Trusted client certificates list is enabled but empty");
                         return;
                     }
                 }
+
+                maxCacheSize = (int) getLongParameter(configParameters, MAX_CACHE_SIZE, DEFAULT_MAX_CACHE_SIZE);
+                userCache = new KnownUserCache(
+                        getLongParameter(configParameters, USER_CACHE_TIMEOUT, DEFAULT_USER_CACHE_TIMEOUT) * 1000,
+                        maxCacheSize);
                 authenticatorInitialized = true;
             }
 
@@ -149,6 +168,39 @@ public class MutualSSLAuthenticator implements CarbonServerAuthenticator {
         }
     }
 
+    /**
+     * Builds the trusted thumbprints set from the comma separated white list
+     *
+     * @param whiteListValue Comma separated list of trusted thumbprints
+     */
+    private static void loadWhiteList(String whiteListValue) {
+        Set<String> thumbprints = new HashSet<>();
+        // Remove whitespaces in the thumbprints of white list
+        for (String thumbprint : whiteListValue.trim().split(",")) {
+            thumbprint = thumbprint.trim();
+            thumbprints.add(thumbprint);
+
+            if (log.isDebugEnabled()) {
+                log.debug("Client thumbprint " + thumbprint + " added to the white list");
+            }
+        }
+        whiteList = Collections.unmodifiableSet(thumbprints);
+    }
+
+    private static long getLongParameter(Map<String, String> configParameters, String name, long defaultValue) {
+        String value = configParameters.get(name);
+        if (value == null || value.trim().isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            log.error("Invalid value : " + value + " for " + name + " of " + AUTHENTICATOR_NAME
+                    + ". Using the default value : " + defaultValue, e);
+            return defaultValue;
+        }
+    }
+
     @Override
     public int getPriority() {
         AuthenticatorsConfiguration authenticatorsConfiguration =
@@ -206,7 +258,8 @@ public class MutualSSLAuthenticator implements CarbonServerAuthenticator {
                 if (certObject instanceof X509Certificate[]) {
                     X509Certificate[] cert = (X509Certificate[]) certObject;
 
-                    if (whiteListEnabled && whiteList != null) {
+                    Set<String> trustedThumbprints = whiteListEnabled ? whiteList : null;
+                    if (trustedThumbprints != null) {
                         // Client certificate is always in the index 0
                         thumbprint = getThumbPrint(cert[0]);
 
@@ -214,15 +267,12 @@ public class MutualSSLAuthenticator implements CarbonServerAuthenticator {
                             log.debug("Client certificate thumbprint is " + thumbprint);
                         }
 
-                        for (String whiteThumbprint : whiteList) {
-                            if (thumbprint.equals(whiteThumbprint)) {
-                                // Thumbprint of the client certificate is in the trusted list
-                                trustedThumbprint = true;
+                        if (trustedThumbprints.contains(thumbprint)) {
+                            // Thumbprint of the client certificate is in the trusted list
+                            trustedThumbprint = true;
 
-                                if (log.isDebugEnabled()) {
-                                    log.debug("Client certificate thumbprint matched with the white list");
-                                }
-                                break;
+                            if (log.isDebugEnabled()) {
+                                log.debug("Client certificate thumbprint matched with the white list");
                             }
                         }
                     }
@@ -272,21 +322,35 @@ public class MutualSSLAuthenticator implements CarbonServerAuthenticator {
                     }
 
                     if (StringUtils.isNotEmpty(userName)) {
+                        String fullUserName = userName;
                         String tenantDomain = MultitenantUtils.getTenantDomain(userName);
                         userName = MultitenantUtils.getTenantAwareUsername(userName);
-                        TenantManager tenantManager =
-                                MutualSSLAuthenticatorServiceComponent.getRealmService().getTenantManager();
-                        int tenantId = tenantManager.getTenantId(tenantDomain);
 
-                        handleAuthenticationStarted(tenantId);
+                        Integer cachedTenantId = userCache.getTenantId(fullUserName);
+                        int tenantId;
+                        if (cachedTenantId != null) {
+                            tenantId = cachedTenantId;
+                        } else {
+                            TenantManager tenantManager =
+                                    MutualSSLAuthenticatorServiceComponent.getRealmService().getTenantManager();
+                            tenantId = tenantManager.getTenantId(tenantDomain);
+                        }
 
-                        UserStoreManager userstore =
-                                MutualSSLAuthenticatorServiceComponent.getRealmService().getTenantUserRealm(tenantId)
-                                        .getUserStoreManager();
+                        handleAuthenticationStarted(tenantId);
 
-                        if (userstore.isExistingUser(userName)) {
-                            // Username used for mutual ssl authentication is a valid user
+                        if (cachedTenantId != null) {
+                            // Username was found in the userstore recently
                             isAuthenticated = true;
+                        } else {
+                            UserStoreManager userstore =
+                                    MutualSSLAuthenticatorServiceComponent.getRealmService()
+                                            .getTenantUserRealm(tenantId).getUserStoreManager();
+
+                            if (userstore.isExistingUser(userName)) {
+                                // Username used for mutual ssl authentication is a valid user
+                                isAuthenticated = true;
+                                userCache.addTenantId(fullUserName, tenantId);
+                            }
                         }
 
                         if (isAuthenticated) {
@@ -383,7 +447,8 @@ public class MutualSSLAuthenticator implements CarbonServerAuthenticator {
     }
 
     /**
-     * Helper method to retrieve the thumbprint of a X509 certificate
+     * Helper method to retrieve the thumbprint of a X509 certificate. Thumbprints are cached by the issuer and serial
+     * number of the certificate, and a cached thumbprint is used only for the same certificate.
      *
      * @param cert X509 certificate
      * @return Thumbprint of the X509 certificate
@@ -391,10 +456,23 @@ public class MutualSSLAuthenticator implements CarbonServerAuthenticator {
      * @throws CertificateEncodingException
      */
     private String getThumbPrint(X509Certificate cert) throws NoSuchAlgorithmException, CertificateEncodingException {
+        String cacheKey = cert.getIssuerX500Principal().getName() + ":" + cert.getSerialNumber();
+        CachedThumbprint cachedThumbprint = thumbprintCache.get(cacheKey);
+        if (cachedThumbprint != null &&
+                (cachedThumbprint.certificate == cert || cachedThumbprint.certificate.equals(cert))) {
+            return cachedThumbprint.thumbprint;
+        }
+
         MessageDigest md = MessageDigest.getInstance("SHA-1");
         byte[] certEncoded = cert.getEncoded();
         md.update(certEncoded);
-        return hexify(md.digest());
+        String thumbprint = hexify(md.digest());
+
+        if (thumbprintCache.size() >= maxCacheSize) {
+            thumbprintCache.clear();
+        }
+        thumbprintCache.put(cacheKey, new CachedThumbprint(cert, thumbprint));
+        return thumbprint;
     }
 
     /**
@@ -448,4 +526,15 @@ public class MutualSSLAuthenticator implements CarbonServerAuthenticator {
         }
     }
 
+    private static class CachedThumbprint {
+
+        private final X509Certificate certificate;
+        private final String thumbprint;
+
+        private CachedThumbprint(X509Certificate certificate, String thumbprint) {
+            this.certificate = certificate;
+            this.thumbprint = thumbprint;
+        }
+    }
+
 }
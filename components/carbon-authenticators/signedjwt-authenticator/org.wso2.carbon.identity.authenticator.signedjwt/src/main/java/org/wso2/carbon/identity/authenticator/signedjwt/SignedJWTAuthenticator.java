@@ -19,6 +19,7 @@ package org.wso2.carbon.identity.authenticator.signedjwt;
 
 import com.nimbusds.jose.JWSVerifier;
 import com.nimbusds.jose.crypto.RSASSAVerifier;
+import com.nimbusds.jwt.ReadOnlyJWTClaimsSet;
 import com.nimbusds.jwt.SignedJWT;
 import org.apache.axiom.util.base64.Base64Utils;
 import org.apache.axis2.context.MessageContext;
@@ -33,6 +34,7 @@ import org.wso2.carbon.core.services.authentication.CarbonServerAuthenticator;
 import org.wso2.carbon.core.services.util.CarbonAuthenticationUtil;
 import org.wso2.carbon.core.util.KeyStoreManager;
 import org.wso2.carbon.identity.authenticator.signedjwt.internal.SignedJWTAuthenticatorServiceComponent;
+import org.wso2.carbon.identity.base.KnownUserCache;
 import org.wso2.carbon.user.api.TenantManager;
 import org.wso2.carbon.user.api.UserStoreManager;
 import org.wso2.carbon.utils.AuthenticationObserver;
@@ -40,6 +42,10 @@ import org.wso2.carbon.utils.multitenancy.MultitenantUtils;
 
 import javax.servlet.http.HttpServletRequest;
 import java.security.interfaces.RSAPublicKey;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
 
 /**
  * SignedJWTAuthenticator Authenticate a user with a signed JWT.
@@ -52,6 +58,82 @@ public class SignedJWTAuthenticator implements CarbonServerAuthenticator {
     private static final String AUTHORIZATION_HEADER_TYPE = "Bearer";
     private static final Log log = LogFactory.getLog(SignedJWTAuthenticator.class);
 
+    /**
+     * Configuration parameter name for the time in seconds an existing user is cached without checking the user
+     * store again. Caching is disabled when it is zero or less.
+     */
+    private static final String USER_CACHE_TIMEOUT = "UserCacheTimeout";
+
+    /**
+     * Configuration parameter name for the allowed clock skew in seconds when validating exp and nbf claims
+     */
+    private static final String CLOCK_SKEW = "ClockSkew";
+
+    /**
+     * Configuration parameter name for the time in seconds a jti is remembered. Tokens carrying a jti must expire, or
+     * without an exp claim must be issued, within this window
+     */
+    private static final String REPLAY_WINDOW = "ReplayWindow";
+
+    /**
+     * Configuration parameter name for the maximum number of cached users and remembered jti values
+     */
+    private static final String MAX_CACHE_SIZE = "MaxCacheSize";
+
+    private static final long DEFAULT_USER_CACHE_TIMEOUT = 60;
+    private static final long DEFAULT_CLOCK_SKEW = 300;
+    private static final long DEFAULT_REPLAY_WINDOW = 300;
+    private static final int DEFAULT_MAX_CACHE_SIZE = 10000;
+
+    private static long clockSkew = DEFAULT_CLOCK_SKEW * 1000;
+    private static long replayWindow = DEFAULT_REPLAY_WINDOW * 1000;
+    private static int maxCacheSize = DEFAULT_MAX_CACHE_SIZE;
+    private static volatile boolean authenticatorInitialized = false;
+
+    private volatile CachedVerifier cachedVerifier;
+    private static volatile KnownUserCache userCache =
+            new KnownUserCache(DEFAULT_USER_CACHE_TIMEOUT * 1000, DEFAULT_MAX_CACHE_SIZE);
+    // jti values of accepted tokens with the time until which they are remembered, guarded by itself
+    private final Map<String, Long> usedJWTIds = new HashMap<>();
+    // earliest time until which a remembered jti is kept, guarded by usedJWTIds
+    private long nextJWTIdExpiryTime = Long.MAX_VALUE;
+
+    /**
+     * Initialize Signed JWT Authenticator Configuration
+     */
+    private synchronized static void init() {
+        if (authenticatorInitialized) {
+            return;
+        }
+
+        AuthenticatorsConfiguration.AuthenticatorConfig authenticatorConfig =
+                AuthenticatorsConfiguration.getInstance().getAuthenticatorConfig(AUTHENTICATOR_NAME);
+        if (authenticatorConfig != null && authenticatorConfig.getParameters() != null) {
+            Map<String, String> configParameters = authenticatorConfig.getParameters();
+            clockSkew = getLongParameter(configParameters, CLOCK_SKEW, DEFAULT_CLOCK_SKEW) * 1000;
+            replayWindow = getLongParameter(configParameters, REPLAY_WINDOW, DEFAULT_REPLAY_WINDOW) * 1000;
+            maxCacheSize = (int) getLongParameter(configParameters, MAX_CACHE_SIZE, DEFAULT_MAX_CACHE_SIZE);
+            userCache = new KnownUserCache(
+                    getLongParameter(configParameters, USER_CACHE_TIMEOUT, DEFAULT_USER_CACHE_TIMEOUT) * 1000,
+                    maxCacheSize);
+        }
+        authenticatorInitialized = true;
+    }
+
+    private static long getLongParameter(Map<String, String> configParameters, String name, long defaultValue) {
+        String value = configParameters.get(name);
+        if (value == null || value.trim().isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            log.error("Invalid value : " + value + " for " + name + " of " + AUTHENTICATOR_NAME
+                    + ". Using the default value : " + defaultValue, e);
+            return defaultValue;
+        }
+    }
+
     @Override
     public int getPriority() {
         AuthenticatorsConfiguration authenticatorsConfiguration =
@@ -89,25 +171,34 @@ public class SignedJWTAuthenticator implements CarbonServerAuthenticator {
         HttpServletRequest request =
                 (HttpServletRequest) msgCxt.getProperty(HTTPConstants.MC_HTTP_SERVLETREQUEST);
         try {
-            //Get the filesystem keystore default primary certificate
-            KeyStoreManager keyStoreManager = KeyStoreManager.getInstance(
-                    MultitenantConstants.SUPER_TENANT_ID);
-            keyStoreManager.getDefaultPrimaryCertificate();
+            if (!authenticatorInitialized) {
+                init();
+            }
 
             String authorizationHeader = request.getHeader(HTTPConstants.HEADER_AUTHORIZATION);
             String headerData = decodeAuthorizationHeader(authorizationHeader);
 
-            JWSVerifier verifier =
-                    new RSASSAVerifier((RSAPublicKey) keyStoreManager.getDefaultPublicKey());
             SignedJWT jwsObject = SignedJWT.parse(headerData);
 
-            if (jwsObject.verify(verifier)) {
-                String userName = jwsObject.getJWTClaimsSet().getStringClaim(SIGNED_JWT_AUTH_USERNAME);
-                String tenantDomain = MultitenantUtils.getTenantDomain(userName);
-                userName = MultitenantUtils.getTenantAwareUsername(userName);
-                TenantManager tenantManager = SignedJWTAuthenticatorServiceComponent
-                        .getRealmService().getTenantManager();
-                int tenantId = tenantManager.getTenantId(tenantDomain);
+            if (jwsObject.verify(getVerifier())) {
+                ReadOnlyJWTClaimsSet claimsSet = jwsObject.getJWTClaimsSet();
+                String fullUserName = claimsSet.getStringClaim(SIGNED_JWT_AUTH_USERNAME);
+                if (!isValidClaimsSet(claimsSet, fullUserName)) {
+                    return false;
+                }
+
+                String tenantDomain = MultitenantUtils.getTenantDomain(fullUserName);
+                String userName = MultitenantUtils.getTenantAwareUsername(fullUserName);
+
+                Integer cachedTenantId = userCache.getTenantId(fullUserName);
+                int tenantId;
+                if (cachedTenantId != null) {
+                    tenantId = cachedTenantId;
+                } else {
+                    TenantManager tenantManager = SignedJWTAuthenticatorServiceComponent
+                            .getRealmService().getTenantManager();
+                    tenantId = tenantManager.getTenantId(tenantDomain);
+                }
 
                 if (tenantId == -1) {
                     log.error("tenantDomain is not valid. username : " + userName + ", tenantDomain : " + tenantDomain);
@@ -116,10 +207,15 @@ public class SignedJWTAuthenticator implements CarbonServerAuthenticator {
 
                 handleAuthenticationStarted(tenantId);
 
-                UserStoreManager userStore = SignedJWTAuthenticatorServiceComponent
-                        .getRealmService().getTenantUserRealm(tenantId).getUserStoreManager();
-                if (userStore.isExistingUser(userName)) {
+                if (cachedTenantId != null) {
                     isAuthenticated = true;
+                } else {
+                    UserStoreManager userStore = SignedJWTAuthenticatorServiceComponent
+                            .getRealmService().getTenantUserRealm(tenantId).getUserStoreManager();
+                    if (userStore.isExistingUser(userName)) {
+                        isAuthenticated = true;
+                        userCache.addTenantId(fullUserName, tenantId);
+                    }
                 }
 
                 if (isAuthenticated) {
@@ -145,6 +241,125 @@ public class SignedJWTAuthenticator implements CarbonServerAuthenticator {
         return isAuthenticated;
     }
 
+    /**
+     * Returns the verifier for the default public key of the super tenant key store. The verifier is built once and
+     * rebuilt only when the key store returns a different public key.
+     *
+     * @return verifier for the default public key
+     * @throws Exception if the default public key cannot be read from the key store
+     */
+    private JWSVerifier getVerifier() throws Exception {
+        //Get the filesystem keystore default public key
+        KeyStoreManager keyStoreManager = KeyStoreManager.getInstance(MultitenantConstants.SUPER_TENANT_ID);
+        RSAPublicKey publicKey = (RSAPublicKey) keyStoreManager.getDefaultPublicKey();
+
+        CachedVerifier cachedVerifier = this.cachedVerifier;
+        if (cachedVerifier == null || !cachedVerifier.publicKey.equals(publicKey)) {
+            if (log.isDebugEnabled()) {
+                log.debug("Creating the signed JWT verifier for the default public key");
+            }
+            cachedVerifier = new CachedVerifier(publicKey, new RSASSAVerifier(publicKey));
+            this.cachedVerifier = cachedVerifier;
+        }
+        return cachedVerifier.verifier;
+    }
+
+    /**
+     * Validates the exp, nbf, iat and jti claims of a verified JWT. Tokens without these claims are accepted, as
+     * before. A token carrying a jti must expire within the replay window, or if it has no exp claim must have been
+     * issued within the replay window, so that a jti is remembered for at most the replay window and twice the
+     * clock skew. A jti is remembered until the token expires, or until the replay window after its issue time, or
+     * for the replay window if the token has neither claim, and a token carrying a remembered jti is rejected as a
+     * replay. A jti is never forgotten before its expiry, so a new jti is rejected while the maximum number of
+     * unexpired jti values is remembered.
+     *
+     * @param claimsSet    claims of the verified JWT
+     * @param fullUserName user name claim of the JWT
+     * @return true if the token is within its validity period and not replayed
+     */
+    private boolean isValidClaimsSet(ReadOnlyJWTClaimsSet claimsSet, String fullUserName) {
+        long currentTime = System.currentTimeMillis();
+
+        Date expirationTime = claimsSet.getExpirationTime();
+        if (expirationTime != null && expirationTime.getTime() + clockSkew <= currentTime) {
+            log.error("Authentication Request is rejected. Signed JWT of user : " + fullUserName + " is expired");
+            return false;
+        }
+
+        Date notBeforeTime = claimsSet.getNotBeforeTime();
+        if (notBeforeTime != null && notBeforeTime.getTime() - clockSkew > currentTime) {
+            log.error("Authentication Request is rejected. Signed JWT of user : " + fullUserName
+                    + " is not valid yet");
+            return false;
+        }
+
+        String jwtId = claimsSet.getJWTID();
+        if (jwtId != null) {
+            long jwtIdExpiryTime;
+            Date issueTime = claimsSet.getIssueTime();
+            if (expirationTime != null) {
+                if (expirationTime.getTime() - clockSkew > currentTime + replayWindow) {
+                    log.error("Authentication Request is rejected. Signed JWT with jti : " + jwtId + " of user : "
+                            + fullUserName + " expires after the replay window");
+                    return false;
+                }
+                jwtIdExpiryTime = expirationTime.getTime() + clockSkew;
+            } else if (issueTime != null) {
+                if (issueTime.getTime() - clockSkew > currentTime
+                        || issueTime.getTime() + replayWindow + clockSkew <= currentTime) {
+                    log.error("Authentication Request is rejected. Signed JWT with jti : " + jwtId + " of user : "
+                            + fullUserName + " is not issued within the replay window");
+                    return false;
+                }
+                jwtIdExpiryTime = issueTime.getTime() + replayWindow + clockSkew;
+            } else {
+                jwtIdExpiryTime = currentTime + replayWindow;
+            }
+            synchronized (usedJWTIds) {
+                Long usedJWTIdExpiryTime = usedJWTIds.get(jwtId);
+                if (usedJWTIdExpiryTime != null && usedJWTIdExpiryTime > currentTime) {
+                    log.error("Authentication Request is rejected. Signed JWT with jti : " + jwtId + " of user : "
+                            + fullUserName + " is replayed");
+                    return false;
+                }
+                if (usedJWTIdExpiryTime == null && usedJWTIds.size() >= maxCacheSize) {
+                    removeExpiredJWTIds(currentTime);
+                    if (usedJWTIds.size() >= maxCacheSize) {
+                        // forgetting a jti before its token expires would allow the token to be replayed
+                        log.error("Authentication Request is rejected. Signed JWT with jti : " + jwtId
+                                + " of user : " + fullUserName + " cannot be checked for replays as "
+                                + maxCacheSize + " unexpired jti values are already remembered");
+                        return false;
+                    }
+                }
+                usedJWTIds.put(jwtId, jwtIdExpiryTime);
+                nextJWTIdExpiryTime = Math.min(nextJWTIdExpiryTime, jwtIdExpiryTime);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Removes the remembered jti values of expired tokens. Must be called holding the lock of usedJWTIds.
+     *
+     * @param currentTime current time in milliseconds
+     */
+    private void removeExpiredJWTIds(long currentTime) {
+        if (nextJWTIdExpiryTime > currentTime) {
+            return;
+        }
+        long nextExpiryTime = Long.MAX_VALUE;
+        for (Iterator<Long> iterator = usedJWTIds.values().iterator(); iterator.hasNext(); ) {
+            long expiryTime = iterator.next();
+            if (expiryTime <= currentTime) {
+                iterator.remove();
+            } else {
+                nextExpiryTime = Math.min(nextExpiryTime, expiryTime);
+            }
+        }
+        nextJWTIdExpiryTime = nextExpiryTime;
+    }
+
     @Override
     public boolean isHandle(MessageContext msgCxt) {
         HttpServletRequest request =
@@ -236,4 +451,15 @@ public class SignedJWTAuthenticator implements CarbonServerAuthenticator {
         }
     }
 
+    private static class CachedVerifier {
+
+        private final RSAPublicKey publicKey;
+        private final JWSVerifier verifier;
+
+        private CachedVerifier(RSAPublicKey publicKey, JWSVerifier verifier) {
+            this.publicKey = publicKey;
+            this.verifier = verifier;
+        }
+    }
+
 }
@@ -0,0 +1,129 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.wso2.carbon.claim.mgt;
+
+import org.wso2.carbon.identity.application.common.cache.CacheEntry;
+import org.wso2.carbon.user.api.ClaimMapping;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Translation index between the claims of a dialect and the claims of the carbon dialect, built from the
+ * mapped attributes of both dialects. Claims of the two dialects are mapped to each other when they are
+ * mapped to the same attribute. An index is immutable once it is built.
+ */
+class ClaimDialectIndex extends CacheEntry {
+
+    private static final long serialVersionUID = -2619377458702317546L;
+
+    private final Map<String, Set<String>> carbonToOther;
+    private final Map<String, Set<String>> otherToCarbon;
+
+    /**
+     * @param otherDialectMappings  claim mappings of the other dialect
+     * @param carbonDialectMappings claim mappings of the carbon dialect
+     */
+    ClaimDialectIndex(ClaimMapping[] otherDialectMappings, ClaimMapping[] carbonDialectMappings) {
+
+        // all claims of the other dialect mapped to each attribute
+        Map<String, Set<String>> attributeToOther = new HashMap<>();
+        for (ClaimMapping claimMapping : otherDialectMappings) {
+            String mappedAttr = claimMapping.getMappedAttribute();
+            if (mappedAttr == null) {
+                continue;
+            }
+            Set<String> claimURIs = attributeToOther.get(mappedAttr);
+            if (claimURIs == null) {
+                claimURIs = new LinkedHashSet<>();
+                attributeToOther.put(mappedAttr, claimURIs);
+            }
+            claimURIs.add(claimMapping.getClaim().getClaimUri());
+        }
+
+        // only the first carbon claim mapped to an attribute is used when translating to the carbon dialect
+        Map<String, String> attributeToCarbon = new HashMap<>();
+        Map<String, Set<String>> carbonToOther = new HashMap<>();
+        for (ClaimMapping claimMapping : carbonDialectMappings) {
+            String mappedAttr = claimMapping.getMappedAttribute();
+            if (mappedAttr == null) {
+                continue;
+            }
+            String claimURI = claimMapping.getClaim().getClaimUri();
+            if (!attributeToCarbon.containsKey(mappedAttr)) {
+                attributeToCarbon.put(mappedAttr, claimURI);
+            }
+            Set<String> otherClaimURIs = attributeToOther.get(mappedAttr);
+            if (otherClaimURIs != null) {
+                Set<String> claimURIs = carbonToOther.get(claimURI);
+                if (claimURIs == null) {
+                    claimURIs = new LinkedHashSet<>();
+                    carbonToOther.put(claimURI, claimURIs);
+                }
+                claimURIs.addAll(otherClaimURIs);
+            }
+        }
+
+        Map<String, Set<String>> otherToCarbon = new HashMap<>();
+        for (ClaimMapping claimMapping : otherDialectMappings) {
+            String carbonClaimURI = attributeToCarbon.get(claimMapping.getMappedAttribute());
+            if (carbonClaimURI != null) {
+                String claimURI = claimMapping.getClaim().getClaimUri();
+                Set<String> claimURIs = otherToCarbon.get(claimURI);
+                if (claimURIs == null) {
+                    claimURIs = new LinkedHashSet<>();
+                    otherToCarbon.put(claimURI, claimURIs);
+                }
+                claimURIs.add(carbonClaimURI);
+            }
+        }
+
+        this.carbonToOther = carbonToOther;
+        this.otherToCarbon = otherToCarbon;
+    }
+
+    /**
+     * @param carbonClaimURI claim of the carbon dialect
+     * @return claims of the other dialect mapped to the same attribute
+     */
+    Set<String> getOtherClaimURIs(String carbonClaimURI) {
+        Set<String> claimURIs = carbonToOther.get(carbonClaimURI);
+        return claimURIs != null ? claimURIs : Collections.<String>emptySet();
+    }
+
+    /**
+     * @param otherClaimURI claim of the other dialect
+     * @return claims of the carbon dialect mapped to the same attribute
+     */
+    Set<String> getCarbonClaimURIs(String otherClaimURI) {
+        Set<String> claimURIs = otherToCarbon.get(otherClaimURI);
+        return claimURIs != null ? claimURIs : Collections.<String>emptySet();
+    }
+
+    /**
+     * @return claims of the other dialect which are mapped to a claim of the carbon dialect
+     */
+    Set<String> getMappedOtherClaimURIs() {
+        return otherToCarbon.keySet();
+    }
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.wso2.carbon.claim.mgt;
+
+import org.wso2.carbon.identity.application.common.cache.BaseCache;
+
+/**
+ * Cache of the translation indexes between the claim dialects of a tenant and the carbon dialect. Entries expire
+ * after the timeout configured for the cache, so that claim mappings changed without going through
+ * {@link ClaimManagerHandler} are picked up.
+ */
+class ClaimDialectIndexCache extends BaseCache<ClaimDialectIndexCacheKey, ClaimDialectIndex> {
+
+    private static final String CLAIM_DIALECT_INDEX_CACHE_NAME = "ClaimDialectIndexCache";
+
+    private static volatile ClaimDialectIndexCache instance;
+
+    private ClaimDialectIndexCache() {
+        super(CLAIM_DIALECT_INDEX_CACHE_NAME);
+    }
+
+    static ClaimDialectIndexCache getInstance() {
+        if (instance == null) {
+            synchronized (ClaimDialectIndexCache.class) {
+                if (instance == null) {
+                    instance = new ClaimDialectIndexCache();
+                }
+            }
+        }
+        return instance;
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.wso2.carbon.claim.mgt;
+
+import org.wso2.carbon.identity.application.common.cache.CacheKey;
+
+class ClaimDialectIndexCacheKey extends CacheKey {
+
+    private static final long serialVersionUID = 4210761339574613592L;
+
+    private String dialectURI;
+
+    ClaimDialectIndexCacheKey(String dialectURI, String tenantDomain) {
+        this.dialectURI = dialectURI;
+        this.tenantDomain = tenantDomain;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        if (!super.equals(o)) {
+            return false;
+        }
+
+        ClaimDialectIndexCacheKey that = (ClaimDialectIndexCacheKey) o;
+
+        if (!dialectURI.equals(that.dialectURI)) {
+            return false;
+        }
+        if (!tenantDomain.equals(that.tenantDomain)) {
+            return false;
+        }
+
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = super.hashCode();
+        result = 31 * result + dialectURI.hashCode();
+        result = 31 * result + tenantDomain.hashCode();
+        return result;
+    }
+}
@@ -31,6 +31,7 @@ import org.wso2.carbon.user.api.ClaimMapping;
 import org.wso2.carbon.user.core.UserCoreConstants;
 import org.wso2.carbon.user.core.UserRealm;
 import org.wso2.carbon.user.core.claim.ClaimManager;
+import org.wso2.carbon.utils.multitenancy.MultitenantConstants;
 
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -39,6 +40,7 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
 
 public enum ClaimManagerHandler {
 
@@ -47,6 +49,10 @@ public enum ClaimManagerHandler {
     private static final Log log = LogFactory.getLog(ClaimManagerHandler.class);
     // Maintains a single instance of UserStore.
 
+    // Incremented on every claim mapping change made through this node, so that a translation index built
+    // while the mappings were being changed is not put back to the cache after it is cleared.
+    private final AtomicLong claimMappingVersion = new AtomicLong();
+
     public static ClaimManagerHandler getInstance() {
         if (log.isDebugEnabled()) {
             log.debug("ClaimManagerHandler singleton instance created successfully");
@@ -278,6 +284,7 @@ public enum ClaimManagerHandler {
                 // There can be cases - we get a request for an external user store - where we don'
                 // have a claims administrator.
                 claimManager.updateClaimMapping(mapping);
+                clearDialectIndexes();
             }
         } catch (org.wso2.carbon.user.api.UserStoreException e) {
             throw new ClaimManagementException("Error occurred while updating claim mapping", e);
@@ -298,6 +305,7 @@ public enum ClaimManagerHandler {
                 // There can be cases - we get a request for an external user store - where we don'
                 // have a claims administrator.
                 claimManager.addNewClaimMapping(mapping);
+                clearDialectIndexes();
             }
         } catch (org.wso2.carbon.user.api.UserStoreException e) {
             throw new ClaimManagementException("Error occurred while adding new claim mapping", e);
@@ -325,6 +333,7 @@ public enum ClaimManagerHandler {
                 claim.setDialectURI(dialectUri);
                 mapping = new ClaimMapping(claim, null);
                 claimManager.deleteClaimMapping(mapping);
+                clearDialectIndexes();
             }
         } catch (org.wso2.carbon.user.api.UserStoreException e) {
             throw new ClaimManagementException("Error occurred while removing new claim mapping", e);
@@ -346,6 +355,7 @@ public enum ClaimManagerHandler {
                 for (ClaimMapping aMapping : mapping) {
                     claimManager.addNewClaimMapping(aMapping);
                 }
+                clearDialectIndexes();
             }
         } catch (org.wso2.carbon.user.api.UserStoreException e) {
             throw new ClaimManagementException("Error occurred while removing new claim mapping", e);
@@ -369,12 +379,57 @@ public enum ClaimManagerHandler {
                         claimManager.deleteClaimMapping(aMapping);
                     }
                 }
+                clearDialectIndexes();
             }
         } catch (org.wso2.carbon.user.api.UserStoreException e) {
             throw new ClaimManagementException("Error occurred while removing new claim dialect", e);
         }
     }
 
+    /**
+     * Returns the translation index between the given dialect and the carbon dialect, building it from the
+     * claim mappings of the tenant if it is not in the cache.
+     */
+    private ClaimDialectIndex getDialectIndex(String otherDialectURI, String tenantDomain)
+            throws ClaimManagementException {
+
+        ClaimDialectIndexCacheKey cacheKey = new ClaimDialectIndexCacheKey(otherDialectURI,
+                                                                           getTenantKey(tenantDomain));
+        ClaimDialectIndex dialectIndex = ClaimDialectIndexCache.getInstance().getValueFromCache(cacheKey);
+        if (dialectIndex == null) {
+            long version = claimMappingVersion.get();
+            ClaimMapping[] otherDialectMappings = getAllClaimMappings(otherDialectURI, tenantDomain);
+            ClaimMapping[] carbonDialectMappings = getAllClaimMappings(UserCoreConstants.DEFAULT_CARBON_DIALECT,
+                                                                       tenantDomain);
+            dialectIndex = new ClaimDialectIndex(
+                    otherDialectMappings != null ? otherDialectMappings : new ClaimMapping[0],
+                    carbonDialectMappings != null ? carbonDialectMappings : new ClaimMapping[0]);
+            // mappings changed while they were read may be missing from the index, which is then used for
+            // this translation only
+            if (version == claimMappingVersion.get()) {
+                ClaimDialectIndexCache.getInstance().addToCache(cacheKey, dialectIndex);
+            }
+        }
+        return dialectIndex;
+    }
+
+    /**
+     * Drops the translation indexes after a claim mapping change. A change to the carbon dialect affects the
+     * indexes of all the dialects, hence the whole cache is cleared, which also clears it in the other nodes
+     * of the cluster.
+     */
+    private void clearDialectIndexes() {
+        claimMappingVersion.incrementAndGet();
+        ClaimDialectIndexCache.getInstance().clear();
+    }
+
+    private String getTenantKey(String tenantDomain) {
+        if (StringUtils.isEmpty(tenantDomain)) {
+            return MultitenantConstants.SUPER_TENANT_DOMAIN_NAME;
+        }
+        return tenantDomain;
+    }
+
     private UserRealm getRealm() throws ClaimManagementException {
         try {
             return AdminServicesUtil.getUserRealm();
@@ -399,10 +454,6 @@ public enum ClaimManagerHandler {
             return returnSet;
         }
 
-        ClaimMapping[] claimMappingsInOtherDialect = getAllClaimMappings(otherDialectURI,
-                                                                         tenantDomain);
-        ClaimMapping[] allClaimMappingsInCarbonDialect = getAllClaimMappings(
-                UserCoreConstants.DEFAULT_CARBON_DIALECT, tenantDomain);
         if (otherDialectURI == null) {
             String message = "Invalid argument: \'otherDialectURI\' is \'NULL\'";
             log.error(message);
@@ -413,21 +464,11 @@ public enum ClaimManagerHandler {
             log.error(message);
             throw new ClaimManagementException(message);
         }
+        ClaimDialectIndex dialectIndex = getDialectIndex(otherDialectURI, tenantDomain);
         for (String requestedClaimURI : carbonClaimURIs) {
-            if (allClaimMappingsInCarbonDialect != null
-                && allClaimMappingsInCarbonDialect.length > 0) {
-                for (ClaimMapping claimMapping : allClaimMappingsInCarbonDialect) {
-                    if (requestedClaimURI.equals(claimMapping.getClaim().getClaimUri())) {
-                        String mappedAttr = claimMapping.getMappedAttribute();
-                        for (ClaimMapping carbonClaimMapping : claimMappingsInOtherDialect) {
-                            if (mappedAttr.equals(carbonClaimMapping.getMappedAttribute())) {
-                                returnSet.add(new org.wso2.carbon.claim.mgt.ClaimMapping(
-                                        otherDialectURI, requestedClaimURI, carbonClaimMapping
-                                        .getClaim().getClaimUri()));
-                            }
-                        }
-                    }
-                }
+            for (String otherClaimURI : dialectIndex.getOtherClaimURIs(requestedClaimURI)) {
+                returnSet.add(new org.wso2.carbon.claim.mgt.ClaimMapping(otherDialectURI, requestedClaimURI,
+                                                                         otherClaimURI));
             }
         }
         return returnSet;
@@ -476,46 +517,15 @@ public enum ClaimManagerHandler {
             return returnSet;
         }
 
-        ClaimMapping[] allClaimMappingsInOtherDialect = getAllClaimMappings(otherDialectURI,
-                                                                            tenantDomain);
-        ClaimMapping[] allClaimMappingsInCarbonDialect = getAllClaimMappings(
-                UserCoreConstants.DEFAULT_CARBON_DIALECT, tenantDomain);
-
+        ClaimDialectIndex dialectIndex = getDialectIndex(otherDialectURI, tenantDomain);
+        Set<String> requestedClaimURIs = otherClaimURIs;
         if (otherClaimURIs == null || otherClaimURIs.isEmpty()) {
-
-            for (ClaimMapping claimMapping : allClaimMappingsInOtherDialect) {
-
-                String mappedAttr = claimMapping.getMappedAttribute();
-
-                for (ClaimMapping carbonClaimMapping : allClaimMappingsInCarbonDialect) {
-                    if (mappedAttr.equals(carbonClaimMapping.getMappedAttribute())) {
-                        returnSet.add(new org.wso2.carbon.claim.mgt.ClaimMapping(otherDialectURI,
-                                                                                 claimMapping.getClaim().getClaimUri(), carbonClaimMapping
-                                .getClaim().getClaimUri()));
-                        break;
-                    }
-                }
-
-            }
-        } else {
-
-            for (String requestedClaimURI : otherClaimURIs) {
-                if (allClaimMappingsInOtherDialect != null
-                    && allClaimMappingsInOtherDialect.length > 0) {
-                    for (ClaimMapping claimMapping : allClaimMappingsInOtherDialect) {
-                        if (requestedClaimURI.equals(claimMapping.getClaim().getClaimUri())) {
-                            String mappedAttr = claimMapping.getMappedAttribute();
-                            for (ClaimMapping carbonClaimMapping : allClaimMappingsInCarbonDialect) {
-                                if (mappedAttr.equals(carbonClaimMapping.getMappedAttribute())) {
-                                    returnSet.add(new org.wso2.carbon.claim.mgt.ClaimMapping(
-                                            otherDialectURI, requestedClaimURI, carbonClaimMapping
-                                            .getClaim().getClaimUri()));
-                                    break;
-                                }
-                            }
-                        }
-                    }
-                }
+            requestedClaimURIs = dialectIndex.getMappedOtherClaimURIs();
+        }
+        for (String requestedClaimURI : requestedClaimURIs) {
+            for (String carbonClaimURI : dialectIndex.getCarbonClaimURIs(requestedClaimURI)) {
+                returnSet.add(new org.wso2.carbon.claim.mgt.ClaimMapping(otherDialectURI, requestedClaimURI,
+                                                                         carbonClaimURI));
             }
         }
 
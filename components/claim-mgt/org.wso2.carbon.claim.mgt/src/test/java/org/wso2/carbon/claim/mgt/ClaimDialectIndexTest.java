@@ -0,0 +1,183 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.wso2.carbon.claim.mgt;
+
+import junit.framework.TestCase;
+import org.wso2.carbon.user.api.Claim;
+import org.wso2.carbon.user.api.ClaimMapping;
+
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Compares the claim translations done by scanning the claim mappings of both dialects for each requested claim,
+ * as before the translation index, with the translations served from a {@link ClaimDialectIndex}. Both must return
+ * the same claims.
+ */
+public class ClaimDialectIndexTest extends TestCase {
+
+    private static final String CARBON_DIALECT = "http://wso2.org/claims";
+    private static final String OTHER_DIALECT = "urn:scim:schemas:core:1.0";
+    private static final int CLAIMS = 500;
+    private static final int REQUESTED_CLAIMS = 20;
+
+    private ClaimMapping[] carbonMappings;
+    private ClaimMapping[] otherMappings;
+
+    @Override
+    protected void setUp() throws Exception {
+
+        carbonMappings = new ClaimMapping[CLAIMS];
+        otherMappings = new ClaimMapping[CLAIMS];
+        for (int i = 0; i < CLAIMS; i++) {
+            // every tenth carbon claim shares the attribute of the previous claim
+            String carbonAttribute = "attribute" + (i % 10 == 9 ? i - 1 : i);
+            carbonMappings[i] = claimMapping(CARBON_DIALECT, carbonClaim(i), carbonAttribute);
+            // every seventh claim of the other dialect is mapped to an attribute unknown to the carbon dialect
+            String otherAttribute = i % 7 == 6 ? "unmapped" + i : "attribute" + (CLAIMS - 1 - i);
+            otherMappings[i] = claimMapping(OTHER_DIALECT, otherClaim(i), otherAttribute);
+        }
+    }
+
+    public void testIndexReturnsTheClaimsOfTheMappingScans() {
+
+        ClaimDialectIndex index = new ClaimDialectIndex(otherMappings, carbonMappings);
+        Set<String> allCarbonClaims = new LinkedHashSet<String>();
+        Set<String> allOtherClaims = new LinkedHashSet<String>();
+        for (int i = 0; i < CLAIMS; i++) {
+            allCarbonClaims.add(carbonClaim(i));
+            allOtherClaims.add(otherClaim(i));
+        }
+
+        assertEquals(scanCarbonToOther(allCarbonClaims), indexCarbonToOther(index, allCarbonClaims));
+        assertEquals(scanOtherToCarbon(allOtherClaims), indexOtherToCarbon(index, allOtherClaims));
+        assertEquals("all mapped claims should be translated when no claim is requested",
+                scanOtherToCarbon(null), indexOtherToCarbon(index, null));
+        assertFalse(indexOtherToCarbon(index, null).isEmpty());
+    }
+
+    public void testIndexedTranslationsOfRequestedClaims() {
+
+        ClaimDialectIndex index = new ClaimDialectIndex(otherMappings, carbonMappings);
+        for (Set<String> carbonRequest : requests(true)) {
+            assertEquals(carbonRequest.toString(), scanCarbonToOther(carbonRequest),
+                    indexCarbonToOther(index, carbonRequest));
+        }
+        for (Set<String> otherRequest : requests(false)) {
+            assertEquals(otherRequest.toString(), scanOtherToCarbon(otherRequest),
+                    indexOtherToCarbon(index, otherRequest));
+        }
+    }
+
+    /**
+     * Translation from the carbon dialect as done by getMappingsFromCarbonDialectToOther before the index
+     */
+    private Set<String> scanCarbonToOther(Set<String> carbonClaimURIs) {
+
+        Set<String> translations = new HashSet<String>();
+        for (String requestedClaimURI : carbonClaimURIs) {
+            for (ClaimMapping claimMapping : carbonMappings) {
+                if (requestedClaimURI.equals(claimMapping.getClaim().getClaimUri())) {
+                    String mappedAttr = claimMapping.getMappedAttribute();
+                    for (ClaimMapping otherClaimMapping : otherMappings) {
+                        if (mappedAttr.equals(otherClaimMapping.getMappedAttribute())) {
+                            translations.add(requestedClaimURI + " " + otherClaimMapping.getClaim().getClaimUri());
+                        }
+                    }
+                }
+            }
+        }
+        return translations;
+    }
+
+    /**
+     * Translation to the carbon dialect as done by getMappingsFromOtherDialectToCarbon before the index
+     */
+    private Set<String> scanOtherToCarbon(Set<String> otherClaimURIs) {
+
+        Set<String> translations = new HashSet<String>();
+        for (ClaimMapping claimMapping : otherMappings) {
+            String claimURI = claimMapping.getClaim().getClaimUri();
+            if (otherClaimURIs != null && !otherClaimURIs.contains(claimURI)) {
+                continue;
+            }
+            for (ClaimMapping carbonClaimMapping : carbonMappings) {
+                if (claimMapping.getMappedAttribute().equals(carbonClaimMapping.getMappedAttribute())) {
+                    translations.add(claimURI + " " + carbonClaimMapping.getClaim().getClaimUri());
+                    break;
+                }
+            }
+        }
+        return translations;
+    }
+
+    private static Set<String> indexCarbonToOther(ClaimDialectIndex index, Set<String> carbonClaimURIs) {
+
+        Set<String> translations = new HashSet<String>();
+        for (String requestedClaimURI : carbonClaimURIs) {
+            for (String otherClaimURI : index.getOtherClaimURIs(requestedClaimURI)) {
+                translations.add(requestedClaimURI + " " + otherClaimURI);
+            }
+        }
+        return translations;
+    }
+
+    private static Set<String> indexOtherToCarbon(ClaimDialectIndex index, Set<String> otherClaimURIs) {
+
+        Set<String> requestedClaimURIs = otherClaimURIs != null ? otherClaimURIs : index.getMappedOtherClaimURIs();
+        Set<String> translations = new HashSet<String>();
+        for (String requestedClaimURI : requestedClaimURIs) {
+            for (String carbonClaimURI : index.getCarbonClaimURIs(requestedClaimURI)) {
+                translations.add(requestedClaimURI + " " + carbonClaimURI);
+            }
+        }
+        return translations;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Set<String>[] requests(boolean carbonDialect) {
+
+        Set<String>[] requests = new Set[CLAIMS / REQUESTED_CLAIMS];
+        for (int i = 0; i < requests.length; i++) {
+            requests[i] = new HashSet<String>();
+            for (int j = 0; j < REQUESTED_CLAIMS; j++) {
+                int claim = (i + j * requests.length) % CLAIMS;
+                requests[i].add(carbonDialect ? carbonClaim(claim) : otherClaim(claim));
+            }
+        }
+        return requests;
+    }
+
+    private static ClaimMapping claimMapping(String dialectURI, String claimURI, String mappedAttribute) {
+
+        Claim claim = new Claim();
+        claim.setDialectURI(dialectURI);
+        claim.setClaimUri(claimURI);
+        return new ClaimMapping(claim, mappedAttribute);
+    }
+
+    private static String carbonClaim(int i) {
+        return CARBON_DIALECT + "/claim" + i;
+    }
+
+    private static String otherClaim(int i) {
+        return OTHER_DIALECT + ":claim" + i;
+    }
+}
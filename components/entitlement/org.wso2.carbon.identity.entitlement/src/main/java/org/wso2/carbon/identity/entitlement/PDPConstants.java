@@ -267,8 +267,14 @@ public class PDPConstants {
 
     public static final String ENTITLEMENT_ITEMS_PER_PAGE = "PAP.Items.Per.Page";
 
+    public static final String POLICY_PUBLISHER_THREAD_POOL_SIZE = "PAP.Policy.Publisher.Thread.Pool.Size";
+
     public static final String PDP_GLOBAL_COMBINING_ALGORITHM = "PDP.Global.Policy.Combining.Algorithm";
 
+    public static final String PDP_SEARCH_THREAD_POOL_SIZE = "PDP.Search.Thread.Pool.Size";
+
+    public static final String PDP_SEARCH_TIMEOUT = "PDP.Search.Timeout";
+
     public static final String REGISTRY_MEDIA_TYPE = "application/xacml-policy+xml";
 
     public static final String ENTITLEMENT_ENGINE_CACHING_INTERVAL = "Entitlement.Engine.CachingInterval";
@@ -208,7 +208,10 @@ public class EntitlementExtensionBuilder {
         setProperty(properties, pdpProperties, PDPConstants.FILESYSTEM_POLICY_PATH);
         setProperty(properties, pdpProperties, PDPConstants.POLICY_ID_REGEXP_PATTERN);
         setProperty(properties, pdpProperties, PDPConstants.PDP_GLOBAL_COMBINING_ALGORITHM);
+        setProperty(properties, pdpProperties, PDPConstants.PDP_SEARCH_THREAD_POOL_SIZE);
+        setProperty(properties, pdpProperties, PDPConstants.PDP_SEARCH_TIMEOUT);
         setProperty(properties, pdpProperties, PDPConstants.ENTITLEMENT_ITEMS_PER_PAGE);
+        setProperty(properties, pdpProperties, PDPConstants.POLICY_PUBLISHER_THREAD_POOL_SIZE);
         setProperty(properties, pdpProperties, PDPConstants.START_UP_POLICY_ADDING);
         setProperty(properties, pdpProperties, PDP_SCHEMA_VALIDATION);
         setProperty(properties, pdpProperties, PDPConstants.ENTITLEMENT_ENGINE_CACHING_INTERVAL);
@@ -34,6 +34,10 @@ import org.wso2.carbon.identity.entitlement.PDPConstants;
 import org.wso2.carbon.identity.entitlement.dto.PolicyDTO;
 import org.wso2.carbon.identity.entitlement.listener.CacheClearingUserOperationListener;
 import org.wso2.carbon.identity.entitlement.pap.store.PAPPolicyStore;
+import org.wso2.carbon.identity.entitlement.policy.publisher.AbstractPolicyPublisherModule;
+import org.wso2.carbon.identity.entitlement.policy.publisher.PolicyPublisher;
+import org.wso2.carbon.identity.entitlement.policy.publisher.PolicyPublisherModule;
+import org.wso2.carbon.identity.entitlement.policy.search.PolicySearch;
 import org.wso2.carbon.identity.entitlement.thrift.EntitlementService;
 import org.wso2.carbon.identity.entitlement.thrift.ThriftConfigConstants;
 import org.wso2.carbon.identity.entitlement.thrift.ThriftEntitlementServiceImpl;
@@ -271,6 +275,16 @@ public class EntitlementServiceComponent {
      * @param ctxt
      */
     protected void deactivate(ComponentContext ctxt) {
+
+        PolicyPublisher.shutdown();
+        PolicySearch.shutdown();
+        if (getEntitlementConfig() != null && getEntitlementConfig().getPolicyPublisherModules() != null) {
+            for (PolicyPublisherModule module : getEntitlementConfig().getPolicyPublisherModules().keySet()) {
+                if (module instanceof AbstractPolicyPublisherModule) {
+                    ((AbstractPolicyPublisherModule) module).destroy();
+                }
+            }
+        }
         if (log.isDebugEnabled()) {
             log.debug("Identity Entitlement bundle is deactivated");
         }
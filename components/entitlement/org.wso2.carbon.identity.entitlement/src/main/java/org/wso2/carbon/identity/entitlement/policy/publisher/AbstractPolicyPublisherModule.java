@@ -31,6 +31,7 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
 
 /**
  * This is  abstract implementation of PolicyPublisherModule. Here we have implemented the init()
@@ -137,6 +138,63 @@ public abstract class AbstractPolicyPublisherModule implements PolicyPublisherMo
         }
     }
 
+    /**
+     * Creates a new instance of this module to publish policies to a single subscriber. Policies are published to
+     * several subscribers in parallel only through such instances, as a module keeps the configuration of the
+     * subscriber it was last initialized with. Returns null by default, in which case subscribers sharing this
+     * module are published one after the other.
+     *
+     * @return new module instance, or null if the module can not be instantiated per subscriber
+     */
+    public AbstractPolicyPublisherModule newSubscriberInstance() {
+        return null;
+    }
+
+    /**
+     * Publishes several policies to the subscriber with a single request, if the module supports it for the given
+     * action. Nothing is published if false is returned, and the policies are then published one by one.
+     *
+     * @param policyDTOs policies to publish
+     * @param action     publishing action
+     * @param enabled    enabled
+     * @param order      order
+     * @return true if the policies were published, false if the action can not be published in bulk
+     * @throws EntitlementException throws, if publishing fails
+     */
+    public boolean publishBatch(PolicyDTO[] policyDTOs, String action, boolean enabled, int order)
+            throws EntitlementException {
+        return false;
+    }
+
+    /**
+     * Finds which policies of a failed batch were published to the subscriber before the batch failed. Those are
+     * recorded as published and the rest are published again one by one. Returns null by default, in which case
+     * all the policies of the failed batch are recorded as failed.
+     *
+     * @param policyDTOs policies of the failed batch
+     * @param action     publishing action of the batch
+     * @return ids of the policies found at the subscriber, or null if it can not be found out
+     */
+    public Set<String> getPublishedPolicyIds(PolicyDTO[] policyDTOs, String action) {
+        return null;
+    }
+
+    /**
+     * Releases the resources kept by the module for a subscriber, such as connections to it. Called when the
+     * subscriber is updated or deleted.
+     *
+     * @param subscriberId subscriber id
+     */
+    public void releaseSubscriber(String subscriberId) {
+    }
+
+    /**
+     * Releases the resources kept by the module for all the subscribers. Called when the entitlement component is
+     * deactivated.
+     */
+    public void destroy() {
+    }
+
     /**
      * This would init module, each time policy is published
      *
@@ -31,15 +31,22 @@ import org.apache.commons.httpclient.HttpClient;
 import org.apache.commons.httpclient.MultiThreadedHttpConnectionManager;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.wso2.carbon.context.CarbonContext;
 import org.wso2.carbon.identity.entitlement.EntitlementException;
+import org.wso2.carbon.identity.entitlement.common.EntitlementConstants;
 import org.wso2.carbon.identity.entitlement.dto.PolicyDTO;
 import org.wso2.carbon.identity.entitlement.dto.PublisherDataHolder;
 import org.wso2.carbon.identity.entitlement.dto.PublisherPropertyDTO;
 
 import javax.xml.stream.XMLStreamException;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * Carbon implementation of PolicyPublisherModule
@@ -48,7 +55,21 @@ public class CarbonBasicPolicyPublisherModule extends AbstractPolicyPublisherMod
 
     private static final String MODULE_NAME = "Carbon Basic Auth Policy Publisher Module";
     private static Log log = LogFactory.getLog(CarbonBasicPolicyPublisherModule.class);
+    /**
+     * Axis2 configuration context shared by all instances, as creating it for each subscriber is expensive
+     */
+    private static volatile ConfigurationContext sharedConfigCtx;
+    /**
+     * HTTP clients keyed by tenant id and subscriber id, as subscribers are defined per tenant. Each has its own
+     * connection manager, so that the connections to a subscriber are kept alive and reused by subsequent publish
+     * operations. A client is shut down when its subscriber is updated or deleted, or when the subscriber URL or
+     * user name it was created for changes.
+     */
+    private static final ConcurrentMap<String, SubscriberClient> httpClients =
+            new ConcurrentHashMap<String, SubscriberClient>();
     private ConfigurationContext configCtx;
+    private int tenantId;
+    private String subscriberId;
     private String serverUrl;
 
     private String serverUserName;
@@ -60,7 +81,9 @@ public class CarbonBasicPolicyPublisherModule extends AbstractPolicyPublisherMod
 
         PublisherPropertyDTO[] propertyDTOs = propertyHolder.getPropertyDTOs();
         for (PublisherPropertyDTO dto : propertyDTOs) {
-            if ("subscriberURL".equals(dto.getId())) {
+            if (PolicyPublisher.SUBSCRIBER_ID.equals(dto.getId())) {
+                subscriberId = dto.getValue();
+            } else if ("subscriberURL".equals(dto.getId())) {
                 serverUrl = dto.getValue();
             } else if ("subscriberUserName".equals(dto.getId())) {
                 serverUserName = dto.getValue();
@@ -69,11 +92,100 @@ public class CarbonBasicPolicyPublisherModule extends AbstractPolicyPublisherMod
             }
         }
 
-        try {
-            configCtx = ConfigurationContextFactory.createConfigurationContextFromFileSystem(null, null);
-        } catch (AxisFault axisFault) {
-            log.error("Error while initializing module", axisFault);
-            throw new EntitlementException("Error while initializing module", axisFault);
+        if (serverUrl != null) {
+            serverUrl = serverUrl.trim();
+            if (!serverUrl.endsWith("/")) {
+                serverUrl += "/";
+            }
+        }
+
+        tenantId = CarbonContext.getThreadLocalCarbonContext().getTenantId();
+        configCtx = getConfigurationContext();
+    }
+
+    @Override
+    public AbstractPolicyPublisherModule newSubscriberInstance() {
+        return new CarbonBasicPolicyPublisherModule();
+    }
+
+    /**
+     * New policies are added with a single addPolicies request. Other actions are not supported in bulk by the
+     * subscriber.
+     */
+    @Override
+    public boolean publishBatch(PolicyDTO[] policyDTOs, String action, boolean enabled, int order)
+            throws EntitlementException {
+
+        if (!EntitlementConstants.PolicyPublish.ACTION_CREATE.equalsIgnoreCase(action)) {
+            return false;
+        }
+
+        StringBuilder body = new StringBuilder("<xsd:addPolicies xmlns:xsd=\"http://org.apache.axis2/xsd\" " +
+                "xmlns:xsd1=\"http://dto.entitlement.identity.carbon.wso2.org/xsd\">");
+        for (PolicyDTO policyDTO : policyDTOs) {
+            policyDTO.setPolicyOrder(order);
+            policyDTO.setActive(enabled);
+            body.append("  <xsd:policies>").append(getNewPolicyElements(policyDTO)).append("  </xsd:policies>");
+        }
+        body.append("  </xsd:addPolicies>");
+        doSend(body.toString());
+        return true;
+    }
+
+    /**
+     * addPolicies adds policies one after the other, so the policies of a failed batch which were added before the
+     * failure are found by looking them up at the subscriber
+     */
+    @Override
+    public Set<String> getPublishedPolicyIds(PolicyDTO[] policyDTOs, String action) {
+
+        if (!EntitlementConstants.PolicyPublish.ACTION_CREATE.equalsIgnoreCase(action)) {
+            return null;
+        }
+
+        Set<String> publishedPolicyIds = new HashSet<String>();
+        for (PolicyDTO policyDTO : policyDTOs) {
+            String body = "<xsd:getPolicy xmlns:xsd=\"http://org.apache.axis2/xsd\">" +
+                    "<xsd:policyId>" + policyDTO.getPolicyId() + "</xsd:policyId>" +
+                    "<xsd:isPDPPolicy>false</xsd:isPDPPolicy>" +
+                    "</xsd:getPolicy>";
+            try {
+                send(body, true);
+                publishedPolicyIds.add(policyDTO.getPolicyId());
+            } catch (AxisFault axisFault) {
+                if (log.isDebugEnabled()) {
+                    log.debug("Policy : " + policyDTO.getPolicyId() + " is not found at subscriber : " +
+                            subscriberId + " due : " + axisFault.getMessage());
+                }
+            } catch (XMLStreamException e) {
+                log.error("Error while looking up policy : " + policyDTO.getPolicyId(), e);
+            }
+        }
+        return publishedPolicyIds;
+    }
+
+    @Override
+    public void releaseSubscriber(String subscriberId) {
+
+        if (subscriberId == null) {
+            return;
+        }
+        // subscribers are updated and deleted in the tenant they belong to
+        int tenantId = CarbonContext.getThreadLocalCarbonContext().getTenantId();
+        SubscriberClient subscriberClient = httpClients.remove(getClientKey(tenantId, subscriberId));
+        if (subscriberClient != null) {
+            subscriberClient.shutdown();
+        }
+    }
+
+    @Override
+    public void destroy() {
+
+        Iterator<SubscriberClient> iterator = httpClients.values().iterator();
+        while (iterator.hasNext()) {
+            SubscriberClient subscriberClient = iterator.next();
+            iterator.remove();
+            subscriberClient.shutdown();
         }
     }
 
@@ -113,16 +225,21 @@ public class CarbonBasicPolicyPublisherModule extends AbstractPolicyPublisherMod
 
         String body = "<xsd:addPolicy xmlns:xsd=\"http://org.apache.axis2/xsd\" xmlns:xsd1=\"http://dto.entitlement.identity.carbon.wso2.org/xsd\">" +
                 "  <xsd:policyDTO>" +
-                "  <xsd1:active>" + Boolean.toString(policyDTO.isActive()) + "</xsd1:active>" +
-                "  <xsd1:policy><![CDATA[" + policyDTO.getPolicy() + "]]>  </xsd1:policy>" +
-                "  <xsd1:policyId>" + policyDTO.getPolicyId() + "</xsd1:policyId>" +
-                "  <xsd1:policyOrder>" + policyDTO.getPolicyOrder() + "</xsd1:policyOrder>" +
-                "  <xsd1:promote>true</xsd1:promote>" +
+                getNewPolicyElements(policyDTO) +
                 "  </xsd:policyDTO>" +
                 "  </xsd:addPolicy>";
         doSend(body);
     }
 
+    private String getNewPolicyElements(PolicyDTO policyDTO) {
+
+        return "  <xsd1:active>" + Boolean.toString(policyDTO.isActive()) + "</xsd1:active>" +
+                "  <xsd1:policy><![CDATA[" + policyDTO.getPolicy() + "]]>  </xsd1:policy>" +
+                "  <xsd1:policyId>" + policyDTO.getPolicyId() + "</xsd1:policyId>" +
+                "  <xsd1:policyOrder>" + policyDTO.getPolicyOrder() + "</xsd1:policyOrder>" +
+                "  <xsd1:promote>true</xsd1:promote>";
+    }
+
     @Override
     public void order(PolicyDTO policyDTO) throws EntitlementException {
 
@@ -178,18 +295,31 @@ public class CarbonBasicPolicyPublisherModule extends AbstractPolicyPublisherMod
 
     private void doSend(String body) throws EntitlementException {
 
-        if (serverUrl != null) {
-            serverUrl = serverUrl.trim();
-            if (!serverUrl.endsWith("/")) {
-                serverUrl += "/";
-            }
+        try {
+            send(body, false);
+        } catch (AxisFault axisFault) {
+            log.error("Policy publish fails due : " + axisFault.getMessage(), axisFault);
+            throw new EntitlementException("Policy publish fails due : " + axisFault.getMessage());
+        } catch (XMLStreamException e) {
+            log.error("Policy publish fails due : " + e.getMessage(), e);
+            throw new EntitlementException("Policy publish fails due : " + e.getMessage());
         }
+    }
+
+    /**
+     * Sends a request to the policy admin service of the subscriber
+     *
+     * @param body    request body
+     * @param receive whether a response is expected
+     * @throws AxisFault          if the request fails or the subscriber returns a fault
+     * @throws XMLStreamException if the request body is invalid
+     */
+    private void send(String body, boolean receive) throws AxisFault, XMLStreamException {
 
         String serverEndPoint = serverUrl + "EntitlementPolicyAdminService";
         ServiceClient client = null;
         try {
-            MultiThreadedHttpConnectionManager httpConnectionManager = new MultiThreadedHttpConnectionManager();
-            HttpClient httpClient = new HttpClient(httpConnectionManager);
+            HttpClient httpClient = getHttpClient();
             client = new ServiceClient(configCtx, null);
             Options option = client.getOptions();
             option.setManageSession(true);
@@ -202,13 +332,11 @@ public class CarbonBasicPolicyPublisherModule extends AbstractPolicyPublisherMod
             option.setProperty(Constants.Configuration.TRANSPORT_URL, serverEndPoint);
             option.setProperty(HTTPConstants.REUSE_HTTP_CLIENT, Constants.VALUE_TRUE);
             option.setProperty(HTTPConstants.CACHED_HTTP_CLIENT, httpClient);
-            client.sendRobust(AXIOMUtil.stringToOM(body));
-        } catch (AxisFault axisFault) {
-            log.error("Policy publish fails due : " + axisFault.getMessage(), axisFault);
-            throw new EntitlementException("Policy publish fails due : " + axisFault.getMessage());
-        } catch (XMLStreamException e) {
-            log.error("Policy publish fails due : " + e.getMessage(), e);
-            throw new EntitlementException("Policy publish fails due : " + e.getMessage());
+            if (receive) {
+                client.sendReceive(AXIOMUtil.stringToOM(body));
+            } else {
+                client.sendRobust(AXIOMUtil.stringToOM(body));
+            }
         } finally {
             if (client != null) {
                 try {
@@ -220,4 +348,66 @@ public class CarbonBasicPolicyPublisherModule extends AbstractPolicyPublisherMod
             }
         }
     }
+
+    private HttpClient getHttpClient() {
+
+        String endpoint = serverUrl + ":" + serverUserName;
+        String key = getClientKey(tenantId, subscriberId != null ? subscriberId : endpoint);
+        SubscriberClient subscriberClient = httpClients.get(key);
+        if (subscriberClient == null || !subscriberClient.endpoint.equals(endpoint)) {
+            synchronized (httpClients) {
+                subscriberClient = httpClients.get(key);
+                if (subscriberClient == null || !subscriberClient.endpoint.equals(endpoint)) {
+                    SubscriberClient oldSubscriberClient = subscriberClient;
+                    subscriberClient = new SubscriberClient(endpoint);
+                    httpClients.put(key, subscriberClient);
+                    if (oldSubscriberClient != null) {
+                        // subscriber URL or user name is changed
+                        oldSubscriberClient.shutdown();
+                    }
+                }
+            }
+        }
+        return subscriberClient.httpClient;
+    }
+
+    private static String getClientKey(int tenantId, String subscriberId) {
+        return tenantId + ":" + subscriberId;
+    }
+
+    private static ConfigurationContext getConfigurationContext() throws EntitlementException {
+
+        if (sharedConfigCtx == null) {
+            synchronized (CarbonBasicPolicyPublisherModule.class) {
+                if (sharedConfigCtx == null) {
+                    try {
+                        sharedConfigCtx = ConfigurationContextFactory.
+                                createConfigurationContextFromFileSystem(null, null);
+                    } catch (AxisFault axisFault) {
+                        log.error("Error while initializing module", axisFault);
+                        throw new EntitlementException("Error while initializing module", axisFault);
+                    }
+                }
+            }
+        }
+        return sharedConfigCtx;
+    }
+
+    /**
+     * HTTP client of a subscriber together with the subscriber URL and user name it is created for
+     */
+    private static class SubscriberClient {
+
+        private final String endpoint;
+        private final MultiThreadedHttpConnectionManager connectionManager = new MultiThreadedHttpConnectionManager();
+        private final HttpClient httpClient = new HttpClient(connectionManager);
+
+        private SubscriberClient(String endpoint) {
+            this.endpoint = endpoint;
+        }
+
+        private void shutdown() {
+            connectionManager.shutdown();
+        }
+    }
 }
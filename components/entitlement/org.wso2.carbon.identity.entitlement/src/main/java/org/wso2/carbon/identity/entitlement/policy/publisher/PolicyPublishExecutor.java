@@ -36,8 +36,14 @@ import org.wso2.carbon.registry.api.Registry;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 /**
  * Policy publish executor
@@ -45,6 +51,11 @@ import java.util.Set;
 public class PolicyPublishExecutor implements Runnable {
 
     private static Log log = LogFactory.getLog(PolicyPublishExecutor.class);
+    /**
+     * Maximum number of policies published to a subscriber with a single request, if the publisher module
+     * supports it
+     */
+    private static final int PUBLISH_BATCH_SIZE = 50;
     private String[] policyIds;
     private String[] subscriberIds;
     private PolicyPublisher publisher;
@@ -65,8 +76,9 @@ public class PolicyPublishExecutor implements Runnable {
         this.policyIds = policyIds;
         if (toPDP) {
             this.subscriberIds = new String[]{"PDPSubscriber"};
+        } else {
+            this.subscriberIds = subscriberIds;
         }
-        this.subscriberIds = subscriberIds;
         this.action = action;
         this.version = version;
         this.publisher = publisher;
@@ -101,21 +113,22 @@ public class PolicyPublishExecutor implements Runnable {
         String newVerificationCode = null;
         ArrayList<String> notPublishedSubscribers = new ArrayList<String>();
 
-
-        PolicyPublisherModule policyPublisherModule = null;
         Set<PolicyPublisherModule> publisherModules = publisher.getPublisherModules();
 
         if (publisherModules == null) {
             return;
         }
 
-        PublisherDataHolder holder = null;
         Set<PAPStatusDataHandler> papStatusDataHandler = publisher.getPapStatusDataHandlers();
+        Map<String, List<StatusHolder>> subscriberStatus = new LinkedHashMap<String, List<StatusHolder>>();
+        List<SubscriberPublisher> subscriberPublishers = new ArrayList<SubscriberPublisher>();
         for (String subscriberId : subscriberIds) {
 
             // there is only one known subscriber, if policies are publishing to PDP
             List<StatusHolder> subscriberHolders = new ArrayList<StatusHolder>();
-            List<StatusHolder> policyHolders = new ArrayList<StatusHolder>();
+            subscriberStatus.put(subscriberId, subscriberHolders);
+            PolicyPublisherModule policyPublisherModule = null;
+            PublisherDataHolder holder = null;
             if (toPDP) {
                 policyPublisherModule = new CarbonPDPPublisher();
                 holder = new PublisherDataHolder(policyPublisherModule.getModuleName());
@@ -131,15 +144,6 @@ public class PolicyPublishExecutor implements Runnable {
                     for (PolicyPublisherModule publisherModule : publisherModules) {
                         if (publisherModule.getModuleName().equals(holder.getModuleName())) {
                             policyPublisherModule = publisherModule;
-                            if (policyPublisherModule instanceof AbstractPolicyPublisherModule) {
-                                try {
-                                    ((AbstractPolicyPublisherModule) policyPublisherModule).init(holder);
-                                } catch (Exception e) {
-                                    subscriberHolders.add(new StatusHolder(EntitlementConstants.StatusTypes.PUBLISH_POLICY,
-                                            subscriberId, version, "More than one Policy", action, false, e.getMessage()));
-                                    continue;
-                                }
-                            }
                             break;
                         }
                     }
@@ -167,63 +171,47 @@ public class PolicyPublishExecutor implements Runnable {
                 log.error("Error while calling the post verification publisher module", e);
             }
 
-            for (String policyId : policyIds) {
+            subscriberPublishers.add(new SubscriberPublisher(subscriberId, policyPublisherModule, holder,
+                    subscriberHolders));
+        }
 
-                PolicyDTO policyDTO = null;
+        if (!subscriberPublishers.isEmpty()) {
+            // policies are same for all the subscribers. So they are loaded only once
+            Map<String, PolicyDTO> policies = loadPolicies();
+            Map<String, List<StatusHolder>> policyStatus = new LinkedHashMap<String, List<StatusHolder>>();
+            for (String policyId : policies.keySet()) {
+                policyStatus.put(policyId, new ArrayList<StatusHolder>());
+            }
+            publishToSubscribers(subscriberPublishers, policies);
 
-                if (EntitlementConstants.PolicyPublish.ACTION_CREATE.equalsIgnoreCase(action) ||
-                        EntitlementConstants.PolicyPublish.ACTION_UPDATE.equalsIgnoreCase(action)) {
-                    PolicyVersionManager manager = EntitlementAdminEngine.getInstance().getVersionManager();
-                    try {
-                        policyDTO = manager.getPolicy(policyId, version);
-                    } catch (EntitlementException e) {
-                        //  ignore
-                    }
-                } else {
-                    policyDTO = new PolicyDTO();
-                    policyDTO.setPolicyId(policyId);
-                    policyDTO.setVersion(version);
-                    policyDTO.setPolicyOrder(order);
+            // status data handlers are called from this thread only, after all the subscribers are completed
+            for (SubscriberPublisher subscriberPublisher : subscriberPublishers) {
+                for (Map.Entry<String, List<StatusHolder>> entry : subscriberPublisher.policyHolders.entrySet()) {
+                    policyStatus.get(entry.getKey()).addAll(entry.getValue());
                 }
-
-                if (policyDTO == null) {
-                    subscriberHolders.add(new StatusHolder(EntitlementConstants.StatusTypes.PUBLISH_POLICY,
-                            subscriberId, version, policyId, action, false,
-                            "Can not found policy under policy id : " + policyId));
-                    policyHolders.add(new StatusHolder(EntitlementConstants.StatusTypes.PUBLISH_POLICY,
-                            policyId, version, subscriberId, action, false,
-                            "Can not found policy under policy id : " + policyId));
+            }
+            for (Map.Entry<String, List<StatusHolder>> entry : policyStatus.entrySet()) {
+                if (entry.getValue().isEmpty()) {
                     continue;
                 }
-
-                try {
-                    policyPublisherModule.publish(policyDTO, action, enabled, order);
-                    subscriberHolders.add(new StatusHolder(EntitlementConstants.StatusTypes.PUBLISH_POLICY,
-                            subscriberId, version, policyId, action));
-                    policyHolders.add(new StatusHolder(EntitlementConstants.StatusTypes.PUBLISH_POLICY,
-                            policyId, version, subscriberId, action));
-                } catch (Exception e) {
-                    subscriberHolders.add(new StatusHolder(EntitlementConstants.StatusTypes.PUBLISH_POLICY,
-                            subscriberId, version, policyId, action, false, e.getMessage()));
-                    policyHolders.add(new StatusHolder(EntitlementConstants.StatusTypes.PUBLISH_POLICY,
-                            policyId, version, subscriberId, action, false, e.getMessage()));
-                }
-
                 for (PAPStatusDataHandler module : papStatusDataHandler) {
                     try {
-                        module.handle(EntitlementConstants.Status.ABOUT_POLICY, policyId, policyHolders);
-                        policyHolders = new ArrayList<StatusHolder>();
+                        module.handle(EntitlementConstants.Status.ABOUT_POLICY, entry.getKey(), entry.getValue());
                     } catch (EntitlementException e) {
                         // ignore
                         log.error("Error while calling post publishers", e);
                     }
                 }
             }
+        }
 
+        for (Map.Entry<String, List<StatusHolder>> entry : subscriberStatus.entrySet()) {
+            if (entry.getValue().isEmpty()) {
+                continue;
+            }
             for (PAPStatusDataHandler module : papStatusDataHandler) {
                 try {
-                    module.handle(EntitlementConstants.Status.ABOUT_SUBSCRIBER, subscriberId, subscriberHolders);
-                    subscriberHolders = new ArrayList<StatusHolder>();
+                    module.handle(EntitlementConstants.Status.ABOUT_SUBSCRIBER, entry.getKey(), entry.getValue());
                 } catch (EntitlementException e) {
                     // ignore
                     log.error("Error while calling post publishers", e);
@@ -237,6 +225,80 @@ public class PolicyPublishExecutor implements Runnable {
         }
     }
 
+    /**
+     * Loads the policies to be published, keyed by policy id. Value is null if the policy can not be found
+     *
+     * @return policies to be published
+     */
+    private Map<String, PolicyDTO> loadPolicies() {
+
+        Map<String, PolicyDTO> policies = new LinkedHashMap<String, PolicyDTO>();
+        for (String policyId : policyIds) {
+
+            PolicyDTO policyDTO = null;
+
+            if (EntitlementConstants.PolicyPublish.ACTION_CREATE.equalsIgnoreCase(action) ||
+                    EntitlementConstants.PolicyPublish.ACTION_UPDATE.equalsIgnoreCase(action)) {
+                PolicyVersionManager manager = EntitlementAdminEngine.getInstance().getVersionManager();
+                try {
+                    policyDTO = manager.getPolicy(policyId, version);
+                } catch (EntitlementException e) {
+                    //  ignore
+                }
+            } else {
+                policyDTO = new PolicyDTO();
+                policyDTO.setPolicyId(policyId);
+                policyDTO.setVersion(version);
+                policyDTO.setPolicyOrder(order);
+            }
+            policies.put(policyId, policyDTO);
+        }
+        return policies;
+    }
+
+    /**
+     * Publishes the policies to each subscriber in the subscriber thread pool and waits until all of them are
+     * completed. Policies are published to a single subscriber in order.
+     *
+     * @param subscriberPublishers publishers of the subscribers
+     * @param policies             policies to be published
+     */
+    private void publishToSubscribers(List<SubscriberPublisher> subscriberPublishers,
+                                      Map<String, PolicyDTO> policies) {
+
+        CarbonContext carbonContext = CarbonContext.getThreadLocalCarbonContext();
+        String tenantDomain = carbonContext.getTenantDomain();
+        int tenantId = carbonContext.getTenantId();
+        String userName = carbonContext.getUsername();
+
+        if (subscriberPublishers.size() == 1) {
+            subscriberPublishers.get(0).publish(policies);
+            return;
+        }
+
+        ExecutorService threadPool = PolicyPublisher.getSubscriberThreadPool();
+        List<Future<?>> futures = new ArrayList<Future<?>>();
+        for (SubscriberPublisher subscriberPublisher : subscriberPublishers) {
+            futures.add(threadPool.submit(new SubscriberPublishTask(subscriberPublisher, policies, tenantDomain,
+                    tenantId, userName)));
+        }
+        for (int i = 0; i < futures.size(); i++) {
+            try {
+                futures.get(i).get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                log.error("Interrupted while publishing policies to subscribers");
+                for (Future<?> future : futures) {
+                    future.cancel(true);
+                }
+                return;
+            } catch (ExecutionException e) {
+                log.error("Error while publishing policies to subscriber : " +
+                        subscriberPublishers.get(i).subscriberId, e.getCause());
+            }
+        }
+    }
+
     /**
      * Helper method
      *
@@ -310,4 +372,180 @@ public class PolicyPublishExecutor implements Runnable {
     public void setUserName(String userName) {
         this.userName = userName;
     }
-}
\ No newline at end of file
+
+    /**
+     * Publishes policies to a single subscriber and collects the status of each policy
+     */
+    private class SubscriberPublisher {
+
+        private final String subscriberId;
+        private final PolicyPublisherModule publisherModule;
+        private final PublisherDataHolder holder;
+        private final List<StatusHolder> subscriberHolders;
+        private final Map<String, List<StatusHolder>> policyHolders = new HashMap<String, List<StatusHolder>>();
+
+        private SubscriberPublisher(String subscriberId, PolicyPublisherModule publisherModule,
+                                    PublisherDataHolder holder, List<StatusHolder> subscriberHolders) {
+            this.subscriberId = subscriberId;
+            this.publisherModule = publisherModule;
+            this.holder = holder;
+            this.subscriberHolders = subscriberHolders;
+        }
+
+        private void publish(Map<String, PolicyDTO> policies) {
+
+            if (!(publisherModule instanceof AbstractPolicyPublisherModule)) {
+                publish(publisherModule, policies);
+                return;
+            }
+
+            // module keeps the subscriber it is initialized with. So a shared module can be used by only one
+            // subscriber at a time
+            AbstractPolicyPublisherModule sharedModule = (AbstractPolicyPublisherModule) publisherModule;
+            AbstractPolicyPublisherModule subscriberModule = sharedModule.newSubscriberInstance();
+            if (subscriberModule != null) {
+                initAndPublish(subscriberModule, policies);
+            } else {
+                synchronized (sharedModule) {
+                    initAndPublish(sharedModule, policies);
+                }
+            }
+        }
+
+        private void initAndPublish(AbstractPolicyPublisherModule module, Map<String, PolicyDTO> policies) {
+
+            try {
+                module.init(holder);
+            } catch (Exception e) {
+                subscriberHolders.add(new StatusHolder(EntitlementConstants.StatusTypes.PUBLISH_POLICY,
+                        subscriberId, version, "More than one Policy", action, false, e.getMessage()));
+                return;
+            }
+            publish(module, policies);
+        }
+
+        private void publish(PolicyPublisherModule module, Map<String, PolicyDTO> policies) {
+
+            List<PolicyDTO> policyDTOs = new ArrayList<PolicyDTO>();
+            for (Map.Entry<String, PolicyDTO> entry : policies.entrySet()) {
+                if (entry.getValue() == null) {
+                    String policyId = entry.getKey();
+                    addStatus(policyId, false, "Can not found policy under policy id : " + policyId);
+                } else {
+                    policyDTOs.add(entry.getValue());
+                }
+            }
+
+            for (int from = 0; from < policyDTOs.size(); from += PUBLISH_BATCH_SIZE) {
+                List<PolicyDTO> batch = policyDTOs.subList(from, Math.min(from + PUBLISH_BATCH_SIZE,
+                        policyDTOs.size()));
+                if (batch.size() > 1 && module instanceof AbstractPolicyPublisherModule) {
+                    AbstractPolicyPublisherModule batchModule = (AbstractPolicyPublisherModule) module;
+                    PolicyDTO[] batchDTOs = batch.toArray(new PolicyDTO[batch.size()]);
+                    try {
+                        if (batchModule.publishBatch(batchDTOs, action, enabled, order)) {
+                            for (PolicyDTO policyDTO : batch) {
+                                addStatus(policyDTO.getPolicyId(), true, null);
+                            }
+                            continue;
+                        }
+                    } catch (Exception e) {
+                        batch = getNotPublished(batchModule, batchDTOs, e);
+                    }
+                }
+                for (PolicyDTO policyDTO : batch) {
+                    try {
+                        module.publish(policyDTO, action, enabled, order);
+                        addStatus(policyDTO.getPolicyId(), true, null);
+                    } catch (Exception e) {
+                        addStatus(policyDTO.getPolicyId(), false, e.getMessage());
+                    }
+                }
+            }
+        }
+
+        /**
+         * Records the policies of a failed batch which were published before the failure, as found by the module
+         *
+         * @return policies which are not published, which are to be published one by one. Empty if the module can
+         * not find out which policies were published, in which case all of them are recorded as failed
+         */
+        private List<PolicyDTO> getNotPublished(AbstractPolicyPublisherModule module, PolicyDTO[] batch,
+                                                Exception batchError) {
+
+            Set<String> publishedPolicyIds = null;
+            try {
+                publishedPolicyIds = module.getPublishedPolicyIds(batch, action);
+            } catch (Exception e) {
+                log.error("Error while finding the policies published to subscriber : " + subscriberId, e);
+            }
+            List<PolicyDTO> notPublished = new ArrayList<PolicyDTO>();
+            for (PolicyDTO policyDTO : batch) {
+                if (publishedPolicyIds == null) {
+                    addStatus(policyDTO.getPolicyId(), false, batchError.getMessage());
+                } else if (publishedPolicyIds.contains(policyDTO.getPolicyId())) {
+                    addStatus(policyDTO.getPolicyId(), true, null);
+                } else {
+                    notPublished.add(policyDTO);
+                }
+            }
+            return notPublished;
+        }
+
+        private void addStatus(String policyId, boolean success, String message) {
+
+            List<StatusHolder> holders = policyHolders.get(policyId);
+            if (holders == null) {
+                holders = new ArrayList<StatusHolder>();
+                policyHolders.put(policyId, holders);
+            }
+            if (success) {
+                subscriberHolders.add(new StatusHolder(EntitlementConstants.StatusTypes.PUBLISH_POLICY,
+                        subscriberId, version, policyId, action));
+                holders.add(new StatusHolder(EntitlementConstants.StatusTypes.PUBLISH_POLICY,
+                        policyId, version, subscriberId, action));
+            } else {
+                subscriberHolders.add(new StatusHolder(EntitlementConstants.StatusTypes.PUBLISH_POLICY,
+                        subscriberId, version, policyId, action, false, message));
+                holders.add(new StatusHolder(EntitlementConstants.StatusTypes.PUBLISH_POLICY,
+                        policyId, version, subscriberId, action, false, message));
+            }
+        }
+    }
+
+    /**
+     * Runs a subscriber publisher in the subscriber thread pool, with the tenant of the publish operation
+     */
+    private static class SubscriberPublishTask implements Runnable {
+
+        private final SubscriberPublisher subscriberPublisher;
+        private final Map<String, PolicyDTO> policies;
+        private final String tenantDomain;
+        private final int tenantId;
+        private final String userName;
+
+        private SubscriberPublishTask(SubscriberPublisher subscriberPublisher, Map<String, PolicyDTO> policies,
+                                      String tenantDomain, int tenantId, String userName) {
+            this.subscriberPublisher = subscriberPublisher;
+            this.policies = policies;
+            this.tenantDomain = tenantDomain;
+            this.tenantId = tenantId;
+            this.userName = userName;
+        }
+
+        @Override
+        public void run() {
+
+            PrivilegedCarbonContext.startTenantFlow();
+            PrivilegedCarbonContext context = PrivilegedCarbonContext.getThreadLocalCarbonContext();
+            context.setTenantDomain(tenantDomain);
+            context.setTenantId(tenantId);
+            context.setUsername(userName);
+            try {
+                subscriberPublisher.publish(policies);
+            } finally {
+                PrivilegedCarbonContext.endTenantFlow();
+            }
+        }
+    }
+}
@@ -44,6 +44,12 @@ import java.util.Properties;
 import java.util.Set;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -56,7 +62,14 @@ public class PolicyPublisher {
     public static final String SUBSCRIBER_ID = "subscriberId";
     public static final String SUBSCRIBER_DISPLAY_NAME = "Subscriber Id";
     private static Log log = LogFactory.getLog(PolicyPublisher.class);
+    private static final int DEFAULT_SUBSCRIBER_THREAD_POOL_SIZE = 5;
+    /**
+     * Maximum number of subscriber tasks waiting for a thread. Further tasks are run by the publish operation itself
+     */
+    private static final int SUBSCRIBER_QUEUE_SIZE = 100;
+    private static final long SHUTDOWN_TIMEOUT = 30000;
     private static ExecutorService threadPool = Executors.newFixedThreadPool(2);
+    private static volatile ExecutorService subscriberThreadPool;
     /**
      * set of publisher modules
      */
@@ -117,6 +130,18 @@ public class PolicyPublisher {
         }
     }
 
+    /**
+     * Creates PolicyPublisher instance with the given registry and publisher modules only
+     *
+     * @param registry         registry which keeps the subscribers
+     * @param publisherModules publisher modules
+     */
+    PolicyPublisher(Registry registry, Set<PolicyPublisherModule> publisherModules) {
+
+        this.registry = registry;
+        this.publisherModules.addAll(publisherModules);
+    }
+
     /**
      * publish policy
      *
@@ -148,6 +173,77 @@ public class PolicyPublisher {
     }
 
 
+    /**
+     * Returns the thread pool which publishes policies to the subscribers of a publish operation in parallel. It is
+     * separate from the pool which runs the publish operations, so that an operation waiting for its subscribers
+     * never blocks them from being published.
+     *
+     * @return thread pool with a bounded number of threads
+     */
+    static ExecutorService getSubscriberThreadPool() {
+
+        if (subscriberThreadPool == null) {
+            synchronized (PolicyPublisher.class) {
+                if (subscriberThreadPool == null) {
+                    int poolSize = DEFAULT_SUBSCRIBER_THREAD_POOL_SIZE;
+                    String poolSizeValue = null;
+                    if (EntitlementServiceComponent.getEntitlementConfig() != null) {
+                        poolSizeValue = EntitlementServiceComponent.getEntitlementConfig().getEngineProperties().
+                                getProperty(PDPConstants.POLICY_PUBLISHER_THREAD_POOL_SIZE);
+                    }
+                    if (poolSizeValue != null) {
+                        try {
+                            poolSize = Integer.parseInt(poolSizeValue.trim());
+                        } catch (NumberFormatException e) {
+                            log.error("Invalid value for " + PDPConstants.POLICY_PUBLISHER_THREAD_POOL_SIZE +
+                                    " : " + poolSizeValue + ". Using the default value " + poolSize);
+                        }
+                    }
+                    ThreadPoolExecutor pool = new ThreadPoolExecutor(poolSize, poolSize, 60L, TimeUnit.SECONDS,
+                            new LinkedBlockingQueue<Runnable>(SUBSCRIBER_QUEUE_SIZE),
+                            new SubscriberThreadFactory(), new RejectedExecutionHandler() {
+                                @Override
+                                public void rejectedExecution(Runnable runnable, ThreadPoolExecutor executor) {
+                                    // the publish operation waits for the task, so it is run even if the pool is
+                                    // shut down meanwhile
+                                    runnable.run();
+                                }
+                            });
+                    pool.allowCoreThreadTimeOut(true);
+                    subscriberThreadPool = pool;
+                }
+            }
+        }
+        return subscriberThreadPool;
+    }
+
+    /**
+     * Shuts down the subscriber thread pool, waiting for the subscribers being published to complete. A new pool is
+     * created if policies are published afterwards.
+     */
+    public static void shutdown() {
+
+        ExecutorService pool;
+        synchronized (PolicyPublisher.class) {
+            pool = subscriberThreadPool;
+            subscriberThreadPool = null;
+        }
+        if (pool == null) {
+            return;
+        }
+        pool.shutdown();
+        try {
+            if (!pool.awaitTermination(SHUTDOWN_TIMEOUT, TimeUnit.MILLISECONDS)) {
+                log.warn("Policies are still being published to subscribers after " + SHUTDOWN_TIMEOUT +
+                        " ms. Interrupting them");
+                pool.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            pool.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
     public void persistSubscriber(PublisherDataHolder holder, boolean update) throws EntitlementException {
 
         Collection policyCollection;
@@ -195,6 +291,9 @@ public class PolicyPublisher {
 
             populateProperties(holder, oldHolder, resource);
             registry.put(subscriberPath, resource);
+            if (oldHolder != null) {
+                releaseSubscriber(subscriberId);
+            }
 
         } catch (RegistryException e) {
             log.error("Error while persisting subscriber details", e);
@@ -224,6 +323,7 @@ public class PolicyPublisher {
             if (registry.resourceExists(subscriberPath)) {
                 registry.delete(subscriberPath);
             }
+            releaseSubscriber(subscriberId);
         } catch (RegistryException e) {
             log.error("Error while deleting subscriber details", e);
             throw new EntitlementException("Error while deleting subscriber details", e);
@@ -318,6 +418,25 @@ public class PolicyPublisher {
         resource.setProperty(PublisherDataHolder.MODULE_NAME, holder.getModuleName());
     }
 
+    /**
+     * Lets the publisher modules release what they keep for a subscriber which is updated or deleted
+     *
+     * @param subscriberId subscriber id
+     */
+    private void releaseSubscriber(String subscriberId) {
+
+        for (PolicyPublisherModule module : publisherModules) {
+            if (module instanceof AbstractPolicyPublisherModule) {
+                try {
+                    ((AbstractPolicyPublisherModule) module).releaseSubscriber(subscriberId);
+                } catch (Exception e) {
+                    log.error("Error while releasing subscriber : " + subscriberId + " from publisher module : " +
+                            module.getModuleName(), e);
+                }
+            }
+        }
+    }
+
     public Set<PolicyPublisherModule> getPublisherModules() {
         return publisherModules;
     }
@@ -333,4 +452,19 @@ public class PolicyPublisher {
     public PublisherVerificationModule getVerificationModule() {
         return verificationModule;
     }
+
+    /**
+     * Creates daemon threads to publish policies to subscribers
+     */
+    private static class SubscriberThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "PolicyPublisherSubscriber-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
 }
@@ -24,6 +24,8 @@ import org.wso2.balana.ctx.AbstractRequestCtx;
 import org.wso2.balana.ctx.AbstractResult;
 import org.wso2.balana.ctx.ResponseCtx;
 import org.wso2.carbon.context.CarbonContext;
+import org.wso2.carbon.context.PrivilegedCarbonContext;
+import org.wso2.carbon.identity.core.util.IdentityUtil;
 import org.wso2.carbon.identity.entitlement.EntitlementException;
 import org.wso2.carbon.identity.entitlement.EntitlementUtil;
 import org.wso2.carbon.identity.entitlement.PDPConstants;
@@ -43,6 +45,16 @@ import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * This contains the searching methods for policies based on policy attribute values and how subjects
@@ -52,21 +64,35 @@ public class PolicySearch {
 
     private static Log log = LogFactory.getLog(PolicySearch.class);
 
+    private static final int DEFAULT_SEARCH_THREAD_POOL_SIZE = 5;
 
-    private List<PolicyFinderModule> finderModules = null;
+    private static final int DEFAULT_SEARCH_TIMEOUT = 60;
+
+    private static final int SEARCH_QUEUE_SIZE = 1000;
+
+    private static final int SEARCH_BATCH_SIZE = 100;
+
+    private static final long SHUTDOWN_TIMEOUT = 30000;
+
+    private static final String SEARCH_TIMEOUT_MESSAGE = "Search was not completed within the search time out. " +
+            "Therefore only some of the entitled attributes are returned.";
+
+    private static volatile ExecutorService searchThreadPool;
+
+    private List<PolicyFinderModule> finderModules = new ArrayList<PolicyFinderModule>();
 
     private boolean cachingEnable;
 
     private PolicySearchCache policySearchCache = null;
 
+    private long searchTimeout;
+
+    private int searchThreadPoolSize;
+
     public PolicySearch(boolean cachingEnable, int cachingInterval) {
         // get registered finder modules
-        Map<PolicyFinderModule, Properties> finderModules = EntitlementServiceComponent.
-                getEntitlementConfig().getPolicyFinderModules();
-
-        if (finderModules != null) {
-            this.finderModules = new ArrayList<PolicyFinderModule>(finderModules.keySet());
-        }
+        this(EntitlementServiceComponent.getEntitlementConfig().getPolicyFinderModules(),
+                EntitlementServiceComponent.getEntitlementConfig().getEngineProperties());
 
         this.cachingEnable = cachingEnable;
 
@@ -75,6 +101,23 @@ public class PolicySearch {
         this.policySearchCache = new PolicySearchCache(cachingInterval);
     }
 
+    /**
+     * Creates a policy search over the given finder modules, without caching the search results
+     *
+     * @param finderModules    policy finder modules
+     * @param engineProperties entitlement engine properties
+     */
+    PolicySearch(Map<PolicyFinderModule, Properties> finderModules, Properties engineProperties) {
+
+        if (finderModules != null) {
+            this.finderModules = new ArrayList<PolicyFinderModule>(finderModules.keySet());
+        }
+        this.searchTimeout = IdentityUtil.getIntProperty(engineProperties, PDPConstants.PDP_SEARCH_TIMEOUT,
+                DEFAULT_SEARCH_TIMEOUT) * 1000L;
+        this.searchThreadPoolSize = IdentityUtil.getIntProperty(engineProperties,
+                PDPConstants.PDP_SEARCH_THREAD_POOL_SIZE, DEFAULT_SEARCH_THREAD_POOL_SIZE);
+    }
+
     /**
      * This returns resource name as the list of the entitled attributes for given
      * user or role and action, after evaluating the all the active policies in the PDP
@@ -110,7 +153,6 @@ public class PolicySearch {
         }
 
         AttributeDTO subjectAttributeDTO;
-        boolean hierarchicalResource = false;
         EntitledResultSetDTO resultSetDTO = new EntitledResultSetDTO();
         Set<EntitledAttributesDTO> resultSet = new HashSet<EntitledAttributesDTO>();
 
@@ -137,155 +179,117 @@ public class PolicySearch {
             return setDTO;
         }
 
+        AttributeDTO resourceScopeAttribute = new AttributeDTO();
+        resourceScopeAttribute.setAttributeValue(PDPConstants.RESOURCE_DESCENDANTS);
+        resourceScopeAttribute.setAttributeDataType(PDPConstants.STRING_DATA_TYPE);
+        resourceScopeAttribute.setAttributeId(PDPConstants.RESOURCE_SCOPE_ID);
+        resourceScopeAttribute.setCategory(PDPConstants.RESOURCE_CATEGORY_URI);
+
+        List<PolicyAttributes> policyAttributesList = new ArrayList<PolicyAttributes>();
         for (PolicyFinderModule module : finderModules) {
             if (module.isDefaultCategoriesSupported() &&
                 PolicyFinderModule.COMBINATIONS_BY_CATEGORY_AND_PARAMETER ==
                 module.getSupportedSearchAttributesScheme()) {
                 Map<String, Set<AttributeDTO>> requestMap = module.
                         getSearchAttributes(null, new HashSet<AttributeDTO>(Arrays.asList(subjectAttributeDTO)));
-
                 for (Map.Entry<String, Set<AttributeDTO>> entry : requestMap.entrySet()) {
-                    Set<AttributeDTO> attributeDTOs = entry.getValue();
-                    if (attributeDTOs != null) {
-                        Set<AttributeDTO> actions = new HashSet<AttributeDTO>();
-                        Set<AttributeDTO> resources = new HashSet<AttributeDTO>();
-                        Set<AttributeDTO> requestAttributes = new HashSet<AttributeDTO>();
-                        if (resourceName != null && resourceName.trim().length() > 0) {
-                            AttributeDTO resourceAttribute = new AttributeDTO();
-                            resourceAttribute.setAttributeValue(resourceName);
-                            resourceAttribute.setAttributeDataType(PDPConstants.STRING_DATA_TYPE);
-                            resourceAttribute.setAttributeId(PDPConstants.RESOURCE_ID_DEFAULT);
-                            resourceAttribute.setCategory(PDPConstants.RESOURCE_CATEGORY_URI);
-                            resources.add(resourceAttribute);
-                            hierarchicalResource = true;
-                        }
+                    if (entry.getValue() != null) {
+                        policyAttributesList.add(getPolicyAttributes(entry.getValue(), resourceName, action));
+                    }
+                }
+            }
+        }
+
+        Map<Map<AttributeDTO, Integer>, Boolean> decisions = new HashMap<Map<AttributeDTO, Integer>, Boolean>();
+        long deadline = System.currentTimeMillis() + searchTimeout;
 
-                        AttributeDTO resourceScopeAttribute = new AttributeDTO();
-                        resourceScopeAttribute.setAttributeValue(PDPConstants.RESOURCE_DESCENDANTS);
-                        resourceScopeAttribute.setAttributeDataType(PDPConstants.STRING_DATA_TYPE);
-                        resourceScopeAttribute.setAttributeId(PDPConstants.RESOURCE_SCOPE_ID);
-                        resourceScopeAttribute.setCategory(PDPConstants.RESOURCE_CATEGORY_URI);
-
-                        for (AttributeDTO attributeDTO : attributeDTOs) {
-                            if (PDPConstants.ENVIRONMENT_CATEGORY_URI.equals(attributeDTO.getCategory()) ||
-                                PDPConstants.ENVIRONMENT_ELEMENT.equals(attributeDTO.getCategory())) {
-                                requestAttributes.add(attributeDTO);
-                                attributeDTO.setAttributeId(PDPConstants.ENVIRONMENT_ID_DEFAULT);
-                                requestAttributes.add(attributeDTO);
-                            } else if (PDPConstants.ACTION_CATEGORY_URI.equals(attributeDTO.getCategory()) ||
-                                       PDPConstants.ACTION_ELEMENT.equals(attributeDTO.getCategory())) {
-                                if (action != null && action.trim().length() > 0) {
-                                    attributeDTO.setAttributeValue(action);
-                                }
-                                actions.add(attributeDTO);
-                                attributeDTO.setAttributeId(PDPConstants.ACTION_ID_DEFAULT);
-                                actions.add(attributeDTO);
-                            } else if ((PDPConstants.RESOURCE_CATEGORY_URI.equals(attributeDTO.getCategory()) ||
-                                        PDPConstants.RESOURCE_ELEMENT.equals(attributeDTO
-                                                                                     .getCategory())) &&
-                                       !hierarchicalResource) {
-                                attributeDTO.setAttributeId(PDPConstants.RESOURCE_ID_DEFAULT);
-                                resources.add(attributeDTO);
-                            }
+        // requests of a subject with each action and with each resource for all actions
+        List<List<AttributeDTO>> requests = new ArrayList<List<AttributeDTO>>();
+        for (PolicyAttributes policyAttributes : policyAttributesList) {
+            for (AttributeDTO actionDTO : policyAttributes.actions) {
+                requests.add(getActionRequest(subjectAttributeDTO, actionDTO));
+            }
+            for (AttributeDTO resource : policyAttributes.resources) {
+                if (isResource(resource)) {
+                    requests.addAll(getResourceRequests(policyAttributes, subjectAttributeDTO, resource, null,
+                            resourceScopeAttribute, enableChildSearch));
+                }
+            }
+        }
+        boolean completed = evaluate(requests, decisions, deadline);
+
+        for (PolicyAttributes policyAttributes : policyAttributesList) {
+            for (AttributeDTO actionDTO : policyAttributes.actions) {
+                if (isPermitted(decisions, getActionRequest(subjectAttributeDTO, actionDTO))) {
+                    EntitledAttributesDTO dto = new EntitledAttributesDTO();
+                    dto.setAllResources(true);
+                    dto.setAction(actionDTO.getAttributeValue());
+                    resultSet.add(dto);
+                    policyAttributes.entitledActions.add(actionDTO.getAttributeValue());
+                }
+            }
+            for (AttributeDTO resource : policyAttributes.resources) {
+                if (isResource(resource)) {
+                    boolean allActionsAllowed = false;
+                    for (List<AttributeDTO> request : getResourceRequests(policyAttributes, subjectAttributeDTO,
+                            resource, null, resourceScopeAttribute, enableChildSearch)) {
+                        if (isPermitted(decisions, request)) {
+                            EntitledAttributesDTO dto = new EntitledAttributesDTO();
+                            dto.setResourceName(resource.getAttributeValue());
+                            dto.setAllActions(true);
+                            resultSet.add(dto);
+                            allActionsAllowed = true;
                         }
+                    }
+                    if (!allActionsAllowed) {
+                        policyAttributes.deniedResources.add(resource);
+                    }
+                }
+            }
+        }
+
+        // requests of a subject with each action on the resources which are not allowed for all actions
+        requests = new ArrayList<List<AttributeDTO>>();
+        for (PolicyAttributes policyAttributes : policyAttributesList) {
+            for (AttributeDTO resource : policyAttributes.deniedResources) {
+                for (AttributeDTO actionDTO : policyAttributes.actions) {
+                    if (!policyAttributes.entitledActions.contains(actionDTO.getAttributeValue())) {
+                        requests.addAll(getResourceRequests(policyAttributes, subjectAttributeDTO, resource,
+                                actionDTO, resourceScopeAttribute, enableChildSearch));
+                    }
+                }
+            }
+        }
+        completed = completed && evaluate(requests, decisions, deadline);
 
-                        if (resultSetDTO.getMessage() == null) {
-                            List<String> entitledActions = new ArrayList<String>();
-                            for (AttributeDTO actionDTO : actions) {
-                                List<AttributeDTO> currentRequestAttributes =
-                                        new ArrayList<AttributeDTO>();
-                                currentRequestAttributes.add(subjectAttributeDTO);
-                                currentRequestAttributes.add(actionDTO);
-                                if (getResponse(currentRequestAttributes)) {
-                                    EntitledAttributesDTO dto = new EntitledAttributesDTO();
-                                    dto.setAllResources(true);
-                                    dto.setAction(actionDTO.getAttributeValue());
-                                    resultSet.add(dto);
-                                    entitledActions.add(actionDTO.getAttributeValue());
-                                }
-                            }
-
-                            for (AttributeDTO resource : resources) {
-                                if (PDPConstants.RESOURCE_CATEGORY_URI.equals(resource.getCategory())
-                                    || PDPConstants.RESOURCE_ELEMENT.equals(resource.getCategory())) {
-
-                                    boolean allActionsAllowed = false;
-
-                                    int noOfRequests = 1;
-                                    if (enableChildSearch) {
-                                        noOfRequests = 0;
-                                    }
-
-                                    while (noOfRequests < 2) {
-                                        List<AttributeDTO> currentRequestAttributes =
-                                                new ArrayList<AttributeDTO>();
-                                        for (AttributeDTO dto : requestAttributes) {
-                                            currentRequestAttributes.add(dto);
-                                        }
-                                        if (noOfRequests < 1) {
-                                            currentRequestAttributes.add(resourceScopeAttribute);
-                                        }
-                                        currentRequestAttributes.add(subjectAttributeDTO);
-                                        currentRequestAttributes.add(resource);
-
-                                        if (getResponse(currentRequestAttributes)) {
-                                            EntitledAttributesDTO dto = new EntitledAttributesDTO();
-                                            dto.setResourceName(resource.getAttributeValue());
-                                            dto.setAllActions(true);
-                                            resultSet.add(dto);
-                                            allActionsAllowed = true;
-                                        }
-                                        noOfRequests++;
-                                    }
-
-                                    if (allActionsAllowed) {
-                                        continue;
-                                    }
-
-                                    for (AttributeDTO actionAttributeDTO : actions) {
-
-                                        if (entitledActions.contains(actionAttributeDTO.getAttributeValue())) {
-                                            continue;
-                                        }
-
-                                        noOfRequests = 1;
-                                        if (enableChildSearch) {
-                                            noOfRequests = 0;
-                                        }
-                                        while (noOfRequests < 2) {
-                                            List<AttributeDTO> currentRequestAttributes =
-                                                    new ArrayList<AttributeDTO>();
-                                            for (AttributeDTO dto : requestAttributes) {
-                                                currentRequestAttributes.add(dto);
-                                            }
-                                            if (noOfRequests < 1) {
-                                                currentRequestAttributes.add(resourceScopeAttribute);
-                                            }
-                                            currentRequestAttributes.add(subjectAttributeDTO);
-                                            currentRequestAttributes.add(resource);
-                                            currentRequestAttributes.add(actionAttributeDTO);
-
-                                            if (getResponse(currentRequestAttributes)) {
-                                                EntitledAttributesDTO dto = new EntitledAttributesDTO();
-                                                dto.setResourceName(resource.getAttributeValue());
-                                                dto.setAction(actionAttributeDTO.getAttributeValue());
-                                                resultSet.add(dto);
-                                            }
-                                            noOfRequests++;
-                                        }
-                                    }
-                                }
-                            }
+        for (PolicyAttributes policyAttributes : policyAttributesList) {
+            for (AttributeDTO resource : policyAttributes.deniedResources) {
+                for (AttributeDTO actionDTO : policyAttributes.actions) {
+                    if (policyAttributes.entitledActions.contains(actionDTO.getAttributeValue())) {
+                        continue;
+                    }
+                    for (List<AttributeDTO> request : getResourceRequests(policyAttributes, subjectAttributeDTO,
+                            resource, actionDTO, resourceScopeAttribute, enableChildSearch)) {
+                        if (isPermitted(decisions, request)) {
+                            EntitledAttributesDTO dto = new EntitledAttributesDTO();
+                            dto.setResourceName(resource.getAttributeValue());
+                            dto.setAction(actionDTO.getAttributeValue());
+                            resultSet.add(dto);
                         }
                     }
                 }
             }
         }
 
+        if (!completed) {
+            resultSetDTO.setMessage(SEARCH_TIMEOUT_MESSAGE);
+            resultSetDTO.setMessageType(PDPConstants.SEARCH_ERROR);
+        }
+
         resultSetDTO.setEntitledAttributesDTOs(resultSet.
                 toArray(new EntitledAttributesDTO[resultSet.size()]));
 
-        if (cachingEnable) {
+        if (cachingEnable && completed) {
             SearchResult result = new SearchResult();
             result.setResultSetDTO(resultSetDTO);
             policySearchCache.addToCache(cacheKey, result);
@@ -341,30 +345,47 @@ public class PolicySearch {
         Set<EntitledAttributesDTO> resultAttributes = new HashSet<EntitledAttributesDTO>();
         Set<AttributeDTO> attributeDTOs = new HashSet<AttributeDTO>(Arrays.asList(givenAttributes));
 
+        List<Set<List<AttributeDTO>>> requestSets = new ArrayList<Set<List<AttributeDTO>>>();
+        List<List<AttributeDTO>> requests = new ArrayList<List<AttributeDTO>>();
         for (PolicyFinderModule finderModule : finderModules) {
             Map<String, Set<AttributeDTO>> attributesMap = finderModule.
                     getSearchAttributes(identifier, attributeDTOs);
+            if (attributesMap == null) {
+                continue;
+            }
             int supportedSearchScheme = finderModule.getSupportedSearchAttributesScheme();
             Set<List<AttributeDTO>> requestSet = getPossibleRequests(attributesMap, supportedSearchScheme);
             if (requestSet == null) {
                 log.error("Invalid Search scheme in policy finder : " + finderModule.getModuleName());
             } else {
-                for (List<AttributeDTO> attributeDTOList : requestSet) {
-                    if (getResponse(attributeDTOList)) {
-                        EntitledAttributesDTO dto = new EntitledAttributesDTO();
-                        dto.setAttributeDTOs(attributeDTOList.
-                                toArray(new AttributeDTO[attributeDTOList.size()]));
-                        resultAttributes.add(dto);
-                    }
+                requestSets.add(requestSet);
+                requests.addAll(requestSet);
+            }
+        }
+
+        Map<Map<AttributeDTO, Integer>, Boolean> decisions = new HashMap<Map<AttributeDTO, Integer>, Boolean>();
+        boolean completed = evaluate(requests, decisions, System.currentTimeMillis() + searchTimeout);
+
+        for (Set<List<AttributeDTO>> requestSet : requestSets) {
+            for (List<AttributeDTO> attributeDTOList : requestSet) {
+                if (isPermitted(decisions, attributeDTOList)) {
+                    EntitledAttributesDTO dto = new EntitledAttributesDTO();
+                    dto.setAttributeDTOs(attributeDTOList.
+                            toArray(new AttributeDTO[attributeDTOList.size()]));
+                    resultAttributes.add(dto);
                 }
             }
         }
+        if (!completed) {
+            result.setMessage(SEARCH_TIMEOUT_MESSAGE);
+            result.setMessageType(PDPConstants.SEARCH_ERROR);
+        }
         result.setAdvanceResult(true);
         result.setEntitledAttributesDTOs(resultAttributes.
                 toArray(new EntitledAttributesDTO[resultAttributes.size()]));
 
 
-        if (cachingEnable) {
+        if (cachingEnable && completed) {
             SearchResult searchResult = new SearchResult();
             searchResult.setResultSetDTO(result);
             policySearchCache.addToCache(cacheKey, searchResult);
@@ -519,13 +540,264 @@ public class PolicySearch {
         }
     }
 
+    /**
+     * Helper method to get the actions, resources and other request attributes of a policy
+     * which are used to search the entitled attributes of a subject
+     *
+     * @param attributeDTOs search attributes of the policy
+     * @param resourceName  resource name given for the search, can be null
+     * @param action        action given for the search, can be null
+     * @return attributes of the policy
+     */
+    private PolicyAttributes getPolicyAttributes(Set<AttributeDTO> attributeDTOs, String resourceName,
+                                                 String action) {
+
+        PolicyAttributes policyAttributes = new PolicyAttributes();
+        boolean hierarchicalResource = false;
+        if (resourceName != null && resourceName.trim().length() > 0) {
+            AttributeDTO resourceAttribute = new AttributeDTO();
+            resourceAttribute.setAttributeValue(resourceName);
+            resourceAttribute.setAttributeDataType(PDPConstants.STRING_DATA_TYPE);
+            resourceAttribute.setAttributeId(PDPConstants.RESOURCE_ID_DEFAULT);
+            resourceAttribute.setCategory(PDPConstants.RESOURCE_CATEGORY_URI);
+            policyAttributes.resources.add(resourceAttribute);
+            hierarchicalResource = true;
+        }
+
+        for (AttributeDTO attributeDTO : attributeDTOs) {
+            if (PDPConstants.ENVIRONMENT_CATEGORY_URI.equals(attributeDTO.getCategory()) ||
+                PDPConstants.ENVIRONMENT_ELEMENT.equals(attributeDTO.getCategory())) {
+                policyAttributes.requestAttributes.add(attributeDTO);
+                attributeDTO.setAttributeId(PDPConstants.ENVIRONMENT_ID_DEFAULT);
+                policyAttributes.requestAttributes.add(attributeDTO);
+            } else if (PDPConstants.ACTION_CATEGORY_URI.equals(attributeDTO.getCategory()) ||
+                       PDPConstants.ACTION_ELEMENT.equals(attributeDTO.getCategory())) {
+                if (action != null && action.trim().length() > 0) {
+                    attributeDTO.setAttributeValue(action);
+                }
+                policyAttributes.actions.add(attributeDTO);
+                attributeDTO.setAttributeId(PDPConstants.ACTION_ID_DEFAULT);
+                policyAttributes.actions.add(attributeDTO);
+            } else if ((PDPConstants.RESOURCE_CATEGORY_URI.equals(attributeDTO.getCategory()) ||
+                        PDPConstants.RESOURCE_ELEMENT.equals(attributeDTO.getCategory())) &&
+                       !hierarchicalResource) {
+                attributeDTO.setAttributeId(PDPConstants.RESOURCE_ID_DEFAULT);
+                policyAttributes.resources.add(attributeDTO);
+            }
+        }
+        return policyAttributes;
+    }
+
+    private boolean isResource(AttributeDTO attributeDTO) {
+        return PDPConstants.RESOURCE_CATEGORY_URI.equals(attributeDTO.getCategory()) ||
+               PDPConstants.RESOURCE_ELEMENT.equals(attributeDTO.getCategory());
+    }
+
+    private List<AttributeDTO> getActionRequest(AttributeDTO subject, AttributeDTO action) {
+
+        List<AttributeDTO> requestAttributes = new ArrayList<AttributeDTO>();
+        requestAttributes.add(subject);
+        requestAttributes.add(action);
+        return requestAttributes;
+    }
+
+    /**
+     * Helper method to get the requests of a subject on a resource. When child search is enabled,
+     * resources under the given resource are also requested.
+     *
+     * @param policyAttributes  attributes of the policy
+     * @param subject           subject attribute
+     * @param resource          resource attribute
+     * @param action            action attribute, null to request all actions
+     * @param scope             resource scope attribute
+     * @param enableChildSearch whether child resources are requested
+     * @return requests
+     */
+    private List<List<AttributeDTO>> getResourceRequests(PolicyAttributes policyAttributes, AttributeDTO subject,
+                                                         AttributeDTO resource, AttributeDTO action,
+                                                         AttributeDTO scope, boolean enableChildSearch) {
+
+        List<List<AttributeDTO>> requests = new ArrayList<List<AttributeDTO>>();
+        int noOfRequests = 1;
+        if (enableChildSearch) {
+            noOfRequests = 0;
+        }
+        while (noOfRequests < 2) {
+            List<AttributeDTO> currentRequestAttributes = new ArrayList<AttributeDTO>();
+            for (AttributeDTO dto : policyAttributes.requestAttributes) {
+                currentRequestAttributes.add(dto);
+            }
+            if (noOfRequests < 1) {
+                currentRequestAttributes.add(scope);
+            }
+            currentRequestAttributes.add(subject);
+            currentRequestAttributes.add(resource);
+            if (action != null) {
+                currentRequestAttributes.add(action);
+            }
+            requests.add(currentRequestAttributes);
+            noOfRequests++;
+        }
+        return requests;
+    }
+
+    /**
+     * Helper method to get XACML decisions of the given requests. Each distinct request is evaluated
+     * only once. Requests are evaluated in parallel until the given deadline, in batches, so that a
+     * search does not fill the queue of the search thread pool shared with the other searches.
+     *
+     * @param requests  XACML requests as request attributes
+     * @param decisions decisions of the requests, updated with the decisions of the given requests
+     * @param deadline  time until the requests are evaluated
+     * @return false if some requests were not evaluated before the deadline
+     */
+    private boolean evaluate(List<List<AttributeDTO>> requests,
+                             Map<Map<AttributeDTO, Integer>, Boolean> decisions, long deadline) {
+
+        List<Map<AttributeDTO, Integer>> requestKeys = new ArrayList<Map<AttributeDTO, Integer>>();
+        List<SearchRequestTask> tasks = new ArrayList<SearchRequestTask>();
+
+        CarbonContext carbonContext = CarbonContext.getThreadLocalCarbonContext();
+        for (List<AttributeDTO> request : requests) {
+            Map<AttributeDTO, Integer> requestKey = getRequestKey(request);
+            if (decisions.containsKey(requestKey)) {
+                continue;
+            }
+            requestKeys.add(requestKey);
+            tasks.add(new SearchRequestTask(request, carbonContext.getTenantDomain(),
+                    carbonContext.getTenantId(), carbonContext.getUsername()));
+            decisions.put(requestKey, Boolean.FALSE);
+        }
+
+        if (log.isDebugEnabled()) {
+            log.debug("Evaluating " + tasks.size() + " of " + requests.size() + " search requests");
+        }
+        if (tasks.isEmpty()) {
+            return true;
+        }
+
+        boolean completed = true;
+        for (int start = 0; start < tasks.size() && completed; start += SEARCH_BATCH_SIZE) {
+            int end = Math.min(start + SEARCH_BATCH_SIZE, tasks.size());
+            List<Future<Boolean>> futures;
+            try {
+                futures = getSearchThreadPool().invokeAll(tasks.subList(start, end),
+                        deadline - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                log.error("Interrupted while evaluating search requests");
+                return false;
+            } catch (RejectedExecutionException e) {
+                // the requests submitted before the rejection are cancelled by invokeAll
+                log.warn("Search requests could not be evaluated as the search queue is full or the search " +
+                        "thread pool is shut down");
+                return false;
+            }
+
+            for (int i = 0; i < futures.size(); i++) {
+                Future<Boolean> future = futures.get(i);
+                if (future.isCancelled()) {
+                    completed = false;
+                    continue;
+                }
+                try {
+                    decisions.put(requestKeys.get(start + i), future.get());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                } catch (ExecutionException e) {
+                    log.error("Error while evaluating search request", e.getCause());
+                }
+            }
+        }
+        if (!completed) {
+            log.warn("Policy search was not completed within " + searchTimeout + " ms");
+        }
+        return completed;
+    }
+
+    private boolean isPermitted(Map<Map<AttributeDTO, Integer>, Boolean> decisions,
+                                List<AttributeDTO> requestAttributes) {
+        return Boolean.TRUE.equals(decisions.get(getRequestKey(requestAttributes)));
+    }
+
+    /**
+     * Helper method to get a key of a request, which is same for the requests with same attributes
+     * in any order
+     *
+     * @param requestAttributes XACML request attributes
+     * @return attributes with the number of times each is in the request
+     */
+    private Map<AttributeDTO, Integer> getRequestKey(List<AttributeDTO> requestAttributes) {
+
+        Map<AttributeDTO, Integer> requestKey = new HashMap<AttributeDTO, Integer>();
+        for (AttributeDTO attributeDTO : requestAttributes) {
+            Integer count = requestKey.get(attributeDTO);
+            requestKey.put(attributeDTO, count == null ? 1 : count + 1);
+        }
+        return requestKey;
+    }
+
+    /**
+     * Returns the thread pool which evaluates the search requests. The pool is shared by all tenants, so
+     * that the number of search threads does not grow with the number of tenants. Idle threads of the pool
+     * time out.
+     *
+     * @return thread pool with a bounded number of threads and a bounded queue
+     */
+    private ExecutorService getSearchThreadPool() {
+
+        ExecutorService pool = searchThreadPool;
+        if (pool == null) {
+            synchronized (PolicySearch.class) {
+                pool = searchThreadPool;
+                if (pool == null) {
+                    ThreadPoolExecutor newPool = new ThreadPoolExecutor(searchThreadPoolSize, searchThreadPoolSize,
+                            60L, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(SEARCH_QUEUE_SIZE),
+                            new SearchThreadFactory());
+                    newPool.allowCoreThreadTimeOut(true);
+                    searchThreadPool = newPool;
+                    pool = newPool;
+                }
+            }
+        }
+        return pool;
+    }
+
+    /**
+     * Shuts down the search thread pool, waiting for the requests being evaluated to complete. A new
+     * pool is created if policies are searched afterwards.
+     */
+    public static void shutdown() {
+
+        ExecutorService pool;
+        synchronized (PolicySearch.class) {
+            pool = searchThreadPool;
+            searchThreadPool = null;
+        }
+        if (pool == null) {
+            return;
+        }
+        pool.shutdown();
+        try {
+            if (!pool.awaitTermination(SHUTDOWN_TIMEOUT, TimeUnit.MILLISECONDS)) {
+                log.warn("Search requests are still being evaluated after " + SHUTDOWN_TIMEOUT +
+                        " ms. Interrupting them");
+                pool.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            pool.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
     /**
      * Helper method to get XACML decision
      *
      * @param requestAttributes XACML request attributes
      * @return whether permit or deny
      */
-    private boolean getResponse(List<AttributeDTO> requestAttributes) {
+    boolean getResponse(List<AttributeDTO> requestAttributes) {
 
         ResponseCtx responseCtx;
         AbstractRequestCtx requestCtx = EntitlementUtil.createRequestContext(requestAttributes);
@@ -543,4 +815,69 @@ public class PolicySearch {
 
         return false;
     }
+
+    /**
+     * Search attributes of a policy that are used to search the entitled attributes of a subject
+     */
+    private static class PolicyAttributes {
+
+        private Set<AttributeDTO> actions = new HashSet<AttributeDTO>();
+
+        private Set<AttributeDTO> resources = new HashSet<AttributeDTO>();
+
+        private Set<AttributeDTO> requestAttributes = new HashSet<AttributeDTO>();
+
+        private List<String> entitledActions = new ArrayList<String>();
+
+        private List<AttributeDTO> deniedResources = new ArrayList<AttributeDTO>();
+    }
+
+    /**
+     * Evaluates a search request in the tenant of the search
+     */
+    private class SearchRequestTask implements Callable<Boolean> {
+
+        private List<AttributeDTO> requestAttributes;
+        private String tenantDomain;
+        private int tenantId;
+        private String userName;
+
+        private SearchRequestTask(List<AttributeDTO> requestAttributes, String tenantDomain, int tenantId,
+                                  String userName) {
+            this.requestAttributes = requestAttributes;
+            this.tenantDomain = tenantDomain;
+            this.tenantId = tenantId;
+            this.userName = userName;
+        }
+
+        @Override
+        public Boolean call() {
+
+            PrivilegedCarbonContext.startTenantFlow();
+            PrivilegedCarbonContext context = PrivilegedCarbonContext.getThreadLocalCarbonContext();
+            context.setTenantDomain(tenantDomain);
+            context.setTenantId(tenantId);
+            context.setUsername(userName);
+            try {
+                return getResponse(requestAttributes);
+            } finally {
+                PrivilegedCarbonContext.endTenantFlow();
+            }
+        }
+    }
+
+    /**
+     * Creates daemon threads to evaluate the search requests
+     */
+    private static class SearchThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "PolicySearch-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
 }
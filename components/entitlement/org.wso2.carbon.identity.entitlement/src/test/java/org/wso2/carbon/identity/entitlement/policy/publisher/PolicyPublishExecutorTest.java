@@ -0,0 +1,349 @@
+/*
+*  Copyright (c)  WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+
+package org.wso2.carbon.identity.entitlement.policy.publisher;
+
+import junit.framework.TestCase;
+import org.wso2.carbon.identity.entitlement.EntitlementException;
+import org.wso2.carbon.identity.entitlement.PAPStatusDataHandler;
+import org.wso2.carbon.identity.entitlement.common.EntitlementConstants;
+import org.wso2.carbon.identity.entitlement.dto.PolicyDTO;
+import org.wso2.carbon.identity.entitlement.dto.PublisherDataHolder;
+import org.wso2.carbon.identity.entitlement.dto.PublisherPropertyDTO;
+import org.wso2.carbon.identity.entitlement.dto.StatusHolder;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Publishes policies with {@link PolicyPublishExecutor} to stub subscribers, which keep the policies published to
+ * them in memory
+ */
+public class PolicyPublishExecutorTest extends TestCase {
+
+    private static final String MODULE_NAME = "Stub Policy Publisher Module";
+    private static final String ACTION = EntitlementConstants.PolicyPublish.ACTION_ORDER;
+
+    private final Map<String, StubSubscriber> subscribers = new ConcurrentHashMap<String, StubSubscriber>();
+    private final StatusCollector statusCollector = new StatusCollector();
+
+    @Override
+    protected void tearDown() throws Exception {
+        PolicyPublisher.shutdown();
+    }
+
+    public void testPoliciesArePublishedToSubscribersInParallelBatches() throws Exception {
+
+        String[] subscriberIds = addSubscribers(3);
+        final CountDownLatch allSubscribersStarted = new CountDownLatch(subscriberIds.length);
+        StubModule module = new StubModule(true) {
+            @Override
+            void beforeBatch() throws InterruptedException {
+                allSubscribersStarted.countDown();
+                // blocks unless the subscribers are published in parallel
+                assertTrue(allSubscribersStarted.await(10, TimeUnit.SECONDS));
+            }
+        };
+
+        publish(module, policyIds(120), subscriberIds);
+
+        for (String subscriberId : subscriberIds) {
+            StubSubscriber subscriber = subscribers.get(subscriberId);
+            assertEquals(Collections.singleton(subscriberId), subscriber.initializedWith);
+            assertEquals(120, subscriber.policyIds.size());
+            assertEquals("policies should be sent in three batches", 3, subscriber.requests.get());
+        }
+        assertEquals(120, statusCollector.policyStatus.size());
+        for (List<StatusHolder> holders : statusCollector.policyStatus.values()) {
+            assertEquals(subscriberIds.length, holders.size());
+            for (StatusHolder holder : holders) {
+                assertTrue(holder.isSuccess());
+            }
+        }
+    }
+
+    public void testPoliciesPublishedBeforeBatchFailureAreNotFailed() throws Exception {
+
+        String[] subscriberIds = addSubscribers(1);
+        StubSubscriber subscriber = subscribers.get(subscriberIds[0]);
+        subscriber.failingPolicyId = "policy20";
+
+        publish(new StubModule(true), policyIds(50), subscriberIds);
+
+        assertEquals("one batch request and one request per policy not published by it", 1 + 30,
+                subscriber.requests.get());
+        assertEquals(49, subscriber.policyIds.size());
+        for (Map.Entry<String, List<StatusHolder>> entry : statusCollector.policyStatus.entrySet()) {
+            assertEquals(1, entry.getValue().size());
+            assertEquals("status of " + entry.getKey(), !"policy20".equals(entry.getKey()),
+                    entry.getValue().get(0).isSuccess());
+        }
+    }
+
+    public void testBatchIsFailedIfPublishedPoliciesAreNotKnown() throws Exception {
+
+        String[] subscriberIds = addSubscribers(1);
+        StubSubscriber subscriber = subscribers.get(subscriberIds[0]);
+        subscriber.failingPolicyId = "policy20";
+        StubModule module = new StubModule(true);
+        module.knowsPublishedPolicies = false;
+
+        publish(module, policyIds(50), subscriberIds);
+
+        assertEquals(1, subscriber.requests.get());
+        for (List<StatusHolder> holders : statusCollector.policyStatus.values()) {
+            assertFalse(holders.get(0).isSuccess());
+        }
+    }
+
+    public void testSharedModuleIsUsedByOneSubscriberAtATime() throws Exception {
+
+        String[] subscriberIds = addSubscribers(4);
+        final AtomicInteger publishing = new AtomicInteger();
+        final AtomicInteger maxPublishing = new AtomicInteger();
+        StubModule module = new StubModule(false) {
+            @Override
+            void beforeBatch() throws InterruptedException {
+                int current = publishing.incrementAndGet();
+                if (current > maxPublishing.get()) {
+                    maxPublishing.set(current);
+                }
+                Thread.sleep(20);
+                publishing.decrementAndGet();
+            }
+        };
+
+        publish(module, policyIds(10), subscriberIds);
+
+        assertEquals(1, maxPublishing.get());
+        for (String subscriberId : subscriberIds) {
+            assertEquals(10, subscribers.get(subscriberId).policyIds.size());
+        }
+    }
+
+    private void publish(StubModule module, String[] policyIds, String[] subscriberIds) {
+
+        PolicyPublisher publisher = new PolicyPublisher(null,
+                Collections.<PolicyPublisherModule>singleton(module)) {
+            @Override
+            public PublisherDataHolder retrieveSubscriber(String id, boolean returnSecrets) {
+                PublisherPropertyDTO dto = new PublisherPropertyDTO();
+                dto.setId(SUBSCRIBER_ID);
+                dto.setValue(id);
+                PublisherDataHolder holder = new PublisherDataHolder(MODULE_NAME);
+                holder.setPropertyDTOs(new PublisherPropertyDTO[]{dto});
+                return holder;
+            }
+        };
+        publisher.setPapStatusDataHandlers(Collections.<PAPStatusDataHandler>singleton(statusCollector));
+        new PolicyPublishExecutor(policyIds, "1", ACTION, true, 1, subscriberIds, publisher, false, null).publish();
+    }
+
+    private String[] addSubscribers(int count) {
+
+        String[] subscriberIds = new String[count];
+        for (int i = 0; i < count; i++) {
+            subscriberIds[i] = "subscriber" + i;
+            subscribers.put(subscriberIds[i], new StubSubscriber());
+        }
+        return subscriberIds;
+    }
+
+    private static String[] policyIds(int count) {
+
+        String[] policyIds = new String[count];
+        for (int i = 0; i < count; i++) {
+            policyIds[i] = "policy" + i;
+        }
+        return policyIds;
+    }
+
+    /**
+     * Subscriber which keeps the policies published to it. Policies of a batch are added one after the other, up to
+     * the failing policy.
+     */
+    private static class StubSubscriber {
+
+        private final Set<String> policyIds = Collections.synchronizedSet(new HashSet<String>());
+        private final Set<String> initializedWith = Collections.synchronizedSet(new HashSet<String>());
+        private final AtomicInteger requests = new AtomicInteger();
+        private volatile String failingPolicyId;
+
+        private void add(PolicyDTO policyDTO) throws EntitlementException {
+
+            if (policyDTO.getPolicyId().equals(failingPolicyId)) {
+                throw new EntitlementException("Invalid policy : " + failingPolicyId);
+            }
+            if (!policyIds.add(policyDTO.getPolicyId())) {
+                throw new EntitlementException("Policy is already published : " + policyDTO.getPolicyId());
+            }
+        }
+    }
+
+    /**
+     * Publisher module of the stub subscribers. Instances created per subscriber call back the module they are
+     * created from before each batch.
+     */
+    private class StubModule extends AbstractPolicyPublisherModule {
+
+        private final boolean perSubscriber;
+        private final StubModule parent;
+        private boolean knowsPublishedPolicies = true;
+        private StubSubscriber subscriber;
+
+        private StubModule(boolean perSubscriber) {
+            this.perSubscriber = perSubscriber;
+            this.parent = null;
+        }
+
+        private StubModule(StubModule parent) {
+            this.perSubscriber = true;
+            this.parent = parent;
+            this.knowsPublishedPolicies = parent.knowsPublishedPolicies;
+        }
+
+        void beforeBatch() throws InterruptedException {
+            if (parent != null) {
+                parent.beforeBatch();
+            }
+        }
+
+        @Override
+        public AbstractPolicyPublisherModule newSubscriberInstance() {
+            return perSubscriber ? new StubModule(this) : null;
+        }
+
+        @Override
+        public void init(PublisherDataHolder propertyHolder) throws EntitlementException {
+
+            String subscriberId = propertyHolder.getPropertyDTO(PolicyPublisher.SUBSCRIBER_ID).getValue();
+            subscriber = subscribers.get(subscriberId);
+            subscriber.initializedWith.add(subscriberId);
+        }
+
+        @Override
+        public boolean publishBatch(PolicyDTO[] policyDTOs, String action, boolean enabled, int order)
+                throws EntitlementException {
+
+            try {
+                beforeBatch();
+            } catch (InterruptedException e) {
+                throw new EntitlementException("Interrupted");
+            }
+            subscriber.requests.incrementAndGet();
+            for (PolicyDTO policyDTO : policyDTOs) {
+                subscriber.add(policyDTO);
+            }
+            return true;
+        }
+
+        @Override
+        public Set<String> getPublishedPolicyIds(PolicyDTO[] policyDTOs, String action) {
+
+            if (!knowsPublishedPolicies) {
+                return null;
+            }
+            Set<String> publishedPolicyIds = new HashSet<String>();
+            for (PolicyDTO policyDTO : policyDTOs) {
+                if (subscriber.policyIds.contains(policyDTO.getPolicyId())) {
+                    publishedPolicyIds.add(policyDTO.getPolicyId());
+                }
+            }
+            return publishedPolicyIds;
+        }
+
+        @Override
+        public void order(PolicyDTO policyDTO) throws EntitlementException {
+            subscriber.requests.incrementAndGet();
+            subscriber.add(policyDTO);
+        }
+
+        @Override
+        public void publishNew(PolicyDTO policyDTO) throws EntitlementException {
+            order(policyDTO);
+        }
+
+        @Override
+        public void update(PolicyDTO policyDTO) throws EntitlementException {
+            order(policyDTO);
+        }
+
+        @Override
+        public void delete(PolicyDTO policyDTO) throws EntitlementException {
+            order(policyDTO);
+        }
+
+        @Override
+        public void disable(PolicyDTO policyDTO) throws EntitlementException {
+            order(policyDTO);
+        }
+
+        @Override
+        public void enable(PolicyDTO policyDTO) throws EntitlementException {
+            order(policyDTO);
+        }
+
+        @Override
+        public String getModuleName() {
+            return MODULE_NAME;
+        }
+
+        @Override
+        public Properties loadProperties() {
+            return new Properties();
+        }
+    }
+
+    /**
+     * Collects the status of each policy recorded by the publish operation
+     */
+    private static class StatusCollector implements PAPStatusDataHandler {
+
+        private final Map<String, List<StatusHolder>> policyStatus = new HashMap<String, List<StatusHolder>>();
+
+        @Override
+        public void init(Properties properties) {
+        }
+
+        @Override
+        public void handle(String about, String key, List<StatusHolder> statusHolder) {
+            if (EntitlementConstants.Status.ABOUT_POLICY.equals(about)) {
+                policyStatus.put(key, new ArrayList<StatusHolder>(statusHolder));
+            }
+        }
+
+        @Override
+        public void handle(String about, StatusHolder statusHolder) {
+        }
+
+        @Override
+        public StatusHolder[] getStatusData(String about, String key, String type, String searchString) {
+            return new StatusHolder[0];
+        }
+    }
+}
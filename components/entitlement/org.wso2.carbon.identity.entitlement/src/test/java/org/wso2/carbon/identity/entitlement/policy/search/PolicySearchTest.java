@@ -0,0 +1,546 @@
+/*
+*  Copyright (c)  WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+
+package org.wso2.carbon.identity.entitlement.policy.search;
+
+import junit.framework.TestCase;
+import org.wso2.carbon.context.PrivilegedCarbonContext;
+import org.wso2.carbon.identity.entitlement.PDPConstants;
+import org.wso2.carbon.identity.entitlement.dto.AttributeDTO;
+import org.wso2.carbon.identity.entitlement.dto.EntitledAttributesDTO;
+import org.wso2.carbon.identity.entitlement.dto.EntitledResultSetDTO;
+import org.wso2.carbon.identity.entitlement.policy.finder.PolicyFinderModule;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Compares the results of {@link PolicySearch} over 1,000 generated policies with the results of the sequential
+ * search it replaced. Decisions are taken by a stub PDP which evaluates the generated policies.
+ */
+public class PolicySearchTest extends TestCase {
+
+    private static final int POLICIES = 1000;
+    private static final int SUBJECTS = 10;
+    private static final int ACTIONS = 20;
+    private static final int RESOURCES = 200;
+    private static final int ENVIRONMENTS = 5;
+
+    private final List<StubPolicy> policies = new ArrayList<StubPolicy>();
+    private final Map<String, List<StubPolicy>> policiesBySubject = new HashMap<String, List<StubPolicy>>();
+
+    @Override
+    protected void setUp() throws Exception {
+
+        Random random = new Random(37);
+        for (int i = 0; i < POLICIES; i++) {
+            StubPolicy policy = new StubPolicy("policy" + i, random.nextInt(100) >= 15);
+            pick(random, policy.subjects, "role", SUBJECTS, 1 + random.nextInt(2));
+            if (random.nextInt(100) >= 10) {
+                pick(random, policy.actions, "action", ACTIONS, 1 + random.nextInt(3));
+            }
+            for (int j = random.nextInt(2); j >= 0; j--) {
+                int resource = random.nextInt(RESOURCES);
+                // some policies are on the parent of a group of resources
+                policy.resources.add(random.nextInt(100) < 10 ? parentResource(resource) : resource(resource));
+            }
+            if (random.nextInt(100) < 20) {
+                pick(random, policy.environments, "env", ENVIRONMENTS, 1);
+            }
+            policies.add(policy);
+            for (String subject : policy.subjects) {
+                if (!policiesBySubject.containsKey(subject)) {
+                    policiesBySubject.put(subject, new ArrayList<StubPolicy>());
+                }
+                policiesBySubject.get(subject).add(policy);
+            }
+        }
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        PolicySearch.shutdown();
+    }
+
+    public void testSubjectSearchIsSameAsSequentialSearch() throws Exception {
+
+        StubPolicySearch search = new StubPolicySearch(
+                PolicyFinderModule.COMBINATIONS_BY_CATEGORY_AND_PARAMETER);
+        StubPolicySearch sequentialSearch = new StubPolicySearch(
+                PolicyFinderModule.COMBINATIONS_BY_CATEGORY_AND_PARAMETER);
+
+        String[][] searches = {{null, null, "false"}, {null, null, "true"}, {null, "action3", "false"},
+                {parentResource(60), null, "true"}, {resource(61), null, "false"}, {resource(61), "action2", "true"}};
+        int entitledAttributes = 0;
+        for (int subject = 0; subject < SUBJECTS; subject++) {
+            for (String[] parameters : searches) {
+                String description = "role" + subject + " " + Arrays.toString(parameters);
+                boolean enableChildSearch = Boolean.parseBoolean(parameters[2]);
+
+                EntitledResultSetDTO expected = sequentialSearch.getEntitledAttributesSequentially("role" + subject,
+                        parameters[0], null, parameters[1], enableChildSearch);
+                EntitledResultSetDTO result = search.getEntitledAttributes("role" + subject, parameters[0], null,
+                        parameters[1], enableChildSearch);
+
+                assertNull(description, result.getMessage());
+                assertEquals(description, toStrings(expected), toStrings(result));
+                entitledAttributes += result.getEntitledAttributesDTOs().length;
+            }
+        }
+        assertTrue(entitledAttributes > 0);
+        assertTrue("each distinct request should be evaluated once",
+                search.evaluations.get() < sequentialSearch.evaluations.get());
+    }
+
+    public void testAttributeSearchIsSameAsSequentialSearch() throws Exception {
+
+        StubPolicySearch search = new StubPolicySearch(PolicyFinderModule.NO_COMBINATIONS);
+        StubPolicySearch sequentialSearch = new StubPolicySearch(PolicyFinderModule.NO_COMBINATIONS);
+
+        EntitledResultSetDTO expected = sequentialSearch.getEntitledAttributesSequentially(null);
+        EntitledResultSetDTO result = search.getEntitledAttributes(null, new AttributeDTO[0]);
+
+        assertNull(result.getMessage());
+        assertTrue(result.isAdvanceResult());
+        assertTrue(expected.getEntitledAttributesDTOs().length > 0);
+        assertEquals(toStrings(expected), toStrings(result));
+    }
+
+    public void testSearchRequestsAreEvaluatedInTheTenantOfTheSearch() throws Exception {
+
+        Set<String> searchThreadNames = new HashSet<String>();
+        for (int tenantId = 1; tenantId <= 2; tenantId++) {
+            StubPolicySearch search = new StubPolicySearch(
+                    PolicyFinderModule.COMBINATIONS_BY_CATEGORY_AND_PARAMETER);
+            PrivilegedCarbonContext.startTenantFlow();
+            try {
+                PrivilegedCarbonContext.getThreadLocalCarbonContext().setTenantId(tenantId);
+                PrivilegedCarbonContext.getThreadLocalCarbonContext().setTenantDomain("tenant" + tenantId);
+                search.getEntitledAttributes("role1", null, null, null, true);
+            } finally {
+                PrivilegedCarbonContext.endTenantFlow();
+            }
+
+            assertEquals(Collections.singleton(tenantId), search.tenantIds);
+            search.threadNames.remove(Thread.currentThread().getName());
+            assertFalse(search.threadNames.isEmpty());
+            for (String threadName : search.threadNames) {
+                assertTrue(threadName, threadName.startsWith("PolicySearch-"));
+            }
+            searchThreadNames.addAll(search.threadNames);
+        }
+        // searches of all tenants are evaluated by the threads of one pool, of the default size 5
+        assertTrue("tenants should share the search threads", searchThreadNames.size() <= 5);
+    }
+
+    private static void pick(Random random, Set<String> values, String prefix, int range, int count) {
+        for (int i = 0; i < count; i++) {
+            values.add(prefix + random.nextInt(range));
+        }
+    }
+
+    private static String resource(int resource) {
+        return parentResource(resource) + "/r" + resource;
+    }
+
+    private static String parentResource(int resource) {
+        return "/res" + resource / 20;
+    }
+
+    /**
+     * Returns the entitled attributes of a search result as sorted strings, keeping the duplicates
+     */
+    private static List<String> toStrings(EntitledResultSetDTO resultSetDTO) {
+
+        List<String> values = new ArrayList<String>();
+        for (EntitledAttributesDTO dto : resultSetDTO.getEntitledAttributesDTOs()) {
+            StringBuilder value = new StringBuilder();
+            value.append(dto.getResourceName()).append('|').append(dto.getAction()).append('|').
+                    append(dto.isAllActions()).append('|').append(dto.isAllResources());
+            if (dto.getAttributeDTOs() != null) {
+                List<String> attributes = new ArrayList<String>();
+                for (AttributeDTO attributeDTO : dto.getAttributeDTOs()) {
+                    attributes.add(attributeDTO.getCategory() + "=" + attributeDTO.getAttributeValue());
+                }
+                Collections.sort(attributes);
+                value.append('|').append(attributes);
+            }
+            values.add(value.toString());
+        }
+        Collections.sort(values);
+        return values;
+    }
+
+    private static AttributeDTO attribute(String category, String attributeId, String value) {
+
+        AttributeDTO attributeDTO = new AttributeDTO();
+        attributeDTO.setCategory(category);
+        attributeDTO.setAttributeId(attributeId);
+        attributeDTO.setAttributeValue(value);
+        attributeDTO.setAttributeDataType(PDPConstants.STRING_DATA_TYPE);
+        return attributeDTO;
+    }
+
+    /**
+     * Generated policy. Each category of the policy which has values matches a request with one of the values, or
+     * for resources, with a parent of one of the values when descendants are requested.
+     */
+    private static class StubPolicy {
+
+        private final String policyId;
+        private final boolean permit;
+        private final Set<String> subjects = new HashSet<String>();
+        private final Set<String> actions = new HashSet<String>();
+        private final Set<String> resources = new HashSet<String>();
+        private final Set<String> environments = new HashSet<String>();
+
+        private StubPolicy(String policyId, boolean permit) {
+            this.policyId = policyId;
+            this.permit = permit;
+        }
+
+        private boolean isApplicable(List<AttributeDTO> requestAttributes) {
+
+            boolean descendants = false;
+            for (AttributeDTO attributeDTO : requestAttributes) {
+                if (PDPConstants.RESOURCE_SCOPE_ID.equals(attributeDTO.getAttributeId())) {
+                    descendants = PDPConstants.RESOURCE_DESCENDANTS.equals(attributeDTO.getAttributeValue());
+                }
+            }
+            return matches(requestAttributes, PDPConstants.SUBJECT_CATEGORY_URI, subjects, false) &&
+                   matches(requestAttributes, PDPConstants.ACTION_CATEGORY_URI, actions, false) &&
+                   matches(requestAttributes, PDPConstants.RESOURCE_CATEGORY_URI, resources, descendants) &&
+                   matches(requestAttributes, PDPConstants.ENVIRONMENT_CATEGORY_URI, environments, false);
+        }
+
+        private boolean matches(List<AttributeDTO> requestAttributes, String category, Set<String> values,
+                                boolean descendants) {
+
+            if (values.isEmpty()) {
+                return true;
+            }
+            for (AttributeDTO attributeDTO : requestAttributes) {
+                if (!category.equals(attributeDTO.getCategory()) ||
+                    PDPConstants.RESOURCE_SCOPE_ID.equals(attributeDTO.getAttributeId())) {
+                    continue;
+                }
+                String requested = attributeDTO.getAttributeValue();
+                for (String value : values) {
+                    if (value.equals(requested) || (descendants && value.startsWith(requested + "/"))) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+
+        private Set<AttributeDTO> getSearchAttributes() {
+
+            Set<AttributeDTO> attributeDTOs = new HashSet<AttributeDTO>();
+            for (String subject : subjects) {
+                attributeDTOs.add(attribute(PDPConstants.SUBJECT_CATEGORY_URI, PDPConstants.SUBJECT_ID_DEFAULT,
+                        subject));
+            }
+            for (String action : actions) {
+                attributeDTOs.add(attribute(PDPConstants.ACTION_CATEGORY_URI, PDPConstants.ACTION_ID_DEFAULT,
+                        action));
+            }
+            for (String resource : resources) {
+                attributeDTOs.add(attribute(PDPConstants.RESOURCE_CATEGORY_URI, PDPConstants.RESOURCE_ID_DEFAULT,
+                        resource));
+            }
+            for (String environment : environments) {
+                attributeDTOs.add(attribute(PDPConstants.ENVIRONMENT_CATEGORY_URI,
+                        PDPConstants.ENVIRONMENT_ID_DEFAULT, environment));
+            }
+            return attributeDTOs;
+        }
+    }
+
+    /**
+     * Policy search over the generated policies, which permits a request if a permit policy is applicable to it and
+     * no deny policy is
+     */
+    private class StubPolicySearch extends PolicySearch {
+
+        private final AtomicInteger evaluations = new AtomicInteger();
+        private final Set<String> threadNames = Collections.synchronizedSet(new HashSet<String>());
+        private final Set<Integer> tenantIds = Collections.synchronizedSet(new HashSet<Integer>());
+        private final StubFinderModule finderModule;
+
+        private StubPolicySearch(int searchScheme) {
+            this(new StubFinderModule(searchScheme));
+        }
+
+        private StubPolicySearch(StubFinderModule finderModule) {
+            super(Collections.<PolicyFinderModule, Properties>singletonMap(finderModule, new Properties()),
+                    new Properties());
+            this.finderModule = finderModule;
+        }
+
+        @Override
+        boolean getResponse(List<AttributeDTO> requestAttributes) {
+
+            evaluations.incrementAndGet();
+            threadNames.add(Thread.currentThread().getName());
+            tenantIds.add(PrivilegedCarbonContext.getThreadLocalCarbonContext().getTenantId());
+            // a policy is applicable only to the requests with one of its subjects
+            List<StubPolicy> candidates = Collections.emptyList();
+            for (AttributeDTO attributeDTO : requestAttributes) {
+                if (PDPConstants.SUBJECT_CATEGORY_URI.equals(attributeDTO.getCategory()) &&
+                    policiesBySubject.containsKey(attributeDTO.getAttributeValue())) {
+                    candidates = policiesBySubject.get(attributeDTO.getAttributeValue());
+                }
+            }
+            boolean permit = false;
+            for (StubPolicy policy : candidates) {
+                if (policy.isApplicable(requestAttributes)) {
+                    if (!policy.permit) {
+                        return false;
+                    }
+                    permit = true;
+                }
+            }
+            return permit;
+        }
+
+        /**
+         * Subject search as done before the search requests were evaluated in parallel
+         */
+        private EntitledResultSetDTO getEntitledAttributesSequentially(String subjectName, String resourceName,
+                                                                      String subjectId, String action,
+                                                                      boolean enableChildSearch) {
+
+            AttributeDTO subjectAttributeDTO = attribute(PDPConstants.SUBJECT_CATEGORY_URI,
+                    subjectId != null ? subjectId : PDPConstants.SUBJECT_ID_DEFAULT, subjectName);
+            EntitledResultSetDTO resultSetDTO = new EntitledResultSetDTO();
+            Set<EntitledAttributesDTO> resultSet = new HashSet<EntitledAttributesDTO>();
+            boolean hierarchicalResource = false;
+
+            if (getResponse(Arrays.asList(subjectAttributeDTO))) {
+                EntitledAttributesDTO dto = new EntitledAttributesDTO();
+                dto.setAllActions(true);
+                dto.setAllResources(true);
+                resultSetDTO.setEntitledAttributesDTOs(new EntitledAttributesDTO[]{dto});
+                return resultSetDTO;
+            }
+
+            Map<String, Set<AttributeDTO>> requestMap = finderModule.getSearchAttributes(null,
+                    new HashSet<AttributeDTO>(Arrays.asList(subjectAttributeDTO)));
+            for (Map.Entry<String, Set<AttributeDTO>> entry : requestMap.entrySet()) {
+                Set<AttributeDTO> attributeDTOs = entry.getValue();
+                Set<AttributeDTO> actions = new HashSet<AttributeDTO>();
+                Set<AttributeDTO> resources = new HashSet<AttributeDTO>();
+                Set<AttributeDTO> requestAttributes = new HashSet<AttributeDTO>();
+                if (resourceName != null && resourceName.trim().length() > 0) {
+                    resources.add(attribute(PDPConstants.RESOURCE_CATEGORY_URI, PDPConstants.RESOURCE_ID_DEFAULT,
+                            resourceName));
+                    hierarchicalResource = true;
+                }
+
+                AttributeDTO resourceScopeAttribute = attribute(PDPConstants.RESOURCE_CATEGORY_URI,
+                        PDPConstants.RESOURCE_SCOPE_ID, PDPConstants.RESOURCE_DESCENDANTS);
+
+                for (AttributeDTO attributeDTO : attributeDTOs) {
+                    if (PDPConstants.ENVIRONMENT_CATEGORY_URI.equals(attributeDTO.getCategory())) {
+                        requestAttributes.add(attributeDTO);
+                    } else if (PDPConstants.ACTION_CATEGORY_URI.equals(attributeDTO.getCategory())) {
+                        if (action != null && action.trim().length() > 0) {
+                            attributeDTO.setAttributeValue(action);
+                        }
+                        actions.add(attributeDTO);
+                    } else if (PDPConstants.RESOURCE_CATEGORY_URI.equals(attributeDTO.getCategory()) &&
+                               !hierarchicalResource) {
+                        resources.add(attributeDTO);
+                    }
+                }
+
+                List<String> entitledActions = new ArrayList<String>();
+                for (AttributeDTO actionDTO : actions) {
+                    if (getResponse(Arrays.asList(subjectAttributeDTO, actionDTO))) {
+                        EntitledAttributesDTO dto = new EntitledAttributesDTO();
+                        dto.setAllResources(true);
+                        dto.setAction(actionDTO.getAttributeValue());
+                        resultSet.add(dto);
+                        entitledActions.add(actionDTO.getAttributeValue());
+                    }
+                }
+
+                for (AttributeDTO resource : resources) {
+                    boolean allActionsAllowed = false;
+                    for (int noOfRequests = enableChildSearch ? 0 : 1; noOfRequests < 2; noOfRequests++) {
+                        List<AttributeDTO> currentRequestAttributes = new ArrayList<AttributeDTO>(requestAttributes);
+                        if (noOfRequests < 1) {
+                            currentRequestAttributes.add(resourceScopeAttribute);
+                        }
+                        currentRequestAttributes.add(subjectAttributeDTO);
+                        currentRequestAttributes.add(resource);
+                        if (getResponse(currentRequestAttributes)) {
+                            EntitledAttributesDTO dto = new EntitledAttributesDTO();
+                            dto.setResourceName(resource.getAttributeValue());
+                            dto.setAllActions(true);
+                            resultSet.add(dto);
+                            allActionsAllowed = true;
+                        }
+                    }
+                    if (allActionsAllowed) {
+                        continue;
+                    }
+
+                    for (AttributeDTO actionAttributeDTO : actions) {
+                        if (entitledActions.contains(actionAttributeDTO.getAttributeValue())) {
+                            continue;
+                        }
+                        for (int noOfRequests = enableChildSearch ? 0 : 1; noOfRequests < 2; noOfRequests++) {
+                            List<AttributeDTO> currentRequestAttributes =
+                                    new ArrayList<AttributeDTO>(requestAttributes);
+                            if (noOfRequests < 1) {
+                                currentRequestAttributes.add(resourceScopeAttribute);
+                            }
+                            currentRequestAttributes.add(subjectAttributeDTO);
+                            currentRequestAttributes.add(resource);
+                            currentRequestAttributes.add(actionAttributeDTO);
+                            if (getResponse(currentRequestAttributes)) {
+                                EntitledAttributesDTO dto = new EntitledAttributesDTO();
+                                dto.setResourceName(resource.getAttributeValue());
+                                dto.setAction(actionAttributeDTO.getAttributeValue());
+                                resultSet.add(dto);
+                            }
+                        }
+                    }
+                }
+            }
+
+            resultSetDTO.setEntitledAttributesDTOs(resultSet.toArray(new EntitledAttributesDTO[resultSet.size()]));
+            return resultSetDTO;
+        }
+
+        /**
+         * Attribute search of a finder module without attribute combinations, as done before the search requests
+         * were evaluated in parallel
+         */
+        private EntitledResultSetDTO getEntitledAttributesSequentially(String identifier) {
+
+            Set<List<AttributeDTO>> requestSet = new HashSet<List<AttributeDTO>>();
+            for (Set<AttributeDTO> attributeDTOs : finderModule.getSearchAttributes(identifier,
+                    new HashSet<AttributeDTO>()).values()) {
+                requestSet.add(new ArrayList<AttributeDTO>(attributeDTOs));
+            }
+            Set<EntitledAttributesDTO> resultAttributes = new HashSet<EntitledAttributesDTO>();
+            for (List<AttributeDTO> attributeDTOList : requestSet) {
+                if (getResponse(attributeDTOList)) {
+                    EntitledAttributesDTO dto = new EntitledAttributesDTO();
+                    dto.setAttributeDTOs(attributeDTOList.toArray(new AttributeDTO[attributeDTOList.size()]));
+                    resultAttributes.add(dto);
+                }
+            }
+            EntitledResultSetDTO result = new EntitledResultSetDTO();
+            result.setAdvanceResult(true);
+            result.setEntitledAttributesDTOs(resultAttributes.toArray(
+                    new EntitledAttributesDTO[resultAttributes.size()]));
+            return result;
+        }
+    }
+
+    /**
+     * Finder module which returns the search attributes of each generated policy
+     */
+    private class StubFinderModule implements PolicyFinderModule {
+
+        private final int searchScheme;
+
+        private StubFinderModule(int searchScheme) {
+            this.searchScheme = searchScheme;
+        }
+
+        @Override
+        public Map<String, Set<AttributeDTO>> getSearchAttributes(String identifier,
+                                                                  Set<AttributeDTO> givenAttribute) {
+
+            Map<String, Set<AttributeDTO>> searchAttributes = new LinkedHashMap<String, Set<AttributeDTO>>();
+            for (StubPolicy policy : policies) {
+                searchAttributes.put(policy.policyId, policy.getSearchAttributes());
+            }
+            return searchAttributes;
+        }
+
+        @Override
+        public int getSupportedSearchAttributesScheme() {
+            return searchScheme;
+        }
+
+        @Override
+        public boolean isDefaultCategoriesSupported() {
+            return true;
+        }
+
+        @Override
+        public void init(Properties properties) {
+        }
+
+        @Override
+        public String getModuleName() {
+            return "Stub Policy Finder Module";
+        }
+
+        @Override
+        public String[] getActivePolicies() {
+            return new String[0];
+        }
+
+        @Override
+        public String[] getOrderedPolicyIdentifiers() {
+            return new String[0];
+        }
+
+        @Override
+        public String getPolicy(String policyId) {
+            return null;
+        }
+
+        @Override
+        public int getPolicyOrder(String policyId) {
+            return 0;
+        }
+
+        @Override
+        public String getReferencedPolicy(String policyId) {
+            return null;
+        }
+
+        @Override
+        public boolean isPolicyOrderingSupport() {
+            return false;
+        }
+
+        @Override
+        public boolean isPolicyDeActivationSupport() {
+            return false;
+        }
+    }
+}
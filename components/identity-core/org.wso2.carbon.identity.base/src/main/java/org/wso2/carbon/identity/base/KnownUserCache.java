@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.base;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Node local cache of users found in the user store, with the tenant id of each user. Authenticators use it to skip
+ * the tenant and user store lookups of a user authenticated recently. Users are kept for the configured timeout and
+ * the cache holds at most the configured number of users.
+ */
+public class KnownUserCache {
+
+    private final ConcurrentMap<String, CachedUser> users = new ConcurrentHashMap<>();
+    private final long timeout;
+    private final int maxSize;
+
+    /**
+     * @param timeout time in milliseconds a user is kept. Nothing is cached when it is zero or less.
+     * @param maxSize maximum number of cached users
+     */
+    public KnownUserCache(long timeout, int maxSize) {
+        this.timeout = timeout;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * @param fullUserName tenant qualified user name
+     * @return tenant id of the user, or null if the user is not cached or the cached user has expired
+     */
+    public Integer getTenantId(String fullUserName) {
+        if (timeout <= 0) {
+            return null;
+        }
+        CachedUser cachedUser = users.get(fullUserName);
+        if (cachedUser == null) {
+            return null;
+        }
+        if (cachedUser.expiryTime <= System.currentTimeMillis()) {
+            users.remove(fullUserName, cachedUser);
+            return null;
+        }
+        return cachedUser.tenantId;
+    }
+
+    /**
+     * Caches a user found in the user store of the tenant
+     *
+     * @param fullUserName tenant qualified user name
+     * @param tenantId     tenant id of the user
+     */
+    public void addTenantId(String fullUserName, int tenantId) {
+        if (timeout <= 0) {
+            return;
+        }
+        if (users.size() >= maxSize) {
+            // drop the expired users before falling back to clearing the whole cache
+            long currentTime = System.currentTimeMillis();
+            for (Map.Entry<String, CachedUser> entry : users.entrySet()) {
+                if (entry.getValue().expiryTime <= currentTime) {
+                    users.remove(entry.getKey(), entry.getValue());
+                }
+            }
+            if (users.size() >= maxSize) {
+                users.clear();
+            }
+        }
+        users.put(fullUserName, new CachedUser(tenantId, System.currentTimeMillis() + timeout));
+    }
+
+    private static class CachedUser {
+
+        private final int tenantId;
+        private final long expiryTime;
+
+        private CachedUser(int tenantId, long expiryTime) {
+            this.tenantId = tenantId;
+            this.expiryTime = expiryTime;
+        }
+    }
+}
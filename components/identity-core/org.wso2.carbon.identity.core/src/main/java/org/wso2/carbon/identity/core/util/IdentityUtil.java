@@ -76,6 +76,7 @@ import java.security.SignatureException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Properties;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -521,6 +522,42 @@ public class IdentityUtil {
         return Integer.parseInt(cleanUpPeriod);
     }
 
+    /**
+     * Returns the integer value of an identity configuration property
+     *
+     * @param key          property key, as given to {@link #getProperty(String)}
+     * @param defaultValue value returned if the property is not set or is not an integer
+     * @return value of the property or the default value
+     */
+    public static int getIntProperty(String key, int defaultValue) {
+        return parseIntProperty(key, getProperty(key), defaultValue);
+    }
+
+    /**
+     * Returns the integer value of a property
+     *
+     * @param properties   properties, may be null
+     * @param key          property key
+     * @param defaultValue value returned if the property is not set or is not an integer
+     * @return value of the property or the default value
+     */
+    public static int getIntProperty(Properties properties, String key, int defaultValue) {
+        return parseIntProperty(key, properties != null ? properties.getProperty(key) : null, defaultValue);
+    }
+
+    private static int parseIntProperty(String key, String value, int defaultValue) {
+
+        if (StringUtils.isNotBlank(value)) {
+            try {
+                return Integer.parseInt(value.trim());
+            } catch (NumberFormatException e) {
+                log.error("Invalid value " + value + " configured for " + key + ". Using default value " +
+                        defaultValue, e);
+            }
+        }
+        return defaultValue;
+    }
+
     public static String extractDomainFromName(String nameWithDomain) {
 
         if(nameWithDomain.indexOf(UserCoreConstants.DOMAIN_SEPARATOR) > 0){
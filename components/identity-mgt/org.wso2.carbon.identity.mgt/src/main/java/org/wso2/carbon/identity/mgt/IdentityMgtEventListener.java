@@ -44,6 +44,7 @@ import org.wso2.carbon.identity.mgt.mail.NotificationBuilder;
 import org.wso2.carbon.identity.mgt.mail.NotificationData;
 import org.wso2.carbon.identity.mgt.policy.PolicyRegistry;
 import org.wso2.carbon.identity.mgt.policy.PolicyViolationException;
+import org.wso2.carbon.identity.mgt.store.AccountLockStateCache;
 import org.wso2.carbon.identity.mgt.store.UserIdentityDataStore;
 import org.wso2.carbon.identity.mgt.util.UserIdentityManagementUtil;
 import org.wso2.carbon.identity.mgt.util.Utils;
@@ -83,6 +84,7 @@ public class IdentityMgtEventListener extends AbstractIdentityUserOperationEvent
     PolicyRegistry policyRegistry = null;
     private UserIdentityDataStore module;
     private IdentityMgtConfig identityMgtConfig;
+    private AccountLockStateCache lockStateCache;
     // Set of thread local variable names
     private static final String DO_PRE_AUTHENTICATE = "doPreAuthenticate";
     private static final String DO_POST_AUTHENTICATE = "doPostAuthenticate";
@@ -95,10 +97,8 @@ public class IdentityMgtEventListener extends AbstractIdentityUserOperationEvent
 
 
     public IdentityMgtEventListener() {
-        identityMgtConfig = IdentityMgtConfig.getInstance();
-        // Get the policy registry with the loaded policies.
-        policyRegistry = identityMgtConfig.getPolicyRegistry();
-        module = IdentityMgtConfig.getInstance().getIdentityDataStore();
+        this(IdentityMgtConfig.getInstance(), IdentityMgtConfig.getInstance().getIdentityDataStore(),
+                AccountLockStateCache.getInstance());
         String isAdminUnlockSysProp = System.getProperty(UNLOCK_ADMIN_SYS_PROP);
         // If the system property unlockAdmin is set, then admin account will be unlocked
         if(StringUtils.isNotBlank(isAdminUnlockSysProp) && Boolean.parseBoolean(isAdminUnlockSysProp)) {
@@ -107,6 +107,15 @@ public class IdentityMgtEventListener extends AbstractIdentityUserOperationEvent
         }
     }
 
+    IdentityMgtEventListener(IdentityMgtConfig identityMgtConfig, UserIdentityDataStore module,
+                             AccountLockStateCache lockStateCache) {
+        this.identityMgtConfig = identityMgtConfig;
+        // Get the policy registry with the loaded policies.
+        policyRegistry = identityMgtConfig.getPolicyRegistry();
+        this.module = module;
+        this.lockStateCache = lockStateCache;
+    }
+
     /**
      * This method will unlock the admin account
      */
@@ -163,7 +172,7 @@ public class IdentityMgtEventListener extends AbstractIdentityUserOperationEvent
 
                 IdentityUtil.clearIdentityErrorMsg();
 
-                IdentityMgtConfig config = IdentityMgtConfig.getInstance();
+                IdentityMgtConfig config = identityMgtConfig;
 
                 if (!config.isEnableAuthPolicy()) {
                     return true;
@@ -186,7 +195,16 @@ public class IdentityMgtEventListener extends AbstractIdentityUserOperationEvent
                     }
                 } else {
 
+                    // users who were recently known not to be locked are let through without loading their identity
+                    // data. Locked accounts are always checked against the identity data, which decides on unlocking
+                    AccountLockStateCache.AccountLockState lockState =
+                            lockStateCache.getLockState(userName, userStoreManager);
+                    if (lockState != null && !lockState.getAccountLock()) {
+                        return true;
+                    }
+
                     UserIdentityClaimsDO userIdentityDTO = module.load(userName, userStoreManager);
+                    lockStateCache.updateLockState(userName, userStoreManager, userIdentityDTO);
 
                     // if the account is locked, should not be able to log in
                     if (userIdentityDTO != null && userIdentityDTO.isAccountLocked()) {
@@ -204,6 +222,8 @@ public class IdentityMgtEventListener extends AbstractIdentityUserOperationEvent
                                         "Error while saving user store data for user : "
                                                 + userName, e);
                             }
+                            lockStateCache.updateLockState(userName, userStoreManager,
+                                    userIdentityDTO);
                         } else {
                             IdentityErrorMsgContext customErrorMessageContext = new IdentityErrorMsgContext(
                                     UserCoreConstants.ErrorCode.USER_IS_LOCKED,
@@ -248,16 +268,29 @@ public class IdentityMgtEventListener extends AbstractIdentityUserOperationEvent
                     log.debug("Post authenticator is called in IdentityMgtEventListener");
                 }
 
-                IdentityMgtConfig config = IdentityMgtConfig.getInstance();
+                IdentityMgtConfig config = identityMgtConfig;
 
                 if (!config.isEnableAuthPolicy()) {
                     return true;
                 }
 
+                // Identity data is needed only to send the one time password, to count a failed attempt or to
+                // reset the lock state. None of these apply to a user whose cached lock state is clean
+                boolean identityDataRequired = authenticated ? config.isAuthPolicyOneTimePasswordCheck() :
+                        config.isAuthPolicyAccountLockOnFailure();
+                if (!identityDataRequired) {
+                    AccountLockStateCache.AccountLockState lockState =
+                            lockStateCache.getLockState(userName, userStoreManager);
+                    if (lockState != null && lockState.isClean()) {
+                        return true;
+                    }
+                }
+
                 UserIdentityClaimsDO userIdentityDTO = module.load(userName, userStoreManager);
                 if (userIdentityDTO == null) {
                     userIdentityDTO = new UserIdentityClaimsDO(userName);
                 }
+                lockStateCache.updateLockState(userName, userStoreManager, userIdentityDTO);
 
                 boolean userOTPEnabled = userIdentityDTO.getOneTimeLogin();
 
@@ -409,6 +442,8 @@ public class IdentityMgtEventListener extends AbstractIdentityUserOperationEvent
                             throw new UserStoreException("Error while saving user store data for user : "
                                     + userName, e);
                         }
+                        lockStateCache.updateLockState(userName, userStoreManager,
+                                userIdentityDTO);
                     } else {
                         if (log.isDebugEnabled()) {
                             log.debug("User, " + userName + " is not exists in " + domainName);
@@ -428,6 +463,8 @@ public class IdentityMgtEventListener extends AbstractIdentityUserOperationEvent
                             throw new UserStoreException("Error while saving user store data for user : "
                                     + userName, e);
                         }
+                        lockStateCache.updateLockState(userName, userStoreManager,
+                                userIdentityDTO);
                     }
                 }
             }
@@ -543,6 +580,8 @@ public class IdentityMgtEventListener extends AbstractIdentityUserOperationEvent
                     log.debug("Post add user is called in IdentityMgtEventListener");
                 }
                 IdentityMgtConfig config = IdentityMgtConfig.getInstance();
+                // lock state of the new account is loaded with its identity data on the first authentication
+                lockStateCache.clearLockState(userName, userStoreManager);
                 // reading the value from the thread local
                 UserIdentityClaimsDO userIdentityClaimsDO = (UserIdentityClaimsDO) IdentityUtil.threadLocalProperties.get().get(USER_IDENTITY_DO);
 
@@ -826,6 +865,7 @@ public class IdentityMgtEventListener extends AbstractIdentityUserOperationEvent
                     throw new UserStoreException(
                             "Error while saving user store data for user : " + userName, e);
                 }
+                lockStateCache.updateLockState(userName, userStoreManager, identityDTO);
             }
             return true;
         } finally {
@@ -853,6 +893,7 @@ public class IdentityMgtEventListener extends AbstractIdentityUserOperationEvent
             throw new UserStoreException("Error while removing user: " + userName
                     + " from identity data store", e);
         }
+        lockStateCache.clearLockState(userName, userStoreManager);
         // deleting registry meta-data
         UserRegistry registry = null;
         try {
@@ -173,6 +173,13 @@ public class IdentityMgtConstants {
 
         public static final String REGISTRY_CLEANUP_PERIOD = "Identity.Mgt.Registry.CleanUpPeriod";
 
+        public static final String USER_DATA_STORE_WRITE_BEHIND_ENABLE = "Identity.Mgt.User.Data.Store.WriteBehind.Enable";
+
+        public static final String USER_DATA_STORE_WRITE_BEHIND_INTERVAL =
+                "Identity.Mgt.User.Data.Store.WriteBehind.Interval";
+
+        public static final String USER_DATA_STORE_WRITE_BEHIND_KEYS = "Identity.Mgt.User.Data.Store.WriteBehind.Keys";
+
         private PropertyConfig(){
         }
     }
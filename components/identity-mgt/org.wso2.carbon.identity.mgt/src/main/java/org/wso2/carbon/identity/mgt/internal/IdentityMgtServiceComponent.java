@@ -33,6 +33,7 @@ import org.wso2.carbon.identity.mgt.RecoveryProcessor;
 import org.wso2.carbon.identity.mgt.constants.IdentityMgtConstants;
 import org.wso2.carbon.identity.mgt.dto.ChallengeQuestionDTO;
 import org.wso2.carbon.identity.mgt.listener.UserOperationsNotificationListener;
+import org.wso2.carbon.identity.mgt.store.JDBCIdentityDataStore;
 import org.wso2.carbon.identity.mgt.store.RegistryCleanUpService;
 import org.wso2.carbon.identity.notification.mgt.NotificationSender;
 import org.wso2.carbon.registry.core.Collection;
@@ -203,6 +204,10 @@ public class IdentityMgtServiceComponent {
     }
 
     protected void deactivate(ComponentContext context) {
+        IdentityMgtConfig config = IdentityMgtConfig.getInstance();
+        if (config != null && config.getIdentityDataStore() instanceof JDBCIdentityDataStore) {
+            ((JDBCIdentityDataStore) config.getIdentityDataStore()).shutdown();
+        }
         log.debug("Identity Management bundle is de-activated");
     }
 
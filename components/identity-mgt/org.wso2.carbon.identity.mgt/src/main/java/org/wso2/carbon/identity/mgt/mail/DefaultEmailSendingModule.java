@@ -33,6 +33,8 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.wso2.carbon.context.PrivilegedCarbonContext;
 import org.wso2.carbon.core.CarbonConfigurationContextFactory;
+import org.wso2.carbon.identity.notification.mgt.smtp.MailMessage;
+import org.wso2.carbon.identity.notification.mgt.smtp.SMTPDispatcher;
 
 import java.util.HashMap;
 import java.util.Map;
@@ -87,15 +89,28 @@ public class DefaultEmailSendingModule extends AbstractEmailSendingModule {
                 }
             }
 
-            headerMap.put(MailConstants.MAIL_HEADER_SUBJECT, this.notification.getSubject());
-
-            OMElement payload = OMAbstractFactory.getOMFactory().createOMElement(
-                    BaseConstants.DEFAULT_TEXT_WRAPPER, null);
             StringBuilder contents = new StringBuilder();
             contents.append(this.notification.getBody())
                     .append(System.getProperty("line.separator"))
                     .append(System.getProperty("line.separator"))
                     .append(this.notification.getFooter());
+
+            // Queue the mail in the shared SMTP dispatcher which reuses SMTP connections, if SMTP is configured for
+            // it. Otherwise send the mail through the axis2 mail transport.
+            SMTPDispatcher dispatcher = SMTPDispatcher.getInstance();
+            if (dispatcher != null) {
+                if (dispatcher.send(new MailMessage(this.notification.getSendTo(), this.notification.getSubject(),
+                        contents.toString(), null))) {
+                    log.info("User credentials configuration mail has been queued to " +
+                            this.notification.getSendTo());
+                }
+                return;
+            }
+
+            headerMap.put(MailConstants.MAIL_HEADER_SUBJECT, this.notification.getSubject());
+
+            OMElement payload = OMAbstractFactory.getOMFactory().createOMElement(
+                    BaseConstants.DEFAULT_TEXT_WRAPPER, null);
             payload.setText(contents.toString());
             ServiceClient serviceClient;
             ConfigurationContext configContext = CarbonConfigurationContextFactory
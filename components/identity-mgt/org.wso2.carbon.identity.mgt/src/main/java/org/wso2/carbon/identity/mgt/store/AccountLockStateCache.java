@@ -0,0 +1,296 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.carbon.identity.mgt.store;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.carbon.context.PrivilegedCarbonContext;
+import org.wso2.carbon.identity.core.model.IdentityCacheConfig;
+import org.wso2.carbon.identity.core.util.IdentityUtil;
+import org.wso2.carbon.identity.mgt.dto.UserIdentityClaimsDO;
+import org.wso2.carbon.user.api.UserStoreException;
+import org.wso2.carbon.user.api.UserStoreManager;
+import org.wso2.carbon.user.core.UserCoreConstants;
+import org.wso2.carbon.user.core.util.UserCoreUtil;
+import org.wso2.carbon.utils.multitenancy.MultitenantConstants;
+
+import javax.cache.Cache;
+import javax.cache.CacheConfiguration;
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import java.io.Serializable;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Near cache of the account lock state of users, which lets authentication skip loading the identity data of users
+ * who are neither locked nor have failed login attempts. Entries are kept in a JCache of the identity login data
+ * cache manager, hence updates and removals are propagated to the other nodes of the cluster.
+ * <p/>
+ * The cache is maintained by the identity management listener and by the operations which lock or unlock accounts.
+ * Identity data can also be changed without going through them, for instance directly in the user store, hence an
+ * entry is trusted only for the timeout of the cache, which is configured in identity.xml and defaults to
+ * {@value #DEFAULT_TIMEOUT} seconds. A missing or expired entry only means that the identity data has to be loaded.
+ */
+public class AccountLockStateCache {
+
+    private static final String IDENTITY_LOGIN_DATA_CACHE_MANAGER = "IDENTITY_LOGIN_DATA_CACHE_MANAGER";
+    private static final String ACCOUNT_LOCK_STATE_CACHE = "IDENTITY_ACCOUNT_LOCK_STATE_CACHE";
+    private static final int DEFAULT_TIMEOUT = 60;
+
+    private static final Log log = LogFactory.getLog(AccountLockStateCache.class);
+
+    private static final AccountLockStateCache instance = new AccountLockStateCache();
+
+    private volatile boolean cacheInitialized;
+
+    protected AccountLockStateCache() {
+    }
+
+    public static AccountLockStateCache getInstance() {
+        return instance;
+    }
+
+    /**
+     * Returns the cached lock state of the user
+     *
+     * @param userName         User name, with or without the user store domain
+     * @param userStoreManager User store manager of the user
+     * @return Lock state, null if it is not cached or was cached before the timeout of the cache
+     */
+    public AccountLockState getLockState(String userName, UserStoreManager userStoreManager) {
+
+        if (userName == null) {
+            return null;
+        }
+        try {
+            String key = getKey(userName, userStoreManager);
+            AccountLockState lockState = get(key);
+            if (lockState != null && System.currentTimeMillis() - lockState.getCachedTime() >= getTimeout()) {
+                if (log.isDebugEnabled()) {
+                    log.debug("Cached account lock state of user " + userName + " is expired");
+                }
+                remove(key);
+                return null;
+            }
+            return lockState;
+        } catch (UserStoreException e) {
+            log.error("Error while obtaining tenant ID from user store manager", e);
+            return null;
+        }
+    }
+
+    /**
+     * Caches the lock state of the user taken from the identity data
+     *
+     * @param userName         User name, with or without the user store domain
+     * @param userStoreManager User store manager of the user
+     * @param userIdentityDTO  Identity data of the user. Null if the user has no identity data, which is an account
+     *                         that is not locked
+     */
+    public void updateLockState(String userName, UserStoreManager userStoreManager,
+                                UserIdentityClaimsDO userIdentityDTO) {
+
+        AccountLockState lockState;
+        if (userIdentityDTO == null) {
+            lockState = new AccountLockState(false, 0, 0);
+        } else {
+            lockState = new AccountLockState(userIdentityDTO.getAccountLock(), userIdentityDTO.getUnlockTime(),
+                    userIdentityDTO.getFailAttempts());
+        }
+        if (userName == null) {
+            return;
+        }
+        try {
+            put(getKey(userName, userStoreManager), lockState);
+        } catch (UserStoreException e) {
+            log.error("Error while obtaining tenant ID from user store manager", e);
+        }
+    }
+
+    /**
+     * Removes the cached lock state of the user
+     *
+     * @param userName         User name, with or without the user store domain
+     * @param userStoreManager User store manager of the user
+     */
+    public void clearLockState(String userName, UserStoreManager userStoreManager) {
+
+        if (userName == null) {
+            return;
+        }
+        try {
+            remove(getKey(userName, userStoreManager));
+        } catch (UserStoreException e) {
+            log.error("Error while obtaining tenant ID from user store manager", e);
+        }
+    }
+
+    /**
+     * Returns the time in milliseconds for which a cached lock state is trusted. A disabled cache trusts none
+     */
+    protected long getTimeout() {
+        IdentityCacheConfig cacheConfig =
+                IdentityUtil.getIdentityCacheConfig(IDENTITY_LOGIN_DATA_CACHE_MANAGER, ACCOUNT_LOCK_STATE_CACHE);
+        if (cacheConfig != null && !cacheConfig.isEnabled()) {
+            return 0;
+        }
+        if (cacheConfig != null && cacheConfig.getTimeout() > 0) {
+            return TimeUnit.SECONDS.toMillis(cacheConfig.getTimeout());
+        }
+        return TimeUnit.SECONDS.toMillis(DEFAULT_TIMEOUT);
+    }
+
+    protected AccountLockState get(String key) {
+        try {
+            startSuperTenantFlow();
+            Cache<String, AccountLockState> cache = getCache();
+            return cache != null ? cache.get(key) : null;
+        } finally {
+            PrivilegedCarbonContext.endTenantFlow();
+        }
+    }
+
+    protected void put(String key, AccountLockState lockState) {
+        try {
+            startSuperTenantFlow();
+            Cache<String, AccountLockState> cache = getCache();
+            if (cache != null) {
+                cache.put(key, lockState);
+            }
+        } finally {
+            PrivilegedCarbonContext.endTenantFlow();
+        }
+    }
+
+    protected void remove(String key) {
+        try {
+            startSuperTenantFlow();
+            Cache<String, AccountLockState> cache = getCache();
+            if (cache != null) {
+                cache.remove(key);
+            }
+        } finally {
+            PrivilegedCarbonContext.endTenantFlow();
+        }
+    }
+
+    private Cache<String, AccountLockState> getCache() {
+
+        CacheManager manager = Caching.getCacheManagerFactory().getCacheManager(IDENTITY_LOGIN_DATA_CACHE_MANAGER);
+        if (!cacheInitialized) {
+            synchronized (this) {
+                if (!cacheInitialized) {
+                    // entries expire with the timeout of the cache, so that the cache does not keep states nobody
+                    // trusts any longer
+                    CacheConfiguration.Duration expiry =
+                            new CacheConfiguration.Duration(TimeUnit.MILLISECONDS, Math.max(getTimeout(), 1));
+                    manager.removeCache(ACCOUNT_LOCK_STATE_CACHE);
+                    Cache<String, AccountLockState> cache =
+                            manager.<String, AccountLockState>createCacheBuilder(ACCOUNT_LOCK_STATE_CACHE)
+                                    .setExpiry(CacheConfiguration.ExpiryType.MODIFIED, expiry)
+                                    .setExpiry(CacheConfiguration.ExpiryType.ACCESSED, expiry)
+                                    .setStoreByValue(false)
+                                    .build();
+                    cacheInitialized = true;
+                    return cache;
+                }
+            }
+        }
+        return manager.getCache(ACCOUNT_LOCK_STATE_CACHE);
+    }
+
+    private void startSuperTenantFlow() {
+        PrivilegedCarbonContext.startTenantFlow();
+        PrivilegedCarbonContext.getThreadLocalCarbonContext().setTenantDomain(
+                MultitenantConstants.SUPER_TENANT_DOMAIN_NAME);
+        PrivilegedCarbonContext.getThreadLocalCarbonContext().setTenantId(MultitenantConstants.SUPER_TENANT_ID);
+    }
+
+    private String getKey(String userName, UserStoreManager userStoreManager) throws UserStoreException {
+
+        String domainName = null;
+        userName = UserCoreUtil.removeDomainFromName(userName);
+        if (userStoreManager instanceof org.wso2.carbon.user.core.UserStoreManager) {
+            org.wso2.carbon.user.core.UserStoreManager store =
+                    (org.wso2.carbon.user.core.UserStoreManager) userStoreManager;
+            domainName = store.getRealmConfiguration().getUserStoreProperty(
+                    UserCoreConstants.RealmConfig.PROPERTY_DOMAIN_NAME);
+            if (!IdentityUtil.isUserStoreCaseSensitive(store)) {
+                userName = userName.toLowerCase();
+            }
+        }
+        return userStoreManager.getTenantId() + ":" + domainName + ":" + userName;
+    }
+
+    /**
+     * Lock related identity data of a user
+     */
+    public static class AccountLockState implements Serializable {
+
+        private static final long serialVersionUID = 4730937452638310928L;
+
+        private final boolean accountLock;
+        private final long unlockTime;
+        private final int failedAttempts;
+        private final long cachedTime;
+
+        public AccountLockState(boolean accountLock, long unlockTime, int failedAttempts) {
+            this.accountLock = accountLock;
+            this.unlockTime = unlockTime;
+            this.failedAttempts = failedAttempts;
+            this.cachedTime = System.currentTimeMillis();
+        }
+
+        /**
+         * Whether the account is locked at the moment, as in {@link UserIdentityClaimsDO#isAccountLocked()}
+         */
+        public boolean isAccountLocked() {
+            if (unlockTime != 0 && unlockTime < System.currentTimeMillis()) {
+                return false;
+            }
+            return accountLock;
+        }
+
+        public boolean getAccountLock() {
+            return accountLock;
+        }
+
+        public long getUnlockTime() {
+            return unlockTime;
+        }
+
+        public int getFailedAttempts() {
+            return failedAttempts;
+        }
+
+        /**
+         * Time at which the state was taken from the identity data of the user
+         */
+        public long getCachedTime() {
+            return cachedTime;
+        }
+
+        /**
+         * Whether the account is not locked and has no failed login attempts, in which case a successful
+         * authentication does not change the identity data of the user
+         */
+        public boolean isClean() {
+            return !accountLock && failedAttempts == 0;
+        }
+    }
+}
@@ -0,0 +1,178 @@
+/*
+ * Copyright (c) 2014, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.carbon.identity.mgt.store;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Keeps identity data values whose persistence is deferred, coalesced per user. Only the latest value of each key is
+ * kept, hence a user who logs in many times within a flush interval costs a single write.
+ */
+class IdentityDataWriteBehindQueue {
+
+    private final Set<String> deferredKeys;
+
+    private final ConcurrentMap<String, PendingUserData> pendingData = new ConcurrentHashMap<>();
+
+    IdentityDataWriteBehindQueue(Set<String> deferredKeys) {
+        this.deferredKeys = deferredKeys;
+    }
+
+    /**
+     * Checks whether the persistence of the given keys can be deferred
+     *
+     * @param keys Keys of the changed values
+     * @return true if all the keys are configured to be written behind
+     */
+    boolean isDeferrable(Set<String> keys) {
+        return !keys.isEmpty() && deferredKeys.containsAll(keys);
+    }
+
+    /**
+     * Adds changed values of a user, replacing values of the same keys which are not yet written
+     */
+    void add(int tenantId, String userName, boolean isUsernameCaseSensitive, Map<String, String> data) {
+        merge(tenantId, userName, isUsernameCaseSensitive, data, true);
+    }
+
+    /**
+     * Adds back values of a user which could not be written, unless newer values of the same keys were added
+     * meanwhile
+     */
+    void restore(PendingUserData pendingData) {
+        merge(pendingData.getTenantId(), pendingData.getUserName(), pendingData.isUsernameCaseSensitive(),
+                pendingData.getData(), false);
+    }
+
+    private void merge(int tenantId, String userName, boolean isUsernameCaseSensitive, Map<String, String> data,
+                       boolean replace) {
+
+        String key = getKey(tenantId, userName, isUsernameCaseSensitive);
+        while (true) {
+            PendingUserData pending = pendingData.get(key);
+            if (pending == null) {
+                pending = new PendingUserData(tenantId, userName, isUsernameCaseSensitive);
+                PendingUserData existing = pendingData.putIfAbsent(key, pending);
+                if (existing != null) {
+                    pending = existing;
+                }
+            }
+            synchronized (pending) {
+                if (!pending.drained) {
+                    if (replace) {
+                        pending.data.putAll(data);
+                    } else {
+                        for (Map.Entry<String, String> entry : data.entrySet()) {
+                            if (!pending.data.containsKey(entry.getKey())) {
+                                pending.data.put(entry.getKey(), entry.getValue());
+                            }
+                        }
+                    }
+                    return;
+                }
+            }
+            // The entry was taken for writing meanwhile. Retry with a new entry
+        }
+    }
+
+    /**
+     * Takes the pending values of a user, so that they can be written together with other changes of the user
+     *
+     * @return Pending values of the user, null if there are none
+     */
+    PendingUserData remove(int tenantId, String userName, boolean isUsernameCaseSensitive) {
+        return take(getKey(tenantId, userName, isUsernameCaseSensitive));
+    }
+
+    /**
+     * Takes the pending values of all users
+     *
+     * @return Pending values of each user
+     */
+    Collection<PendingUserData> drain() {
+
+        List<PendingUserData> drained = new ArrayList<>();
+        for (String key : pendingData.keySet()) {
+            PendingUserData pending = take(key);
+            if (pending != null) {
+                drained.add(pending);
+            }
+        }
+        return drained;
+    }
+
+    boolean isEmpty() {
+        return pendingData.isEmpty();
+    }
+
+    private PendingUserData take(String key) {
+
+        PendingUserData pending = pendingData.remove(key);
+        if (pending != null) {
+            synchronized (pending) {
+                pending.drained = true;
+            }
+        }
+        return pending;
+    }
+
+    private String getKey(int tenantId, String userName, boolean isUsernameCaseSensitive) {
+        return tenantId + ":" + (isUsernameCaseSensitive ? userName : userName.toLowerCase());
+    }
+
+    /**
+     * Values of a single user which are waiting to be written
+     */
+    static class PendingUserData {
+
+        private final int tenantId;
+        private final String userName;
+        private final boolean isUsernameCaseSensitive;
+        private final Map<String, String> data = new HashMap<>();
+        private boolean drained;
+
+        private PendingUserData(int tenantId, String userName, boolean isUsernameCaseSensitive) {
+            this.tenantId = tenantId;
+            this.userName = userName;
+            this.isUsernameCaseSensitive = isUsernameCaseSensitive;
+        }
+
+        int getTenantId() {
+            return tenantId;
+        }
+
+        String getUserName() {
+            return userName;
+        }
+
+        boolean isUsernameCaseSensitive() {
+            return isUsernameCaseSensitive;
+        }
+
+        synchronized Map<String, String> getData() {
+            return new HashMap<>(data);
+        }
+    }
+}
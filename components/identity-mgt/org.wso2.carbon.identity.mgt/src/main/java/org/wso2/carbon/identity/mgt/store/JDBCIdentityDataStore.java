@@ -18,11 +18,14 @@
 
 package org.wso2.carbon.identity.mgt.store;
 
+import org.apache.commons.lang.StringUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.wso2.carbon.identity.base.IdentityException;
 import org.wso2.carbon.identity.core.util.IdentityDatabaseUtil;
 import org.wso2.carbon.identity.core.util.IdentityUtil;
+import org.wso2.carbon.identity.mgt.IdentityMgtConfig;
+import org.wso2.carbon.identity.mgt.constants.IdentityMgtConstants;
 import org.wso2.carbon.identity.mgt.dto.UserIdentityClaimsDO;
 import org.wso2.carbon.user.api.UserStoreException;
 import org.wso2.carbon.user.api.UserStoreManager;
@@ -34,8 +37,17 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 
 /**
  * //TODO remove method when user is deleted
@@ -44,6 +56,25 @@ public class JDBCIdentityDataStore extends InMemoryIdentityDataStore {
 
     private static Log log = LogFactory.getLog(JDBCIdentityDataStore.class);
 
+    /**
+     * Default interval in seconds between writes of deferred identity data
+     */
+    private static final long DEFAULT_WRITE_BEHIND_INTERVAL = 30;
+
+    /**
+     * Keys which decide the outcome of authentication. These are always written through
+     */
+    private static final String[] SECURITY_CRITICAL_KEYS = {UserIdentityDataStore.FAIL_LOGIN_ATTEMPTS,
+            UserIdentityDataStore.LAST_FAILED_LOGIN_ATTEMPT_TIME, UserIdentityDataStore.ACCOUNT_LOCK,
+            UserIdentityDataStore.UNLOCKING_TIME, UserIdentityDataStore.TEMPORARY_LOCK,
+            UserIdentityDataStore.ONE_TIME_PASSWORD, UserIdentityDataStore.PASSWORD_CHANGE_REQUIRED};
+
+    private volatile IdentityDataWriteBehindQueue writeBehindQueue;
+
+    private volatile boolean writeBehindInitialized;
+
+    private ScheduledExecutorService writeBehindScheduler;
+
     @Override
     public void store(UserIdentityClaimsDO userIdentityDTO, UserStoreManager userStoreManager)
             throws IdentityException {
@@ -52,17 +83,12 @@ public class JDBCIdentityDataStore extends InMemoryIdentityDataStore {
             return;
         }
 
-        // Before putting to cache, has to check this whether this available in the database
-        // Putting into cache
-
         String userName = userIdentityDTO.getUserName();
         String domainName = ((org.wso2.carbon.user.core.UserStoreManager) userStoreManager).getRealmConfiguration().
                 getUserStoreProperty(UserCoreConstants.RealmConfig.PROPERTY_DOMAIN_NAME);
         userName = UserCoreUtil.addDomainToName(userName, domainName);
         userIdentityDTO.setUserName(userName);
 
-        super.store(userIdentityDTO, userStoreManager);
-
         int tenantId = MultitenantConstants.SUPER_TENANT_ID;
         try {
             tenantId = userStoreManager.getTenantId();
@@ -70,104 +96,388 @@ public class JDBCIdentityDataStore extends InMemoryIdentityDataStore {
             log.error("Error while getting tenant Id.", e);
         }
 
+        boolean isUsernameCaseSensitive = isUsernameCaseSensitive(userName, tenantId);
+        Map<String, String> data = new HashMap<String, String>(userIdentityDTO.getUserDataMap());
+        IdentityDataWriteBehindQueue queue = getWriteBehindQueue();
+        IdentityDataWriteBehindQueue.PendingUserData pendingData = null;
+
+        Connection connection = getDBConnection();
+        try {
+            // Changes are found against the current rows of the user, as the data the caller started from may be
+            // outdated by writes of other nodes
+            Map<String, String> persistedData = loadUserData(connection, tenantId, userName, isUsernameCaseSensitive);
+            Map<String, String> changedData = getChangedData(data, persistedData);
+
+            if (queue != null) {
+                if (queue.isDeferrable(changedData.keySet())) {
+                    queue.add(tenantId, userName, isUsernameCaseSensitive, changedData);
+                    cacheUserData(userIdentityDTO, userStoreManager);
+                    if (log.isDebugEnabled()) {
+                        log.debug("Deferred persisting " + changedData.keySet() + " of user " + userName);
+                    }
+                    return;
+                }
+                // Write the deferred values of the user along with this change, unless the current data replaces them
+                pendingData = queue.remove(tenantId, userName, isUsernameCaseSensitive);
+                if (pendingData != null) {
+                    for (Map.Entry<String, String> entry : pendingData.getData().entrySet()) {
+                        if (!data.containsKey(entry.getKey())) {
+                            changedData.put(entry.getKey(), entry.getValue());
+                        }
+                    }
+                }
+            }
+
+            if (!changedData.isEmpty()) {
+                // Security critical values are written even if they match the values just read, so that a value
+                // written by another node in the meantime does not override them
+                for (String key : SECURITY_CRITICAL_KEYS) {
+                    if (data.containsKey(key)) {
+                        changedData.put(key, data.get(key));
+                    }
+                }
+                persistUserData(connection, tenantId, userName, isUsernameCaseSensitive, changedData,
+                        persistedData.keySet());
+                connection.commit();
+            } else if (log.isDebugEnabled()) {
+                log.debug("Identity data of user " + userName + " is not changed");
+            }
+        } catch (SQLException e) {
+            IdentityDatabaseUtil.rollBack(connection);
+            if (pendingData != null) {
+                queue.restore(pendingData);
+            }
+            // The cached data may be the instance which was changed by the caller
+            uncacheUserData(userName, userStoreManager);
+            throw IdentityException.error("Error occurred while persisting user data", e);
+        } finally {
+            IdentityDatabaseUtil.closeConnection(connection);
+        }
+        cacheUserData(userIdentityDTO, userStoreManager);
+    }
+
+    /**
+     * Writes all deferred identity data and stops deferring. Called when the bundle is deactivated.
+     */
+    public synchronized void shutdown() {
 
-        Map<String, String> data = userIdentityDTO.getUserDataMap();
+        if (writeBehindScheduler != null) {
+            writeBehindScheduler.shutdown();
+            writeBehindScheduler = null;
+        }
+        flushDeferredData();
+        IdentityDataWriteBehindQueue queue = writeBehindQueue;
+        if (queue != null && !queue.isEmpty()) {
+            log.error("Deferred identity data of " + queue.drain().size() + " users could not be persisted");
+        }
+        writeBehindQueue = null;
+    }
 
+    /**
+     * Returns the keys whose values differ from the persisted values
+     *
+     * @param data          Current identity data
+     * @param persistedData Identity data as in the persistence store
+     * @return Changed values by key
+     */
+    static Map<String, String> getChangedData(Map<String, String> data, Map<String, String> persistedData) {
+
+        Map<String, String> changedData = new HashMap<String, String>();
         for (Map.Entry<String, String> entry : data.entrySet()) {
-            String key = entry.getKey();
             String value = entry.getValue();
-            boolean isUserExists = false;
-            try {
-                isUserExists = isExistingUserDataValue(userName, tenantId, key);
-            } catch (SQLException e) {
-                throw IdentityException.error("Error occurred while checking if user existing", e);
-            }
-            try {
-                if (isUserExists) {
-                    updateUserDataValue(userName, tenantId, key, value);
-                } else {
-                    addUserDataValue(userName, tenantId, key, value);
-                }
-            } catch (SQLException e) {
-                throw IdentityException.error("Error occurred while persisting user data", e);
+            String persistedValue = persistedData.get(entry.getKey());
+            if (value == null ? !persistedData.containsKey(entry.getKey()) || persistedValue != null :
+                    !value.equals(persistedValue)) {
+                changedData.put(entry.getKey(), value);
             }
         }
+        return changedData;
     }
 
-    private boolean isExistingUserDataValue(String userName, int tenantId, String key) throws SQLException {
+    /**
+     * Loads the identity data of a user using the given connection
+     */
+    Map<String, String> loadUserData(Connection connection, int tenantId, String userName,
+                                     boolean isUsernameCaseSensitive) throws SQLException {
 
-        Connection connection = IdentityDatabaseUtil.getDBConnection();
         PreparedStatement prepStmt = null;
-        ResultSet results;
-        boolean isUsernameCaseSensitive = IdentityUtil.isUserStoreInUsernameCaseSensitive(userName, tenantId);
+        ResultSet results = null;
         try {
             String query;
             if (isUsernameCaseSensitive) {
-                query = SQLQuery.CHECK_EXIST_USER_DATA;
+                query = SQLQuery.LOAD_USER_DATA;
             } else {
-                query = SQLQuery.CHECK_EXIST_USER_DATA_CASE_INSENSITIVE;
+                query = SQLQuery.LOAD_USER_DATA_CASE_INSENSITIVE;
             }
             prepStmt = connection.prepareStatement(query);
             prepStmt.setInt(1, tenantId);
             prepStmt.setString(2, userName);
-            prepStmt.setString(3, key);
             results = prepStmt.executeQuery();
-            if (results.next()) {
-                return true;
+            Map<String, String> data = new HashMap<String, String>();
+            while (results.next()) {
+                data.put(results.getString(1), results.getString(2));
             }
-            connection.commit();
+            return data;
         } finally {
+            IdentityDatabaseUtil.closeResultSet(results);
             IdentityDatabaseUtil.closeStatement(prepStmt);
-            IdentityDatabaseUtil.closeConnection(connection);
         }
-        return false;
     }
 
+    /**
+     * Writes changed identity data of a user using the given connection, as one batch of updates for the keys which
+     * are known to exist and one batch of inserts for the rest. Keys whose update did not match a row are inserted
+     * as well. The caller commits.
+     *
+     * @param connection              Database connection
+     * @param tenantId                Tenant id of the user
+     * @param userName                User name with domain
+     * @param isUsernameCaseSensitive Whether the user name is case sensitive
+     * @param changedData             Values to be written
+     * @param existingKeys            Keys which are known to exist in the database for the user
+     * @throws SQLException If writing fails
+     */
+    void persistUserData(Connection connection, int tenantId, String userName, boolean isUsernameCaseSensitive,
+                         Map<String, String> changedData, Set<String> existingKeys) throws SQLException {
+
+        List<String> updateKeys = new ArrayList<String>();
+        List<String> insertKeys = new ArrayList<String>();
+        for (String key : changedData.keySet()) {
+            if (existingKeys.contains(key)) {
+                updateKeys.add(key);
+            } else {
+                insertKeys.add(key);
+            }
+        }
 
-    private void addUserDataValue(String userName, int tenantId, String key, String value) throws SQLException {
-
-        Connection connection = IdentityDatabaseUtil.getDBConnection();
         PreparedStatement prepStmt = null;
-
         try {
-            prepStmt = connection.prepareStatement(SQLQuery.STORE_USER_DATA);
-            prepStmt.setInt(1, tenantId);
-            prepStmt.setString(2, userName);
-            prepStmt.setString(3, key);
-            prepStmt.setString(4, value);
-            prepStmt.execute();
-            connection.commit();
+            if (!updateKeys.isEmpty()) {
+                String query;
+                if (isUsernameCaseSensitive) {
+                    query = SQLQuery.UPDATE_USER_DATA;
+                } else {
+                    query = SQLQuery.UPDATE_USER_DATA_CASE_INSENSITIVE;
+                }
+                prepStmt = connection.prepareStatement(query);
+                for (String key : updateKeys) {
+                    prepStmt.setString(1, changedData.get(key));
+                    prepStmt.setInt(2, tenantId);
+                    prepStmt.setString(3, userName);
+                    prepStmt.setString(4, key);
+                    prepStmt.addBatch();
+                }
+                int[] counts = prepStmt.executeBatch();
+                for (int i = 0; i < counts.length && i < updateKeys.size(); i++) {
+                    if (counts[i] == 0) {
+                        insertKeys.add(updateKeys.get(i));
+                    }
+                }
+                IdentityDatabaseUtil.closeStatement(prepStmt);
+                prepStmt = null;
+            }
+
+            if (!insertKeys.isEmpty()) {
+                prepStmt = connection.prepareStatement(SQLQuery.STORE_USER_DATA);
+                for (String key : insertKeys) {
+                    prepStmt.setInt(1, tenantId);
+                    prepStmt.setString(2, userName);
+                    prepStmt.setString(3, key);
+                    prepStmt.setString(4, changedData.get(key));
+                    prepStmt.addBatch();
+                }
+                prepStmt.executeBatch();
+            }
+            if (log.isDebugEnabled()) {
+                log.debug("Persisted identity data of user " + userName + ". Updated : " + updateKeys.size() +
+                        ", inserted : " + insertKeys.size());
+            }
         } finally {
             IdentityDatabaseUtil.closeStatement(prepStmt);
-            IdentityDatabaseUtil.closeConnection(connection);
         }
     }
 
+    private IdentityDataWriteBehindQueue getWriteBehindQueue() {
 
-    private void updateUserDataValue(String userName, int tenantId, String key, String value) throws SQLException {
+        if (!writeBehindInitialized) {
+            synchronized (this) {
+                if (!writeBehindInitialized) {
+                    initWriteBehind();
+                    writeBehindInitialized = true;
+                }
+            }
+        }
+        return writeBehindQueue;
+    }
 
-        Connection connection = IdentityDatabaseUtil.getDBConnection();
-        PreparedStatement prepStmt = null;
-        boolean isUsernameCaseSensitive = IdentityUtil.isUserStoreInUsernameCaseSensitive(userName, tenantId);
+    private void initWriteBehind() {
+
+        IdentityMgtConfig config = IdentityMgtConfig.getInstance();
+        if (config == null || !Boolean.parseBoolean(config.getProperty(
+                IdentityMgtConstants.PropertyConfig.USER_DATA_STORE_WRITE_BEHIND_ENABLE))) {
+            return;
+        }
+
+        long interval = DEFAULT_WRITE_BEHIND_INTERVAL;
+        String intervalProperty = config.getProperty(
+                IdentityMgtConstants.PropertyConfig.USER_DATA_STORE_WRITE_BEHIND_INTERVAL);
+        if (StringUtils.isNotBlank(intervalProperty)) {
+            try {
+                interval = Long.parseLong(intervalProperty.trim());
+            } catch (NumberFormatException e) {
+                log.error("Invalid write behind interval " + intervalProperty + ". Default interval " +
+                        DEFAULT_WRITE_BEHIND_INTERVAL + " seconds would be used");
+            }
+        }
+
+        Set<String> keys = new HashSet<String>();
+        String keysProperty = config.getProperty(IdentityMgtConstants.PropertyConfig.USER_DATA_STORE_WRITE_BEHIND_KEYS);
+        if (StringUtils.isNotBlank(keysProperty)) {
+            for (String key : keysProperty.split(",")) {
+                if (StringUtils.isNotBlank(key)) {
+                    keys.add(key.trim());
+                }
+            }
+        } else {
+            keys.add(UserIdentityDataStore.LAST_LOGON_TIME);
+        }
+        for (String key : SECURITY_CRITICAL_KEYS) {
+            if (keys.remove(key)) {
+                log.warn(key + " is used to enforce authentication policies and can not be written behind");
+            }
+        }
+        if (keys.isEmpty() || interval <= 0) {
+            return;
+        }
+        startWriteBehind(keys, interval);
+    }
+
+    /**
+     * Starts deferring the given keys, writing them every given number of seconds
+     *
+     * @param keys     Keys to be written behind
+     * @param interval Interval between writes in seconds
+     */
+    synchronized void startWriteBehind(Set<String> keys, long interval) {
+
+        writeBehindQueue = new IdentityDataWriteBehindQueue(keys);
+        writeBehindScheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "IdentityDataWriteBehind");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        writeBehindScheduler.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    flushDeferredData();
+                } catch (Throwable e) {
+                    log.error("Error while writing deferred identity data", e);
+                }
+            }
+        }, interval, interval, TimeUnit.SECONDS);
+
+        writeBehindInitialized = true;
+        if (log.isDebugEnabled()) {
+            log.debug("Identity data " + keys + " would be written behind every " + interval + " seconds");
+        }
+    }
+
+    /**
+     * Writes the deferred identity data of all users in one transaction. If that fails, the data of each user is
+     * written in its own transaction, and the data of the users which still fail is queued again to be retried.
+     */
+    void flushDeferredData() {
+
+        IdentityDataWriteBehindQueue queue = writeBehindQueue;
+        if (queue == null || queue.isEmpty()) {
+            return;
+        }
+        Collection<IdentityDataWriteBehindQueue.PendingUserData> pendingDataList = queue.drain();
+        if (pendingDataList.isEmpty()) {
+            return;
+        }
+
+        Connection connection = getDBConnection();
         try {
-            String query;
-            if (isUsernameCaseSensitive) {
-                query = SQLQuery.UPDATE_USER_DATA;
-            } else {
-                query = SQLQuery.UPDATE_USER_DATA_CASE_INSENSITIVE;
+            try {
+                for (IdentityDataWriteBehindQueue.PendingUserData pendingData : pendingDataList) {
+                    persistDeferredData(connection, pendingData);
+                }
+                connection.commit();
+                if (log.isDebugEnabled()) {
+                    log.debug("Deferred identity data of " + pendingDataList.size() + " users is persisted");
+                }
+                return;
+            } catch (SQLException e) {
+                IdentityDatabaseUtil.rollBack(connection);
+                log.warn("Error while persisting deferred identity data of " + pendingDataList.size() +
+                        " users. Persisting the data of each user separately", e);
+            }
+
+            int failedUsers = 0;
+            for (IdentityDataWriteBehindQueue.PendingUserData pendingData : pendingDataList) {
+                try {
+                    persistDeferredData(connection, pendingData);
+                    connection.commit();
+                } catch (SQLException e) {
+                    IdentityDatabaseUtil.rollBack(connection);
+                    queue.restore(pendingData);
+                    failedUsers++;
+                    if (log.isDebugEnabled()) {
+                        log.debug("Error while persisting deferred identity data of user " +
+                                pendingData.getUserName(), e);
+                    }
+                }
+            }
+            if (failedUsers > 0) {
+                log.error("Deferred identity data of " + failedUsers + " users could not be persisted. It would " +
+                        "be retried with the next write");
             }
-            prepStmt = connection.prepareStatement(query);
-            prepStmt.setString(1, value);
-            prepStmt.setInt(2, tenantId);
-            prepStmt.setString(3, userName);
-            prepStmt.setString(4, key);
-            prepStmt.executeUpdate();
-            connection.commit();
         } finally {
-            IdentityDatabaseUtil.closeStatement(prepStmt);
             IdentityDatabaseUtil.closeConnection(connection);
         }
+    }
+
+    private void persistDeferredData(Connection connection, IdentityDataWriteBehindQueue.PendingUserData pendingData)
+            throws SQLException {
 
+        Map<String, String> data = pendingData.getData();
+        // Deferred keys are updated first, and inserted if the user has no value yet
+        persistUserData(connection, pendingData.getTenantId(), pendingData.getUserName(),
+                pendingData.isUsernameCaseSensitive(), data, data.keySet());
+    }
+
+    /**
+     * Returns a connection to the identity database. Overridden by tests.
+     */
+    Connection getDBConnection() {
+        return IdentityDatabaseUtil.getDBConnection();
+    }
+
+    /**
+     * Checks whether the user store of the user treats user names case sensitively. Overridden by tests.
+     */
+    boolean isUsernameCaseSensitive(String userName, int tenantId) {
+        return IdentityUtil.isUserStoreInUsernameCaseSensitive(userName, tenantId);
+    }
+
+    /**
+     * Puts persisted identity data of a user to the identity data cache
+     */
+    void cacheUserData(UserIdentityClaimsDO userIdentityDTO, UserStoreManager userStoreManager)
+            throws IdentityException {
+        super.store(userIdentityDTO, userStoreManager);
+    }
+
+    /**
+     * Removes identity data of a user from the identity data cache
+     */
+    void uncacheUserData(String userName, UserStoreManager userStoreManager) throws IdentityException {
+        super.remove(userName, userStoreManager);
     }
 
     @Override
@@ -183,26 +493,11 @@ public class JDBCIdentityDataStore extends InMemoryIdentityDataStore {
             return dto;
         }
 
-        Connection connection = IdentityDatabaseUtil.getDBConnection();
-        PreparedStatement prepStmt = null;
-        ResultSet results = null;
+        Connection connection = getDBConnection();
         try {
             int tenantId = userStoreManager.getTenantId();
             boolean isUsernameCaseSensitive = IdentityUtil.isUserStoreInUsernameCaseSensitive(userName, tenantId);
-            String query;
-            if (isUsernameCaseSensitive) {
-                query = SQLQuery.LOAD_USER_DATA;
-            } else {
-                query = SQLQuery.LOAD_USER_DATA_CASE_INSENSITIVE;
-            }
-            prepStmt = connection.prepareStatement(query);
-            prepStmt.setInt(1, tenantId);
-            prepStmt.setString(2, userName);
-            results = prepStmt.executeQuery();
-            Map<String, String> data = new HashMap<String, String>();
-            while (results.next()) {
-                data.put(results.getString(1), results.getString(2));
-            }
+            Map<String, String> data = loadUserData(connection, tenantId, userName, isUsernameCaseSensitive);
             connection.commit();
             if (log.isDebugEnabled()) {
                 log.debug("Retrieved identity data for:" + tenantId + ":" + userName);
@@ -221,8 +516,6 @@ public class JDBCIdentityDataStore extends InMemoryIdentityDataStore {
         } catch (SQLException | UserStoreException e) {
             log.error("Error while reading user identity data", e);
         } finally {
-            IdentityDatabaseUtil.closeResultSet(results);
-            IdentityDatabaseUtil.closeStatement(prepStmt);
             IdentityDatabaseUtil.closeConnection(connection);
         }
 
@@ -236,7 +529,7 @@ public class JDBCIdentityDataStore extends InMemoryIdentityDataStore {
         String domainName = ((org.wso2.carbon.user.core.UserStoreManager) userStoreManager).
                 getRealmConfiguration().getUserStoreProperty(UserCoreConstants.RealmConfig.PROPERTY_DOMAIN_NAME);
         userName = UserCoreUtil.addDomainToName(userName, domainName);
-        Connection connection = IdentityDatabaseUtil.getDBConnection();
+        Connection connection = getDBConnection();
         PreparedStatement prepStmt = null;
         try {
             int tenantId = userStoreManager.getTenantId();
@@ -247,6 +540,10 @@ public class JDBCIdentityDataStore extends InMemoryIdentityDataStore {
             } else {
                 query = SQLQuery.DELETE_USER_DATA_CASE_INSENSITIVE;
             }
+            IdentityDataWriteBehindQueue queue = writeBehindQueue;
+            if (queue != null) {
+                queue.remove(tenantId, userName, isUsernameCaseSensitive);
+            }
             prepStmt = connection.prepareStatement(query);
             prepStmt.setInt(1, tenantId);
             prepStmt.setString(2, userName);
@@ -267,11 +564,6 @@ public class JDBCIdentityDataStore extends InMemoryIdentityDataStore {
      * The primary key is tenantId, userName, DatKey combination
      */
     private static class SQLQuery {
-        public static final String CHECK_EXIST_USER_DATA = "SELECT DATA_VALUE FROM IDN_IDENTITY_USER_DATA WHERE " +
-                "TENANT_ID = ? AND USER_NAME = ? AND DATA_KEY = ?";
-        public static final String CHECK_EXIST_USER_DATA_CASE_INSENSITIVE = "SELECT DATA_VALUE FROM " +
-                "IDN_IDENTITY_USER_DATA WHERE TENANT_ID = ? AND LOWER(USER_NAME) = LOWER(?) AND DATA_KEY = ?";
-
         public static final String STORE_USER_DATA = "INSERT INTO IDN_IDENTITY_USER_DATA (TENANT_ID, USER_NAME, " +
                 "DATA_KEY, DATA_VALUE) VALUES (?,?,?,?)";
 
@@ -33,6 +33,7 @@ import org.wso2.carbon.identity.mgt.beans.VerificationBean;
 import org.wso2.carbon.identity.mgt.constants.IdentityMgtConstants;
 import org.wso2.carbon.identity.mgt.dto.*;
 import org.wso2.carbon.identity.mgt.internal.IdentityMgtServiceComponent;
+import org.wso2.carbon.identity.mgt.store.AccountLockStateCache;
 import org.wso2.carbon.identity.mgt.store.JDBCUserRecoveryDataStore;
 import org.wso2.carbon.identity.mgt.store.UserIdentityDataStore;
 import org.wso2.carbon.user.api.Claim;
@@ -132,6 +133,7 @@ public class UserIdentityManagementUtil {
             userIdentityDO.setAccountLock(true);
             userIdentityDO.setUnlockTime(0);
             store.store(userIdentityDO, userStoreManager);
+            AccountLockStateCache.getInstance().updateLockState(userName, userStoreManager, userIdentityDO);
         } else {
             throw IdentityException.error("No user account found for user " + userName);
         }
@@ -186,6 +188,7 @@ public class UserIdentityManagementUtil {
             userIdentityDO.setAccountLock(false);
             userIdentityDO.setUnlockTime(0);
             store.store(userIdentityDO, userStoreManager);
+            AccountLockStateCache.getInstance().updateLockState(userName, userStoreManager, userIdentityDO);
         } else {
             throw IdentityException.error("No user account found for user " + userName);
         }
@@ -315,6 +318,7 @@ public class UserIdentityManagementUtil {
         if (userIdentityDO != null) {
             userIdentityDO.updateUserIdentityRecoveryData(userIdentityRecoveryData);
             store.store(userIdentityDO, userStoreManager);
+            AccountLockStateCache.getInstance().updateLockState(userName, userStoreManager, userIdentityDO);
         } else {
             throw IdentityException.error("No user account found for user " + userName);
         }
@@ -395,6 +399,8 @@ public class UserIdentityManagementUtil {
             throws IdentityException {
         IdentityMgtConfig.getInstance().getIdentityDataStore()
                 .store(identityClaims, userStoreManager);
+        AccountLockStateCache.getInstance().updateLockState(identityClaims.getUserName(), userStoreManager,
+                identityClaims);
     }
 
     public static UserRecoveryDataDO getUserIdentityMetadata(String userName, int tenantId,
@@ -0,0 +1,192 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.wso2.carbon.identity.mgt;
+
+import junit.framework.TestCase;
+import org.wso2.carbon.identity.base.IdentityException;
+import org.wso2.carbon.identity.mgt.dto.UserIdentityClaimsDO;
+import org.wso2.carbon.identity.mgt.store.AccountLockStateCache;
+import org.wso2.carbon.identity.mgt.store.UserIdentityDataStore;
+import org.wso2.carbon.user.core.UserCoreConstants;
+import org.wso2.carbon.user.core.UserStoreException;
+import org.wso2.carbon.user.core.UserStoreManager;
+import org.wso2.carbon.user.core.config.RealmConfiguration;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Authenticates users through the identity management listener while their accounts are locked and unlocked
+ * directly in the identity data store, as done by user store administrators, without the listener knowing
+ */
+public class IdentityMgtEventListenerTest extends TestCase {
+
+    private static final int TENANT_ID = -1234;
+    private static final String USER_NAME = "user";
+
+    private final RealmConfiguration realmConfig = new RealmConfiguration();
+    private MapIdentityDataStore dataStore;
+    private MapLockStateCache lockStateCache;
+    private IdentityMgtEventListener listener;
+    private UserStoreManager userStoreManager;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        realmConfig.getUserStoreProperties().put(UserCoreConstants.RealmConfig.PROPERTY_DOMAIN_NAME, "PRIMARY");
+        userStoreManager = userStoreManager();
+        dataStore = new MapIdentityDataStore();
+        lockStateCache = new MapLockStateCache();
+        listener = new IdentityMgtEventListener(new AuthPolicyConfig(realmConfig), dataStore, lockStateCache);
+    }
+
+    public void testUnlockedUserIsLoadedOnceWithinTimeout() throws Exception {
+
+        assertTrue(listener.doPreAuthenticate(USER_NAME, "password", userStoreManager));
+        assertTrue(listener.doPreAuthenticate(USER_NAME, "password", userStoreManager));
+
+        assertEquals("identity data should be loaded only when the lock state is not cached", 1, dataStore.loads);
+    }
+
+    public void testLockSetOutsideListenerIsEnforcedAfterTimeout() throws Exception {
+
+        assertTrue(listener.doPreAuthenticate(USER_NAME, "password", userStoreManager));
+        dataStore.setAccountLock(USER_NAME, true);
+
+        lockStateCache.timeout = 0;
+        try {
+            listener.doPreAuthenticate(USER_NAME, "password", userStoreManager);
+            fail("account locked in the identity data store should not be able to log in");
+        } catch (UserStoreException e) {
+            assertTrue(e.getMessage(), e.getMessage().startsWith(UserCoreConstants.ErrorCode.USER_IS_LOCKED));
+        }
+        assertEquals(2, dataStore.loads);
+    }
+
+    public void testCachedLockIsCheckedAgainstIdentityData() throws Exception {
+
+        dataStore.setAccountLock(USER_NAME, true);
+        try {
+            listener.doPreAuthenticate(USER_NAME, "password", userStoreManager);
+            fail("locked account should not be able to log in");
+        } catch (UserStoreException e) {
+            assertTrue(e.getMessage(), e.getMessage().startsWith(UserCoreConstants.ErrorCode.USER_IS_LOCKED));
+        }
+
+        // unlocked by an administrator, while the lock is still cached
+        dataStore.setAccountLock(USER_NAME, false);
+        assertTrue(listener.doPreAuthenticate(USER_NAME, "password", userStoreManager));
+        assertEquals("cached locks should always be checked against the identity data", 2, dataStore.loads);
+    }
+
+    private UserStoreManager userStoreManager() {
+
+        return (UserStoreManager) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class[]{UserStoreManager.class}, new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        if ("getRealmConfiguration".equals(method.getName())) {
+                            return realmConfig;
+                        } else if ("getTenantId".equals(method.getName())) {
+                            return TENANT_ID;
+                        } else if ("isExistingUser".equals(method.getName())) {
+                            return true;
+                        }
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+
+    /**
+     * Identity management configuration with the authentication policy enabled
+     */
+    private static class AuthPolicyConfig extends IdentityMgtConfig {
+
+        AuthPolicyConfig(RealmConfiguration configuration) {
+            super(configuration);
+        }
+
+        @Override
+        public boolean isEnableAuthPolicy() {
+            return true;
+        }
+    }
+
+    /**
+     * Identity data store keeping the identity data of users in a map and counting its loads
+     */
+    private static class MapIdentityDataStore extends UserIdentityDataStore {
+
+        private final Map<String, UserIdentityClaimsDO> data = new HashMap<String, UserIdentityClaimsDO>();
+        private int loads;
+
+        void setAccountLock(String userName, boolean accountLock) {
+            UserIdentityClaimsDO identityClaims = new UserIdentityClaimsDO(userName);
+            identityClaims.setAccountLock(accountLock);
+            data.put(userName, identityClaims);
+        }
+
+        @Override
+        public void store(UserIdentityClaimsDO userIdentityDTO, UserStoreManager userStoreManager) {
+            data.put(userIdentityDTO.getUserName(), userIdentityDTO);
+        }
+
+        @Override
+        public UserIdentityClaimsDO load(String userName, UserStoreManager userStoreManager) {
+            loads++;
+            return data.get(userName);
+        }
+
+        @Override
+        public void remove(String userName, UserStoreManager userStoreManager) throws IdentityException {
+            data.remove(userName);
+        }
+    }
+
+    /**
+     * Lock state cache kept in a map, as the Carbon cache runtime is not available to unit tests
+     */
+    private static class MapLockStateCache extends AccountLockStateCache {
+
+        private final Map<String, AccountLockState> states = new HashMap<String, AccountLockState>();
+        private long timeout = 60000;
+
+        @Override
+        protected long getTimeout() {
+            return timeout;
+        }
+
+        @Override
+        protected AccountLockState get(String key) {
+            return states.get(key);
+        }
+
+        @Override
+        protected void put(String key, AccountLockState lockState) {
+            states.put(key, lockState);
+        }
+
+        @Override
+        protected void remove(String key) {
+            states.remove(key);
+        }
+    }
+}
@@ -0,0 +1,487 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wso2.carbon.identity.mgt.store;
+
+import junit.framework.TestCase;
+import org.wso2.carbon.identity.base.IdentityException;
+import org.wso2.carbon.identity.mgt.dto.UserIdentityClaimsDO;
+import org.wso2.carbon.user.api.RealmConfiguration;
+import org.wso2.carbon.user.core.UserCoreConstants;
+import org.wso2.carbon.user.core.UserStoreManager;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+
+public class JDBCIdentityDataStoreTest extends TestCase {
+
+    private static final int TENANT_ID = -1234;
+    private static final String USER_NAME = "PRIMARY/admin";
+
+    private TestIdentityDataStore store = new TestIdentityDataStore();
+    private UserStoreManager userStoreManager = userStoreManager();
+    private Connection connection;
+    private int statementCount;
+    private int failingWrites;
+
+    @Override
+    protected void setUp() throws Exception {
+
+        Class.forName("org.h2.Driver");
+        connection = DriverManager.getConnection(getDatabaseUrl());
+        connection.setAutoCommit(false);
+        Statement statement = connection.createStatement();
+        statement.execute("CREATE TABLE IDN_IDENTITY_USER_DATA (TENANT_ID INTEGER DEFAULT -1234, " +
+                "USER_NAME VARCHAR(255) NOT NULL, DATA_KEY VARCHAR(255) NOT NULL, DATA_VALUE VARCHAR(255), " +
+                "PRIMARY KEY (TENANT_ID, USER_NAME, DATA_KEY))");
+        statement.close();
+        connection.commit();
+        statementCount = 0;
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+
+        store.shutdown();
+        Statement statement = connection.createStatement();
+        statement.execute("DROP ALL OBJECTS");
+        statement.close();
+        connection.close();
+    }
+
+    public void testFailedLoginWritesOnlyChangedKeys() throws Exception {
+
+        Map<String, String> data = new HashMap<String, String>();
+        data.put(UserIdentityDataStore.FAIL_LOGIN_ATTEMPTS, "0");
+        data.put(UserIdentityDataStore.LAST_FAILED_LOGIN_ATTEMPT_TIME, "0");
+        data.put(UserIdentityDataStore.ACCOUNT_LOCK, "false");
+        data.put(UserIdentityDataStore.UNLOCKING_TIME, "0");
+        data.put(UserIdentityDataStore.LAST_LOGON_TIME, "100");
+        insert(data);
+
+        Connection counting = countingConnection(connection);
+        Map<String, String> persisted = store.loadUserData(counting, TENANT_ID, USER_NAME, true);
+        assertEquals("user data should be loaded with a single query", 1, statementCount);
+        assertEquals(data, persisted);
+
+        data.put(UserIdentityDataStore.FAIL_LOGIN_ATTEMPTS, "1");
+        data.put(UserIdentityDataStore.LAST_FAILED_LOGIN_ATTEMPT_TIME, "200");
+        Map<String, String> changed = JDBCIdentityDataStore.getChangedData(data, persisted);
+        assertEquals(2, changed.size());
+
+        statementCount = 0;
+        store.persistUserData(counting, TENANT_ID, USER_NAME, true, changed, persisted.keySet());
+        counting.commit();
+        assertEquals("changed keys should be updated in a single batch", 1, statementCount);
+        assertEquals(data, read());
+    }
+
+    public void testNewKeysAreInsertedInSingleBatch() throws Exception {
+
+        Map<String, String> data = new HashMap<String, String>();
+        data.put(UserIdentityDataStore.FAIL_LOGIN_ATTEMPTS, "1");
+        data.put(UserIdentityDataStore.LAST_FAILED_LOGIN_ATTEMPT_TIME, "200");
+        data.put(UserIdentityDataStore.ACCOUNT_LOCK, "false");
+
+        Map<String, String> changed = JDBCIdentityDataStore.getChangedData(data,
+                Collections.<String, String>emptyMap());
+        store.persistUserData(countingConnection(connection), TENANT_ID, USER_NAME, true, changed,
+                new HashSet<String>());
+        connection.commit();
+        assertEquals("new keys should be inserted in a single batch", 1, statementCount);
+        assertEquals(data, read());
+    }
+
+    public void testUpdateOfMissingKeyFallsBackToInsert() throws Exception {
+
+        Map<String, String> existing = new HashMap<String, String>();
+        existing.put(UserIdentityDataStore.FAIL_LOGIN_ATTEMPTS, "0");
+        insert(existing);
+
+        Map<String, String> changed = new HashMap<String, String>();
+        changed.put(UserIdentityDataStore.FAIL_LOGIN_ATTEMPTS, "2");
+        changed.put(UserIdentityDataStore.LAST_LOGON_TIME, "300");
+        store.persistUserData(countingConnection(connection), TENANT_ID, USER_NAME, true, changed,
+                changed.keySet());
+        connection.commit();
+        assertEquals("missing key should be inserted after the update batch", 2, statementCount);
+        assertEquals(changed, read());
+    }
+
+    public void testCaseInsensitiveUserNameIsUpdated() throws Exception {
+
+        Map<String, String> existing = new HashMap<String, String>();
+        existing.put(UserIdentityDataStore.FAIL_LOGIN_ATTEMPTS, "0");
+        insert(existing);
+
+        Map<String, String> changed = new HashMap<String, String>();
+        changed.put(UserIdentityDataStore.FAIL_LOGIN_ATTEMPTS, "1");
+        store.persistUserData(countingConnection(connection), TENANT_ID, USER_NAME.toUpperCase(), false, changed,
+                changed.keySet());
+        connection.commit();
+        assertEquals(1, statementCount);
+        assertEquals(changed, read());
+    }
+
+    public void testUnchangedDataIsNotWritten() {
+
+        Map<String, String> persisted = new HashMap<String, String>();
+        persisted.put(UserIdentityDataStore.FAIL_LOGIN_ATTEMPTS, "0");
+        persisted.put(UserIdentityDataStore.UNLOCKING_TIME, null);
+        Map<String, String> data = new HashMap<String, String>(persisted);
+
+        assertTrue(JDBCIdentityDataStore.getChangedData(data, persisted).isEmpty());
+
+        data.put(UserIdentityDataStore.ACCOUNT_LOCK, null);
+        assertEquals(Collections.singleton(UserIdentityDataStore.ACCOUNT_LOCK),
+                JDBCIdentityDataStore.getChangedData(data, persisted).keySet());
+    }
+
+    public void testWriteBehindCoalescesPerUser() {
+
+        IdentityDataWriteBehindQueue queue = new IdentityDataWriteBehindQueue(
+                Collections.singleton(UserIdentityDataStore.LAST_LOGON_TIME));
+        assertTrue(queue.isDeferrable(Collections.singleton(UserIdentityDataStore.LAST_LOGON_TIME)));
+        assertFalse(queue.isDeferrable(new HashSet<String>(Arrays.asList(
+                UserIdentityDataStore.LAST_LOGON_TIME, UserIdentityDataStore.FAIL_LOGIN_ATTEMPTS))));
+        assertFalse(queue.isDeferrable(Collections.<String>emptySet()));
+
+        for (int i = 1; i <= 10; i++) {
+            queue.add(TENANT_ID, USER_NAME, false, Collections.singletonMap(UserIdentityDataStore.LAST_LOGON_TIME,
+                    Integer.toString(i)));
+        }
+        queue.add(TENANT_ID, "PRIMARY/other", false, Collections.singletonMap(UserIdentityDataStore.LAST_LOGON_TIME,
+                "1"));
+
+        IdentityDataWriteBehindQueue.PendingUserData pending = queue.remove(TENANT_ID, USER_NAME.toUpperCase(), false);
+        assertNotNull("pending data should be found regardless of user name case", pending);
+        assertEquals("10", pending.getData().get(UserIdentityDataStore.LAST_LOGON_TIME));
+
+        Collection<IdentityDataWriteBehindQueue.PendingUserData> drained = queue.drain();
+        assertEquals(1, drained.size());
+        assertTrue(queue.isEmpty());
+    }
+
+    public void testStoreCachesDataOnlyAfterItIsWritten() throws Exception {
+
+        Map<String, String> data = loginData("0", "false", "100");
+        insert(data);
+
+        final Map<String, String> persistedWhenCached = new HashMap<String, String>();
+        store.cacheListener = new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    persistedWhenCached.putAll(read());
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        };
+        data.put(UserIdentityDataStore.FAIL_LOGIN_ATTEMPTS, "1");
+        store.store(new UserIdentityClaimsDO(USER_NAME, new HashMap<String, String>(data)), userStoreManager);
+
+        assertEquals("current data should be loaded and changes written in a single batch", 2, statementCount);
+        assertEquals(data, read());
+        assertEquals("cached data should be persisted by the time it is cached", data, persistedWhenCached);
+        assertEquals(data, store.cache.get(USER_NAME).getUserDataMap());
+    }
+
+    public void testFailedStoreIsNotCached() throws Exception {
+
+        Map<String, String> data = loginData("0", "false", "100");
+        insert(data);
+        UserIdentityClaimsDO cached = new UserIdentityClaimsDO(USER_NAME, new HashMap<String, String>(data));
+        store.cache.put(USER_NAME, cached);
+
+        cached.setFailAttempts(1);
+        failingWrites = 1;
+        try {
+            store.store(cached, userStoreManager);
+            fail("failure of the write should be reported");
+        } catch (IdentityException e) {
+            // expected
+        }
+
+        assertFalse("data which could not be written should not stay cached", store.cache.containsKey(USER_NAME));
+        assertEquals(data, read());
+    }
+
+    public void testLockWrittenByAnotherNodeIsReset() throws Exception {
+
+        Map<String, String> data = loginData("0", "false", "100");
+        insert(data);
+        // this node loaded the data before another node locked the account
+        UserIdentityClaimsDO loaded = new UserIdentityClaimsDO(USER_NAME, new HashMap<String, String>(data));
+        update(UserIdentityDataStore.FAIL_LOGIN_ATTEMPTS, "3");
+        update(UserIdentityDataStore.ACCOUNT_LOCK, "true");
+
+        // the data of this node is back to the values it loaded, which differ from the database
+        store.store(loaded, userStoreManager);
+
+        assertEquals(data, read());
+    }
+
+    public void testDeferredDataIsWrittenOnFlush() throws Exception {
+
+        store.startWriteBehind(Collections.singleton(UserIdentityDataStore.LAST_LOGON_TIME), 3600);
+        Map<String, String> data = loginData("0", "false", "100");
+        insert(data);
+
+        data.put(UserIdentityDataStore.LAST_LOGON_TIME, "200");
+        store.store(new UserIdentityClaimsDO(USER_NAME, new HashMap<String, String>(data)), userStoreManager);
+
+        assertEquals("deferred data should only be compared with the database", 1, statementCount);
+        assertEquals("100", read().get(UserIdentityDataStore.LAST_LOGON_TIME));
+        assertEquals("200", store.cache.get(USER_NAME).getUserDataMap().get(UserIdentityDataStore.LAST_LOGON_TIME));
+
+        store.flushDeferredData();
+        assertEquals(data, read());
+    }
+
+    public void testWriteThroughWritesDeferredData() throws Exception {
+
+        store.startWriteBehind(Collections.singleton(UserIdentityDataStore.LAST_LOGON_TIME), 3600);
+        Map<String, String> data = loginData("0", "false", "100");
+        insert(data);
+
+        data.put(UserIdentityDataStore.LAST_LOGON_TIME, "200");
+        store.store(new UserIdentityClaimsDO(USER_NAME, new HashMap<String, String>(data)), userStoreManager);
+        data.put(UserIdentityDataStore.FAIL_LOGIN_ATTEMPTS, "1");
+        data.remove(UserIdentityDataStore.LAST_LOGON_TIME);
+        store.store(new UserIdentityClaimsDO(USER_NAME, new HashMap<String, String>(data)), userStoreManager);
+
+        data.put(UserIdentityDataStore.LAST_LOGON_TIME, "200");
+        assertEquals(data, read());
+        statementCount = 0;
+        store.flushDeferredData();
+        assertEquals("no deferred data should be left", 0, statementCount);
+    }
+
+    public void testFailedFlushKeepsDeferredData() throws Exception {
+
+        store.startWriteBehind(Collections.singleton(UserIdentityDataStore.LAST_LOGON_TIME), 3600);
+        Map<String, String> data = loginData("0", "false", "100");
+        insert(data);
+
+        store.store(new UserIdentityClaimsDO(USER_NAME, new HashMap<String, String>(Collections.singletonMap(
+                UserIdentityDataStore.LAST_LOGON_TIME, "200"))), userStoreManager);
+        failingWrites = Integer.MAX_VALUE;
+        store.flushDeferredData();
+        assertEquals("100", read().get(UserIdentityDataStore.LAST_LOGON_TIME));
+
+        failingWrites = 0;
+        store.flushDeferredData();
+        assertEquals("data of the failed flush should be written by the next flush", "200",
+                read().get(UserIdentityDataStore.LAST_LOGON_TIME));
+
+        store.store(new UserIdentityClaimsDO(USER_NAME, new HashMap<String, String>(Collections.singletonMap(
+                UserIdentityDataStore.LAST_LOGON_TIME, "300"))), userStoreManager);
+        failingWrites = Integer.MAX_VALUE;
+        store.flushDeferredData();
+        // a value deferred after the failed flush is newer than the value which could not be written
+        store.store(new UserIdentityClaimsDO(USER_NAME, new HashMap<String, String>(Collections.singletonMap(
+                UserIdentityDataStore.LAST_LOGON_TIME, "400"))), userStoreManager);
+        failingWrites = 0;
+        store.flushDeferredData();
+        assertEquals("400", read().get(UserIdentityDataStore.LAST_LOGON_TIME));
+    }
+
+    public void testFailedBatchFlushFallsBackToUserWrites() throws Exception {
+
+        store.startWriteBehind(Collections.singleton(UserIdentityDataStore.LAST_LOGON_TIME), 3600);
+        Map<String, String> data = loginData("0", "false", "100");
+        insert(data);
+
+        data.put(UserIdentityDataStore.LAST_LOGON_TIME, "200");
+        store.store(new UserIdentityClaimsDO(USER_NAME, new HashMap<String, String>(data)), userStoreManager);
+        failingWrites = 1;
+        store.flushDeferredData();
+
+        assertEquals("deferred data should be written by the user write after the failed batch", data, read());
+    }
+
+    private static Map<String, String> loginData(String failedAttempts, String accountLock, String lastLogonTime) {
+
+        Map<String, String> data = new HashMap<String, String>();
+        data.put(UserIdentityDataStore.FAIL_LOGIN_ATTEMPTS, failedAttempts);
+        data.put(UserIdentityDataStore.ACCOUNT_LOCK, accountLock);
+        data.put(UserIdentityDataStore.UNLOCKING_TIME, "0");
+        data.put(UserIdentityDataStore.LAST_LOGON_TIME, lastLogonTime);
+        return data;
+    }
+
+    private void update(String key, String value) throws Exception {
+
+        PreparedStatement prepStmt = connection.prepareStatement("UPDATE IDN_IDENTITY_USER_DATA SET DATA_VALUE = ? " +
+                "WHERE TENANT_ID = ? AND USER_NAME = ? AND DATA_KEY = ?");
+        prepStmt.setString(1, value);
+        prepStmt.setInt(2, TENANT_ID);
+        prepStmt.setString(3, USER_NAME);
+        prepStmt.setString(4, key);
+        prepStmt.execute();
+        prepStmt.close();
+        connection.commit();
+    }
+
+    private void insert(Map<String, String> data) throws Exception {
+
+        PreparedStatement prepStmt = connection.prepareStatement("INSERT INTO IDN_IDENTITY_USER_DATA (TENANT_ID, " +
+                "USER_NAME, DATA_KEY, DATA_VALUE) VALUES (?,?,?,?)");
+        for (Map.Entry<String, String> entry : data.entrySet()) {
+            prepStmt.setInt(1, TENANT_ID);
+            prepStmt.setString(2, USER_NAME);
+            prepStmt.setString(3, entry.getKey());
+            prepStmt.setString(4, entry.getValue());
+            prepStmt.execute();
+        }
+        prepStmt.close();
+        connection.commit();
+    }
+
+    private Map<String, String> read() throws Exception {
+
+        PreparedStatement prepStmt = connection.prepareStatement("SELECT DATA_KEY, DATA_VALUE FROM " +
+                "IDN_IDENTITY_USER_DATA WHERE TENANT_ID = ? AND USER_NAME = ?");
+        prepStmt.setInt(1, TENANT_ID);
+        prepStmt.setString(2, USER_NAME);
+        ResultSet results = prepStmt.executeQuery();
+        Map<String, String> data = new HashMap<String, String>();
+        while (results.next()) {
+            data.put(results.getString(1), results.getString(2));
+        }
+        results.close();
+        prepStmt.close();
+        return data;
+    }
+
+    private String getDatabaseUrl() {
+        return "jdbc:h2:mem:" + getName() + ";DB_CLOSE_DELAY=-1";
+    }
+
+    private static UserStoreManager userStoreManager() {
+
+        final RealmConfiguration realmConfig = new RealmConfiguration();
+        realmConfig.getUserStoreProperties().put(UserCoreConstants.RealmConfig.PROPERTY_DOMAIN_NAME, "PRIMARY");
+        return (UserStoreManager) Proxy.newProxyInstance(JDBCIdentityDataStoreTest.class.getClassLoader(),
+                new Class[]{UserStoreManager.class}, new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        if ("getRealmConfiguration".equals(method.getName())) {
+                            return realmConfig;
+                        } else if ("getTenantId".equals(method.getName())) {
+                            return TENANT_ID;
+                        }
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+
+    /**
+     * Wraps the connection so that each statement execution sent to the database is counted, and batch executions
+     * fail while failing writes are left
+     */
+    private Connection countingConnection(final Connection connection) {
+
+        return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class[]{Connection.class},
+                new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                        Object result = delegate(connection, method, args);
+                        if ("prepareStatement".equals(method.getName())) {
+                            final PreparedStatement prepStmt = (PreparedStatement) result;
+                            return Proxy.newProxyInstance(getClass().getClassLoader(),
+                                    new Class[]{PreparedStatement.class}, new InvocationHandler() {
+                                        @Override
+                                        public Object invoke(Object proxy, Method method, Object[] args)
+                                                throws Throwable {
+                                            if (method.getName().startsWith("execute")) {
+                                                statementCount++;
+                                            }
+                                            if ("executeBatch".equals(method.getName()) && failingWrites > 0) {
+                                                failingWrites--;
+                                                throw new SQLException("Write failed");
+                                            }
+                                            return delegate(prepStmt, method, args);
+                                        }
+                                    });
+                        }
+                        return result;
+                    }
+                });
+    }
+
+    /**
+     * Data store which writes to the test database and keeps its cache in a map
+     */
+    private class TestIdentityDataStore extends JDBCIdentityDataStore {
+
+        private final Map<String, UserIdentityClaimsDO> cache = new HashMap<String, UserIdentityClaimsDO>();
+        private Runnable cacheListener;
+
+        @Override
+        Connection getDBConnection() {
+            try {
+                Connection dbConnection = DriverManager.getConnection(getDatabaseUrl());
+                dbConnection.setAutoCommit(false);
+                return countingConnection(dbConnection);
+            } catch (SQLException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        @Override
+        boolean isUsernameCaseSensitive(String userName, int tenantId) {
+            return true;
+        }
+
+        @Override
+        void cacheUserData(UserIdentityClaimsDO userIdentityDTO,
+                           org.wso2.carbon.user.api.UserStoreManager userStoreManager) {
+            if (cacheListener != null) {
+                cacheListener.run();
+            }
+            cache.put(userIdentityDTO.getUserName(), userIdentityDTO);
+        }
+
+        @Override
+        void uncacheUserData(String userName, org.wso2.carbon.user.api.UserStoreManager userStoreManager) {
+            cache.remove(userName);
+        }
+    }
+
+    private static Object delegate(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+}
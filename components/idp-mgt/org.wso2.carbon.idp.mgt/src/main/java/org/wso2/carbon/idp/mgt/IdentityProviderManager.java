@@ -697,6 +697,19 @@ public class IdentityProviderManager {
 
     }
 
+    /**
+     * Loads all the Identity Providers of the tenant to the caches at once, so that the first federated logins
+     * of the tenant do not load them from the DB one by one
+     *
+     * @param tenantDomain Tenant domain whose Identity Providers are loaded
+     * @throws IdentityProviderManagementException Error when loading the Identity Providers
+     */
+    public void loadIdPsToCache(String tenantDomain) throws IdentityProviderManagementException {
+
+        int tenantId = IdentityTenantUtil.getTenantId(tenantDomain);
+        dao.loadIdPs(tenantId, tenantDomain);
+    }
+
     /**
      * @param idPName
      * @param tenantDomain
@@ -20,7 +20,10 @@ package org.wso2.carbon.idp.mgt.dao;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.wso2.carbon.base.MultitenantConstants;
+import org.wso2.carbon.identity.application.common.model.FederatedAuthenticatorConfig;
 import org.wso2.carbon.identity.application.common.model.IdentityProvider;
+import org.wso2.carbon.identity.application.common.model.Property;
 import org.wso2.carbon.identity.application.common.util.IdentityApplicationConstants;
 import org.wso2.carbon.idp.mgt.IdentityProviderManagementException;
 import org.wso2.carbon.idp.mgt.cache.IdPAuthPropertyCacheKey;
@@ -30,11 +33,15 @@ import org.wso2.carbon.idp.mgt.cache.IdPCacheByName;
 import org.wso2.carbon.idp.mgt.cache.IdPCacheEntry;
 import org.wso2.carbon.idp.mgt.cache.IdPHomeRealmIdCacheKey;
 import org.wso2.carbon.idp.mgt.cache.IdPNameCacheKey;
+import org.wso2.carbon.idp.mgt.util.IdPManagementConstants;
 import org.wso2.carbon.idp.mgt.util.IdPManagementUtil;
 
 import java.sql.Connection;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 
 public class CacheBackedIdPMgtDAO {
@@ -74,6 +81,63 @@ public class CacheBackedIdPMgtDAO {
         return idPMgtDAO.getIdPs(dbConnection, tenantId, tenantDomain);
     }
 
+    /**
+     * Loads all the Identity Providers of the tenant to the caches by name, by home realm ID and by IdP entity ID,
+     * using a fixed number of queries.
+     *
+     * @param tenantId
+     * @param tenantDomain
+     * @throws IdentityProviderManagementException
+     */
+    public void loadIdPs(int tenantId, String tenantDomain) throws IdentityProviderManagementException {
+
+        List<IdentityProvider> identityProviders = idPMgtDAO.getIdPsWithConfigs(null, tenantId, tenantDomain);
+        if (log.isDebugEnabled()) {
+            log.debug("Loading " + identityProviders.size() + " Identity Providers of tenant " + tenantDomain +
+                    " to cache");
+        }
+
+        Map<String, IdentityProvider> idPsByEntityId = new HashMap<String, IdentityProvider>();
+        Set<String> duplicateEntityIds = new HashSet<String>();
+        for (IdentityProvider identityProvider : identityProviders) {
+            IdPNameCacheKey idPNameCacheKey = new IdPNameCacheKey(identityProvider.getIdentityProviderName(),
+                    tenantDomain);
+            idPCacheByName.addToCache(idPNameCacheKey, new IdPCacheEntry(identityProvider));
+            if (identityProvider.getHomeRealmId() != null) {
+                IdPHomeRealmIdCacheKey homeRealmIdCacheKey = new IdPHomeRealmIdCacheKey(
+                        identityProvider.getHomeRealmId(), tenantDomain);
+                idPCacheByHRI.addToCache(homeRealmIdCacheKey, new IdPCacheEntry(identityProvider));
+            }
+            if (identityProvider.isPrimary()) {
+                primaryIdPs.put(tenantDomain, identityProvider);
+            }
+            if (IdentityApplicationConstants.RESIDENT_IDP_RESERVED_NAME.equals(
+                    identityProvider.getIdentityProviderName())) {
+                residentIdPs.put(tenantDomain, identityProvider);
+            }
+
+            // authenticator properties of shared Identity Providers are not looked up by other tenants
+            if (tenantId != MultitenantConstants.SUPER_TENANT_ID && identityProvider.getIdentityProviderName()
+                    .startsWith(IdPManagementConstants.SHARED_IDP_PREFIX)) {
+                continue;
+            }
+            for (String entityId : getIdPEntityIds(identityProvider)) {
+                IdentityProvider existing = idPsByEntityId.put(entityId, identityProvider);
+                if (existing != null && existing != identityProvider) {
+                    duplicateEntityIds.add(entityId);
+                }
+            }
+        }
+
+        // an entity ID shared by Identity Providers is left to be resolved by the DB on demand
+        idPsByEntityId.keySet().removeAll(duplicateEntityIds);
+        for (Map.Entry<String, IdentityProvider> entry : idPsByEntityId.entrySet()) {
+            IdPAuthPropertyCacheKey cacheKey = new IdPAuthPropertyCacheKey(
+                    IdentityApplicationConstants.Authenticator.SAML2SSO.IDP_ENTITY_ID, entry.getKey(), tenantDomain);
+            idPCacheByAuthProperty.addToCache(cacheKey, new IdPCacheEntry(entry.getValue()));
+        }
+    }
+
     /**
      * @param dbConnection
      * @param idPName
@@ -496,4 +560,24 @@ public class CacheBackedIdPMgtDAO {
         return idPMgtDAO.isIdPAvailableForAuthenticatorProperty(authenticatorName, propertyName, idPEntityId, tenantId);
     }
 
+    private Set<String> getIdPEntityIds(IdentityProvider identityProvider) {
+
+        Set<String> entityIds = new HashSet<String>();
+        if (identityProvider.getFederatedAuthenticatorConfigs() == null) {
+            return entityIds;
+        }
+        for (FederatedAuthenticatorConfig authenticatorConfig : identityProvider.getFederatedAuthenticatorConfigs()) {
+            if (authenticatorConfig.getProperties() == null) {
+                continue;
+            }
+            for (Property property : authenticatorConfig.getProperties()) {
+                if (IdentityApplicationConstants.Authenticator.SAML2SSO.IDP_ENTITY_ID.equals(property.getName())
+                        && property.getValue() != null) {
+                    entityIds.add(property.getValue());
+                }
+            }
+        }
+        return entityIds;
+    }
+
 }
@@ -54,8 +54,10 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -1402,6 +1404,352 @@ public class IdPManagementDAO {
 
     }
 
+    /**
+     * Retrieves all the Identity Providers of a tenant with their complete configuration. Unlike
+     * {@link #getIdPByName(Connection, String, int, String)}, the number of queries executed does not depend on
+     * the number of Identity Providers, which makes it suitable for loading the Identity Providers of a tenant
+     * to the caches at once.
+     *
+     * @param dbConnection
+     * @param tenantId
+     * @param tenantDomain
+     * @return Identity Providers of the tenant, including the resident Identity Provider
+     * @throws IdentityProviderManagementException
+     */
+    public List<IdentityProvider> getIdPsWithConfigs(Connection dbConnection, int tenantId, String tenantDomain)
+            throws IdentityProviderManagementException {
+
+        PreparedStatement prepStmt = null;
+        ResultSet rs = null;
+        boolean dbConnectionInitialized = true;
+        if (dbConnection == null) {
+            dbConnection = IdentityDatabaseUtil.getDBConnection();
+        } else {
+            dbConnectionInitialized = false;
+        }
+
+        Map<Integer, IdentityProvider> identityProviders = new LinkedHashMap<Integer, IdentityProvider>();
+        Map<Integer, String> defaultAuthenticatorNames = new HashMap<Integer, String>();
+
+        try {
+            prepStmt = prepareTenantIdPsStatement(dbConnection,
+                    IdPManagementConstants.SQLQueries.GET_TENANT_IDPS_SQL, tenantId, false);
+            rs = prepStmt.executeQuery();
+            while (rs.next()) {
+                IdentityProvider federatedIdp = new IdentityProvider();
+                int idpId = rs.getInt("ID");
+                federatedIdp.setIdentityProviderName(rs.getString("NAME"));
+                federatedIdp.setPrimary(IdPManagementConstants.IS_TRUE_VALUE.equals(rs.getString("IS_PRIMARY")));
+                federatedIdp.setHomeRealmId(rs.getString("HOME_REALM_ID"));
+                federatedIdp.setCertificate(getBlobValue(rs.getBinaryStream("CERTIFICATE")));
+                federatedIdp.setAlias(rs.getString("ALIAS"));
+
+                JustInTimeProvisioningConfig jitProConfig = new JustInTimeProvisioningConfig();
+                jitProConfig.setProvisioningEnabled(IdPManagementConstants.IS_TRUE_VALUE.equals(
+                        rs.getString("INBOUND_PROV_ENABLED")));
+                jitProConfig.setProvisioningUserStore(rs.getString("INBOUND_PROV_USER_STORE_ID"));
+                federatedIdp.setJustInTimeProvisioningConfig(jitProConfig);
+
+                ClaimConfig claimConfig = new ClaimConfig();
+                claimConfig.setLocalClaimDialect(IdPManagementConstants.IS_TRUE_VALUE.equals(
+                        rs.getString("IS_LOCAL_CLAIM_DIALECT")));
+                claimConfig.setUserClaimURI(rs.getString("USER_CLAIM_URI"));
+                claimConfig.setRoleClaimURI(rs.getString("ROLE_CLAIM_URI"));
+                federatedIdp.setClaimConfig(claimConfig);
+
+                defaultAuthenticatorNames.put(idpId, rs.getString("DEFAULT_AUTHENTICATOR_NAME"));
+                String defaultProvisioningConnectorConfigName = rs.getString("DEFAULT_PRO_CONNECTOR_NAME");
+                if (defaultProvisioningConnectorConfigName != null) {
+                    ProvisioningConnectorConfig defaultProConnector = new ProvisioningConnectorConfig();
+                    defaultProConnector.setName(defaultProvisioningConnectorConfigName);
+                    federatedIdp.setDefaultProvisioningConnectorConfig(defaultProConnector);
+                }
+
+                federatedIdp.setIdentityProviderDescription(rs.getString("DESCRIPTION"));
+                federatedIdp.setFederationHub(IdPManagementConstants.IS_TRUE_VALUE.equals(
+                        rs.getString("IS_FEDERATION_HUB")));
+                federatedIdp.setProvisioningRole(rs.getString("PROVISIONING_ROLE"));
+                federatedIdp.setEnable(IdPManagementConstants.IS_TRUE_VALUE.equals(rs.getString("IS_ENABLED")));
+                federatedIdp.setDisplayName(rs.getString("DISPLAY_NAME"));
+                identityProviders.put(idpId, federatedIdp);
+            }
+            IdentityDatabaseUtil.closeAllConnections(null, rs, prepStmt);
+
+            // federated authenticators
+            Map<Integer, FederatedAuthenticatorConfig> authenticators =
+                    new HashMap<Integer, FederatedAuthenticatorConfig>();
+            Map<Integer, Set<Property>> authenticatorProperties = new HashMap<Integer, Set<Property>>();
+            Map<Integer, List<Integer>> idpAuthenticators = new HashMap<Integer, List<Integer>>();
+            prepStmt = prepareTenantIdPsStatement(dbConnection,
+                    IdPManagementConstants.SQLQueries.GET_TENANT_IDP_AUTHS_SQL, tenantId, false);
+            rs = prepStmt.executeQuery();
+            while (rs.next()) {
+                FederatedAuthenticatorConfig authnConfig = new FederatedAuthenticatorConfig();
+                int authnId = rs.getInt("ID");
+                authnConfig.setName(rs.getString("NAME"));
+                authnConfig.setEnabled(IdPManagementConstants.IS_TRUE_VALUE.equals(rs.getString("IS_ENABLED")));
+                authnConfig.setDisplayName(rs.getString("DISPLAY_NAME"));
+                authenticators.put(authnId, authnConfig);
+                authenticatorProperties.put(authnId, new HashSet<Property>());
+                getIdPEntries(idpAuthenticators, rs.getInt("IDP_ID")).add(authnId);
+            }
+            IdentityDatabaseUtil.closeAllConnections(null, rs, prepStmt);
+
+            prepStmt = prepareTenantIdPsStatement(dbConnection,
+                    IdPManagementConstants.SQLQueries.GET_TENANT_IDP_AUTH_PROPS_SQL, tenantId, false);
+            rs = prepStmt.executeQuery();
+            while (rs.next()) {
+                Set<Property> properties = authenticatorProperties.get(rs.getInt("AUTHENTICATOR_ID"));
+                if (properties != null) {
+                    Property property = new Property();
+                    property.setName(rs.getString("PROPERTY_KEY"));
+                    property.setValue(rs.getString("PROPERTY_VALUE"));
+                    if ((IdPManagementConstants.IS_TRUE_VALUE).equals(rs.getString("IS_SECRET"))) {
+                        property.setConfidential(true);
+                    }
+                    properties.add(property);
+                }
+            }
+            IdentityDatabaseUtil.closeAllConnections(null, rs, prepStmt);
+
+            // claim configuration
+            Map<Integer, List<ClaimMapping>> localClaimValues = new HashMap<Integer, List<ClaimMapping>>();
+            prepStmt = prepareTenantIdPsStatement(dbConnection,
+                    IdPManagementConstants.SQLQueries.GET_TENANT_IDP_LOCAL_CLAIM_VALUES_SQL, tenantId, true);
+            rs = prepStmt.executeQuery();
+            while (rs.next()) {
+                ClaimMapping claimMapping = new ClaimMapping();
+                Claim localClaim = new Claim();
+                localClaim.setClaimUri(rs.getString("CLAIM_URI"));
+                claimMapping.setLocalClaim(localClaim);
+                claimMapping.setRemoteClaim(new Claim());
+                claimMapping.setDefaultValue(rs.getString("DEFAULT_VALUE"));
+                if ((IdPManagementConstants.IS_TRUE_VALUE).equals(rs.getString("IS_REQUESTED"))) {
+                    claimMapping.setRequested(true);
+                }
+                getIdPEntries(localClaimValues, rs.getInt("IDP_ID")).add(claimMapping);
+            }
+            IdentityDatabaseUtil.closeAllConnections(null, rs, prepStmt);
+
+            Map<Integer, List<Claim>> idpClaims = new HashMap<Integer, List<Claim>>();
+            prepStmt = prepareTenantIdPsStatement(dbConnection,
+                    IdPManagementConstants.SQLQueries.GET_TENANT_IDP_CLAIMS_SQL, tenantId, false);
+            rs = prepStmt.executeQuery();
+            while (rs.next()) {
+                Claim identityProviderClaim = new Claim();
+                identityProviderClaim.setClaimId(rs.getInt("ID"));
+                identityProviderClaim.setClaimUri(rs.getString("CLAIM"));
+                getIdPEntries(idpClaims, rs.getInt("IDP_ID")).add(identityProviderClaim);
+            }
+            IdentityDatabaseUtil.closeAllConnections(null, rs, prepStmt);
+
+            Map<Integer, List<ClaimMapping>> idpClaimMappings = new HashMap<Integer, List<ClaimMapping>>();
+            prepStmt = prepareTenantIdPsStatement(dbConnection,
+                    IdPManagementConstants.SQLQueries.GET_TENANT_IDP_CLAIM_MAPPINGS_SQL, tenantId, false);
+            rs = prepStmt.executeQuery();
+            while (rs.next()) {
+                ClaimMapping claimMapping = new ClaimMapping();
+                Claim idpClaim = new Claim();
+                idpClaim.setClaimUri(rs.getString("CLAIM"));
+                Claim localClaim = new Claim();
+                localClaim.setClaimUri(rs.getString("LOCAL_CLAIM"));
+                claimMapping.setLocalClaim(localClaim);
+                claimMapping.setRemoteClaim(idpClaim);
+                claimMapping.setDefaultValue(rs.getString("DEFAULT_VALUE"));
+                if ((IdPManagementConstants.IS_TRUE_VALUE).equals(rs.getString("IS_REQUESTED"))) {
+                    claimMapping.setRequested(true);
+                } else if ((IdPManagementConstants.IS_FALSE_VALUE).equals(rs.getString("IS_REQUESTED"))) {
+                    claimMapping.setRequested(false);
+                }
+                getIdPEntries(idpClaimMappings, rs.getInt("IDP_ID")).add(claimMapping);
+            }
+            IdentityDatabaseUtil.closeAllConnections(null, rs, prepStmt);
+
+            // provisioning connectors, only the first connector of a type is considered
+            Map<Integer, Map<String, ProvisioningConnectorConfig>> idpProvisioningConnectors =
+                    new HashMap<Integer, Map<String, ProvisioningConnectorConfig>>();
+            Map<Integer, ProvisioningConnectorConfig> provisioningConnectors =
+                    new HashMap<Integer, ProvisioningConnectorConfig>();
+            Map<Integer, List<Property>> provisioningProperties = new HashMap<Integer, List<Property>>();
+            prepStmt = prepareTenantIdPsStatement(dbConnection,
+                    IdPManagementConstants.SQLQueries.GET_TENANT_IDP_PROVISIONING_CONFIGS_SQL, tenantId, false);
+            rs = prepStmt.executeQuery();
+            while (rs.next()) {
+                int idpId = rs.getInt("IDP_ID");
+                Map<String, ProvisioningConnectorConfig> provisioningConnectorMap =
+                        idpProvisioningConnectors.get(idpId);
+                if (provisioningConnectorMap == null) {
+                    provisioningConnectorMap = new HashMap<String, ProvisioningConnectorConfig>();
+                    idpProvisioningConnectors.put(idpId, provisioningConnectorMap);
+                }
+                String type = rs.getString("PROVISIONING_CONNECTOR_TYPE");
+                if (!provisioningConnectorMap.containsKey(type)) {
+                    ProvisioningConnectorConfig provisioningConnector = new ProvisioningConnectorConfig();
+                    provisioningConnector.setName(type);
+                    provisioningConnector.setEnabled(IdPManagementConstants.IS_TRUE_VALUE.equals(
+                            rs.getString("IS_ENABLED")));
+                    provisioningConnector.setBlocking(IdPManagementConstants.IS_TRUE_VALUE.equals(
+                            rs.getString("IS_BLOCKING")));
+                    provisioningConnectors.put(rs.getInt("ID"), provisioningConnector);
+                    provisioningProperties.put(rs.getInt("ID"), new ArrayList<Property>());
+                    provisioningConnectorMap.put(type, provisioningConnector);
+                }
+            }
+            IdentityDatabaseUtil.closeAllConnections(null, rs, prepStmt);
+
+            prepStmt = prepareTenantIdPsStatement(dbConnection,
+                    IdPManagementConstants.SQLQueries.GET_TENANT_IDP_PROVISIONING_PROPERTIES_SQL, tenantId, true);
+            rs = prepStmt.executeQuery();
+            while (rs.next()) {
+                List<Property> properties = provisioningProperties.get(rs.getInt("PROVISIONING_CONFIG_ID"));
+                if (properties == null) {
+                    continue;
+                }
+                Property property = new Property();
+                String blobValue = getBlobValue(rs.getBinaryStream("PROPERTY_BLOB_VALUE"));
+                String propertyType = rs.getString("PROPERTY_TYPE");
+                property.setName(rs.getString("PROPERTY_KEY"));
+                if (propertyType != null && IdentityApplicationConstants.ConfigElements.
+                        PROPERTY_TYPE_BLOB.equals(propertyType.trim())) {
+                    property.setValue(blobValue);
+                } else {
+                    property.setValue(rs.getString("PROPERTY_VALUE"));
+                }
+                property.setType(propertyType);
+                property.setConfidential(IdPManagementConstants.IS_TRUE_VALUE.equals(rs.getString("IS_SECRET")));
+                properties.add(property);
+            }
+            IdentityDatabaseUtil.closeAllConnections(null, rs, prepStmt);
+
+            // permission and role configuration
+            Map<Integer, List<String>> idpRoles = new HashMap<Integer, List<String>>();
+            prepStmt = prepareTenantIdPsStatement(dbConnection,
+                    IdPManagementConstants.SQLQueries.GET_TENANT_IDP_ROLES_SQL, tenantId, false);
+            rs = prepStmt.executeQuery();
+            while (rs.next()) {
+                getIdPEntries(idpRoles, rs.getInt("IDP_ID")).add(rs.getString("ROLE"));
+            }
+            IdentityDatabaseUtil.closeAllConnections(null, rs, prepStmt);
+
+            Map<Integer, List<RoleMapping>> idpRoleMappings = new HashMap<Integer, List<RoleMapping>>();
+            prepStmt = prepareTenantIdPsStatement(dbConnection,
+                    IdPManagementConstants.SQLQueries.GET_TENANT_IDP_ROLE_MAPPINGS_SQL, tenantId, false);
+            rs = prepStmt.executeQuery();
+            while (rs.next()) {
+                LocalRole localRole = new LocalRole(rs.getString("USER_STORE_ID"), rs.getString("LOCAL_ROLE"));
+                getIdPEntries(idpRoleMappings, rs.getInt("IDP_ID")).add(new RoleMapping(localRole,
+                        rs.getString("ROLE")));
+            }
+            IdentityDatabaseUtil.closeAllConnections(null, rs, prepStmt);
+
+            // identity provider properties
+            Map<Integer, List<IdentityProviderProperty>> idpProperties =
+                    new HashMap<Integer, List<IdentityProviderProperty>>();
+            prepStmt = prepareTenantIdPsStatement(dbConnection,
+                    IdPManagementConstants.SQLQueries.GET_TENANT_IDP_METADATA_SQL, tenantId, false);
+            rs = prepStmt.executeQuery();
+            while (rs.next()) {
+                IdentityProviderProperty property = new IdentityProviderProperty();
+                property.setName(rs.getString("NAME"));
+                property.setValue(rs.getString("VALUE"));
+                property.setDisplayName(rs.getString("DISPLAY_NAME"));
+                getIdPEntries(idpProperties, rs.getInt("IDP_ID")).add(property);
+            }
+            dbConnection.commit();
+
+            for (Map.Entry<Integer, ProvisioningConnectorConfig> entry : provisioningConnectors.entrySet()) {
+                List<Property> properties = provisioningProperties.get(entry.getKey());
+                entry.getValue().setProvisioningProperties(properties.toArray(new Property[properties.size()]));
+            }
+
+            for (Map.Entry<Integer, IdentityProvider> entry : identityProviders.entrySet()) {
+                int idpId = entry.getKey();
+                IdentityProvider federatedIdp = entry.getValue();
+
+                List<FederatedAuthenticatorConfig> authnConfigs = new ArrayList<FederatedAuthenticatorConfig>();
+                for (int authnId : getIdPEntries(idpAuthenticators, idpId)) {
+                    FederatedAuthenticatorConfig authnConfig = authenticators.get(authnId);
+                    Set<Property> properties = authenticatorProperties.get(authnId);
+                    authnConfig.setProperties(properties.toArray(new Property[properties.size()]));
+                    authnConfigs.add(authnConfig);
+                }
+                federatedIdp.setFederatedAuthenticatorConfigs(authnConfigs.toArray(
+                        new FederatedAuthenticatorConfig[authnConfigs.size()]));
+                String defaultAuthenticatorName = defaultAuthenticatorNames.get(idpId);
+                if (defaultAuthenticatorName != null) {
+                    federatedIdp.setDefaultAuthenticatorConfig(IdentityApplicationManagementUtil
+                            .getFederatedAuthenticator(federatedIdp.getFederatedAuthenticatorConfigs(),
+                                    defaultAuthenticatorName));
+                }
+
+                ClaimConfig claimConfig = federatedIdp.getClaimConfig();
+                if (claimConfig.isLocalClaimDialect()) {
+                    List<ClaimMapping> claimMappings = getIdPEntries(localClaimValues, idpId);
+                    claimConfig.setClaimMappings(claimMappings.toArray(new ClaimMapping[claimMappings.size()]));
+                } else {
+                    List<Claim> claims = getIdPEntries(idpClaims, idpId);
+                    claimConfig.setIdpClaims(claims.toArray(new Claim[claims.size()]));
+                    List<ClaimMapping> claimMappings = getIdPEntries(idpClaimMappings, idpId);
+                    claimConfig.setClaimMappings(claimMappings.toArray(new ClaimMapping[claimMappings.size()]));
+                }
+
+                Map<String, ProvisioningConnectorConfig> provisioningConnectorMap =
+                        idpProvisioningConnectors.get(idpId);
+                if (provisioningConnectorMap == null) {
+                    provisioningConnectorMap = Collections.emptyMap();
+                }
+                federatedIdp.setProvisioningConnectorConfigs(provisioningConnectorMap.values().toArray(
+                        new ProvisioningConnectorConfig[provisioningConnectorMap.size()]));
+
+                PermissionsAndRoleConfig permissionRoleConfiguration = new PermissionsAndRoleConfig();
+                List<String> roles = getIdPEntries(idpRoles, idpId);
+                permissionRoleConfiguration.setIdpRoles(roles.toArray(new String[roles.size()]));
+                List<RoleMapping> roleMappings = getIdPEntries(idpRoleMappings, idpId);
+                permissionRoleConfiguration.setRoleMappings(roleMappings.toArray(
+                        new RoleMapping[roleMappings.size()]));
+                federatedIdp.setPermissionAndRoleConfig(permissionRoleConfiguration);
+
+                List<IdentityProviderProperty> propertyList = getIdPEntries(idpProperties, idpId);
+                federatedIdp.setIdpProperties(propertyList.toArray(new IdentityProviderProperty[propertyList.size()]));
+            }
+
+            return new ArrayList<IdentityProvider>(identityProviders.values());
+        } catch (SQLException e) {
+            IdentityApplicationManagementUtil.rollBack(dbConnection);
+            throw new IdentityProviderManagementException("Error occurred while retrieving Identity Providers " +
+                    "for tenant : " + tenantDomain, e);
+        } finally {
+            if (dbConnectionInitialized) {
+                IdentityDatabaseUtil.closeAllConnections(dbConnection, rs, prepStmt);
+            } else {
+                IdentityDatabaseUtil.closeAllConnections(null, rs, prepStmt);
+            }
+        }
+    }
+
+    private PreparedStatement prepareTenantIdPsStatement(Connection dbConnection, String sqlStmt, int tenantId,
+                                                         boolean filterByTenantId) throws SQLException {
+
+        PreparedStatement prepStmt = dbConnection.prepareStatement(sqlStmt);
+        int index = 1;
+        if (filterByTenantId) {
+            prepStmt.setInt(index++, tenantId);
+        }
+        prepStmt.setInt(index++, tenantId);
+        prepStmt.setInt(index, MultitenantConstants.SUPER_TENANT_ID);
+        return prepStmt;
+    }
+
+    private <T> List<T> getIdPEntries(Map<Integer, List<T>> entries, int idpId) {
+
+        List<T> idpEntries = entries.get(idpId);
+        if (idpEntries == null) {
+            idpEntries = new ArrayList<T>();
+            entries.put(idpId, idpEntries);
+        }
+        return idpEntries;
+    }
+
     /**
      * @param identityProvider
      * @param tenantId
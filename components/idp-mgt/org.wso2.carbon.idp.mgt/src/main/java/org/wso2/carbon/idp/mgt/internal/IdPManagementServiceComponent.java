@@ -42,6 +42,7 @@ import org.wso2.carbon.idp.mgt.util.IdPManagementConstants;
 import org.wso2.carbon.stratos.common.listeners.TenantMgtListener;
 import org.wso2.carbon.user.core.listener.UserOperationEventListener;
 import org.wso2.carbon.user.core.service.RealmService;
+import org.wso2.carbon.utils.Axis2ConfigurationContextObserver;
 import org.wso2.carbon.utils.CarbonUtils;
 import org.wso2.carbon.utils.ConfigurationContextService;
 
@@ -167,6 +168,15 @@ public class IdPManagementServiceComponent {
             buildFileBasedIdPList();
             cleanUpRemovedIdps();
 
+            // Identity Providers of tenants are loaded to the caches when the tenants are loaded
+            bundleCtx.registerService(Axis2ConfigurationContextObserver.class.getName(),
+                    new IdPMgtConfigurationContextObserver(), null);
+            try {
+                IdentityProviderManager.getInstance().loadIdPsToCache(MultitenantConstants.SUPER_TENANT_DOMAIN_NAME);
+            } catch (IdentityProviderManagementException e) {
+                log.error("Error while loading Identity Providers of the super tenant to cache", e);
+            }
+
             log.debug("Identity Provider Management bundle is activated");
 
         } catch (Throwable e) {
@@ -0,0 +1,49 @@
+/*
+ * Copyright (c) 2015 WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.idp.mgt.internal;
+
+import org.apache.axis2.context.ConfigurationContext;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.carbon.context.PrivilegedCarbonContext;
+import org.wso2.carbon.idp.mgt.IdentityProviderManagementException;
+import org.wso2.carbon.idp.mgt.IdentityProviderManager;
+import org.wso2.carbon.utils.AbstractAxis2ConfigurationContextObserver;
+
+/**
+ * Observer for tenant ConfigurationContext creations. Loads the Identity Providers of each tenant to the caches
+ * when the tenant is loaded.
+ */
+public class IdPMgtConfigurationContextObserver extends AbstractAxis2ConfigurationContextObserver {
+
+    private static final Log log = LogFactory.getLog(IdPMgtConfigurationContextObserver.class);
+
+    @Override
+    public void createdConfigurationContext(ConfigurationContext configurationContext) {
+        String tenantDomain = PrivilegedCarbonContext.getThreadLocalCarbonContext().getTenantDomain();
+        try {
+            if (log.isDebugEnabled()) {
+                log.debug("Loading Identity Providers of tenant: " + tenantDomain + " to cache");
+            }
+            IdentityProviderManager.getInstance().loadIdPsToCache(tenantDomain);
+        } catch (IdentityProviderManagementException e) {
+            log.error("Error while loading Identity Providers of tenant: " + tenantDomain + " to cache", e);
+        }
+    }
+}
@@ -219,5 +219,59 @@ public class IdPManagementConstants {
         public static final String ADD_IDP_METADATA = "INSERT INTO IDP_METADATA (IDP_ID, NAME, VALUE, DISPLAY_NAME, " +
                 "TENANT_ID) VALUES (?, ?, ?, ?, ?)";
         public static final String DELETE_IDP_METADATA = "DELETE FROM IDP_METADATA WHERE IDP_ID = ?";
+
+        // Queries loading the configuration of all the identity providers of a tenant at once
+        public static final String GET_TENANT_IDPS_SQL = "SELECT ID, NAME, IS_PRIMARY, HOME_REALM_ID, CERTIFICATE, " +
+                "ALIAS, INBOUND_PROV_ENABLED, INBOUND_PROV_USER_STORE_ID, USER_CLAIM_URI, ROLE_CLAIM_URI, " +
+                "DEFAULT_AUTHENTICATOR_NAME, DEFAULT_PRO_CONNECTOR_NAME, DESCRIPTION, IS_FEDERATION_HUB, " +
+                "IS_LOCAL_CLAIM_DIALECT, PROVISIONING_ROLE, IS_ENABLED, DISPLAY_NAME FROM IDP WHERE (TENANT_ID = ? OR" +
+                " (TENANT_ID = ? AND NAME LIKE '" + SHARED_IDP_PREFIX + "%'))";
+
+        public static final String GET_TENANT_IDP_AUTHS_SQL = "SELECT A.ID, A.IDP_ID, A.NAME, A.IS_ENABLED, " +
+                "A.DISPLAY_NAME FROM IDP_AUTHENTICATOR A INNER JOIN IDP I ON A.IDP_ID = I.ID WHERE (I.TENANT_ID = ? " +
+                "OR (I.TENANT_ID = ? AND I.NAME LIKE '" + SHARED_IDP_PREFIX + "%'))";
+
+        public static final String GET_TENANT_IDP_AUTH_PROPS_SQL = "SELECT P.AUTHENTICATOR_ID, P.PROPERTY_KEY, " +
+                "P.PROPERTY_VALUE, P.IS_SECRET FROM IDP_AUTHENTICATOR_PROPERTY P INNER JOIN IDP_AUTHENTICATOR A ON " +
+                "P.AUTHENTICATOR_ID = A.ID INNER JOIN IDP I ON A.IDP_ID = I.ID WHERE (I.TENANT_ID = ? OR " +
+                "(I.TENANT_ID = ? AND I.NAME LIKE '" + SHARED_IDP_PREFIX + "%'))";
+
+        public static final String GET_TENANT_IDP_LOCAL_CLAIM_VALUES_SQL = "SELECT L.IDP_ID, L.CLAIM_URI, " +
+                "L.DEFAULT_VALUE, L.IS_REQUESTED FROM IDP_LOCAL_CLAIM L INNER JOIN IDP I ON L.IDP_ID = I.ID WHERE " +
+                "L.TENANT_ID = ? AND (I.TENANT_ID = ? OR (I.TENANT_ID = ? AND I.NAME LIKE '" + SHARED_IDP_PREFIX +
+                "%'))";
+
+        public static final String GET_TENANT_IDP_CLAIMS_SQL = "SELECT C.ID, C.IDP_ID, C.CLAIM FROM IDP_CLAIM C " +
+                "INNER JOIN IDP I ON C.IDP_ID = I.ID WHERE (I.TENANT_ID = ? OR (I.TENANT_ID = ? AND I.NAME LIKE '" +
+                SHARED_IDP_PREFIX + "%'))";
+
+        public static final String GET_TENANT_IDP_CLAIM_MAPPINGS_SQL = "SELECT C.IDP_ID, C.CLAIM, M.LOCAL_CLAIM, " +
+                "M.DEFAULT_VALUE, M.IS_REQUESTED FROM IDP_CLAIM_MAPPING M INNER JOIN IDP_CLAIM C ON " +
+                "M.IDP_CLAIM_ID = C.ID INNER JOIN IDP I ON C.IDP_ID = I.ID WHERE (I.TENANT_ID = ? OR " +
+                "(I.TENANT_ID = ? AND I.NAME LIKE '" + SHARED_IDP_PREFIX + "%'))";
+
+        public static final String GET_TENANT_IDP_ROLES_SQL = "SELECT R.IDP_ID, R.ROLE FROM IDP_ROLE R INNER JOIN " +
+                "IDP I ON R.IDP_ID = I.ID WHERE (I.TENANT_ID = ? OR (I.TENANT_ID = ? AND I.NAME LIKE '" +
+                SHARED_IDP_PREFIX + "%'))";
+
+        public static final String GET_TENANT_IDP_ROLE_MAPPINGS_SQL = "SELECT R.IDP_ID, M.USER_STORE_ID, " +
+                "M.LOCAL_ROLE, R.ROLE FROM IDP_ROLE_MAPPING M INNER JOIN IDP_ROLE R ON M.IDP_ROLE_ID = R.ID " +
+                "INNER JOIN IDP I ON R.IDP_ID = I.ID WHERE (I.TENANT_ID = ? OR (I.TENANT_ID = ? AND I.NAME LIKE '" +
+                SHARED_IDP_PREFIX + "%'))";
+
+        public static final String GET_TENANT_IDP_PROVISIONING_CONFIGS_SQL = "SELECT P.ID, P.IDP_ID, " +
+                "P.PROVISIONING_CONNECTOR_TYPE, P.IS_ENABLED, P.IS_BLOCKING FROM IDP_PROVISIONING_CONFIG P " +
+                "INNER JOIN IDP I ON P.IDP_ID = I.ID WHERE (I.TENANT_ID = ? OR (I.TENANT_ID = ? AND I.NAME LIKE '" +
+                SHARED_IDP_PREFIX + "%'))";
+
+        public static final String GET_TENANT_IDP_PROVISIONING_PROPERTIES_SQL = "SELECT PP.PROVISIONING_CONFIG_ID, " +
+                "PP.PROPERTY_KEY, PP.PROPERTY_VALUE, PP.PROPERTY_BLOB_VALUE, PP.PROPERTY_TYPE, PP.IS_SECRET FROM " +
+                "IDP_PROV_CONFIG_PROPERTY PP INNER JOIN IDP_PROVISIONING_CONFIG P ON PP.PROVISIONING_CONFIG_ID = " +
+                "P.ID INNER JOIN IDP I ON P.IDP_ID = I.ID WHERE PP.TENANT_ID = ? AND (I.TENANT_ID = ? OR " +
+                "(I.TENANT_ID = ? AND I.NAME LIKE '" + SHARED_IDP_PREFIX + "%'))";
+
+        public static final String GET_TENANT_IDP_METADATA_SQL = "SELECT M.IDP_ID, M.NAME, M.VALUE, M.DISPLAY_NAME " +
+                "FROM IDP_METADATA M INNER JOIN IDP I ON M.IDP_ID = I.ID WHERE (I.TENANT_ID = ? OR " +
+                "(I.TENANT_ID = ? AND I.NAME LIKE '" + SHARED_IDP_PREFIX + "%'))";
     }
 }
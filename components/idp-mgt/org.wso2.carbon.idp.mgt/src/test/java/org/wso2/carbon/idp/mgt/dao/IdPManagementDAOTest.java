@@ -0,0 +1,317 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.idp.mgt.dao;
+
+import junit.framework.TestCase;
+import org.wso2.carbon.identity.application.common.model.IdentityProvider;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Compares the Identity Providers loaded at once by {@link IdPManagementDAO#getIdPsWithConfigs} with the ones
+ * loaded one at a time by {@link IdPManagementDAO#getIdPByName}, on an in-memory H2 database created with the IdP
+ * tables of the shipped H2 script.
+ */
+public class IdPManagementDAOTest extends TestCase {
+
+    private static final int SUPER_TENANT_ID = -1234;
+    private static final String SUPER_TENANT_DOMAIN = "carbon.super";
+    private static final int TENANT_ID = 1;
+    private static final String TENANT_DOMAIN = "wso2.com";
+    private static final String MODEL_PACKAGE = "org.wso2.carbon.identity.application.common.model";
+
+    private IdPManagementDAO idPMgtDAO = new IdPManagementDAO();
+    private Connection connection;
+    private Statement statement;
+    private int statementCount;
+
+    @Override
+    protected void setUp() throws Exception {
+
+        Class.forName("org.h2.Driver");
+        connection = DriverManager.getConnection("jdbc:h2:mem:" + getName() + ";DB_CLOSE_DELAY=-1");
+        connection.setAutoCommit(false);
+        statement = connection.createStatement();
+        statement.execute("RUNSCRIPT FROM 'classpath:dbscripts/idp.sql'");
+
+        // federated IdP of the tenant with every part of the configuration
+        addIdP(1, TENANT_ID, "idp1", false, "'1', 'realm1', 'idp1.example.com', '1', 'PRIMARY', " +
+                "'http://wso2.org/claims/username', 'http://wso2.org/claims/role', 'IdP 1', " +
+                "'SAMLSSOAuthenticator', 'scim', 'provisioner', '1', 'IdP one'");
+        execute("UPDATE IDP SET CERTIFICATE = X'2d2d2d6365727469666963617465' WHERE ID = 1");
+        addAuthenticator(1, TENANT_ID, 1, "SAMLSSOAuthenticator", "1");
+        addAuthenticatorProperty(TENANT_ID, 1, "IdPEntityId", "https://idp1.example.com", "0");
+        addAuthenticatorProperty(TENANT_ID, 1, "SPEntityId", "wso2.com", "0");
+        addAuthenticatorProperty(TENANT_ID, 1, "PrivateKey", "secret", "1");
+        addAuthenticator(2, TENANT_ID, 1, "OpenIDConnectAuthenticator", "0");
+        addClaim(1, TENANT_ID, 1, "mail");
+        addClaim(2, TENANT_ID, 1, "groups");
+        addClaimMapping(TENANT_ID, 1, "http://wso2.org/claims/emailaddress", "user@example.com", "1");
+        addClaimMapping(TENANT_ID, 2, "http://wso2.org/claims/role", null, "0");
+        addRole(1, TENANT_ID, 1, "admins");
+        addRole(2, TENANT_ID, 1, "users");
+        addRoleMapping(TENANT_ID, 1, "PRIMARY", "admin");
+        addRoleMapping(TENANT_ID, 2, "SECONDARY", "everyone");
+        addProvisioningConfig(1, TENANT_ID, 1, "scim", "1", "1");
+        addProvisioningProperty(TENANT_ID, 1, "scim-user-ep", "https://scim.example.com/Users", "STRING", "0");
+        addProvisioningProperty(TENANT_ID, 1, "scim-password", "secret", "STRING", "1");
+        execute("INSERT INTO IDP_PROV_CONFIG_PROPERTY (TENANT_ID, PROVISIONING_CONFIG_ID, PROPERTY_KEY, " +
+                "PROPERTY_BLOB_VALUE, PROPERTY_TYPE, IS_SECRET) VALUES (" + TENANT_ID + ", 1, 'scim-schema', " +
+                "X'7363686d61', 'BLOB', '0')");
+        addProvisioningConfig(2, TENANT_ID, 1, "salesforce", "0", "0");
+        addMetadata(TENANT_ID, 1, "SessionIdleTimeout", "15", "Idle Session Timeout");
+        addMetadata(TENANT_ID, 1, "RememberMeTimeout", "20160", null);
+
+        // IdP of the tenant using the local claim dialect, its IdP claims are not part of the configuration
+        addIdP(2, TENANT_ID, "idp2", true, null);
+        addClaim(3, TENANT_ID, 2, "ignored");
+        addLocalClaim(TENANT_ID, 2, "http://wso2.org/claims/emailaddress", "user@example.com", "1");
+        addLocalClaim(TENANT_ID, 2, "http://wso2.org/claims/country", null, "0");
+        addAuthenticator(3, TENANT_ID, 2, "OpenIDConnectAuthenticator", "1");
+
+        // IdP of the tenant without any configuration
+        addIdP(3, TENANT_ID, "idp3", false, null);
+
+        // shared IdPs of the super tenant, which are visible to every tenant
+        addIdP(4, SUPER_TENANT_ID, "SHARED_idp", false, null);
+        addAuthenticator(4, SUPER_TENANT_ID, 4, "SAMLSSOAuthenticator", "1");
+        addAuthenticatorProperty(SUPER_TENANT_ID, 4, "IdPEntityId", "https://shared.example.com", "0");
+        addClaim(4, SUPER_TENANT_ID, 4, "mail");
+        addClaimMapping(SUPER_TENANT_ID, 4, "http://wso2.org/claims/emailaddress", null, "1");
+        addRole(3, SUPER_TENANT_ID, 4, "admins");
+        addRoleMapping(SUPER_TENANT_ID, 3, "PRIMARY", "admin");
+        addProvisioningConfig(3, SUPER_TENANT_ID, 4, "scim", "1", "0");
+        addProvisioningProperty(SUPER_TENANT_ID, 3, "scim-user-ep", "https://shared.example.com/Users",
+                "STRING", "0");
+        addMetadata(SUPER_TENANT_ID, 4, "SessionIdleTimeout", "30", null);
+
+        addIdP(5, SUPER_TENANT_ID, "SHARED_local", true, null);
+        addLocalClaim(SUPER_TENANT_ID, 5, "http://wso2.org/claims/emailaddress", null, "1");
+
+        // IdPs which are not visible to the tenant
+        addIdP(6, SUPER_TENANT_ID, "superIdp", false, null);
+        addAuthenticator(5, SUPER_TENANT_ID, 6, "SAMLSSOAuthenticator", "1");
+        addIdP(7, 2, "otherIdp", false, null);
+        addAuthenticator(6, 2, 7, "SAMLSSOAuthenticator", "1");
+        connection.commit();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+
+        statement.execute("DROP ALL OBJECTS");
+        statement.close();
+        connection.close();
+    }
+
+    public void testIdPsWithConfigsOfTenant() throws Exception {
+
+        assertIdPsWithConfigs(TENANT_ID, TENANT_DOMAIN, "idp1", "idp2", "idp3", "SHARED_idp", "SHARED_local");
+    }
+
+    public void testIdPsWithConfigsOfSuperTenant() throws Exception {
+
+        assertIdPsWithConfigs(SUPER_TENANT_ID, SUPER_TENANT_DOMAIN, "SHARED_idp", "SHARED_local", "superIdp");
+    }
+
+    /**
+     * Loads the Identity Providers of the tenant at once and checks that each of them is configured as when loaded
+     * by name
+     */
+    private void assertIdPsWithConfigs(int tenantId, String tenantDomain, String... idPNames) throws Exception {
+
+        statementCount = 0;
+        List<IdentityProvider> identityProviders = idPMgtDAO.getIdPsWithConfigs(countingConnection(), tenantId,
+                tenantDomain);
+        assertEquals("Identity Providers should be loaded with a fixed number of queries", 11, statementCount);
+
+        Set<String> loadedNames = new HashSet<String>();
+        for (IdentityProvider identityProvider : identityProviders) {
+            loadedNames.add(identityProvider.getIdentityProviderName());
+            IdentityProvider idPByName = idPMgtDAO.getIdPByName(connection,
+                    identityProvider.getIdentityProviderName(), tenantId, tenantDomain);
+            assertEquals(describe(idPByName), describe(identityProvider));
+        }
+        assertEquals(new HashSet<String>(Arrays.asList(idPNames)), loadedNames);
+    }
+
+    /**
+     * Describes a configuration object through its getters, so that objects of the model classes, which do not
+     * implement equals, can be compared. Arrays are compared regardless of the order of their elements.
+     */
+    private static String describe(Object value) throws Exception {
+
+        if (value == null) {
+            return "null";
+        }
+        if (value.getClass().isArray()) {
+            List<String> elements = new ArrayList<String>();
+            for (Object element : (Object[]) value) {
+                elements.add(describe(element));
+            }
+            Collections.sort(elements);
+            return elements.toString();
+        }
+        if (!value.getClass().getName().startsWith(MODEL_PACKAGE)) {
+            return value.toString();
+        }
+        Map<String, String> properties = new TreeMap<String, String>();
+        for (Method method : value.getClass().getMethods()) {
+            String name = method.getName();
+            if (method.getParameterTypes().length == 0 && !"getClass".equals(name) &&
+                    (name.startsWith("get") || name.startsWith("is"))) {
+                properties.put(name, describe(method.invoke(value)));
+            }
+        }
+        return value.getClass().getSimpleName() + properties;
+    }
+
+    private void addIdP(int id, int tenantId, String name, boolean localClaimDialect, String configValues)
+            throws Exception {
+
+        String configColumns = configValues == null ? "" : ", IS_PRIMARY, HOME_REALM_ID, ALIAS, " +
+                "INBOUND_PROV_ENABLED, INBOUND_PROV_USER_STORE_ID, USER_CLAIM_URI, ROLE_CLAIM_URI, DESCRIPTION, " +
+                "DEFAULT_AUTHENTICATOR_NAME, DEFAULT_PRO_CONNECTOR_NAME, PROVISIONING_ROLE, IS_FEDERATION_HUB, " +
+                "DISPLAY_NAME";
+        execute("INSERT INTO IDP (ID, TENANT_ID, NAME, IS_LOCAL_CLAIM_DIALECT" + configColumns + ") VALUES (" + id +
+                ", " + tenantId + ", '" + name + "', '" + (localClaimDialect ? "1" : "0") + "'" +
+                (configValues == null ? "" : ", " + configValues) + ")");
+    }
+
+    private void addAuthenticator(int id, int tenantId, int idpId, String name, String enabled) throws Exception {
+        execute("INSERT INTO IDP_AUTHENTICATOR (ID, TENANT_ID, IDP_ID, NAME, IS_ENABLED, DISPLAY_NAME) VALUES (" +
+                id + ", " + tenantId + ", " + idpId + ", '" + name + "', '" + enabled + "', '" + name + "')");
+    }
+
+    private void addAuthenticatorProperty(int tenantId, int authenticatorId, String key, String value,
+                                          String secret) throws Exception {
+        execute("INSERT INTO IDP_AUTHENTICATOR_PROPERTY (TENANT_ID, AUTHENTICATOR_ID, PROPERTY_KEY, PROPERTY_VALUE, " +
+                "IS_SECRET) VALUES (" + tenantId + ", " + authenticatorId + ", '" + key + "', '" + value + "', '" +
+                secret + "')");
+    }
+
+    private void addClaim(int id, int tenantId, int idpId, String claim) throws Exception {
+        execute("INSERT INTO IDP_CLAIM (ID, IDP_ID, TENANT_ID, CLAIM) VALUES (" + id + ", " + idpId + ", " +
+                tenantId + ", '" + claim + "')");
+    }
+
+    private void addClaimMapping(int tenantId, int idpClaimId, String localClaim, String defaultValue,
+                                 String requested) throws Exception {
+        execute("INSERT INTO IDP_CLAIM_MAPPING (IDP_CLAIM_ID, TENANT_ID, LOCAL_CLAIM, DEFAULT_VALUE, IS_REQUESTED) " +
+                "VALUES (" + idpClaimId + ", " + tenantId + ", '" + localClaim + "', " + quote(defaultValue) +
+                ", '" + requested + "')");
+    }
+
+    private void addLocalClaim(int tenantId, int idpId, String claimUri, String defaultValue, String requested)
+            throws Exception {
+        execute("INSERT INTO IDP_LOCAL_CLAIM (TENANT_ID, IDP_ID, CLAIM_URI, DEFAULT_VALUE, IS_REQUESTED) VALUES (" +
+                tenantId + ", " + idpId + ", '" + claimUri + "', " + quote(defaultValue) + ", '" + requested + "')");
+    }
+
+    private void addRole(int id, int tenantId, int idpId, String role) throws Exception {
+        execute("INSERT INTO IDP_ROLE (ID, IDP_ID, TENANT_ID, ROLE) VALUES (" + id + ", " + idpId + ", " + tenantId +
+                ", '" + role + "')");
+    }
+
+    private void addRoleMapping(int tenantId, int idpRoleId, String userStoreId, String localRole)
+            throws Exception {
+        execute("INSERT INTO IDP_ROLE_MAPPING (IDP_ROLE_ID, TENANT_ID, USER_STORE_ID, LOCAL_ROLE) VALUES (" +
+                idpRoleId + ", " + tenantId + ", '" + userStoreId + "', '" + localRole + "')");
+    }
+
+    private void addProvisioningConfig(int id, int tenantId, int idpId, String type, String enabled,
+                                       String blocking) throws Exception {
+        execute("INSERT INTO IDP_PROVISIONING_CONFIG (ID, TENANT_ID, IDP_ID, PROVISIONING_CONNECTOR_TYPE, " +
+                "IS_ENABLED, IS_BLOCKING) VALUES (" + id + ", " + tenantId + ", " + idpId + ", '" + type + "', '" +
+                enabled + "', '" + blocking + "')");
+    }
+
+    private void addProvisioningProperty(int tenantId, int provisioningConfigId, String key, String value,
+                                         String type, String secret) throws Exception {
+        execute("INSERT INTO IDP_PROV_CONFIG_PROPERTY (TENANT_ID, PROVISIONING_CONFIG_ID, PROPERTY_KEY, " +
+                "PROPERTY_VALUE, PROPERTY_TYPE, IS_SECRET) VALUES (" + tenantId + ", " + provisioningConfigId +
+                ", '" + key + "', '" + value + "', '" + type + "', '" + secret + "')");
+    }
+
+    private void addMetadata(int tenantId, int idpId, String name, String value, String displayName)
+            throws Exception {
+        execute("INSERT INTO IDP_METADATA (IDP_ID, NAME, VALUE, DISPLAY_NAME, TENANT_ID) VALUES (" + idpId + ", '" +
+                name + "', '" + value + "', " + quote(displayName) + ", " + tenantId + ")");
+    }
+
+    private void execute(String sql) throws Exception {
+        statement.execute(sql);
+    }
+
+    private static String quote(String value) {
+        return value == null ? "NULL" : "'" + value + "'";
+    }
+
+    /**
+     * Wraps the connection so that each statement execution sent to the database is counted
+     */
+    private Connection countingConnection() {
+
+        return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class[]{Connection.class},
+                new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                        Object result = delegate(connection, method, args);
+                        if ("prepareStatement".equals(method.getName())) {
+                            final PreparedStatement prepStmt = (PreparedStatement) result;
+                            return Proxy.newProxyInstance(getClass().getClassLoader(),
+                                    new Class[]{PreparedStatement.class}, new InvocationHandler() {
+                                        @Override
+                                        public Object invoke(Object proxy, Method method, Object[] args)
+                                                throws Throwable {
+                                            if (method.getName().startsWith("execute")) {
+                                                statementCount++;
+                                            }
+                                            return delegate(prepStmt, method, args);
+                                        }
+                                    });
+                        }
+                        return result;
+                    }
+                });
+    }
+
+    private static Object delegate(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+}
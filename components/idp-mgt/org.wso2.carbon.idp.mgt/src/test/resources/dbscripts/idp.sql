@@ -0,0 +1,144 @@
+CREATE TABLE IF NOT EXISTS IDP (
+			ID INTEGER AUTO_INCREMENT,
+			TENANT_ID INTEGER,
+			NAME VARCHAR(254) NOT NULL,
+			IS_ENABLED CHAR(1) NOT NULL DEFAULT '1',
+			IS_PRIMARY CHAR(1) NOT NULL DEFAULT '0',
+			HOME_REALM_ID VARCHAR(254),
+			IMAGE MEDIUMBLOB,
+			CERTIFICATE BLOB,
+			ALIAS VARCHAR(254),
+			INBOUND_PROV_ENABLED CHAR (1) NOT NULL DEFAULT '0',
+			INBOUND_PROV_USER_STORE_ID VARCHAR(254),
+ 			USER_CLAIM_URI VARCHAR(254),
+ 			ROLE_CLAIM_URI VARCHAR(254),
+ 			DESCRIPTION VARCHAR (1024),
+ 			DEFAULT_AUTHENTICATOR_NAME VARCHAR(254),
+ 			DEFAULT_PRO_CONNECTOR_NAME VARCHAR(254),
+ 			PROVISIONING_ROLE VARCHAR(128),
+ 			IS_FEDERATION_HUB CHAR(1) NOT NULL DEFAULT '0',
+ 			IS_LOCAL_CLAIM_DIALECT CHAR(1) NOT NULL DEFAULT '0',
+ 			DISPLAY_NAME VARCHAR(255),
+			PRIMARY KEY (ID),
+			UNIQUE (TENANT_ID, NAME));
+
+CREATE TABLE IF NOT EXISTS IDP_ROLE (
+			ID INTEGER AUTO_INCREMENT,
+			IDP_ID INTEGER,
+			TENANT_ID INTEGER,
+			ROLE VARCHAR(254),
+			PRIMARY KEY (ID),
+			UNIQUE (IDP_ID, ROLE),
+			FOREIGN KEY (IDP_ID) REFERENCES IDP(ID) ON DELETE CASCADE);
+
+CREATE TABLE IF NOT EXISTS IDP_ROLE_MAPPING (
+			ID INTEGER AUTO_INCREMENT,
+			IDP_ROLE_ID INTEGER,
+			TENANT_ID INTEGER,
+			USER_STORE_ID VARCHAR (253),
+			LOCAL_ROLE VARCHAR(253),
+			PRIMARY KEY (ID),
+			UNIQUE (IDP_ROLE_ID, TENANT_ID, USER_STORE_ID, LOCAL_ROLE),
+			FOREIGN KEY (IDP_ROLE_ID) REFERENCES IDP_ROLE(ID) ON DELETE CASCADE);
+
+CREATE TABLE IF NOT EXISTS IDP_CLAIM (
+			ID INTEGER AUTO_INCREMENT,
+			IDP_ID INTEGER,
+			TENANT_ID INTEGER,
+			CLAIM VARCHAR(254),
+			PRIMARY KEY (ID),
+			UNIQUE (IDP_ID, CLAIM),
+			FOREIGN KEY (IDP_ID) REFERENCES IDP(ID) ON DELETE CASCADE);
+
+CREATE TABLE IF NOT EXISTS IDP_CLAIM_MAPPING (
+			ID INTEGER AUTO_INCREMENT,
+			IDP_CLAIM_ID INTEGER,
+			TENANT_ID INTEGER,
+			LOCAL_CLAIM VARCHAR(253),
+			DEFAULT_VALUE VARCHAR(255),
+			IS_REQUESTED VARCHAR(128) DEFAULT '0',
+			PRIMARY KEY (ID),
+			UNIQUE (IDP_CLAIM_ID, TENANT_ID, LOCAL_CLAIM),
+			FOREIGN KEY (IDP_CLAIM_ID) REFERENCES IDP_CLAIM(ID) ON DELETE CASCADE);
+
+CREATE TABLE IF NOT EXISTS IDP_AUTHENTICATOR (
+            ID INTEGER AUTO_INCREMENT,
+            TENANT_ID INTEGER,
+            IDP_ID INTEGER,
+            NAME VARCHAR(255) NOT NULL,
+            IS_ENABLED CHAR (1) DEFAULT '1',
+            DISPLAY_NAME VARCHAR(255),
+            PRIMARY KEY (ID),
+            UNIQUE (TENANT_ID, IDP_ID, NAME),
+            FOREIGN KEY (IDP_ID) REFERENCES IDP(ID) ON DELETE CASCADE);
+
+CREATE TABLE IF NOT EXISTS IDP_METADATA (
+            ID INTEGER AUTO_INCREMENT,
+            IDP_ID INTEGER,
+            NAME VARCHAR(255) NOT NULL,
+            VALUE VARCHAR(255) NOT NULL,
+            DISPLAY_NAME VARCHAR(255),
+            TENANT_ID INTEGER DEFAULT -1,
+            PRIMARY KEY (ID),
+            CONSTRAINT IDP_METADATA_CONSTRAINT UNIQUE (IDP_ID, NAME),
+            FOREIGN KEY (IDP_ID) REFERENCES IDP(ID) ON DELETE CASCADE);
+
+CREATE TABLE IF NOT EXISTS IDP_AUTHENTICATOR_PROPERTY (
+            ID INTEGER AUTO_INCREMENT,
+            TENANT_ID INTEGER,
+            AUTHENTICATOR_ID INTEGER,
+            PROPERTY_KEY VARCHAR(255) NOT NULL,
+            PROPERTY_VALUE VARCHAR(2047),
+            IS_SECRET CHAR (1) DEFAULT '0',
+            PRIMARY KEY (ID),
+            UNIQUE (TENANT_ID, AUTHENTICATOR_ID, PROPERTY_KEY),
+            FOREIGN KEY (AUTHENTICATOR_ID) REFERENCES IDP_AUTHENTICATOR(ID) ON DELETE CASCADE);
+
+CREATE TABLE IF NOT EXISTS IDP_PROVISIONING_CONFIG (
+            ID INTEGER AUTO_INCREMENT,
+            TENANT_ID INTEGER,
+            IDP_ID INTEGER,
+            PROVISIONING_CONNECTOR_TYPE VARCHAR(255) NOT NULL,
+            IS_ENABLED CHAR (1) DEFAULT '0',
+            IS_BLOCKING CHAR (1) DEFAULT '0',
+            PRIMARY KEY (ID),
+            UNIQUE (TENANT_ID, IDP_ID, PROVISIONING_CONNECTOR_TYPE),
+            FOREIGN KEY (IDP_ID) REFERENCES IDP(ID) ON DELETE CASCADE);
+
+CREATE TABLE IF NOT EXISTS IDP_PROV_CONFIG_PROPERTY (
+            ID INTEGER AUTO_INCREMENT,
+            TENANT_ID INTEGER,
+            PROVISIONING_CONFIG_ID INTEGER,
+            PROPERTY_KEY VARCHAR(255) NOT NULL,
+            PROPERTY_VALUE VARCHAR(2048),
+            PROPERTY_BLOB_VALUE BLOB,
+            PROPERTY_TYPE CHAR(32) NOT NULL,
+            IS_SECRET CHAR (1) DEFAULT '0',
+            PRIMARY KEY (ID),
+            UNIQUE (TENANT_ID, PROVISIONING_CONFIG_ID, PROPERTY_KEY),
+            FOREIGN KEY (PROVISIONING_CONFIG_ID) REFERENCES IDP_PROVISIONING_CONFIG(ID) ON DELETE CASCADE);
+
+CREATE TABLE IF NOT EXISTS IDP_PROVISIONING_ENTITY (
+            ID INTEGER AUTO_INCREMENT,
+            PROVISIONING_CONFIG_ID INTEGER,
+            ENTITY_TYPE VARCHAR(255) NOT NULL,
+            ENTITY_LOCAL_USERSTORE VARCHAR(255) NOT NULL,
+            ENTITY_NAME VARCHAR(255) NOT NULL,
+            ENTITY_VALUE VARCHAR(255),
+            TENANT_ID INTEGER,
+            ENTITY_LOCAL_ID VARCHAR(255),
+            PRIMARY KEY (ID),
+            UNIQUE (ENTITY_TYPE, TENANT_ID, ENTITY_LOCAL_USERSTORE, ENTITY_NAME, PROVISIONING_CONFIG_ID),
+            UNIQUE (PROVISIONING_CONFIG_ID, ENTITY_TYPE, ENTITY_VALUE),
+            FOREIGN KEY (PROVISIONING_CONFIG_ID) REFERENCES IDP_PROVISIONING_CONFIG(ID) ON DELETE CASCADE);
+
+CREATE TABLE IF NOT EXISTS IDP_LOCAL_CLAIM (
+            ID INTEGER AUTO_INCREMENT,
+            TENANT_ID INTEGER,
+            IDP_ID INTEGER,
+            CLAIM_URI VARCHAR(255) NOT NULL,
+            DEFAULT_VALUE VARCHAR(255),
+            IS_REQUESTED VARCHAR(128) DEFAULT '0',
+            PRIMARY KEY (ID),
+            UNIQUE (TENANT_ID, IDP_ID, CLAIM_URI),
+            FOREIGN KEY (IDP_ID) REFERENCES IDP(ID) ON DELETE CASCADE);
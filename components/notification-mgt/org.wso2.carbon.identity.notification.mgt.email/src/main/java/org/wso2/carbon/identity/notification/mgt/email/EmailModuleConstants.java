@@ -29,6 +29,8 @@ public class EmailModuleConstants {
     public static final String MODULE_NAME = "email";
     public static final String SUBJECT_PROPERTY_LABEL = "subject";
     public static final String MAILTO_LABEL = "mailto:";
+    public static final String PLACE_HOLDER_START = "{";
+    public static final String PLACE_HOLDER_END = "}";
 
 
     private EmailModuleConstants() {
@@ -35,13 +35,15 @@ import org.apache.commons.logging.LogFactory;
 import org.wso2.carbon.context.PrivilegedCarbonContext;
 import org.wso2.carbon.core.CarbonConfigurationContextFactory;
 import org.wso2.carbon.identity.notification.mgt.AbstractNotificationSendingModule;
+import org.wso2.carbon.identity.notification.mgt.MessageTemplate;
 import org.wso2.carbon.identity.notification.mgt.NotificationManagementException;
-import org.wso2.carbon.identity.notification.mgt.NotificationManagementUtils;
 import org.wso2.carbon.identity.notification.mgt.bean.ModuleConfiguration;
 import org.wso2.carbon.identity.notification.mgt.bean.PublisherEvent;
 import org.wso2.carbon.identity.notification.mgt.bean.Subscription;
 import org.wso2.carbon.identity.notification.mgt.email.bean.EmailEndpointInfo;
 import org.wso2.carbon.identity.notification.mgt.email.bean.EmailSubscription;
+import org.wso2.carbon.identity.notification.mgt.smtp.MailMessage;
+import org.wso2.carbon.identity.notification.mgt.smtp.SMTPDispatcher;
 
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -81,18 +83,14 @@ public class EmailSendingModule extends AbstractNotificationSendingModule {
             PrivilegedCarbonContext.startTenantFlow();
             // Send mails for each and every subscribed endpoint of the subscription
             for (EmailEndpointInfo endpointInfo : endpointInfoList) {
-                Map<String, String> headerMap = new HashMap<String, String>();
-
-                headerMap.put(MailConstants.MAIL_HEADER_SUBJECT,
-                        getSubject(subscription.getSubscriptionProperties(),
-                                endpointInfo.getProperties(),
-                                publisherEvent.getEventProperties()));
+                String subject = getSubject(subscription.getSubscriptionProperties(), endpointInfo.getProperties(),
+                        publisherEvent.getEventProperties());
                 // Read the template configured in endpoint information.
-                String template = endpointInfo.getTemplate();
+                MessageTemplate template = endpointInfo.getMessageTemplate();
                 // If there is no template defined in the endpoint. use default template for which is configured for
                 // subscription.
-                if (StringUtils.isEmpty(template)) {
-                    template = subscription.getMailTemplate();
+                if (template == null) {
+                    template = subscription.getMessageTemplate();
                 }
                 // If still no template found. The message sending will be aborted to that
                 // particular endpoint.
@@ -106,34 +104,18 @@ public class EmailSendingModule extends AbstractNotificationSendingModule {
                 String message = getMessage(template,
                         subscription.getSubscriptionProperties(),
                         endpointInfo.getProperties(), publisherEvent.getEventProperties());
-                OMElement payload = OMAbstractFactory.getOMFactory().createOMElement(BaseConstants
-                        .DEFAULT_TEXT_WRAPPER, null);
-                payload.setText(message);
-                ServiceClient serviceClient;
-                ConfigurationContext configContext = CarbonConfigurationContextFactory.getConfigurationContext();
-                try {
-                    if (configContext != null) {
-                        serviceClient = new ServiceClient(configContext, null);
-                    } else {
-                        serviceClient = new ServiceClient();
+                // Mails are queued in the shared SMTP dispatcher, which reuses SMTP connections. If SMTP is not
+                // configured for the dispatcher, mail is sent through the axis2 mail transport.
+                SMTPDispatcher dispatcher = SMTPDispatcher.getInstance();
+                if (dispatcher != null) {
+                    if (dispatcher.send(new MailMessage(endpointInfo.getEmailAddress(), subject, message, null)) &&
+                            log.isDebugEnabled()) {
+                        log.debug("Email to " + endpointInfo.getEmailAddress() + " has been queued on event " +
+                                publisherEvent.getEventName());
                     }
-                    //setting properties for axis2 client
-                    Options options = new Options();
-                    options.setProperty(Constants.Configuration.ENABLE_REST, Constants.VALUE_TRUE);
-                    options.setProperty(MessageContext.TRANSPORT_HEADERS, headerMap);
-                    options.setProperty(MailConstants.TRANSPORT_MAIL_FORMAT,
-                            MailConstants.TRANSPORT_FORMAT_TEXT);
-                    options.setTo(new EndpointReference(EmailModuleConstants.MAILTO_LABEL +
-                            endpointInfo.getEmailAddress()));
-                    serviceClient.setOptions(options);
-                    serviceClient.fireAndForget(payload);
-                    if (log.isDebugEnabled()) {
-                        log.debug("Email has been sent to " + endpointInfo.getEmailAddress() + ", " +
-                                "on event " + publisherEvent.getEventName());
-                    }
-                } catch (AxisFault axisFault) {
-                    log.error("Error while sending email notification to address " + endpointInfo.
-                            getEmailAddress() + "on event " + publisherEvent.getEventName(), axisFault);
+                } else {
+                    sendThroughMailTransport(endpointInfo.getEmailAddress(), subject, message,
+                            publisherEvent.getEventName());
                 }
             }
             // Ultimately close tenant flow.
@@ -141,6 +123,47 @@ public class EmailSendingModule extends AbstractNotificationSendingModule {
         }
     }
 
+    /**
+     * Send the mail through the axis2 mail transport. Opens a new SMTP connection for each mail.
+     *
+     * @param emailAddress Address of the recipient
+     * @param subject      Subject of the mail
+     * @param message      Content of the mail
+     * @param eventName    Name of the event which triggered the mail
+     */
+    private void sendThroughMailTransport(String emailAddress, String subject, String message, String eventName) {
+
+        Map<String, String> headerMap = new HashMap<String, String>();
+        headerMap.put(MailConstants.MAIL_HEADER_SUBJECT, subject);
+        OMElement payload = OMAbstractFactory.getOMFactory().createOMElement(BaseConstants
+                .DEFAULT_TEXT_WRAPPER, null);
+        payload.setText(message);
+        ServiceClient serviceClient;
+        ConfigurationContext configContext = CarbonConfigurationContextFactory.getConfigurationContext();
+        try {
+            if (configContext != null) {
+                serviceClient = new ServiceClient(configContext, null);
+            } else {
+                serviceClient = new ServiceClient();
+            }
+            //setting properties for axis2 client
+            Options options = new Options();
+            options.setProperty(Constants.Configuration.ENABLE_REST, Constants.VALUE_TRUE);
+            options.setProperty(MessageContext.TRANSPORT_HEADERS, headerMap);
+            options.setProperty(MailConstants.TRANSPORT_MAIL_FORMAT,
+                    MailConstants.TRANSPORT_FORMAT_TEXT);
+            options.setTo(new EndpointReference(EmailModuleConstants.MAILTO_LABEL + emailAddress));
+            serviceClient.setOptions(options);
+            serviceClient.fireAndForget(payload);
+            if (log.isDebugEnabled()) {
+                log.debug("Email has been sent to " + emailAddress + ", on event " + eventName);
+            }
+        } catch (AxisFault axisFault) {
+            log.error("Error while sending email notification to address " + emailAddress + "on event " +
+                    eventName, axisFault);
+        }
+    }
+
     /**
      * returns name of the message sending module
      *
@@ -180,22 +203,17 @@ public class EmailSendingModule extends AbstractNotificationSendingModule {
     /**
      * Message whose place holders are replaced by configurations and dynamic properties.
      *
-     * @param mailContent            Original content with place holders
+     * @param template               Compiled template of the mail content
      * @param subscriptionProperties Generic properties which are defined in Event level
      * @param endpointProperties     Configured Properties which are in endpoint level
      * @param eventProperties        Dynamic properties which are coming from the event publisher
      * @return Message whose place holders are replaced.
      */
-    private String getMessage(String mailContent, Properties subscriptionProperties, Properties endpointProperties,
-                              Properties eventProperties) {
-        // First replace place holders with configured endpoint properties
-        mailContent = NotificationManagementUtils.replacePlaceHolders(mailContent, "\\{", "\\}", endpointProperties);
-        // Secondly replace place holders with dynamic properties which comes form publisher
-        mailContent = NotificationManagementUtils.replacePlaceHolders(mailContent, "\\{", "\\}", eventProperties);
-        // Thirdly replace place holders with generic properties which are configured in event level.
-        mailContent = NotificationManagementUtils.replacePlaceHolders(mailContent, "\\{", "\\}",
-                subscriptionProperties);
-        return mailContent;
+    private String getMessage(MessageTemplate template, Properties subscriptionProperties,
+                              Properties endpointProperties, Properties eventProperties) {
+        // Place holders are replaced with configured endpoint properties first, then with dynamic properties which
+        // comes from publisher and finally with generic properties which are configured in event level.
+        return template.render(endpointProperties, eventProperties, subscriptionProperties);
     }
 
     /**
@@ -18,6 +18,10 @@
 
 package org.wso2.carbon.identity.notification.mgt.email.bean;
 
+import org.apache.commons.lang.StringUtils;
+import org.wso2.carbon.identity.notification.mgt.MessageTemplate;
+import org.wso2.carbon.identity.notification.mgt.email.EmailModuleConstants;
+
 import java.util.Properties;
 
 /**
@@ -33,6 +37,10 @@ public class EmailEndpointInfo {
      * Email template
      */
     private String template;
+    /**
+     * Compiled email template. Null if the endpoint has no template
+     */
+    private MessageTemplate messageTemplate;
     /**
      * Email address which email should be sent to.
      */
@@ -49,6 +57,17 @@ public class EmailEndpointInfo {
 
     public void setTemplate(String template) {
         this.template = template;
+        this.messageTemplate = StringUtils.isEmpty(template) ? null : MessageTemplate.compile(template,
+                EmailModuleConstants.PLACE_HOLDER_START, EmailModuleConstants.PLACE_HOLDER_END);
+    }
+
+    /**
+     * Return the compiled template of the email
+     *
+     * @return compiled template of the email, null if the endpoint has no template
+     */
+    public MessageTemplate getMessageTemplate() {
+        return messageTemplate;
     }
 
     public String getEmailAddress() {
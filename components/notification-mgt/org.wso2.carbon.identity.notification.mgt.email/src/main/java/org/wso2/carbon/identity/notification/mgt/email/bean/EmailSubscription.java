@@ -21,6 +21,7 @@ package org.wso2.carbon.identity.notification.mgt.email.bean;
 import org.apache.commons.lang.StringUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.wso2.carbon.identity.notification.mgt.MessageTemplate;
 import org.wso2.carbon.identity.notification.mgt.NotificationManagementException;
 import org.wso2.carbon.identity.notification.mgt.NotificationManagementUtils;
 import org.wso2.carbon.identity.notification.mgt.bean.Subscription;
@@ -43,6 +44,10 @@ public class EmailSubscription extends Subscription {
      * Subscription level template.
      */
     private String mailTemplate;
+    /**
+     * Compiled subscription level template. Null if the subscription has no template
+     */
+    private MessageTemplate messageTemplate;
     /**
      * List of email endpoints which is registered with the subscription.
      */
@@ -173,6 +178,12 @@ public class EmailSubscription extends Subscription {
 
     public void setMailTemplate(String mailTemplate) {
         this.mailTemplate = mailTemplate;
+        this.messageTemplate = mailTemplate == null ? null : MessageTemplate.compile(mailTemplate,
+                EmailModuleConstants.PLACE_HOLDER_START, EmailModuleConstants.PLACE_HOLDER_END);
+    }
+
+    public MessageTemplate getMessageTemplate() {
+        return messageTemplate;
     }
 
     public List<EmailEndpointInfo> getEmailEndpointInfoList() {
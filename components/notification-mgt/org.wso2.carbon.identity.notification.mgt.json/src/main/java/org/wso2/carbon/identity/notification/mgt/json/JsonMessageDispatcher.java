@@ -0,0 +1,424 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.notification.mgt.json;
+
+import org.apache.axiom.om.util.Base64;
+import org.apache.commons.io.Charsets;
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.http.HttpHost;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.util.EntityUtils;
+import org.wso2.carbon.identity.notification.mgt.NotificationManagementUtils;
+import org.wso2.carbon.identity.notification.mgt.json.bean.JsonEndpointInfo;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Delivers JSON notifications to endpoints asynchronously. A single pooled http client is shared by all
+ * subscriptions, with a connection limit per endpoint. Deliveries run on a bounded thread pool and failed deliveries
+ * are retried with an exponential back off on a scheduled queue. Endpoints which accept JSON arrays get pending
+ * messages batched into a single request. The number of messages pending for such an endpoint is bounded by the
+ * delivery queue size, messages beyond that are dropped.
+ */
+public class JsonMessageDispatcher {
+
+    private static final Log log = LogFactory.getLog(JsonMessageDispatcher.class);
+
+    private final CloseableHttpClient httpClient;
+    private final PoolingHttpClientConnectionManager connectionManager;
+    private final ThreadPoolExecutor deliveryExecutor;
+    private final ScheduledExecutorService retryScheduler;
+    private final int maxRetries;
+    private final long retryInterval;
+    private final int maxPendingMessages;
+    /**
+     * Pending messages of endpoints which accept batches, keyed by endpoint address.
+     */
+    private final ConcurrentMap<String, EndpointQueue> endpointQueues = new ConcurrentHashMap<String, EndpointQueue>();
+    /**
+     * Routes for which the per endpoint connection limit is already applied.
+     */
+    private final ConcurrentMap<String, Boolean> configuredRoutes = new ConcurrentHashMap<String, Boolean>();
+
+    private final AtomicLong deliveredMessages = new AtomicLong();
+    private final AtomicLong failedMessages = new AtomicLong();
+    private final AtomicLong retriedRequests = new AtomicLong();
+    private final AtomicLong sentRequests = new AtomicLong();
+    private final AtomicLong totalDeliveryLatency = new AtomicLong();
+
+    /**
+     * Builds the dispatcher from module level properties.
+     *
+     * @param moduleProperties Module level properties. eg json.http.maxConnections
+     */
+    public JsonMessageDispatcher(Properties moduleProperties) {
+
+        connectionManager = new PoolingHttpClientConnectionManager();
+        connectionManager.setMaxTotal(NotificationManagementUtils.getIntProperty(moduleProperties,
+                JsonModuleConstants.Config.MAX_CONNECTIONS, JsonModuleConstants.DEFAULT_MAX_CONNECTIONS));
+        connectionManager.setDefaultMaxPerRoute(NotificationManagementUtils.getIntProperty(moduleProperties,
+                JsonModuleConstants.Config.MAX_CONNECTIONS_PER_ENDPOINT,
+                JsonModuleConstants.DEFAULT_MAX_CONNECTIONS_PER_ENDPOINT));
+
+        RequestConfig requestConfig = RequestConfig.custom()
+                .setConnectTimeout(NotificationManagementUtils.getIntProperty(moduleProperties,
+                        JsonModuleConstants.Config.CONNECTION_TIMEOUT, JsonModuleConstants.DEFAULT_TIMEOUT))
+                .setSocketTimeout(NotificationManagementUtils.getIntProperty(moduleProperties,
+                        JsonModuleConstants.Config.SOCKET_TIMEOUT, JsonModuleConstants.DEFAULT_TIMEOUT))
+                .build();
+        httpClient = HttpClients.custom().setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(requestConfig).build();
+
+        int poolSize = NotificationManagementUtils.getIntProperty(moduleProperties,
+                JsonModuleConstants.Config.DELIVERY_POOL_SIZE, JsonModuleConstants.DEFAULT_DELIVERY_POOL_SIZE);
+        int queueSize = NotificationManagementUtils.getIntProperty(moduleProperties,
+                JsonModuleConstants.Config.DELIVERY_QUEUE_SIZE, JsonModuleConstants.DEFAULT_DELIVERY_QUEUE_SIZE);
+        // Caller runs the delivery when the queue is full, which slows down the event distribution instead of
+        // dropping notifications.
+        deliveryExecutor = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<Runnable>(queueSize), new DispatcherThreadFactory("JsonNotificationDelivery"),
+                new ThreadPoolExecutor.CallerRunsPolicy());
+        retryScheduler = Executors.newSingleThreadScheduledExecutor(
+                new DispatcherThreadFactory("JsonNotificationRetry"));
+        maxPendingMessages = queueSize;
+
+        maxRetries = NotificationManagementUtils.getIntProperty(moduleProperties,
+                JsonModuleConstants.Config.MAX_RETRIES, JsonModuleConstants.DEFAULT_MAX_RETRIES);
+        retryInterval = NotificationManagementUtils.getIntProperty(moduleProperties,
+                JsonModuleConstants.Config.RETRY_INTERVAL, JsonModuleConstants.DEFAULT_RETRY_INTERVAL);
+    }
+
+    /**
+     * Queue a message to be delivered to the given endpoint. Returns without waiting for the delivery.
+     *
+     * @param endpoint  Endpoint which the message should be posted to
+     * @param message   JSON message
+     * @param eventName Name of the event which triggered the message
+     */
+    public void dispatch(JsonEndpointInfo endpoint, String message, String eventName) {
+
+        if (StringUtils.isBlank(endpoint.getEndpoint())) {
+            log.error("No address found for JSON endpoint " + endpoint.getEndpointName() + " on event " + eventName +
+                    ", message sending aborted");
+            return;
+        }
+        configureRoute(endpoint);
+        Delivery delivery = new Delivery(endpoint, eventName, System.currentTimeMillis());
+        delivery.messages.add(message);
+
+        if (endpoint.getBatchSize() > 1) {
+            EndpointQueue queue = endpointQueues.get(endpoint.getEndpoint());
+            if (queue == null) {
+                queue = new EndpointQueue(endpoint);
+                EndpointQueue existing = endpointQueues.putIfAbsent(endpoint.getEndpoint(), queue);
+                if (existing != null) {
+                    queue = existing;
+                }
+            }
+            queue.add(delivery);
+        } else {
+            submit(delivery);
+        }
+    }
+
+    /**
+     * Stops accepting deliveries and releases pooled connections.
+     */
+    public void shutdown() {
+
+        retryScheduler.shutdownNow();
+        deliveryExecutor.shutdown();
+        try {
+            if (!deliveryExecutor.awaitTermination(JsonModuleConstants.DEFAULT_TIMEOUT, TimeUnit.MILLISECONDS)) {
+                deliveryExecutor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            deliveryExecutor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        try {
+            httpClient.close();
+        } catch (IOException e) {
+            log.error("Error while closing http client of JSON notification module", e);
+        }
+    }
+
+    public long getDeliveredMessageCount() {
+        return deliveredMessages.get();
+    }
+
+    /**
+     * @return Number of messages which were not delivered, including messages dropped because the pending messages of
+     * a batching endpoint reached the limit
+     */
+    public long getFailedMessageCount() {
+        return failedMessages.get();
+    }
+
+    public long getRetriedRequestCount() {
+        return retriedRequests.get();
+    }
+
+    public long getSentRequestCount() {
+        return sentRequests.get();
+    }
+
+    /**
+     * Average time in milliseconds from queueing a message until it is accepted by the endpoint
+     *
+     * @return Average delivery latency of successfully delivered messages
+     */
+    public long getAverageDeliveryLatency() {
+        long delivered = deliveredMessages.get();
+        return delivered == 0 ? 0 : totalDeliveryLatency.get() / delivered;
+    }
+
+    private void configureRoute(JsonEndpointInfo endpoint) {
+
+        if (endpoint.getMaxConnections() <= 0 || configuredRoutes.containsKey(endpoint.getEndpoint())) {
+            return;
+        }
+        URI uri = URI.create(endpoint.getEndpoint());
+        int port = uri.getPort();
+        if (port < 0) {
+            port = "https".equalsIgnoreCase(uri.getScheme()) ? 443 : 80;
+        }
+        HttpHost host = new HttpHost(uri.getHost(), port, uri.getScheme());
+        connectionManager.setMaxPerRoute(new HttpRoute(host), endpoint.getMaxConnections());
+        configuredRoutes.put(endpoint.getEndpoint(), Boolean.TRUE);
+    }
+
+    private void submit(final Delivery delivery) {
+
+        try {
+            deliveryExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    deliver(delivery);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            failedMessages.addAndGet(delivery.messages.size());
+            log.error("JSON notification module is shutting down. Dropped message to endpoint " + delivery
+                    .endpoint.getEndpoint() + " on event " + delivery.eventName);
+        }
+    }
+
+    private void deliver(final Delivery delivery) {
+
+        JsonEndpointInfo endpoint = delivery.endpoint;
+        HttpPost post = new HttpPost(endpoint.getEndpoint());
+        if (endpoint.isAuthenticationRequired()) {
+            post.setHeader(JsonModuleConstants.AUTHORIZATION_HEADER, getBase64EncodedBasicAuthHeader(endpoint
+                    .getUsername(), String.valueOf(endpoint.getPassword())));
+        }
+        post.setEntity(new StringEntity(delivery.getPayload(), ContentType.APPLICATION_JSON));
+
+        CloseableHttpResponse response = null;
+        boolean success = false;
+        sentRequests.incrementAndGet();
+        try {
+            response = httpClient.execute(post);
+            int status = response.getStatusLine().getStatusCode();
+            success = status >= 200 && status < 300;
+            if (log.isDebugEnabled()) {
+                log.debug("Response of HTTP post is " + response.getStatusLine() + " on post operation to " +
+                        "endpoint " + endpoint.getEndpoint() + " on event " + delivery.eventName);
+            }
+            // Consume the response so that the connection is released back to the pool.
+            EntityUtils.consume(response.getEntity());
+        } catch (IOException e) {
+            log.error("Error while executing POST operation to endpoint " + endpoint.getEndpoint() + " on event " +
+                    delivery.eventName, e);
+        } finally {
+            if (response != null) {
+                try {
+                    response.close();
+                } catch (IOException e) {
+                    log.error("Error while closing response from endpoint " + endpoint.getEndpoint(), e);
+                }
+            }
+        }
+
+        if (success) {
+            deliveredMessages.addAndGet(delivery.messages.size());
+            totalDeliveryLatency.addAndGet((System.currentTimeMillis() - delivery.createdTime) * delivery.messages
+                    .size());
+            if (log.isDebugEnabled()) {
+                log.debug("Notification message has been posted to " + endpoint.getEndpoint() + " on event " +
+                        delivery.eventName);
+            }
+        } else if (delivery.attempts < maxRetries) {
+            long delay = retryInterval << delivery.attempts;
+            delivery.attempts++;
+            retriedRequests.incrementAndGet();
+            try {
+                retryScheduler.schedule(new Runnable() {
+                    @Override
+                    public void run() {
+                        submit(delivery);
+                    }
+                }, delay, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                failedMessages.addAndGet(delivery.messages.size());
+            }
+        } else {
+            failedMessages.addAndGet(delivery.messages.size());
+            log.error("Giving up notification delivery to endpoint " + endpoint.getEndpoint() + " on event " +
+                    delivery.eventName + " after " + (delivery.attempts + 1) + " attempts");
+        }
+    }
+
+    private String getBase64EncodedBasicAuthHeader(String username, String password) {
+
+        String concatenatedCredential = username + ":" + password;
+        byte[] byteValue = concatenatedCredential.getBytes(Charsets.UTF_8);
+        return "Basic " + Base64.encode(byteValue);
+    }
+
+    /**
+     * One POST request to an endpoint, carrying one message or a batch of messages.
+     */
+    private static class Delivery {
+
+        private final JsonEndpointInfo endpoint;
+        private final String eventName;
+        private final List<String> messages = new ArrayList<String>();
+        private final long createdTime;
+        private int attempts;
+
+        private Delivery(JsonEndpointInfo endpoint, String eventName, long createdTime) {
+            this.endpoint = endpoint;
+            this.eventName = eventName;
+            this.createdTime = createdTime;
+        }
+
+        private String getPayload() {
+
+            if (messages.size() == 1 && endpoint.getBatchSize() <= 1) {
+                return messages.get(0);
+            }
+            StringBuilder payload = new StringBuilder(JsonModuleConstants.JSON_ARRAY_START);
+            for (int i = 0; i < messages.size(); i++) {
+                if (i > 0) {
+                    payload.append(JsonModuleConstants.JSON_ARRAY_SEPARATOR);
+                }
+                payload.append(messages.get(i));
+            }
+            return payload.append(JsonModuleConstants.JSON_ARRAY_END).toString();
+        }
+    }
+
+    /**
+     * Pending messages of an endpoint which accepts batches. Only one drain task per endpoint is queued at a time,
+     * so messages arriving while a batch is waiting for a delivery thread are sent together.
+     */
+    private class EndpointQueue implements Runnable {
+
+        private final JsonEndpointInfo endpoint;
+        private final BlockingQueue<Delivery> pending = new LinkedBlockingQueue<Delivery>(maxPendingMessages);
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+
+        private EndpointQueue(JsonEndpointInfo endpoint) {
+            this.endpoint = endpoint;
+        }
+
+        private void add(Delivery delivery) {
+            if (!pending.offer(delivery)) {
+                failedMessages.addAndGet(delivery.messages.size());
+                log.error(maxPendingMessages + " messages are already pending for endpoint " + endpoint.getEndpoint()
+                        + ". Dropped message on event " + delivery.eventName);
+                return;
+            }
+            if (scheduled.compareAndSet(false, true)) {
+                try {
+                    deliveryExecutor.execute(this);
+                } catch (RejectedExecutionException e) {
+                    scheduled.set(false);
+                    log.error("JSON notification module is shutting down. Pending messages to endpoint " +
+                            endpoint.getEndpoint() + " are not delivered");
+                }
+            }
+        }
+
+        @Override
+        public void run() {
+
+            scheduled.set(false);
+            Delivery head = pending.poll();
+            while (head != null) {
+                Delivery batch = new Delivery(endpoint, head.eventName, head.createdTime);
+                batch.messages.addAll(head.messages);
+                Delivery next;
+                while (batch.messages.size() < endpoint.getBatchSize() && (next = pending.poll()) != null) {
+                    batch.messages.addAll(next.messages);
+                }
+                deliver(batch);
+                head = pending.poll();
+            }
+        }
+    }
+
+    /**
+     * Creates named daemon threads, so that the dispatcher does not keep the server from shutting down.
+     */
+    private static class DispatcherThreadFactory implements ThreadFactory {
+
+        private final String namePrefix;
+        private final AtomicInteger count = new AtomicInteger();
+
+        private DispatcherThreadFactory(String namePrefix) {
+            this.namePrefix = namePrefix;
+        }
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, namePrefix + "-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
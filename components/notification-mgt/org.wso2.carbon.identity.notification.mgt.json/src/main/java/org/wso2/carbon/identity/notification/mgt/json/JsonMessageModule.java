@@ -18,28 +18,17 @@
 
 package org.wso2.carbon.identity.notification.mgt.json;
 
-import org.apache.axiom.om.util.Base64;
-import org.apache.commons.io.Charsets;
-import org.apache.commons.lang.StringUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
-import org.apache.http.HttpResponse;
-import org.apache.http.client.ClientProtocolException;
-import org.apache.http.client.HttpClient;
-import org.apache.http.client.methods.HttpPost;
-import org.apache.http.entity.StringEntity;
-import org.apache.http.impl.client.DefaultHttpClient;
 import org.wso2.carbon.identity.notification.mgt.AbstractNotificationSendingModule;
+import org.wso2.carbon.identity.notification.mgt.MessageTemplate;
 import org.wso2.carbon.identity.notification.mgt.NotificationManagementException;
-import org.wso2.carbon.identity.notification.mgt.NotificationManagementUtils;
 import org.wso2.carbon.identity.notification.mgt.bean.ModuleConfiguration;
 import org.wso2.carbon.identity.notification.mgt.bean.PublisherEvent;
 import org.wso2.carbon.identity.notification.mgt.bean.Subscription;
 import org.wso2.carbon.identity.notification.mgt.json.bean.JsonEndpointInfo;
 import org.wso2.carbon.identity.notification.mgt.json.bean.JsonSubscription;
 
-import java.io.IOException;
-import java.io.UnsupportedEncodingException;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -56,6 +45,10 @@ public class JsonMessageModule extends AbstractNotificationSendingModule {
      * Map of JsonSubscriptions which are registered
      */
     private Map<String, JsonSubscription> subscriptionMap;
+    /**
+     * Shared dispatcher which delivers messages to endpoints over pooled connections
+     */
+    private JsonMessageDispatcher dispatcher;
 
     /**
      * Overridden method for rest json message sending.
@@ -73,71 +66,24 @@ public class JsonMessageModule extends AbstractNotificationSendingModule {
 
         if (jsonSubscription != null) {
             endpoints = jsonSubscription.getEndpointInfoList();
-            HttpClient client = new DefaultHttpClient();
             // Get all configured endpoints for message sending
-            // Send messages to each endpoint in endpoints list
+            // Queue messages to each endpoint in endpoints list. Delivery is done by the dispatcher
             for (JsonEndpointInfo endpoint : endpoints) {
-                HttpPost post = new HttpPost(endpoint.getEndpoint());
-                HttpResponse response = null;
-                StringEntity entity;
-
-                post.setHeader(JsonModuleConstants.CONTENT_TYPE_LABEL, JsonModuleConstants.CONTENT_TYPE_JSON_LABEL);
-
-                //Adding basic authentication header to post. If required information are not found,
-                // building subscription will fail at the time of configuration building
-                if (endpoint.isAuthenticationRequired()) {
-                    if (log.isDebugEnabled()) {
-                        log.debug("Setting authentication information on request to " + endpoint.getEndpoint());
-                    }
-                    post.setHeader(JsonModuleConstants.AUTHORIZATION_HEADER, getBase64EncodedBasicAuthHeader
-                            (endpoint.getUsername(), String.valueOf(endpoint.getPassword())));
-                } else {
-                    if (log.isDebugEnabled()) {
-                        log.debug("No authentication required to endpoint " + endpoint.getEndpoint());
-                    }
-                }
-
                 // Read JSON content from endpoint configurations. If not present,
                 // get content form event configurations.
-                String jsonContent = endpoint.getJsonConfigString();
-                if (StringUtils.isEmpty(jsonContent)) {
-                    jsonContent = jsonSubscription.getJsonContent();
+                MessageTemplate jsonTemplate = endpoint.getMessageTemplate();
+                if (jsonTemplate == null) {
+                    jsonTemplate = jsonSubscription.getMessageTemplate();
                 }
-                if (StringUtils.isEmpty(jsonContent)) {
+                if (jsonTemplate == null) {
                     log.error("No content template found either for event or endpoint " + endpoint.getEndpoint() +
                             " on event " + publisherEvent.getEventName() + ", message sending aborted");
                     continue;
                 }
-                String jsonMessage = getJSONData(jsonContent,
+                String jsonMessage = getJSONData(jsonTemplate,
                         jsonSubscription.getSubscriptionProperties(), endpoint.getEndpointsParams(),
                         publisherEvent.getEventProperties());
-                try {
-                    entity = new StringEntity(jsonMessage);
-                    post.setEntity(entity);
-                    response = client.execute(post);
-                    log.info("Notification message has been posted to " + endpoint.getEndpoint() + " on event " +
-                            publisherEvent.getEventName());
-                    if (log.isDebugEnabled() && response != null) {
-                        log.debug("Response of HTTP post is " + response.getStatusLine() + "on post operation to " +
-                                "endpoint " + endpoint.getEndpoint() + " on event " + publisherEvent.getEventName());
-                    }
-                } catch (UnsupportedEncodingException e) {
-                    log.error("Error while creating StringEntry from given JSON string on event " + publisherEvent.
-                            getEventName() + "to endpoint " + endpoint.getEndpoint() + " JSON string : " +
-                            jsonMessage, e);
-
-                } catch (ClientProtocolException e) {
-                    log.error("Error in HTTP protocol, error while executing POST operation to endpoint " + endpoint
-                            .getEndpoint() + "on event " + publisherEvent.getEventName(), e);
-
-                } catch (IOException e) {
-                    log.error("Error while executing POST operation to endpoint " + endpoint.getEndpoint() + "on " +
-                            "event " + publisherEvent.getEventName(), e);
-
-                } finally {
-                    // Finally closing connections.
-                    post.abort();
-                }
+                dispatcher.dispatch(endpoint, jsonMessage, publisherEvent.getEventName());
             }
         }
     }
@@ -157,6 +103,9 @@ public class JsonMessageModule extends AbstractNotificationSendingModule {
     public void init(ModuleConfiguration moduleConfigurations) throws NotificationManagementException {
 
         this.subscriptionMap = new HashMap<String, JsonSubscription>();
+        // Re-initialization replaces the dispatcher, release the threads and connections of the previous one
+        destroy();
+        this.dispatcher = new JsonMessageDispatcher(moduleConfigurations.getModuleProperties());
         for (Subscription subscription : moduleConfigurations.getSubscriptions()) {
             try {
                 subscriptionMap.put(subscription.getSubscriptionName(), new JsonSubscription(subscription));
@@ -181,19 +130,22 @@ public class JsonMessageModule extends AbstractNotificationSendingModule {
     }
 
     /**
-     * To get Base64 encoded username:password for basic authentication header
-     *
-     * @param username username
-     * @param password password
-     * @return Base64 encoded value of username:password
+     * Stops the message dispatcher and releases pooled connections
      */
-    private String getBase64EncodedBasicAuthHeader(String username, String password) {
+    public void destroy() {
 
-        String concatenatedCredential = username + ":" + password;
-        byte[] byteValue = concatenatedCredential.getBytes(Charsets.UTF_8);
-        String encodedAuthHeader = Base64.encode(byteValue);
-        encodedAuthHeader = "Basic " + encodedAuthHeader;
-        return encodedAuthHeader;
+        if (dispatcher != null) {
+            dispatcher.shutdown();
+        }
+    }
+
+    /**
+     * Returns the dispatcher which delivers messages of this module. Exposes delivery metrics
+     *
+     * @return JSON message dispatcher
+     */
+    public JsonMessageDispatcher getDispatcher() {
+        return dispatcher;
     }
 
     /**
@@ -201,15 +153,10 @@ public class JsonMessageModule extends AbstractNotificationSendingModule {
      *
      * @return A string which contains JSON message to be sent to the endpoint
      */
-    private String getJSONData(String jsonContent, Properties eventParams, Properties endpointParams,
+    private String getJSONData(MessageTemplate jsonTemplate, Properties eventParams, Properties endpointParams,
                                Properties dynamicParams) {
 
-        if (StringUtils.isNotEmpty(jsonContent)) {
-            // Replaced using one property map at once. May improve efficiency if no replacements are needed.
-            jsonContent = NotificationManagementUtils.replacePlaceHolders(jsonContent, "\\(", "\\)", endpointParams);
-            jsonContent = NotificationManagementUtils.replacePlaceHolders(jsonContent, "\\(", "\\)", dynamicParams);
-            jsonContent = NotificationManagementUtils.replacePlaceHolders(jsonContent, "\\(", "\\)", eventParams);
-        }
-        return jsonContent;
+        // Endpoint level params take precedence over dynamic params, which take precedence over event params.
+        return jsonTemplate.render(endpointParams, dynamicParams, eventParams);
     }
 }
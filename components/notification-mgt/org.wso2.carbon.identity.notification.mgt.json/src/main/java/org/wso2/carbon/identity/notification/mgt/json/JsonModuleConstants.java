@@ -30,6 +30,18 @@ public class JsonModuleConstants {
     public static final String PASSWORD_PROPERTY = "password";
     public static final String CONTENT_TYPE_LABEL = "Content-Type";
     public static final String CONTENT_TYPE_JSON_LABEL = "application/json";
+    public static final String PLACE_HOLDER_START = "(";
+    public static final String PLACE_HOLDER_END = ")";
+    public static final String JSON_ARRAY_START = "[";
+    public static final String JSON_ARRAY_SEPARATOR = ",";
+    public static final String JSON_ARRAY_END = "]";
+    public static final int DEFAULT_MAX_CONNECTIONS = 100;
+    public static final int DEFAULT_MAX_CONNECTIONS_PER_ENDPOINT = 10;
+    public static final int DEFAULT_TIMEOUT = 10000;
+    public static final int DEFAULT_DELIVERY_POOL_SIZE = 10;
+    public static final int DEFAULT_DELIVERY_QUEUE_SIZE = 10000;
+    public static final int DEFAULT_MAX_RETRIES = 3;
+    public static final int DEFAULT_RETRY_INTERVAL = 1000;
 
     private JsonModuleConstants() {
     }
@@ -43,6 +55,17 @@ public class JsonModuleConstants {
         public static final String PASSWORD_QNAME = "password";
         public static final String AUTH_REQUIRED_QNAME = "AuthenticationRequired";
         public static final String SUBSCRIPTION_NS = MODULE_NAME + "." + NotificationMgtConstants.Configs.SUBSCRIPTION;
+        public static final String BATCH_SIZE_QNAME = "batchSize";
+        public static final String MAX_CONNECTIONS_QNAME = "maxConnections";
+        // Module level properties. eg json.http.maxConnections
+        public static final String MAX_CONNECTIONS = MODULE_NAME + ".http.maxConnections";
+        public static final String MAX_CONNECTIONS_PER_ENDPOINT = MODULE_NAME + ".http.maxConnectionsPerEndpoint";
+        public static final String CONNECTION_TIMEOUT = MODULE_NAME + ".http.connectionTimeout";
+        public static final String SOCKET_TIMEOUT = MODULE_NAME + ".http.socketTimeout";
+        public static final String DELIVERY_POOL_SIZE = MODULE_NAME + ".delivery.threadPool.size";
+        public static final String DELIVERY_QUEUE_SIZE = MODULE_NAME + ".delivery.queue.size";
+        public static final String MAX_RETRIES = MODULE_NAME + ".delivery.maxRetries";
+        public static final String RETRY_INTERVAL = MODULE_NAME + ".delivery.retryInterval";
 
         private Config() {
         }
@@ -18,6 +18,10 @@
 
 package org.wso2.carbon.identity.notification.mgt.json.bean;
 
+import org.apache.commons.lang.StringUtils;
+import org.wso2.carbon.identity.notification.mgt.MessageTemplate;
+import org.wso2.carbon.identity.notification.mgt.json.JsonModuleConstants;
+
 import java.util.Properties;
 
 /**
@@ -50,10 +54,22 @@ public class JsonEndpointInfo {
      * Json message string
      */
     private String jsonConfigString;
+    /**
+     * Compiled json message template. Null if the endpoint has no template
+     */
+    private MessageTemplate messageTemplate;
     /**
      * Endpoint level config parameters
      */
     private Properties endpointProperties;
+    /**
+     * Maximum number of messages sent as a JSON array in a single request. 1 if the endpoint does not accept arrays
+     */
+    private int batchSize = 1;
+    /**
+     * Maximum number of pooled connections to the endpoint. Non positive values fall back to module level limit
+     */
+    private int maxConnections;
 
     public Properties getEndpointsParams() {
         return endpointProperties;
@@ -78,6 +94,12 @@ public class JsonEndpointInfo {
 
     public void setJsonConfigString(String jsonConfigString) {
         this.jsonConfigString = jsonConfigString;
+        this.messageTemplate = StringUtils.isEmpty(jsonConfigString) ? null : MessageTemplate.compile(
+                jsonConfigString, JsonModuleConstants.PLACE_HOLDER_START, JsonModuleConstants.PLACE_HOLDER_END);
+    }
+
+    public MessageTemplate getMessageTemplate() {
+        return messageTemplate;
     }
 
     public boolean isAuthenticationRequired() {
@@ -117,4 +139,20 @@ public class JsonEndpointInfo {
     public void setEndpoint(String endpoint) {
         this.endpoint = endpoint;
     }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    public int getMaxConnections() {
+        return maxConnections;
+    }
+
+    public void setMaxConnections(int maxConnections) {
+        this.maxConnections = maxConnections;
+    }
 }
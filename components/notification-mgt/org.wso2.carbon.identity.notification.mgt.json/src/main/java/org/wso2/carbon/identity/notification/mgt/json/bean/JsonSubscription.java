@@ -21,6 +21,7 @@ package org.wso2.carbon.identity.notification.mgt.json.bean;
 import org.apache.commons.lang.StringUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.wso2.carbon.identity.notification.mgt.MessageTemplate;
 import org.wso2.carbon.identity.notification.mgt.NotificationManagementException;
 import org.wso2.carbon.identity.notification.mgt.NotificationManagementUtils;
 import org.wso2.carbon.identity.notification.mgt.bean.Subscription;
@@ -43,6 +44,10 @@ public class JsonSubscription extends Subscription {
      * Template of the json as defined in the configuration or given at the run time
      */
     private String jsonContent;
+    /**
+     * Compiled template of the json. Null if the subscription has no template
+     */
+    private MessageTemplate messageTemplate;
     /**
      * List of endpoints which this event should fire notifications.
      */
@@ -168,6 +173,10 @@ public class JsonSubscription extends Subscription {
                 log.debug("No template configured for endpoint" + url);
             }
         }
+        jsonEndpointInfo.setBatchSize(getIntProperty(prefix + "." + JsonModuleConstants.Config.BATCH_SIZE_QNAME,
+                endpointProperties, 1));
+        jsonEndpointInfo.setMaxConnections(getIntProperty(prefix + "." + JsonModuleConstants.Config
+                .MAX_CONNECTIONS_QNAME, endpointProperties, 0));
         jsonEndpointInfo = setAuthenticationInfo(prefix, endpointProperties, jsonEndpointInfo);
         jsonEndpointInfo.setEndpointProperties(NotificationManagementUtils.buildSingleWordKeyProperties(prefix,
                 endpointProperties));
@@ -212,12 +221,34 @@ public class JsonSubscription extends Subscription {
         return endpointInfo;
     }
 
+    /**
+     * Remove and parse an integer property of the endpoint
+     *
+     * @param key                Full key of the property
+     * @param endpointProperties Set of properties of the endpoint
+     * @param defaultValue       Value to be used if the property is not present or not a number
+     * @return Value of the property
+     */
+    private int getIntProperty(String key, Properties endpointProperties, int defaultValue) {
+
+        int value = NotificationManagementUtils.getIntProperty(endpointProperties, key, defaultValue);
+        // removed, so that it is not sent as an endpoint property
+        endpointProperties.remove(key);
+        return value;
+    }
+
     public String getJsonContent() {
         return jsonContent;
     }
 
     public void setJsonContent(String jsonContent) {
         this.jsonContent = jsonContent;
+        this.messageTemplate = StringUtils.isEmpty(jsonContent) ? null : MessageTemplate.compile(jsonContent,
+                JsonModuleConstants.PLACE_HOLDER_START, JsonModuleConstants.PLACE_HOLDER_END);
+    }
+
+    public MessageTemplate getMessageTemplate() {
+        return messageTemplate;
     }
 
     public List<JsonEndpointInfo> getEndpointInfoList() {
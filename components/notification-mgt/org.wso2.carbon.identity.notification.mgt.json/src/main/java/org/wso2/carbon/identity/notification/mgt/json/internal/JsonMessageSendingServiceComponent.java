@@ -33,14 +33,16 @@ import org.wso2.carbon.identity.notification.mgt.json.JsonMessageModule;
 public class JsonMessageSendingServiceComponent {
 
     private static Log log = LogFactory.getLog(JsonMessageSendingServiceComponent.class);
+    private JsonMessageModule jsonMessageModule;
 
     protected void activate(ComponentContext ctxt) {
         // Using try catch to whole activator. Unless if something goes wrong (configuration failure) module will keep
         // trying to start
         try {
             // Registering json message sending module on user operation for entitlement component
+            jsonMessageModule = new JsonMessageModule();
             ctxt.getBundleContext().registerService(NotificationSendingModule.class.getName(),
-                    new JsonMessageModule(), null);
+                    jsonMessageModule, null);
             if (log.isDebugEnabled()) {
                 log.debug("REST JSON notification sending component is activated ");
             }
@@ -51,6 +53,9 @@ public class JsonMessageSendingServiceComponent {
     }
 
     protected void deactivate(ComponentContext ctxt) {
+        if (jsonMessageModule != null) {
+            jsonMessageModule.destroy();
+        }
         if (log.isDebugEnabled()) {
             log.debug("REST JSON notification sending module is deactivated");
         }
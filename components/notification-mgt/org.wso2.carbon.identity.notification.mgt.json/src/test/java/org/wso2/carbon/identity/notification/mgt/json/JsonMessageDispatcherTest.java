@@ -0,0 +1,186 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.notification.mgt.json;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import junit.framework.TestCase;
+import org.wso2.carbon.identity.notification.mgt.json.bean.JsonEndpointInfo;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Delivers messages to a local stub endpoint, which records the posted payloads.
+ */
+public class JsonMessageDispatcherTest extends TestCase {
+
+    private static final String EVENT = "userOperation";
+
+    private HttpServer server;
+    private JsonMessageDispatcher dispatcher;
+    private final List<String> payloads = new CopyOnWriteArrayList<String>();
+    private final AtomicInteger failuresToReturn = new AtomicInteger();
+    private volatile CountDownLatch requestReceived = new CountDownLatch(1);
+    private volatile CountDownLatch releaseResponses = new CountDownLatch(0);
+
+    @Override
+    protected void setUp() throws Exception {
+
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                payloads.add(read(exchange.getRequestBody()));
+                requestReceived.countDown();
+                try {
+                    releaseResponses.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                int status = failuresToReturn.getAndDecrement() > 0 ? 500 : 200;
+                exchange.sendResponseHeaders(status, -1);
+                exchange.close();
+            }
+        });
+        server.start();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+
+        releaseResponses.countDown();
+        if (dispatcher != null) {
+            dispatcher.shutdown();
+        }
+        server.stop(0);
+    }
+
+    public void testMessagesAreDeliveredOnePerRequest() throws Exception {
+
+        dispatcher = new JsonMessageDispatcher(properties(4, 100));
+        JsonEndpointInfo endpoint = endpoint(1);
+        for (int i = 0; i < 20; i++) {
+            dispatcher.dispatch(endpoint, "{\"id\":" + i + "}", EVENT);
+        }
+
+        waitForDelivery(20);
+        assertEquals(20, dispatcher.getSentRequestCount());
+        assertEquals(0, dispatcher.getFailedMessageCount());
+        assertTrue(payloads.contains("{\"id\":7}"));
+    }
+
+    public void testFailedDeliveriesAreRetried() throws Exception {
+
+        failuresToReturn.set(2);
+        dispatcher = new JsonMessageDispatcher(properties(1, 100));
+        dispatcher.dispatch(endpoint(1), "{\"id\":1}", EVENT);
+
+        waitForDelivery(1);
+        assertEquals(3, dispatcher.getSentRequestCount());
+        assertEquals(2, dispatcher.getRetriedRequestCount());
+        assertEquals(0, dispatcher.getFailedMessageCount());
+    }
+
+    public void testPendingMessagesAreSentAsBatch() throws Exception {
+
+        releaseResponses = new CountDownLatch(1);
+        dispatcher = new JsonMessageDispatcher(properties(1, 100));
+        JsonEndpointInfo endpoint = endpoint(10);
+
+        dispatcher.dispatch(endpoint, "{\"id\":0}", EVENT);
+        assertTrue(requestReceived.await(10, TimeUnit.SECONDS));
+        // The endpoint is busy with the first request, so these messages are sent together afterwards
+        for (int i = 1; i <= 5; i++) {
+            dispatcher.dispatch(endpoint, "{\"id\":" + i + "}", EVENT);
+        }
+        releaseResponses.countDown();
+
+        waitForDelivery(6);
+        assertEquals(2, dispatcher.getSentRequestCount());
+        assertEquals("[{\"id\":0}]", payloads.get(0));
+        assertEquals("[{\"id\":1},{\"id\":2},{\"id\":3},{\"id\":4},{\"id\":5}]", payloads.get(1));
+    }
+
+    public void testPendingMessagesOfBatchingEndpointAreBounded() throws Exception {
+
+        releaseResponses = new CountDownLatch(1);
+        dispatcher = new JsonMessageDispatcher(properties(1, 2));
+        JsonEndpointInfo endpoint = endpoint(100);
+
+        dispatcher.dispatch(endpoint, "{\"id\":0}", EVENT);
+        assertTrue(requestReceived.await(10, TimeUnit.SECONDS));
+        // Only two messages can wait while the endpoint is not responding, the rest is dropped
+        for (int i = 1; i <= 10; i++) {
+            dispatcher.dispatch(endpoint, "{\"id\":" + i + "}", EVENT);
+        }
+        assertEquals(8, dispatcher.getFailedMessageCount());
+        releaseResponses.countDown();
+
+        waitForDelivery(3);
+        assertEquals("[{\"id\":1},{\"id\":2}]", payloads.get(1));
+    }
+
+    private void waitForDelivery(int messages) throws InterruptedException {
+
+        long deadline = System.currentTimeMillis() + 10000;
+        while (dispatcher.getDeliveredMessageCount() < messages && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(messages, dispatcher.getDeliveredMessageCount());
+    }
+
+    private JsonEndpointInfo endpoint(int batchSize) {
+
+        JsonEndpointInfo endpoint = new JsonEndpointInfo();
+        endpoint.setEndpointName("stub");
+        endpoint.setEndpoint("http://127.0.0.1:" + server.getAddress().getPort() + "/notify");
+        endpoint.setBatchSize(batchSize);
+        return endpoint;
+    }
+
+    private static Properties properties(int poolSize, int queueSize) {
+
+        Properties properties = new Properties();
+        properties.setProperty(JsonModuleConstants.Config.DELIVERY_POOL_SIZE, String.valueOf(poolSize));
+        properties.setProperty(JsonModuleConstants.Config.DELIVERY_QUEUE_SIZE, String.valueOf(queueSize));
+        properties.setProperty(JsonModuleConstants.Config.RETRY_INTERVAL, "10");
+        return properties;
+    }
+
+    private static String read(InputStream in) throws IOException {
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1024];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        return out.toString("UTF-8");
+    }
+}
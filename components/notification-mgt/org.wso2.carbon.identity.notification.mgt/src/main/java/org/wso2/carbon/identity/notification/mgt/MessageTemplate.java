@@ -0,0 +1,139 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.notification.mgt;
+
+import org.apache.commons.lang.StringUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * A message template which is parsed once into a list of literal and place holder segments. Rendering walks the
+ * segments a single time and resolves each place holder against the given property sets, instead of running a
+ * regex replacement per property key. Templates are compiled when they are loaded and kept along with the loaded
+ * content, so rendering does not compile or look up templates.
+ */
+public class MessageTemplate {
+
+    /**
+     * Segments of the template. Either a literal text or the key of a place holder.
+     */
+    private final String[] segments;
+    /**
+     * Place holders including delimiters, used when there is no property to replace the place holder. Null for
+     * literal segments.
+     */
+    private final String[] rawPlaceHolders;
+    /**
+     * Total length of literal segments, used as the initial capacity of the rendered message.
+     */
+    private final int literalLength;
+
+    private MessageTemplate(String content, String startDelimiter, String endDelimiter) {
+
+        List<String> segmentList = new ArrayList<String>();
+        List<String> rawList = new ArrayList<String>();
+        StringBuilder literal = new StringBuilder();
+        int length = 0;
+        int cursor = 0;
+
+        while (cursor < content.length()) {
+            int start = content.indexOf(startDelimiter, cursor);
+            if (start < 0) {
+                break;
+            }
+            int end = content.indexOf(endDelimiter, start + startDelimiter.length());
+            if (end < 0) {
+                break;
+            }
+            // Use the closest start delimiter to the end delimiter, so that {{key} resolves to {<value>
+            start = content.lastIndexOf(startDelimiter, end - startDelimiter.length());
+            String key = content.substring(start + startDelimiter.length(), end);
+            int next = end + endDelimiter.length();
+
+            if (key.isEmpty()) {
+                literal.append(content, cursor, next);
+            } else {
+                literal.append(content, cursor, start);
+                length += literal.length();
+                segmentList.add(literal.toString());
+                rawList.add(null);
+                literal.setLength(0);
+                segmentList.add(key);
+                rawList.add(content.substring(start, next));
+            }
+            cursor = next;
+        }
+        literal.append(content, cursor, content.length());
+        length += literal.length();
+        segmentList.add(literal.toString());
+        rawList.add(null);
+
+        this.segments = segmentList.toArray(new String[segmentList.size()]);
+        this.rawPlaceHolders = rawList.toArray(new String[rawList.size()]);
+        this.literalLength = length;
+    }
+
+    /**
+     * Compiles the given content into a message template
+     *
+     * @param content        Original content of the message which has place holders
+     * @param startDelimiter Literal string which starts a place holder. eg "{"
+     * @param endDelimiter   Literal string which ends a place holder. eg "}"
+     * @return Compiled message template
+     */
+    public static MessageTemplate compile(String content, String startDelimiter, String endDelimiter) {
+
+        if (content == null || StringUtils.isEmpty(startDelimiter) || StringUtils.isEmpty(endDelimiter)) {
+            throw new IllegalArgumentException("Missing required arguments for compiling message template");
+        }
+        return new MessageTemplate(content, startDelimiter, endDelimiter);
+    }
+
+    /**
+     * Render the message by replacing place holders. Each place holder is replaced with the value of the first set of
+     * properties which contains the key, so the property sets are given in the order of priority. Place holders
+     * which are not found in any property set are left as they are.
+     *
+     * @param propertiesList Sets of properties in order of priority. Null sets are ignored
+     * @return Message whose place holders are replaced
+     */
+    public String render(Properties... propertiesList) {
+
+        StringBuilder message = new StringBuilder(literalLength + 16 * segments.length);
+        for (int i = 0; i < segments.length; i++) {
+            if (rawPlaceHolders[i] == null) {
+                message.append(segments[i]);
+                continue;
+            }
+            String value = null;
+            for (Properties properties : propertiesList) {
+                if (properties != null) {
+                    value = properties.getProperty(segments[i]);
+                    if (value != null) {
+                        break;
+                    }
+                }
+            }
+            message.append(value != null ? value : rawPlaceHolders[i]);
+        }
+        return message.toString();
+    }
+}
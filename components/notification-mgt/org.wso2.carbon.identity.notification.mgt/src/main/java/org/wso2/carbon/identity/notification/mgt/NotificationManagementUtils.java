@@ -204,4 +204,26 @@ public class NotificationManagementUtils {
         }
         return template;
     }
+
+    /**
+     * Returns the integer value of a property
+     *
+     * @param properties   properties, may be null
+     * @param key          property key
+     * @param defaultValue value returned if the property is not set or is not an integer
+     * @return value of the property or the default value
+     */
+    public static int getIntProperty(Properties properties, String key, int defaultValue) {
+
+        String value = properties != null ? properties.getProperty(key) : null;
+        if (StringUtils.isNotBlank(value)) {
+            try {
+                return Integer.parseInt(value.trim());
+            } catch (NumberFormatException e) {
+                log.error("Invalid value " + value + " configured for " + key + ". Using default value " +
+                        defaultValue, e);
+            }
+        }
+        return defaultValue;
+    }
 }
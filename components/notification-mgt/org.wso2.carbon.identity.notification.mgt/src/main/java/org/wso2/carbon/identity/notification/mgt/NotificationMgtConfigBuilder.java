@@ -174,8 +174,8 @@ public class NotificationMgtConfigBuilder {
     private ModuleConfiguration buildModuleConfigurations(String moduleName) {
         Properties moduleProperties = getModuleProperties(moduleName);
         List<Subscription> subscriptionList = buildSubscriptionList(moduleName, moduleProperties);
-
-        return new ModuleConfiguration(getModuleProperties(moduleName), subscriptionList);
+        // Subscription properties are consumed while building subscriptions. Remaining are module level properties
+        return new ModuleConfiguration(moduleProperties, subscriptionList);
     }
 
     /**
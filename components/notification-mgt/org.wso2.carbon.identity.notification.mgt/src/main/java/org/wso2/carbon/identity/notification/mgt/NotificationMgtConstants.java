@@ -38,4 +38,37 @@ public class NotificationMgtConstants {
         private Configs() {
         }
     }
+
+    /**
+     * Constants of the shared SMTP dispatcher. Configured as parameters of the mailto transport sender in axis2.xml
+     */
+    public static class SMTP {
+        public static final String MAILTO_TRANSPORT = "mailto";
+        public static final String PROTOCOL = "smtp";
+        public static final String HOST = "mail.smtp.host";
+        public static final String PORT = "mail.smtp.port";
+        public static final String USER = "mail.smtp.user";
+        public static final String PASSWORD = "mail.smtp.password";
+        public static final String FROM = "mail.smtp.from";
+        public static final String CONNECTIONS = "mail.smtp.dispatcher.connections";
+        public static final String BATCH_SIZE = "mail.smtp.dispatcher.batchSize";
+        public static final String QUEUE_SIZE = "mail.smtp.dispatcher.queueSize";
+        public static final String QUEUE_TIMEOUT = "mail.smtp.dispatcher.queueTimeout";
+        public static final String IDLE_TIMEOUT = "mail.smtp.dispatcher.idleTimeout";
+        public static final String DOMAIN_RATE = "mail.smtp.dispatcher.domainRate";
+        public static final String DISPATCHER_ENABLED = "mail.smtp.dispatcher.enabled";
+        public static final String SECURE_VAULT_NS = "http://org.wso2.securevault/configuration";
+        public static final String SECRET_ALIAS = "secretAlias";
+        public static final int DEFAULT_CONNECTIONS = 5;
+        public static final int DEFAULT_BATCH_SIZE = 20;
+        public static final int DEFAULT_QUEUE_SIZE = 10000;
+        public static final int DEFAULT_QUEUE_TIMEOUT = 5000;
+        public static final int DEFAULT_IDLE_TIMEOUT = 30000;
+        public static final int SHUTDOWN_TIMEOUT = 30000;
+        public static final int MAX_RATE_LIMITED_DOMAINS = 1000;
+        public static final String TEXT_CONTENT_TYPE = "text/plain; charset=UTF-8";
+
+        private SMTP() {
+        }
+    }
 }
@@ -28,6 +28,7 @@ import org.wso2.carbon.identity.notification.mgt.NotificationMgtConstants;
 import org.wso2.carbon.identity.notification.mgt.NotificationSender;
 import org.wso2.carbon.identity.notification.mgt.NotificationSendingModule;
 import org.wso2.carbon.identity.notification.mgt.bean.ModuleConfiguration;
+import org.wso2.carbon.identity.notification.mgt.smtp.SMTPDispatcher;
 
 import javax.mail.MessageRemovedException;
 import java.util.ArrayList;
@@ -113,6 +114,7 @@ public class NotificationManagementServiceComponent {
             log.debug("Notification Management bundle is deactivated");
         }
         notificationSender.stopService();
+        SMTPDispatcher.shutdownInstance();
     }
 
     /**
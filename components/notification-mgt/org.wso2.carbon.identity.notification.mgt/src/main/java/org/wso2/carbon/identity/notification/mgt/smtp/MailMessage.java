@@ -0,0 +1,74 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.notification.mgt.smtp;
+
+/**
+ * A bean class which keeps a single email queued in the SMTP dispatcher.
+ */
+public class MailMessage {
+    /**
+     * Address of the recipient
+     */
+    private String sendTo;
+    /**
+     * Subject of the mail
+     */
+    private String subject;
+    /**
+     * Content of the mail
+     */
+    private String body;
+    /**
+     * Content type of the body. eg text/plain; charset=UTF-8
+     */
+    private String contentType;
+
+    public MailMessage(String sendTo, String subject, String body, String contentType) {
+        this.sendTo = sendTo;
+        this.subject = subject;
+        this.body = body;
+        this.contentType = contentType;
+    }
+
+    public String getSendTo() {
+        return sendTo;
+    }
+
+    public String getSubject() {
+        return subject;
+    }
+
+    public String getBody() {
+        return body;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    /**
+     * Domain of the recipient address which is used for rate limiting
+     *
+     * @return Domain of the recipient in lower case, empty string if the address has no domain
+     */
+    public String getRecipientDomain() {
+        int index = sendTo.lastIndexOf('@');
+        return index < 0 ? "" : sendTo.substring(index + 1).trim().toLowerCase();
+    }
+}
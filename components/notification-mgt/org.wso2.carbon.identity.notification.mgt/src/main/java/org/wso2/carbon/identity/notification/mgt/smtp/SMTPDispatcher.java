@@ -0,0 +1,512 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.notification.mgt.smtp;
+
+import org.apache.axiom.om.OMElement;
+import org.apache.axis2.context.ConfigurationContext;
+import org.apache.axis2.description.Parameter;
+import org.apache.axis2.description.TransportOutDescription;
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.carbon.core.CarbonConfigurationContextFactory;
+import org.wso2.carbon.identity.notification.mgt.NotificationManagementUtils;
+import org.wso2.carbon.identity.notification.mgt.NotificationMgtConstants;
+import org.wso2.securevault.SecretResolver;
+import org.wso2.securevault.SecretResolverFactory;
+
+import javax.mail.Message;
+import javax.mail.MessagingException;
+import javax.mail.Session;
+import javax.mail.Transport;
+import javax.mail.internet.InternetAddress;
+import javax.mail.internet.MimeMessage;
+import javax.xml.namespace.QName;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * SMTP dispatch engine which is shared by the notification sending paths which send mails. Each worker keeps an
+ * authenticated SMTP transport open and sends queued mails in batches over it, instead of opening a connection per
+ * mail. Mails are accepted through a bounded queue which applies back pressure to the callers, and can be rate
+ * limited per recipient domain. The shared dispatcher is used only when it is enabled in the parameters of the mailto
+ * transport sender, otherwise mails are sent through the axis2 mail transport.
+ */
+public class SMTPDispatcher {
+
+    private static final Log log = LogFactory.getLog(SMTPDispatcher.class);
+    /**
+     * Maximum time in milliseconds a worker waits on an empty queue before checking whether the dispatcher is stopped
+     */
+    private static final long POLL_INTERVAL = 1000;
+
+    private static volatile SMTPDispatcher instance;
+    /**
+     * Whether the mailto transport configuration is already read for the shared instance
+     */
+    private static volatile boolean initialized;
+
+    private final Session session;
+    private final String host;
+    private final int port;
+    private final String user;
+    private final String password;
+    private final InternetAddress from;
+    private final int batchSize;
+    private final long queueTimeout;
+    private final long idleTimeout;
+    /**
+     * Minimum interval between two mails to the same domain in nano seconds. 0 if not rate limited.
+     */
+    private final long domainInterval;
+    private final BlockingQueue<MailMessage> queue;
+    private final ExecutorService workers;
+    private final ConcurrentMap<String, AtomicLong> domainSlots = new ConcurrentHashMap<String, AtomicLong>();
+    private volatile boolean running = true;
+
+    private final long startTime = System.currentTimeMillis();
+    private final AtomicLong sentMails = new AtomicLong();
+    private final AtomicLong failedMails = new AtomicLong();
+    private final AtomicLong rejectedMails = new AtomicLong();
+    private final AtomicLong sentBatches = new AtomicLong();
+    private final AtomicLong openedConnections = new AtomicLong();
+
+    /**
+     * Creates a dispatcher with the given mail properties.
+     *
+     * @param properties Java mail session properties, along with the dispatcher properties defined in
+     *                   NotificationMgtConstants.SMTP
+     * @throws MessagingException If the from address is invalid
+     */
+    public SMTPDispatcher(Properties properties) throws MessagingException {
+
+        this.session = Session.getInstance(properties);
+        this.host = properties.getProperty(NotificationMgtConstants.SMTP.HOST);
+        this.port = NotificationManagementUtils.getIntProperty(properties, NotificationMgtConstants.SMTP.PORT, -1);
+        this.user = properties.getProperty(NotificationMgtConstants.SMTP.USER);
+        this.password = properties.getProperty(NotificationMgtConstants.SMTP.PASSWORD);
+        String fromAddress = properties.getProperty(NotificationMgtConstants.SMTP.FROM);
+        this.from = StringUtils.isNotBlank(fromAddress) ? new InternetAddress(fromAddress.trim()) : null;
+
+        int connections = NotificationManagementUtils.getIntProperty(properties,
+                NotificationMgtConstants.SMTP.CONNECTIONS, NotificationMgtConstants.SMTP.DEFAULT_CONNECTIONS);
+        this.batchSize = Math.max(1, NotificationManagementUtils.getIntProperty(properties,
+                NotificationMgtConstants.SMTP.BATCH_SIZE, NotificationMgtConstants.SMTP.DEFAULT_BATCH_SIZE));
+        this.queueTimeout = NotificationManagementUtils.getIntProperty(properties,
+                NotificationMgtConstants.SMTP.QUEUE_TIMEOUT, NotificationMgtConstants.SMTP.DEFAULT_QUEUE_TIMEOUT);
+        this.idleTimeout = NotificationManagementUtils.getIntProperty(properties,
+                NotificationMgtConstants.SMTP.IDLE_TIMEOUT, NotificationMgtConstants.SMTP.DEFAULT_IDLE_TIMEOUT);
+        int domainRate = NotificationManagementUtils.getIntProperty(properties,
+                NotificationMgtConstants.SMTP.DOMAIN_RATE, 0);
+        this.domainInterval = domainRate > 0 ? TimeUnit.SECONDS.toNanos(1) / domainRate : 0;
+        this.queue = new LinkedBlockingQueue<MailMessage>(NotificationManagementUtils.getIntProperty(properties,
+                NotificationMgtConstants.SMTP.QUEUE_SIZE, NotificationMgtConstants.SMTP.DEFAULT_QUEUE_SIZE));
+
+        this.workers = Executors.newFixedThreadPool(connections, new WorkerThreadFactory());
+        for (int i = 0; i < connections; i++) {
+            workers.execute(new Worker());
+        }
+    }
+
+    /**
+     * Returns the dispatcher configured from the parameters of the mailto transport sender of the server.
+     *
+     * @return Shared SMTP dispatcher. Null if the dispatcher is not enabled or there is no SMTP host configured for
+     * the mailto transport, or the server configuration is not available yet
+     */
+    public static SMTPDispatcher getInstance() {
+
+        if (!initialized) {
+            synchronized (SMTPDispatcher.class) {
+                if (!initialized) {
+                    Properties properties = getMailTransportProperties();
+                    if (properties == null) {
+                        // The server is not started yet. Configuration is read again on the next call
+                        return null;
+                    }
+                    String enabled = properties.getProperty(NotificationMgtConstants.SMTP.DISPATCHER_ENABLED);
+                    if (!Boolean.parseBoolean(enabled)) {
+                        if (log.isDebugEnabled()) {
+                            log.debug("SMTP dispatcher is not enabled for mailto transport. Mails are sent through " +
+                                    "the mail transport");
+                        }
+                    } else if (StringUtils.isBlank(properties.getProperty(NotificationMgtConstants.SMTP.HOST))) {
+                        log.warn("SMTP dispatcher is enabled, but no SMTP host is configured for mailto transport. " +
+                                "Mails are sent through the mail transport");
+                    } else {
+                        try {
+                            instance = new SMTPDispatcher(properties);
+                        } catch (MessagingException e) {
+                            log.error("Error while initializing SMTP dispatcher", e);
+                            return null;
+                        }
+                    }
+                    initialized = true;
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Stops the shared dispatcher, if it is initialized.
+     */
+    public static void shutdownInstance() {
+
+        synchronized (SMTPDispatcher.class) {
+            if (instance != null) {
+                instance.shutdown();
+                instance = null;
+            }
+            initialized = false;
+        }
+    }
+
+    /**
+     * Queue a mail to be sent. Blocks up to the configured queue timeout if the queue is full.
+     *
+     * @param message Mail to be sent
+     * @return True if the mail is queued, false if the queue stays full or the dispatcher is stopped
+     */
+    public boolean send(MailMessage message) {
+
+        if (!running || message == null || StringUtils.isBlank(message.getSendTo())) {
+            return false;
+        }
+        try {
+            if (queue.offer(message, queueTimeout, TimeUnit.MILLISECONDS)) {
+                return true;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        rejectedMails.incrementAndGet();
+        log.error("SMTP dispatch queue is full. Mail to " + message.getSendTo() + " is rejected");
+        return false;
+    }
+
+    /**
+     * Stops accepting mails and waits for the workers to send the mails which are already queued. Mails which are
+     * not sent within the shutdown timeout are dropped and logged.
+     */
+    public void shutdown() {
+
+        running = false;
+        workers.shutdown();
+        try {
+            if (!workers.awaitTermination(NotificationMgtConstants.SMTP.SHUTDOWN_TIMEOUT, TimeUnit.MILLISECONDS)) {
+                workers.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            workers.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        List<MailMessage> dropped = new ArrayList<MailMessage>();
+        queue.drainTo(dropped);
+        if (!dropped.isEmpty()) {
+            failedMails.addAndGet(dropped.size());
+            log.error(dropped.size() + " queued mails are not sent since the SMTP dispatcher is shut down");
+            if (log.isDebugEnabled()) {
+                for (MailMessage mail : dropped) {
+                    log.debug("Dropped mail to " + mail.getSendTo() + " with subject " + mail.getSubject());
+                }
+            }
+        }
+    }
+
+    public long getSentMailCount() {
+        return sentMails.get();
+    }
+
+    public long getFailedMailCount() {
+        return failedMails.get();
+    }
+
+    public long getRejectedMailCount() {
+        return rejectedMails.get();
+    }
+
+    public long getSentBatchCount() {
+        return sentBatches.get();
+    }
+
+    public long getOpenedConnectionCount() {
+        return openedConnections.get();
+    }
+
+    public int getQueuedMailCount() {
+        return queue.size();
+    }
+
+    public int getRateLimitedDomainCount() {
+        return domainSlots.size();
+    }
+
+    /**
+     * Number of mails sent per second since the dispatcher is started
+     *
+     * @return Throughput of the dispatcher
+     */
+    public double getThroughput() {
+        long elapsed = System.currentTimeMillis() - startTime;
+        return elapsed == 0 ? 0 : sentMails.get() * 1000.0 / elapsed;
+    }
+
+    private static Properties getMailTransportProperties() {
+
+        ConfigurationContext configContext = CarbonConfigurationContextFactory.getConfigurationContext();
+        if (configContext == null) {
+            return null;
+        }
+        Properties properties = new Properties();
+        TransportOutDescription transportOut = configContext.getAxisConfiguration().getTransportOut(
+                NotificationMgtConstants.SMTP.MAILTO_TRANSPORT);
+        if (transportOut != null) {
+            for (Parameter parameter : transportOut.getParameters()) {
+                if (parameter.getValue() instanceof String) {
+                    properties.setProperty(parameter.getName(), ((String) parameter.getValue()).trim());
+                }
+            }
+            Parameter password = transportOut.getParameter(NotificationMgtConstants.SMTP.PASSWORD);
+            if (password != null) {
+                String resolvedPassword = resolveSecret(password);
+                if (resolvedPassword != null) {
+                    properties.setProperty(NotificationMgtConstants.SMTP.PASSWORD, resolvedPassword);
+                }
+            }
+        }
+        return properties;
+    }
+
+    /**
+     * Resolves the value of a parameter which is protected with secure vault, as in
+     * &lt;parameter name="mail.smtp.password" svns:secretAlias="..."&gt;
+     *
+     * @param parameter Transport parameter
+     * @return Resolved value. Null if the parameter is not protected or cannot be resolved
+     */
+    private static String resolveSecret(Parameter parameter) {
+
+        OMElement parameterElement = parameter.getParameterElement();
+        if (parameterElement == null) {
+            return null;
+        }
+        String alias = parameterElement.getAttributeValue(new QName(NotificationMgtConstants.SMTP.SECURE_VAULT_NS,
+                NotificationMgtConstants.SMTP.SECRET_ALIAS));
+        if (StringUtils.isBlank(alias)) {
+            return null;
+        }
+        SecretResolver secretResolver = SecretResolverFactory.create(parameterElement, false);
+        if (secretResolver != null && secretResolver.isInitialized() && secretResolver.isTokenProtected(alias)) {
+            if (log.isDebugEnabled()) {
+                log.debug("Resolving the secret of " + parameter.getName() + " of mailto transport");
+            }
+            return secretResolver.resolve(alias);
+        }
+        log.error("Secret alias " + alias + " of " + parameter.getName() + " of mailto transport cannot be resolved");
+        return null;
+    }
+
+    /**
+     * Waits until the next mail to the given domain is allowed by the domain rate limit.
+     */
+    private void acquireDomainSlot(String domain) throws InterruptedException {
+
+        if (domainInterval == 0) {
+            return;
+        }
+        AtomicLong nextSlot = domainSlots.get(domain);
+        if (nextSlot == null) {
+            if (domainSlots.size() >= NotificationMgtConstants.SMTP.MAX_RATE_LIMITED_DOMAINS) {
+                removeIdleDomainSlots();
+            }
+            nextSlot = new AtomicLong(System.nanoTime());
+            AtomicLong existing = domainSlots.putIfAbsent(domain, nextSlot);
+            if (existing != null) {
+                nextSlot = existing;
+            }
+        }
+        while (true) {
+            long now = System.nanoTime();
+            long current = nextSlot.get();
+            long slot = Math.max(current, now);
+            if (nextSlot.compareAndSet(current, slot + domainInterval)) {
+                if (slot > now) {
+                    TimeUnit.NANOSECONDS.sleep(slot - now);
+                }
+                return;
+            }
+        }
+    }
+
+    /**
+     * Removes the slots of domains which have not received a mail within the rate limit interval. Such a slot
+     * allows the next mail right away, as a missing slot does. A slot taken while it is being removed lets at most
+     * one more mail through to its domain.
+     */
+    private void removeIdleDomainSlots() {
+
+        long now = System.nanoTime();
+        for (Iterator<Map.Entry<String, AtomicLong>> iterator = domainSlots.entrySet().iterator();
+             iterator.hasNext(); ) {
+            if (iterator.next().getValue().get() - now <= 0) {
+                iterator.remove();
+            }
+        }
+    }
+
+    private MimeMessage buildMessage(MailMessage mail) throws MessagingException {
+
+        MimeMessage message = new MimeMessage(session);
+        if (from != null) {
+            message.setFrom(from);
+        } else {
+            message.setFrom();
+        }
+        message.setRecipients(Message.RecipientType.TO, InternetAddress.parse(mail.getSendTo().trim()));
+        message.setSubject(mail.getSubject(), "UTF-8");
+        message.setContent(mail.getBody(), StringUtils.isNotBlank(mail.getContentType()) ? mail.getContentType() :
+                NotificationMgtConstants.SMTP.TEXT_CONTENT_TYPE);
+        message.setSentDate(new Date());
+        message.saveChanges();
+        return message;
+    }
+
+    /**
+     * Worker which owns one SMTP connection. Takes mails from the queue in batches and sends them over the same
+     * connection, reconnecting only when the connection is dropped. Idle connections are closed. Once the
+     * dispatcher is stopped, the worker sends the mails left in the queue and exits.
+     */
+    private class Worker implements Runnable {
+
+        private Transport transport;
+
+        @Override
+        public void run() {
+
+            List<MailMessage> batch = new ArrayList<MailMessage>(batchSize);
+            long lastSent = System.currentTimeMillis();
+            try {
+                while (running || !queue.isEmpty()) {
+                    MailMessage first = queue.poll(Math.min(idleTimeout, POLL_INTERVAL), TimeUnit.MILLISECONDS);
+                    if (first == null) {
+                        if (System.currentTimeMillis() - lastSent >= idleTimeout) {
+                            close();
+                        }
+                        continue;
+                    }
+                    batch.add(first);
+                    queue.drainTo(batch, batchSize - 1);
+                    sendBatch(batch);
+                    batch.clear();
+                    lastSent = System.currentTimeMillis();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                close();
+            }
+        }
+
+        private void sendBatch(List<MailMessage> batch) throws InterruptedException {
+
+            // Connection is verified once per batch. Checking it per mail costs a NOOP round trip per mail.
+            Transport connection = null;
+            for (MailMessage mail : batch) {
+                acquireDomainSlot(mail.getRecipientDomain());
+                try {
+                    MimeMessage message = buildMessage(mail);
+                    if (connection == null) {
+                        connection = connect();
+                    }
+                    try {
+                        connection.sendMessage(message, message.getAllRecipients());
+                    } catch (MessagingException e) {
+                        // The server may have dropped the connection. Retry once on a new connection.
+                        if (connection.isConnected()) {
+                            throw e;
+                        }
+                        connection = connect();
+                        connection.sendMessage(message, message.getAllRecipients());
+                    }
+                    sentMails.incrementAndGet();
+                    if (log.isDebugEnabled()) {
+                        log.debug("Mail has been sent to " + mail.getSendTo());
+                    }
+                } catch (MessagingException e) {
+                    failedMails.incrementAndGet();
+                    log.error("Error while sending mail to " + mail.getSendTo(), e);
+                }
+            }
+            sentBatches.incrementAndGet();
+        }
+
+        private Transport connect() throws MessagingException {
+
+            if (transport == null) {
+                transport = session.getTransport(NotificationMgtConstants.SMTP.PROTOCOL);
+            }
+            if (!transport.isConnected()) {
+                transport.connect(host, port, user, password);
+                openedConnections.incrementAndGet();
+            }
+            return transport;
+        }
+
+        private void close() {
+
+            if (transport != null && transport.isConnected()) {
+                try {
+                    transport.close();
+                } catch (MessagingException e) {
+                    log.error("Error while closing SMTP connection", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Creates named daemon threads, so that the dispatcher does not keep the server from shutting down.
+     */
+    private static class WorkerThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "SMTPDispatcherWorker-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
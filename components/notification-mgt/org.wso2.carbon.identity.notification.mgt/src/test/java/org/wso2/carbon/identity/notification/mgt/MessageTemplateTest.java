@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.notification.mgt;
+
+import junit.framework.TestCase;
+
+import java.util.Properties;
+
+public class MessageTemplateTest extends TestCase {
+
+    private static final String TEMPLATE = "Hi {first-name},\n\nYour account {user-name} of {tenant-domain} was " +
+            "locked at {time} after {attempts} failed attempts. Contact {admin} or visit {url} to unlock it." +
+            "\n\n{unknown} {}{{user-name}}\n\nRegards,\n{sender}";
+
+    public void testRenderUsesPropertiesInPriorityOrder() {
+
+        Properties endpoint = properties("first-name", "Alice", "sender", "endpoint");
+        Properties event = properties("sender", "event", "user-name", "alice");
+        Properties subscription = properties("sender", "subscription", "admin", "admin@wso2.com");
+
+        String message = MessageTemplate.compile("{first-name} {user-name} {admin} {sender} {none}", "{", "}")
+                .render(endpoint, null, event, subscription);
+        assertEquals("Alice alice admin@wso2.com endpoint {none}", message);
+    }
+
+    public void testRenderHandlesNestedAndEmptyPlaceHolders() {
+
+        String message = MessageTemplate.compile("{}{{user-name}}{user-name", "{", "}")
+                .render(properties("user-name", "alice"));
+        assertEquals("{}{alice}{user-name", message);
+    }
+
+    public void testRenderMatchesRegexReplacement() {
+
+        Properties endpoint = properties("first-name", "Alice", "admin", "admin@wso2.com");
+        Properties event = properties("user-name", "alice", "tenant-domain", "wso2.com", "time", "10:15",
+                "attempts", "5");
+        Properties subscription = properties("url", "https://localhost:9443/", "sender", "WSO2 Identity Server");
+
+        String message = NotificationManagementUtils.replacePlaceHolders(TEMPLATE, "\\{", "\\}", endpoint);
+        message = NotificationManagementUtils.replacePlaceHolders(message, "\\{", "\\}", event);
+        message = NotificationManagementUtils.replacePlaceHolders(message, "\\{", "\\}", subscription);
+
+        MessageTemplate template = MessageTemplate.compile(TEMPLATE, "{", "}");
+        assertEquals(message, template.render(endpoint, event, subscription));
+        assertEquals("rendering should not change the compiled template", message,
+                template.render(endpoint, event, subscription));
+    }
+
+    public void testRenderWithOtherDelimiters() {
+
+        MessageTemplate template = MessageTemplate.compile("{\"user\" : \"(user-name)\", \"tenant\" : \"(tenant)\"}",
+                "(", ")");
+        assertEquals("{\"user\" : \"alice\", \"tenant\" : \"(tenant)\"}",
+                template.render(properties("user-name", "alice")));
+    }
+
+    public void testMissingDelimitersAreRejected() {
+
+        try {
+            MessageTemplate.compile("{user-name}", "", "}");
+            fail("template without a start delimiter should not be compiled");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    private static Properties properties(String... keyValues) {
+
+        Properties properties = new Properties();
+        for (int i = 0; i < keyValues.length; i += 2) {
+            properties.setProperty(keyValues[i], keyValues[i + 1]);
+        }
+        return properties;
+    }
+}
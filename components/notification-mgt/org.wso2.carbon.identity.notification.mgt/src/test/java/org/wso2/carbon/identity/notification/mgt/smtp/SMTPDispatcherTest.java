@@ -0,0 +1,227 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.notification.mgt.smtp;
+
+import junit.framework.TestCase;
+import org.wso2.carbon.identity.notification.mgt.NotificationMgtConstants;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Sends mails through the dispatcher to a local SMTP stub, which records the connections and the received mails.
+ */
+public class SMTPDispatcherTest extends TestCase {
+
+    private StubSMTPServer server;
+    private SMTPDispatcher dispatcher;
+
+    @Override
+    protected void setUp() throws Exception {
+
+        server = new StubSMTPServer();
+        server.start();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+
+        if (dispatcher != null) {
+            dispatcher.shutdown();
+        }
+        server.close();
+    }
+
+    public void testMailsAreSentInBatchesOverSharedConnections() throws Exception {
+
+        dispatcher = new SMTPDispatcher(properties(2, 10, 0));
+        for (int i = 0; i < 50; i++) {
+            assertTrue(dispatcher.send(mail("user" + i + "@wso2.com")));
+        }
+
+        waitForSentMails(50);
+        assertEquals(50, server.mails.size());
+        assertEquals(0, dispatcher.getFailedMailCount());
+        assertTrue("Opened " + server.connections.get() + " connections", server.connections.get() <= 2);
+        assertTrue(dispatcher.getSentBatchCount() < 50);
+        assertTrue(server.mails.get(0).contains("Subject: Account locked"));
+
+        int workers = 0;
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (thread.getName().startsWith("SMTPDispatcherWorker-")) {
+                assertTrue(thread.getName() + " should not keep the server running", thread.isDaemon());
+                workers++;
+            }
+        }
+        assertEquals(2, workers);
+    }
+
+    public void testShutdownSendsQueuedMails() throws Exception {
+
+        dispatcher = new SMTPDispatcher(properties(1, 5, 0));
+        for (int i = 0; i < 30; i++) {
+            assertTrue(dispatcher.send(mail("user" + i + "@wso2.com")));
+        }
+        dispatcher.shutdown();
+
+        assertEquals(30, dispatcher.getSentMailCount());
+        assertEquals(0, dispatcher.getFailedMailCount());
+        assertEquals(30, server.mails.size());
+        assertFalse(dispatcher.send(mail("late@wso2.com")));
+    }
+
+    public void testMailsToDomainAreRateLimited() throws Exception {
+
+        dispatcher = new SMTPDispatcher(properties(2, 10, 20));
+        long start = System.currentTimeMillis();
+        for (int i = 0; i < 10; i++) {
+            dispatcher.send(mail("user" + i + "@wso2.com"));
+        }
+
+        waitForSentMails(10);
+        // 20 mails per second to the domain, hence 10 mails take at least 9 intervals of 50 ms
+        assertTrue(System.currentTimeMillis() - start >= 450);
+    }
+
+    public void testIdleDomainSlotsAreRemoved() throws Exception {
+
+        dispatcher = new SMTPDispatcher(properties(2, 10, 1000));
+        int domains = NotificationMgtConstants.SMTP.MAX_RATE_LIMITED_DOMAINS * 2;
+        for (int i = 0; i < domains; i++) {
+            assertTrue(dispatcher.send(mail("user@domain" + i + ".com")));
+        }
+
+        waitForSentMails(domains);
+        assertTrue(dispatcher.getRateLimitedDomainCount() + " domains are tracked",
+                dispatcher.getRateLimitedDomainCount() <= NotificationMgtConstants.SMTP.MAX_RATE_LIMITED_DOMAINS);
+    }
+
+    private void waitForSentMails(int count) throws InterruptedException {
+
+        long deadline = System.currentTimeMillis() + 10000;
+        while (dispatcher.getSentMailCount() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(count, dispatcher.getSentMailCount());
+    }
+
+    private Properties properties(int connections, int batchSize, int domainRate) {
+
+        Properties properties = new Properties();
+        properties.setProperty(NotificationMgtConstants.SMTP.HOST, "127.0.0.1");
+        properties.setProperty(NotificationMgtConstants.SMTP.PORT, String.valueOf(server.getPort()));
+        properties.setProperty(NotificationMgtConstants.SMTP.FROM, "identity@wso2.com");
+        properties.setProperty(NotificationMgtConstants.SMTP.CONNECTIONS, String.valueOf(connections));
+        properties.setProperty(NotificationMgtConstants.SMTP.BATCH_SIZE, String.valueOf(batchSize));
+        properties.setProperty(NotificationMgtConstants.SMTP.DOMAIN_RATE, String.valueOf(domainRate));
+        return properties;
+    }
+
+    private static MailMessage mail(String sendTo) {
+        return new MailMessage(sendTo, "Account locked", "Your account is locked", null);
+    }
+
+    /**
+     * Minimal SMTP server which accepts every mail.
+     */
+    private static class StubSMTPServer extends Thread {
+
+        private final ServerSocket serverSocket;
+        private final List<String> mails = new CopyOnWriteArrayList<String>();
+        private final AtomicInteger connections = new AtomicInteger();
+
+        private StubSMTPServer() throws IOException {
+            serverSocket = new ServerSocket(0, 50, InetAddress.getByName("127.0.0.1"));
+            setDaemon(true);
+        }
+
+        private int getPort() {
+            return serverSocket.getLocalPort();
+        }
+
+        private void close() throws IOException {
+            serverSocket.close();
+        }
+
+        @Override
+        public void run() {
+
+            while (!serverSocket.isClosed()) {
+                try {
+                    final Socket socket = serverSocket.accept();
+                    connections.incrementAndGet();
+                    Thread session = new Thread() {
+                        @Override
+                        public void run() {
+                            serve(socket);
+                        }
+                    };
+                    session.setDaemon(true);
+                    session.start();
+                } catch (IOException e) {
+                    return;
+                }
+            }
+        }
+
+        private void serve(Socket socket) {
+
+            try {
+                BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), "US-ASCII"));
+                OutputStream out = socket.getOutputStream();
+                reply(out, "220 localhost stub");
+                String line;
+                while ((line = in.readLine()) != null) {
+                    String command = line.toUpperCase();
+                    if (command.startsWith("DATA")) {
+                        reply(out, "354 End data with <CR><LF>.<CR><LF>");
+                        StringBuilder mail = new StringBuilder();
+                        while ((line = in.readLine()) != null && !".".equals(line)) {
+                            mail.append(line).append('\n');
+                        }
+                        mails.add(mail.toString());
+                        reply(out, "250 OK");
+                    } else if (command.startsWith("QUIT")) {
+                        reply(out, "221 Bye");
+                        break;
+                    } else {
+                        reply(out, "250 OK");
+                    }
+                }
+                socket.close();
+            } catch (IOException ignore) {
+                // connection closed by the client
+            }
+        }
+
+        private static void reply(OutputStream out, String reply) throws IOException {
+            out.write((reply + "\r\n").getBytes("US-ASCII"));
+            out.flush();
+        }
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.carbon.identity.oauth.cache;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.carbon.identity.application.common.cache.BaseCache;
+import org.wso2.carbon.identity.core.util.IdentityUtil;
+import org.wso2.carbon.utils.CarbonUtils;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ClientCredentialCache keeps hashed client secrets by client id, together with short lived entries for client ids
+ * which are not registered, so that repeated authentication attempts do not reach the database.
+ */
+public class ClientCredentialCache extends BaseCache<String, ClientCredentialCacheEntry> {
+
+    private static final Log log = LogFactory.getLog(ClientCredentialCache.class);
+
+    private static final String CLIENT_CREDENTIAL_CACHE_NAME = "OAuthClientCredentialCache";
+
+    private static final String NEGATIVE_ENTRY_TIMEOUT = "OAuth.ClientCredentialNegativeCacheTimeout";
+
+    private static final long DEFAULT_NEGATIVE_ENTRY_TIMEOUT = TimeUnit.SECONDS.toMillis(30);
+
+    private static volatile ClientCredentialCache instance;
+
+    private long negativeEntryTimeout = DEFAULT_NEGATIVE_ENTRY_TIMEOUT;
+
+    private ClientCredentialCache() {
+        super(CLIENT_CREDENTIAL_CACHE_NAME);
+        String timeout = IdentityUtil.getProperty(NEGATIVE_ENTRY_TIMEOUT);
+        if (StringUtils.isNotBlank(timeout)) {
+            try {
+                negativeEntryTimeout = TimeUnit.SECONDS.toMillis(Long.parseLong(timeout.trim()));
+            } catch (NumberFormatException e) {
+                log.error("Invalid value " + timeout + " for " + NEGATIVE_ENTRY_TIMEOUT + ". Using default value " +
+                        TimeUnit.MILLISECONDS.toSeconds(DEFAULT_NEGATIVE_ENTRY_TIMEOUT) + " seconds");
+            }
+        }
+    }
+
+    /**
+     * Returns ClientCredentialCache instance
+     *
+     * @return instance of ClientCredentialCache
+     */
+    public static ClientCredentialCache getInstance() {
+        CarbonUtils.checkSecurity();
+        if (instance == null) {
+            synchronized (ClientCredentialCache.class) {
+                if (instance == null) {
+                    instance = new ClientCredentialCache();
+                }
+            }
+        }
+        return instance;
+    }
+
+    @Override
+    public ClientCredentialCacheEntry getValueFromCache(String clientId) {
+        ClientCredentialCacheEntry entry = super.getValueFromCache(clientId);
+        if (entry != null && entry.isNegative() && entry.isExpired()) {
+            super.clearCacheEntry(clientId);
+            return null;
+        }
+        return entry;
+    }
+
+    /**
+     * Caches the secret of a registered client
+     *
+     * @param clientId     Client id
+     * @param clientSecret Client secret
+     */
+    public void addClientSecret(String clientId, String clientSecret) {
+        super.addToCache(clientId, ClientCredentialCacheEntry.createEntry(clientSecret));
+    }
+
+    /**
+     * Marks the client id as not registered, until the negative entry timeout elapses or the client is registered
+     *
+     * @param clientId Client id
+     */
+    public void addUnknownClient(String clientId) {
+        if (negativeEntryTimeout > 0) {
+            super.addToCache(clientId, ClientCredentialCacheEntry.createNegativeEntry(negativeEntryTimeout));
+        }
+    }
+}
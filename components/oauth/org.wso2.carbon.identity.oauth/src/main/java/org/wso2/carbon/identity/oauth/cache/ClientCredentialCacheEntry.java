@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.carbon.identity.oauth.cache;
+
+import org.apache.commons.io.Charsets;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+
+/**
+ * Cached credential of an OAuth client. The client secret is kept as a salted SHA-256 hash so that the plain text
+ * secret is not held in, or replicated through, the cache. An entry without a hash marks a client id which is not
+ * registered, and expires after the negative entry timeout of the cache.
+ */
+public class ClientCredentialCacheEntry extends CacheEntry {
+
+    private static final long serialVersionUID = -2316493720947839502L;
+
+    private static final String HASH_ALGORITHM = "SHA-256";
+
+    private static final int SALT_LENGTH = 16;
+
+    private static final SecureRandom random = new SecureRandom();
+
+    private final byte[] salt;
+
+    private final byte[] secretHash;
+
+    private final long expiryTime;
+
+    private ClientCredentialCacheEntry(byte[] salt, byte[] secretHash, long expiryTime) {
+        this.salt = salt;
+        this.secretHash = secretHash;
+        this.expiryTime = expiryTime;
+    }
+
+    /**
+     * Creates an entry for a registered client
+     *
+     * @param clientSecret Client secret issued to the client
+     * @return Cache entry which keeps the hash of the secret
+     */
+    public static ClientCredentialCacheEntry createEntry(String clientSecret) {
+        byte[] salt = new byte[SALT_LENGTH];
+        random.nextBytes(salt);
+        return new ClientCredentialCacheEntry(salt, hash(salt, clientSecret), Long.MAX_VALUE);
+    }
+
+    /**
+     * Creates an entry for a client id which is not registered
+     *
+     * @param timeToLive Time in milliseconds the entry is valid for
+     * @return Cache entry which does not match any secret
+     */
+    public static ClientCredentialCacheEntry createNegativeEntry(long timeToLive) {
+        return new ClientCredentialCacheEntry(null, null, System.currentTimeMillis() + timeToLive);
+    }
+
+    /**
+     * @return true if the client id of this entry is not registered
+     */
+    public boolean isNegative() {
+        return secretHash == null;
+    }
+
+    /**
+     * @return true if this is a negative entry which has outlived its timeout
+     */
+    public boolean isExpired() {
+        return System.currentTimeMillis() > expiryTime;
+    }
+
+    /**
+     * Compares the given secret with the cached secret. The comparison takes the same time regardless of where the
+     * hashes differ.
+     *
+     * @param clientSecret Client secret provided by the client
+     * @return true if the secret matches, false otherwise or if this is a negative entry
+     */
+    public boolean matches(String clientSecret) {
+        if (secretHash == null || clientSecret == null) {
+            return false;
+        }
+        return MessageDigest.isEqual(secretHash, hash(salt, clientSecret));
+    }
+
+    private static byte[] hash(byte[] salt, String secret) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance(HASH_ALGORITHM);
+            digest.update(salt);
+            return digest.digest(secret.getBytes(Charsets.UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(HASH_ALGORITHM + " is not supported by the JVM", e);
+        }
+    }
+}
@@ -28,6 +28,7 @@ import org.wso2.carbon.identity.core.util.IdentityTenantUtil;
 import org.wso2.carbon.identity.core.util.IdentityUtil;
 import org.wso2.carbon.identity.oauth.IdentityOAuthAdminException;
 import org.wso2.carbon.identity.oauth.OAuthUtil;
+import org.wso2.carbon.identity.oauth.cache.ClientCredentialCache;
 import org.wso2.carbon.identity.oauth.common.OAuthConstants;
 import org.wso2.carbon.identity.oauth.common.exception.InvalidOAuthClientException;
 import org.wso2.carbon.identity.oauth.config.OAuthServerConfiguration;
@@ -84,6 +85,7 @@ public class OAuthAppDAO {
                 prepStmt.setString(9, consumerAppDO.getGrantTypes());
                 prepStmt.execute();
                 connection.commit();
+                clearClientCredentialCache(consumerAppDO.getOauthConsumerKey());
 
             } catch (SQLException e) {
                 throw new IdentityOAuthAdminException("Error when executing the SQL : " +
@@ -125,6 +127,7 @@ public class OAuthAppDAO {
             prepStmt.execute();
 
             connection.commit();
+            clearClientCredentialCache(consumerKey);
 
         } catch (SQLException e) {
             throw new IdentityOAuthAdminException("Error when executing the SQL : " + sqlStmt, e);
@@ -331,6 +334,7 @@ public class OAuthAppDAO {
                 log.debug("No. of records updated for updating consumer application. : " + count);
             }
             connection.commit();
+            clearClientCredentialCache(oauthAppDO.getOauthConsumerKey());
 
         } catch (SQLException e) {
             throw new IdentityOAuthAdminException("Error when updating OAuth application", e);
@@ -352,6 +356,7 @@ public class OAuthAppDAO {
 
             prepStmt.execute();
             connection.commit();
+            clearClientCredentialCache(consumerKey);
 
         } catch (SQLException e) {;
             throw new IdentityOAuthAdminException("Error when executing the SQL : " + SQLQueries.OAuthAppDAOSQLQueries.REMOVE_APPLICATION, e);
@@ -387,6 +392,20 @@ public class OAuthAppDAO {
         }
     }
 
+    /**
+     * Removes the cached credentials of the client, including a cached entry which marks the client id as unknown.
+     *
+     * @param consumerKey Consumer key
+     */
+    private void clearClientCredentialCache(String consumerKey) {
+        if (OAuthServerConfiguration.getInstance().isCacheEnabled()) {
+            ClientCredentialCache.getInstance().clearCacheEntry(consumerKey);
+            if (log.isDebugEnabled()) {
+                log.debug("Client credentials of " + consumerKey + " are removed from the cache.");
+            }
+        }
+    }
+
     private boolean isDuplicateApplication(String username, int tenantId, String userDomain, OAuthAppDO consumerAppDTO)
             throws IdentityOAuthAdminException {
         Connection connection = IdentityDatabaseUtil.getDBConnection();
@@ -71,6 +71,10 @@ public class OAuthCacheRemoveListener extends AbstractCacheListener<OAuthCacheKe
             oauthcacheKey = new OAuthCacheKey(accessTokenDO.getAccessToken());
 
             oauthCache.clearCacheEntry(oauthcacheKey);
+            oauthcacheKey = new OAuthCacheKey(OAuth2Util.buildCacheKeyStringForUserRoles(
+                    accessTokenDO.getAccessToken()));
+
+            oauthCache.clearCacheEntry(oauthcacheKey);
 
         }
     }
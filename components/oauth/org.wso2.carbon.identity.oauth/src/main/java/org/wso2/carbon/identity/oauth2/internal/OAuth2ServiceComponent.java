@@ -30,6 +30,7 @@ import org.wso2.carbon.identity.oauth.config.OAuthServerConfiguration;
 import org.wso2.carbon.identity.oauth2.OAuth2Service;
 import org.wso2.carbon.identity.oauth2.OAuth2TokenValidationService;
 import org.wso2.carbon.identity.user.store.configuration.listener.UserStoreConfigListener;
+import org.wso2.carbon.security.keystore.KeyStoreUpdateListener;
 import org.wso2.carbon.stratos.common.listeners.TenantMgtListener;
 
 /**
@@ -90,6 +91,16 @@ public class OAuth2ServiceComponent {
         } else {
             log.error("OAuth - ApplicationMgtListener could not be registered.");
         }
+
+        ServiceRegistration keyStoreUpdateListenerSR = bundleContext.registerService(
+                KeyStoreUpdateListener.class.getName(), new OAuthKeyStoreUpdateListener(), null);
+        if (keyStoreUpdateListenerSR != null) {
+            if (log.isDebugEnabled()) {
+                log.debug("OAuth - KeyStoreUpdateListener registered.");
+            }
+        } else {
+            log.error("OAuth - KeyStoreUpdateListener could not be registered.");
+        }
     }
 
     /**
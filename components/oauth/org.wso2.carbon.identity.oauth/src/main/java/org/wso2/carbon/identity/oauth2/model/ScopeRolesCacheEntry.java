@@ -0,0 +1,48 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.oauth2.model;
+
+import org.wso2.carbon.identity.oauth.cache.CacheEntry;
+
+import java.util.HashSet;
+import java.util.Set;
+
+public class ScopeRolesCacheEntry extends CacheEntry {
+
+    private static final long serialVersionUID = -5817436021958337431L;
+
+    private HashSet<String> roles;
+
+    public ScopeRolesCacheEntry(Set<String> roles) {
+        if (roles != null) {
+            this.roles = new HashSet<>(roles);
+        }
+    }
+
+    /**
+     * @return a copy of the roles of the scope, or null if no roles are associated with the scope
+     */
+    public Set<String> getRoles() {
+        if (roles == null) {
+            return null;
+        }
+        return new HashSet<>(roles);
+    }
+
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.oauth2.model;
+
+import org.wso2.carbon.identity.oauth.cache.CacheEntry;
+
+public class UserRolesCacheEntry extends CacheEntry {
+
+    private static final long serialVersionUID = 2183065893441251840L;
+
+    private String[] roles;
+    private long expiryTime;
+
+    /**
+     * @param roles      roles of the user
+     * @param expiryTime time in milliseconds after which the roles should not be used
+     */
+    public UserRolesCacheEntry(String[] roles, long expiryTime) {
+        if (roles != null) {
+            this.roles = roles.clone();
+        }
+        this.expiryTime = expiryTime;
+    }
+
+    public String[] getRoles() {
+        if (roles == null) {
+            return null;
+        }
+        return roles.clone();
+    }
+
+    public boolean isExpired() {
+        return System.currentTimeMillis() > expiryTime;
+    }
+
+}
@@ -0,0 +1,275 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.oauth2.util;
+
+import com.nimbusds.jose.JWSSigner;
+import com.nimbusds.jose.crypto.RSASSASigner;
+import org.apache.commons.codec.binary.Base64;
+import org.apache.commons.io.Charsets;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.carbon.base.MultitenantConstants;
+import org.wso2.carbon.core.util.KeyStoreManager;
+import org.wso2.carbon.identity.oauth2.IdentityOAuth2Exception;
+
+import java.security.Key;
+import java.security.KeyStore;
+import java.security.MessageDigest;
+import java.security.cert.Certificate;
+import java.security.interfaces.RSAPrivateKey;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps the signing material used to sign ID tokens and JWTs, per tenant and key alias. The private key, the JWS
+ * signer built on it and the certificate thumbprint are loaded once and reused for every token.
+ * <p/>
+ * Key store updates made through the key store admin invalidate the keys of the tenant immediately, through
+ * {@link #invalidate(int)}. An entry is also reloaded if the key store it was loaded from is replaced in the
+ * KeyStoreManager, which is checked at most once per validation interval so that token issuance does not hit the
+ * registry. This picks up key stores which are updated on other nodes of the cluster.
+ */
+public class OAuth2SigningKeyManager {
+
+    private static final Log log = LogFactory.getLog(OAuth2SigningKeyManager.class);
+
+    private static final long VALIDATION_INTERVAL = TimeUnit.MINUTES.toNanos(1);
+
+    private static final Base64 base64Url = new Base64(0, null, true);
+
+    private static final OAuth2SigningKeyManager instance = new OAuth2SigningKeyManager();
+
+    /**
+     * Signing keys keyed by tenant id and key alias. eg 1:foo.com
+     */
+    private final ConcurrentMap<String, SigningKey> signingKeys = new ConcurrentHashMap<>();
+
+    // Incremented on every invalidation, so that a signing key loaded while the key store was being updated is not
+    // left in the cache after it is invalidated.
+    private final AtomicLong keyStoreVersion = new AtomicLong();
+
+    OAuth2SigningKeyManager() {
+    }
+
+    public static OAuth2SigningKeyManager getInstance() {
+        return instance;
+    }
+
+    /**
+     * Returns the JWS signer of the tenant's signing key
+     *
+     * @param tenantDomain Tenant domain. Super tenant if null
+     * @param tenantId     Tenant id
+     * @return Signer which signs with the private key of the tenant
+     * @throws IdentityOAuth2Exception If the private key of the tenant cannot be loaded
+     */
+    public JWSSigner getSigner(String tenantDomain, int tenantId) throws IdentityOAuth2Exception {
+        return getSigningKey(tenantDomain, tenantId).signer;
+    }
+
+    /**
+     * Returns the base64url encoded SHA-1 thumbprint of the tenant's public certificate, as used in the x5t header
+     *
+     * @param tenantDomain Tenant domain. Super tenant if null
+     * @param tenantId     Tenant id
+     * @return Thumbprint of the public certificate
+     * @throws IdentityOAuth2Exception If the certificate of the tenant cannot be loaded
+     */
+    public String getThumbprint(String tenantDomain, int tenantId) throws IdentityOAuth2Exception {
+        return getSigningKey(tenantDomain, tenantId).thumbprint;
+    }
+
+    /**
+     * Removes the signing keys of the tenant. Should be called when the key store of the tenant is updated
+     *
+     * @param tenantId Tenant id
+     */
+    public void invalidate(int tenantId) {
+
+        keyStoreVersion.incrementAndGet();
+        String prefix = tenantId + ":";
+        for (String key : signingKeys.keySet()) {
+            if (key.startsWith(prefix)) {
+                signingKeys.remove(key);
+            }
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("Signing keys of tenant " + tenantId + " are invalidated");
+        }
+    }
+
+    SigningKey getSigningKey(String tenantDomain, int tenantId) throws IdentityOAuth2Exception {
+
+        if (tenantDomain == null) {
+            tenantDomain = MultitenantConstants.SUPER_TENANT_DOMAIN_NAME;
+        }
+        if (tenantId == 0) {
+            tenantId = OAuth2Util.getTenantId(tenantDomain);
+        }
+        String alias = getKeyAlias(tenantDomain);
+        String cacheKey = tenantId + ":" + alias;
+
+        SigningKey signingKey = signingKeys.get(cacheKey);
+        if (signingKey != null) {
+            long now = System.nanoTime();
+            if (now - signingKey.validatedTime < VALIDATION_INTERVAL) {
+                return signingKey;
+            }
+            if (getKeyStore(tenantDomain, tenantId) == signingKey.keyStore) {
+                signingKey.validatedTime = now;
+                return signingKey;
+            }
+            if (log.isDebugEnabled()) {
+                log.debug("Key store of tenant " + tenantDomain + " is updated. Reloading signing key");
+            }
+        }
+        long version = keyStoreVersion.get();
+        signingKey = loadSigningKey(tenantDomain, tenantId, alias);
+        signingKeys.put(cacheKey, signingKey);
+        // a key loaded while the key store was invalidated may be stale, hence used for this token only
+        if (version != keyStoreVersion.get()) {
+            signingKeys.remove(cacheKey, signingKey);
+        }
+        return signingKey;
+    }
+
+    SigningKey loadSigningKey(String tenantDomain, int tenantId, String alias)
+            throws IdentityOAuth2Exception {
+
+        // get tenant's key store manager
+        KeyStoreManager tenantKSM = KeyStoreManager.getInstance(tenantId);
+        try {
+            Key privateKey;
+            Certificate certificate;
+            KeyStore keyStore = getKeyStore(tenantDomain, tenantId);
+            if (!MultitenantConstants.SUPER_TENANT_DOMAIN_NAME.equals(tenantDomain)) {
+                // obtain private key
+                privateKey = tenantKSM.getPrivateKey(getKeyStoreName(tenantDomain), alias);
+                certificate = keyStore.getCertificate(alias);
+            } else {
+                privateKey = tenantKSM.getDefaultPrivateKey();
+                certificate = tenantKSM.getDefaultPrimaryCertificate();
+            }
+            if (!(privateKey instanceof RSAPrivateKey)) {
+                throw new IdentityOAuth2Exception("No RSA private key found for tenant " + tenantDomain);
+            }
+            if (certificate == null) {
+                throw new IdentityOAuth2Exception("No public certificate found for tenant " + tenantDomain);
+            }
+            return createSigningKey(keyStore, (RSAPrivateKey) privateKey, certificate);
+        } catch (IdentityOAuth2Exception e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IdentityOAuth2Exception("Error while obtaining signing key for tenant " + tenantDomain, e);
+        }
+    }
+
+    /**
+     * Builds the signer and the certificate thumbprint of a signing key
+     *
+     * @param keyStore    Key store which the key is loaded from
+     * @param privateKey  Private key
+     * @param certificate Public certificate of the key
+     * @return Signing key
+     * @throws Exception If the thumbprint of the certificate cannot be calculated
+     */
+    static SigningKey createSigningKey(KeyStore keyStore, RSAPrivateKey privateKey, Certificate certificate)
+            throws Exception {
+
+        //generate the SHA-1 thumbprint of the certificate
+        MessageDigest digestValue = MessageDigest.getInstance("SHA-1");
+        byte[] digestInBytes = digestValue.digest(certificate.getEncoded());
+        String thumbprint = new String(base64Url.encode(hexify(digestInBytes).getBytes(Charsets.UTF_8)),
+                Charsets.UTF_8);
+        return new SigningKey(keyStore, new RSASSASigner(privateKey), thumbprint);
+    }
+
+    KeyStore getKeyStore(String tenantDomain, int tenantId) throws IdentityOAuth2Exception {
+
+        KeyStoreManager tenantKSM = KeyStoreManager.getInstance(tenantId);
+        try {
+            if (!MultitenantConstants.SUPER_TENANT_DOMAIN_NAME.equals(tenantDomain)) {
+                return tenantKSM.getKeyStore(getKeyStoreName(tenantDomain));
+            }
+            return tenantKSM.getPrimaryKeyStore();
+        } catch (Exception e) {
+            throw new IdentityOAuth2Exception("Error while obtaining key store of tenant " + tenantDomain, e);
+        }
+    }
+
+    private String getKeyStoreName(String tenantDomain) {
+        // derive key store name
+        return tenantDomain.trim().replace(".", "-") + ".jks";
+    }
+
+    private String getKeyAlias(String tenantDomain) {
+        // Tenant keys are stored with the tenant domain as the alias. Super tenant key is the default key of the
+        // primary key store, which is identified by the super tenant domain in the cache key.
+        return tenantDomain;
+    }
+
+    /**
+     * Helper method to hexify a byte array.
+     *
+     * @param bytes
+     * @return hexadecimal representation
+     */
+    private static String hexify(byte bytes[]) {
+
+        char[] hexDigits = {'0', '1', '2', '3', '4', '5', '6', '7',
+                '8', '9', 'a', 'b', 'c', 'd', 'e', 'f'};
+
+        StringBuilder buf = new StringBuilder(bytes.length * 2);
+
+        for (int i = 0; i < bytes.length; ++i) {
+            buf.append(hexDigits[(bytes[i] & 0xf0) >> 4]);
+            buf.append(hexDigits[bytes[i] & 0x0f]);
+        }
+
+        return buf.toString();
+    }
+
+    /**
+     * Signing material of a tenant key.
+     */
+    static class SigningKey {
+
+        private final KeyStore keyStore;
+        private final JWSSigner signer;
+        private final String thumbprint;
+        private volatile long validatedTime;
+
+        private SigningKey(KeyStore keyStore, JWSSigner signer, String thumbprint) {
+            this.keyStore = keyStore;
+            this.signer = signer;
+            this.thumbprint = thumbprint;
+            this.validatedTime = System.nanoTime();
+        }
+
+        JWSSigner getSigner() {
+            return signer;
+        }
+
+        String getThumbprint() {
+            return thumbprint;
+        }
+    }
+}
@@ -29,6 +29,8 @@ import org.wso2.carbon.identity.application.common.model.User;
 import org.wso2.carbon.identity.core.util.IdentityUtil;
 import org.wso2.carbon.identity.oauth.IdentityOAuthAdminException;
 import org.wso2.carbon.identity.oauth.cache.CacheEntry;
+import org.wso2.carbon.identity.oauth.cache.ClientCredentialCache;
+import org.wso2.carbon.identity.oauth.cache.ClientCredentialCacheEntry;
 import org.wso2.carbon.identity.oauth.cache.OAuthCache;
 import org.wso2.carbon.identity.oauth.cache.OAuthCacheKey;
 import org.wso2.carbon.identity.oauth.common.OAuthConstants;
@@ -46,6 +48,7 @@ import org.wso2.carbon.user.core.service.RealmService;
 import org.wso2.carbon.user.core.util.UserCoreUtil;
 import org.wso2.carbon.utils.multitenancy.MultitenantUtils;
 
+import java.security.MessageDigest;
 import java.sql.Timestamp;
 import java.util.Arrays;
 import java.util.Map;
@@ -268,40 +271,59 @@ public class OAuth2Util {
     public static boolean authenticateClient(String clientId, String clientSecretProvided)
             throws IdentityOAuthAdminException, IdentityOAuth2Exception, InvalidOAuthClientException {
 
-        boolean cacheHit = false;
-        String clientSecret = null;
-
         // Check the cache first.
         if (cacheEnabled) {
-            CacheEntry cacheResult = cache.getValueFromCache(new OAuthCacheKey(clientId));
-            if (cacheResult != null && cacheResult instanceof ClientCredentialDO) {
-                ClientCredentialDO clientCredentialDO = (ClientCredentialDO) cacheResult;
-                clientSecret = clientCredentialDO.getClientSecret();
-                cacheHit = true;
+            ClientCredentialCacheEntry cacheResult = ClientCredentialCache.getInstance().getValueFromCache(clientId);
+            if (cacheResult != null) {
                 if (log.isDebugEnabled()) {
-                    log.debug("Client credentials were available in the cache for client id : " +
-                            clientId);
+                    log.debug("Client credentials were available in the cache for client id : " + clientId);
+                }
+                if (cacheResult.isNegative()) {
+                    if (log.isDebugEnabled()) {
+                        log.debug("Provided Client ID : " + clientId + " is not valid.");
+                    }
+                    return false;
                 }
+                if (!cacheResult.matches(clientSecretProvided)) {
+                    if (log.isDebugEnabled()) {
+                        log.debug("Provided the Client ID : " + clientId +
+                                " and Client Secret do not match with the issued credentials.");
+                    }
+                    return false;
+                }
+                if (log.isDebugEnabled()) {
+                    log.debug("Successfully authenticated the client with client id : " + clientId);
+                }
+                return true;
             }
         }
 
         // Cache miss
+        OAuthConsumerDAO oAuthConsumerDAO = new OAuthConsumerDAO();
+        String clientSecret = oAuthConsumerDAO.getOAuthConsumerSecret(clientId);
+        if (log.isDebugEnabled()) {
+            log.debug("Client credentials were fetched from the database.");
+        }
+
         if (clientSecret == null) {
-            OAuthConsumerDAO oAuthConsumerDAO = new OAuthConsumerDAO();
-            clientSecret = oAuthConsumerDAO.getOAuthConsumerSecret(clientId);
             if (log.isDebugEnabled()) {
-                log.debug("Client credentials were fetched from the database.");
+                log.debug("Provided Client ID : " + clientId + " is not valid.");
+            }
+            if (cacheEnabled) {
+                ClientCredentialCache.getInstance().addUnknownClient(clientId);
             }
+            return false;
         }
 
-        if (clientSecret == null) {
+        if (cacheEnabled) {
+            ClientCredentialCache.getInstance().addClientSecret(clientId, clientSecret);
             if (log.isDebugEnabled()) {
-                log.debug("Provided Client ID : " + clientId + "is not valid.");
+                log.debug("Client credentials were added to the cache for client id : " + clientId);
             }
-            return false;
         }
 
-        if (!clientSecret.equals(clientSecretProvided)) {
+        if (clientSecretProvided == null || !MessageDigest.isEqual(clientSecret.getBytes(Charsets.UTF_8),
+                clientSecretProvided.getBytes(Charsets.UTF_8))) {
 
             if (log.isDebugEnabled()) {
                 log.debug("Provided the Client ID : " + clientId +
@@ -315,14 +337,6 @@ public class OAuth2Util {
             log.debug("Successfully authenticated the client with client id : " + clientId);
         }
 
-        if (cacheEnabled && !cacheHit) {
-
-            cache.addToCache(new OAuthCacheKey(clientId), new ClientCredentialDO(clientSecret));
-            if (log.isDebugEnabled()) {
-                log.debug("Client credentials were added to the cache for client id : " + clientId);
-            }
-        }
-
         return true;
     }
 
@@ -400,6 +414,38 @@ public class OAuth2Util {
         return clientId + ":" + authzCode;
     }
 
+    /**
+     * Build the cache key string when storing the scope of a resource in cache
+     *
+     * @param resource     Resource protected by the scope
+     * @param tenantDomain Tenant domain of the user accessing the resource
+     * @return concatenated <code>String</code> of RESOURCE_SCOPE:tenantDomain:resource
+     */
+    public static String buildCacheKeyStringForResourceScope(String resource, String tenantDomain) {
+        return "RESOURCE_SCOPE:" + tenantDomain + ":" + resource;
+    }
+
+    /**
+     * Build the cache key string when storing the roles of a scope in cache
+     *
+     * @param scopeKey     Key of the scope
+     * @param tenantDomain Tenant domain of the user accessing the resource
+     * @return concatenated <code>String</code> of SCOPE_ROLES:tenantDomain:scopeKey
+     */
+    public static String buildCacheKeyStringForScopeRoles(String scopeKey, String tenantDomain) {
+        return "SCOPE_ROLES:" + tenantDomain + ":" + scopeKey;
+    }
+
+    /**
+     * Build the cache key string when storing the roles of the user of an access token in cache
+     *
+     * @param accessToken Access token issued to the user
+     * @return concatenated <code>String</code> of accessToken:USER_ROLES
+     */
+    public static String buildCacheKeyStringForUserRoles(String accessToken) {
+        return accessToken + ":USER_ROLES";
+    }
+
     public static AccessTokenDO validateAccessTokenDO(AccessTokenDO accessTokenDO) {
 
         long validityPeriodMillis = accessTokenDO.getValidityPeriodInMillis();
@@ -33,6 +33,9 @@ import org.wso2.carbon.identity.oauth2.IdentityOAuth2Exception;
 import org.wso2.carbon.identity.oauth2.dao.TokenMgtDAO;
 import org.wso2.carbon.identity.oauth2.model.AccessTokenDO;
 import org.wso2.carbon.identity.oauth2.model.ResourceScopeCacheEntry;
+import org.wso2.carbon.identity.oauth2.model.ScopeRolesCacheEntry;
+import org.wso2.carbon.identity.oauth2.model.UserRolesCacheEntry;
+import org.wso2.carbon.identity.oauth2.util.OAuth2Util;
 import org.wso2.carbon.user.api.UserStoreException;
 import org.wso2.carbon.user.api.UserStoreManager;
 import org.wso2.carbon.user.core.service.RealmService;
@@ -65,12 +68,14 @@ public class JDBCScopeValidator extends OAuth2ScopeValidator {
 
         String resourceScope = null;
         TokenMgtDAO tokenMgtDAO = new TokenMgtDAO();
+        String tenantDomain = accessTokenDO.getAuthzUser().getTenantDomain();
 
         boolean cacheHit = false;
         // Check the cache, if caching is enabled.
         if (OAuthServerConfiguration.getInstance().isCacheEnabled()) {
             OAuthCache oauthCache = OAuthCache.getInstance();
-            OAuthCacheKey cacheKey = new OAuthCacheKey(resource);
+            OAuthCacheKey cacheKey = new OAuthCacheKey(
+                    OAuth2Util.buildCacheKeyStringForResourceScope(resource, tenantDomain));
             CacheEntry result = oauthCache.getValueFromCache(cacheKey);
 
             //Cache hit
@@ -85,7 +90,8 @@ public class JDBCScopeValidator extends OAuth2ScopeValidator {
 
             if (OAuthServerConfiguration.getInstance().isCacheEnabled()) {
                 OAuthCache oauthCache = OAuthCache.getInstance();
-                OAuthCacheKey cacheKey = new OAuthCacheKey(resource);
+                OAuthCacheKey cacheKey = new OAuthCacheKey(
+                        OAuth2Util.buildCacheKeyStringForResourceScope(resource, tenantDomain));
                 ResourceScopeCacheEntry cacheEntry = new ResourceScopeCacheEntry(resourceScope);
                 //Store resourceScope in cache even if it is null (to avoid database calls when accessing resources for
                 //which scopes haven't been defined).
@@ -114,7 +120,7 @@ public class JDBCScopeValidator extends OAuth2ScopeValidator {
 
         try {
             //Get the roles associated with the scope, if any
-            Set<String> rolesOfScope = tokenMgtDAO.getRolesOfScopeByScopeKey(resourceScope);
+            Set<String> rolesOfScope = getRolesOfScope(tokenMgtDAO, resourceScope, tenantDomain);
 
             //If the scope doesn't have any roles associated with it.
             if(rolesOfScope == null || rolesOfScope.isEmpty()){
@@ -134,36 +140,7 @@ public class JDBCScopeValidator extends OAuth2ScopeValidator {
             }
 
             User authzUser = accessTokenDO.getAuthzUser();
-            RealmService realmService = OAuthComponentServiceHolder.getRealmService();
-
-            int tenantId = realmService.getTenantManager().
-                    getTenantId(authzUser.getTenantDomain());
-
-            if (tenantId == 0 || tenantId == -1) {
-                tenantId = IdentityTenantUtil.getTenantIdOfUser(authzUser.getUserName());
-            }
-
-            UserStoreManager userStoreManager;
-            String[] userRoles;
-            boolean tenantFlowStarted = false;
-
-            try{
-                //If this is a tenant user
-                if(tenantId != MultitenantConstants.SUPER_TENANT_ID){
-                    PrivilegedCarbonContext.startTenantFlow();
-                    PrivilegedCarbonContext.getThreadLocalCarbonContext().setTenantDomain(
-                                                            realmService.getTenantManager().getDomain(tenantId),true);
-                    tenantFlowStarted = true;
-                }
-
-                userStoreManager = realmService.getTenantUserRealm(tenantId).getUserStoreManager();
-                userRoles = userStoreManager.getRoleListOfUser(
-                        MultitenantUtils.getTenantAwareUsername(authzUser.getUserName()));
-            } finally {
-                if (tenantFlowStarted) {
-                    PrivilegedCarbonContext.endTenantFlow();
-                }
-            }
+            String[] userRoles = getRolesOfUser(accessTokenDO);
 
             if(userRoles != null && userRoles.length > 0){
                 if(log.isDebugEnabled()){
@@ -193,4 +170,90 @@ public class JDBCScopeValidator extends OAuth2ScopeValidator {
             return false;
         }
     }
+
+    /**
+     * Get the roles associated with the scope. The roles are cached per tenant, even if there are no roles
+     * associated with the scope, to avoid database calls on each validation.
+     */
+    private Set<String> getRolesOfScope(TokenMgtDAO tokenMgtDAO, String scopeKey, String tenantDomain)
+            throws IdentityOAuth2Exception {
+
+        if (!OAuthServerConfiguration.getInstance().isCacheEnabled()) {
+            return tokenMgtDAO.getRolesOfScopeByScopeKey(scopeKey);
+        }
+
+        OAuthCache oauthCache = OAuthCache.getInstance();
+        OAuthCacheKey cacheKey = new OAuthCacheKey(
+                OAuth2Util.buildCacheKeyStringForScopeRoles(scopeKey, tenantDomain));
+        CacheEntry result = oauthCache.getValueFromCache(cacheKey);
+        if (result instanceof ScopeRolesCacheEntry) {
+            return ((ScopeRolesCacheEntry) result).getRoles();
+        }
+
+        Set<String> rolesOfScope = tokenMgtDAO.getRolesOfScopeByScopeKey(scopeKey);
+        oauthCache.addToCache(cacheKey, new ScopeRolesCacheEntry(rolesOfScope));
+        return rolesOfScope;
+    }
+
+    /**
+     * Get the roles of the user the access token is issued to. The roles are cached until the access token
+     * expires, so that the user store is not read on each validation of the token.
+     */
+    private String[] getRolesOfUser(AccessTokenDO accessTokenDO) throws UserStoreException {
+
+        boolean cacheEnabled = OAuthServerConfiguration.getInstance().isCacheEnabled();
+        OAuthCacheKey cacheKey = null;
+        if (cacheEnabled) {
+            cacheKey = new OAuthCacheKey(OAuth2Util.buildCacheKeyStringForUserRoles(accessTokenDO.getAccessToken()));
+            CacheEntry result = OAuthCache.getInstance().getValueFromCache(cacheKey);
+            if (result instanceof UserRolesCacheEntry) {
+                UserRolesCacheEntry cacheEntry = (UserRolesCacheEntry) result;
+                if (!cacheEntry.isExpired()) {
+                    return cacheEntry.getRoles();
+                }
+                OAuthCache.getInstance().clearCacheEntry(cacheKey);
+            }
+        }
+
+        User authzUser = accessTokenDO.getAuthzUser();
+        RealmService realmService = OAuthComponentServiceHolder.getRealmService();
+
+        int tenantId = realmService.getTenantManager().
+                getTenantId(authzUser.getTenantDomain());
+
+        if (tenantId == 0 || tenantId == -1) {
+            tenantId = IdentityTenantUtil.getTenantIdOfUser(authzUser.getUserName());
+        }
+
+        UserStoreManager userStoreManager;
+        String[] userRoles;
+        boolean tenantFlowStarted = false;
+
+        try{
+            //If this is a tenant user
+            if(tenantId != MultitenantConstants.SUPER_TENANT_ID){
+                PrivilegedCarbonContext.startTenantFlow();
+                PrivilegedCarbonContext.getThreadLocalCarbonContext().setTenantDomain(
+                                                        realmService.getTenantManager().getDomain(tenantId),true);
+                tenantFlowStarted = true;
+            }
+
+            userStoreManager = realmService.getTenantUserRealm(tenantId).getUserStoreManager();
+            userRoles = userStoreManager.getRoleListOfUser(
+                    MultitenantUtils.getTenantAwareUsername(authzUser.getUserName()));
+        } finally {
+            if (tenantFlowStarted) {
+                PrivilegedCarbonContext.endTenantFlow();
+            }
+        }
+
+        if (cacheEnabled) {
+            long expiryTime = Long.MAX_VALUE;
+            if (accessTokenDO.getValidityPeriodInMillis() >= 0 && accessTokenDO.getIssuedTime() != null) {
+                expiryTime = accessTokenDO.getIssuedTime().getTime() + accessTokenDO.getValidityPeriodInMillis();
+            }
+            OAuthCache.getInstance().addToCache(cacheKey, new UserRolesCacheEntry(userRoles, expiryTime));
+        }
+        return userRoles;
+    }
 }
@@ -0,0 +1,186 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.oauth2.util;
+
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import junit.framework.TestCase;
+import org.wso2.carbon.identity.oauth2.IdentityOAuth2Exception;
+
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.KeyStore;
+import java.security.PublicKey;
+import java.security.cert.Certificate;
+import java.security.interfaces.RSAPrivateKey;
+import java.util.Arrays;
+import java.util.Date;
+
+/**
+ * Loads signing keys through OAuth2SigningKeyManager, with the key store of the tenant replaced by a generated key,
+ * and checks when they are reused and reloaded.
+ */
+public class OAuth2SigningKeyManagerTest extends TestCase {
+
+    private static final String TENANT_DOMAIN = "foo.com";
+    private static final int TENANT_ID = 1;
+
+    private RSAPrivateKey privateKey;
+    private Certificate certificate;
+
+    @Override
+    protected void setUp() throws Exception {
+
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(2048);
+        KeyPair keyPair = generator.generateKeyPair();
+        privateKey = (RSAPrivateKey) keyPair.getPrivate();
+        certificate = new StubCertificate(keyPair.getPublic());
+    }
+
+    public void testSigningKeyIsLoadedOnce() throws Exception {
+
+        CountingKeyManager keyManager = new CountingKeyManager();
+        OAuth2SigningKeyManager.SigningKey signingKey = keyManager.getSigningKey(TENANT_DOMAIN, TENANT_ID);
+
+        assertSame(signingKey, keyManager.getSigningKey(TENANT_DOMAIN, TENANT_ID));
+        assertSame(signingKey.getSigner(), keyManager.getSigner(TENANT_DOMAIN, TENANT_ID));
+        assertEquals(signingKey.getThumbprint(), keyManager.getThumbprint(TENANT_DOMAIN, TENANT_ID));
+        assertEquals(1, keyManager.loads);
+    }
+
+    public void testInvalidationReloadsSigningKey() throws Exception {
+
+        CountingKeyManager keyManager = new CountingKeyManager();
+        OAuth2SigningKeyManager.SigningKey signingKey = keyManager.getSigningKey(TENANT_DOMAIN, TENANT_ID);
+
+        keyManager.invalidate(TENANT_ID + 1);
+        assertSame("keys of other tenants should be kept", signingKey,
+                keyManager.getSigningKey(TENANT_DOMAIN, TENANT_ID));
+
+        keyManager.invalidate(TENANT_ID);
+        assertNotSame(signingKey, keyManager.getSigningKey(TENANT_DOMAIN, TENANT_ID));
+        assertEquals(2, keyManager.loads);
+    }
+
+    public void testKeyLoadedDuringInvalidationIsNotCached() throws Exception {
+
+        CountingKeyManager keyManager = new CountingKeyManager();
+        keyManager.invalidateOnLoad = true;
+        OAuth2SigningKeyManager.SigningKey signingKey = keyManager.getSigningKey(TENANT_DOMAIN, TENANT_ID);
+
+        keyManager.invalidateOnLoad = false;
+        assertNotSame(signingKey, keyManager.getSigningKey(TENANT_DOMAIN, TENANT_ID));
+        assertEquals(2, keyManager.loads);
+    }
+
+    public void testSharedSigningKeyIssuesSameTokens() throws Exception {
+
+        OAuth2SigningKeyManager.SigningKey sharedKey = OAuth2SigningKeyManager.createSigningKey(null, privateKey,
+                certificate);
+        for (int i = 0; i < 10; i++) {
+            OAuth2SigningKeyManager.SigningKey perTokenKey = OAuth2SigningKeyManager.createSigningKey(null,
+                    privateKey, certificate);
+            // RS256 signatures are deterministic, so both keys must issue the same token
+            assertEquals(sign(perTokenKey, i), sign(sharedKey, i));
+        }
+    }
+
+    private static String sign(OAuth2SigningKeyManager.SigningKey signingKey, int index) throws Exception {
+
+        JWTClaimsSet claims = new JWTClaimsSet();
+        claims.setIssuer("https://localhost:9443/oauth2/token");
+        claims.setSubject("admin");
+        claims.setAudience(Arrays.asList("client" + index));
+        claims.setIssueTime(new Date(1400000000000L));
+        claims.setExpirationTime(new Date(1400003600000L));
+        claims.setCustomClaim("x5t", signingKey.getThumbprint());
+
+        SignedJWT signedJWT = new SignedJWT(new JWSHeader(JWSAlgorithm.RS256), claims);
+        signedJWT.sign(signingKey.getSigner());
+        return signedJWT.serialize();
+    }
+
+    /**
+     * Key manager which loads the generated key in place of the key store of the tenant and counts the loads.
+     * Optionally invalidates the keys of the tenant while a key is loaded, as a concurrent key store update does.
+     */
+    private class CountingKeyManager extends OAuth2SigningKeyManager {
+
+        private int loads;
+        private boolean invalidateOnLoad;
+
+        @Override
+        SigningKey loadSigningKey(String tenantDomain, int tenantId, String alias) throws IdentityOAuth2Exception {
+
+            loads++;
+            if (invalidateOnLoad) {
+                invalidate(tenantId);
+            }
+            try {
+                return createSigningKey(null, privateKey, certificate);
+            } catch (Exception e) {
+                throw new IdentityOAuth2Exception("Error while creating signing key", e);
+            }
+        }
+
+        @Override
+        KeyStore getKeyStore(String tenantDomain, int tenantId) {
+            return null;
+        }
+    }
+
+    /**
+     * Certificate with a fixed encoding, enough to calculate a thumbprint.
+     */
+    private static class StubCertificate extends Certificate {
+
+        private final PublicKey publicKey;
+
+        private StubCertificate(PublicKey publicKey) {
+            super("X.509");
+            this.publicKey = publicKey;
+        }
+
+        @Override
+        public byte[] getEncoded() {
+            return publicKey.getEncoded();
+        }
+
+        @Override
+        public void verify(PublicKey key) {
+        }
+
+        @Override
+        public void verify(PublicKey key, String sigProvider) {
+        }
+
+        @Override
+        public String toString() {
+            return "StubCertificate";
+        }
+
+        @Override
+        public PublicKey getPublicKey() {
+            return publicKey;
+        }
+    }
+}
@@ -76,7 +76,7 @@ public class AssociationClusterMessage extends ClusteringMessage implements Seri
                 if (log.isDebugEnabled()) {
                     log.debug("Association : " + association.getHandle() + " does exist");
                 }
-                associationReplicationManager.getAssociationMap().remove(association.getHandle());
+                associationReplicationManager.removeLocalAssociation(association.getHandle());
                 if (log.isDebugEnabled()) {
                     log.debug("Removed association : " + association.getHandle() + " during the replication replication");
                 }
@@ -91,7 +91,7 @@ public class AssociationClusterMessage extends ClusteringMessage implements Seri
             if (log.isDebugEnabled()) {
                 log.debug("Adding new association : " + association.getHandle() + " during the replication replication");
             }
-            associationReplicationManager.getAssociationMap().put(association.getHandle(), association);
+            associationReplicationManager.storeAssociation(association);
             if (log.isDebugEnabled()) {
                 log.debug("Added new association : " + association.getHandle() + " during the replication replication");
             }
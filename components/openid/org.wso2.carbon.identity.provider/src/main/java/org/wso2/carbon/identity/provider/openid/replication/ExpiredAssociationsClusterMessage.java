@@ -0,0 +1,70 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.carbon.identity.provider.openid.replication;
+
+import org.apache.axis2.clustering.ClusteringCommand;
+import org.apache.axis2.clustering.ClusteringFault;
+import org.apache.axis2.clustering.ClusteringMessage;
+import org.apache.axis2.context.ConfigurationContext;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Cluster message carrying the handles of a chunk of the associations removed by an association cleanup run
+ */
+public class ExpiredAssociationsClusterMessage extends ClusteringMessage implements Serializable {
+
+    private static final long serialVersionUID = -4925327623460173829L;
+
+    private static Log log = LogFactory.getLog(ExpiredAssociationsClusterMessage.class);
+
+    private List<String> handles;
+
+    public ExpiredAssociationsClusterMessage(List<String> handles) {
+        this.handles = new ArrayList<String>(handles);
+    }
+
+    public List<String> getHandles() {
+        return handles;
+    }
+
+    @Override
+    public ClusteringCommand getResponse() {
+        return null;
+    }
+
+    @Override
+    public void execute(ConfigurationContext configCtx) throws ClusteringFault {
+        OpenIDAssociationReplicationManager associationReplicationManager =
+                OpenIDAssociationReplicationManager.getPersistenceManager();
+        int removed = 0;
+        for (String handle : handles) {
+            if (associationReplicationManager.removeLocalAssociation(handle) != null) {
+                removed++;
+            }
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("Removed " + removed + " of " + handles.size()
+                    + " expired associations during the replication");
+        }
+    }
+}
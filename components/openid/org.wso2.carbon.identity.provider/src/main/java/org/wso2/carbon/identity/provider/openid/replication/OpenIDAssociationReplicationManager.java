@@ -26,9 +26,15 @@ import org.wso2.carbon.identity.base.IdentityConstants.ServerConfig;
 import org.wso2.carbon.identity.core.util.IdentityUtil;
 import org.wso2.carbon.identity.provider.internal.IdentityProviderServiceComponent;
 
-import java.util.Date;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
 
 /**
  * This class is used to replicate OpenID associations across the cluster
@@ -36,10 +42,29 @@ import java.util.concurrent.ConcurrentHashMap;
 public class OpenIDAssociationReplicationManager {
 
     private static Log log = LogFactory.getLog(OpenIDAssociationReplicationManager.class);
-    private static OpenIDAssociationReplicationManager associationReplicationManager = new OpenIDAssociationReplicationManager();
-    private Map<String, Association> associationMap = new ConcurrentHashMap<String, Association>();
+    // width of a time bucket of the expiry index, in milliseconds
+    private static final long EXPIRY_BUCKET_WIDTH = 60 * 1000L;
+    // maximum number of handles sent in a single expired associations cluster message, so that a cleanup run
+    // removing a large number of associations does not build a cluster message of unbounded size
+    static final int MAX_HANDLES_PER_MESSAGE = 1000;
+
+    private ConcurrentMap<String, Association> associationMap = new ConcurrentHashMap<String, Association>();
+    // handles of the associations indexed by the time bucket their expiry falls into. A bucket may still hold
+    // handles which were already removed or re-added with a different expiry, these are skipped on cleanup.
+    private ConcurrentNavigableMap<Long, Set<String>> expiryBuckets = new ConcurrentSkipListMap<Long, Set<String>>();
 
     public OpenIDAssociationReplicationManager() {
+        this(true);
+    }
+
+    /**
+     * @param scheduleCleanup whether the cleanup task is scheduled, if it is enabled in the configuration. It is not
+     *                        scheduled when the cleanup is run directly
+     */
+    OpenIDAssociationReplicationManager(boolean scheduleCleanup) {
+        if (!scheduleCleanup) {
+            return;
+        }
         String isCleanupTaskEnabled = "true";
         if (IdentityUtil.getProperty(ServerConfig.ENABLE_OPENID_ASSOCIATION_CLEANUP_TASK) != null) {
             isCleanupTaskEnabled = IdentityUtil.getProperty(ServerConfig.ENABLE_OPENID_ASSOCIATION_CLEANUP_TASK);
@@ -49,7 +74,7 @@ public class OpenIDAssociationReplicationManager {
             long cleanupPeriod = 15;
 
             String associationCleanupPeriod = IdentityUtil.getProperty(ServerConfig.OPENID_ASSOCIATION_CLEANUP_PERIOD);
-            if (associationCleanupPeriod != null || !associationCleanupPeriod.trim().isEmpty()) {
+            if (associationCleanupPeriod != null && !associationCleanupPeriod.trim().isEmpty()) {
                 try {
                     cleanupPeriod = Long.parseLong(associationCleanupPeriod);
                 } catch (NumberFormatException e) {
@@ -67,7 +92,7 @@ public class OpenIDAssociationReplicationManager {
     }
 
     public static OpenIDAssociationReplicationManager getPersistenceManager() {
-        return associationReplicationManager;
+        return AssociationReplicationManagerHolder.associationReplicationManager;
     }
 
     /**
@@ -92,7 +117,7 @@ public class OpenIDAssociationReplicationManager {
     }
 
     public void addAssociation(Association association) {
-        associationMap.put(association.getHandle(),association);
+        storeAssociation(association);
         AssociationClusterMessage associationInfoData = new AssociationClusterMessage(association, false);
         replicateAssociationInfo(associationInfoData);
     }
@@ -102,8 +127,8 @@ public class OpenIDAssociationReplicationManager {
     }
 
     public void removeAssociation(String handle) {
-        if(associationMap.containsKey(handle)) {
-            Association association = associationMap.get(handle);
+        Association association = associationMap.remove(handle);
+        if (association != null) {
             AssociationClusterMessage associationInfoData = new AssociationClusterMessage(association, true);
             replicateAssociationInfo(associationInfoData);
         } else {
@@ -113,6 +138,41 @@ public class OpenIDAssociationReplicationManager {
         }
     }
 
+    /**
+     * Add the association to this node only, indexing it by its expiry
+     *
+     * @param association association to be added
+     */
+    void storeAssociation(Association association) {
+        associationMap.put(association.getHandle(), association);
+        Long bucket = association.getExpiry().getTime() / EXPIRY_BUCKET_WIDTH;
+        while (true) {
+            Set<String> handles = expiryBuckets.get(bucket);
+            if (handles == null) {
+                Set<String> newHandles = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+                handles = expiryBuckets.putIfAbsent(bucket, newHandles);
+                if (handles == null) {
+                    handles = newHandles;
+                }
+            }
+            handles.add(association.getHandle());
+            // the bucket may have been dropped by a concurrent cleanup run before the handle was added
+            if (expiryBuckets.get(bucket) == handles) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Remove the association from this node only
+     *
+     * @param handle handle of the association
+     * @return removed association or null if there was no association with the given handle
+     */
+    Association removeLocalAssociation(String handle) {
+        return associationMap.remove(handle);
+    }
+
     private void replicateAssociationInfo(AssociationClusterMessage associationInfoData) {
         if (log.isDebugEnabled()) {
             log.debug("Starting to replicate association : " + associationInfoData.getAssociation().getHandle());
@@ -135,19 +195,72 @@ public class OpenIDAssociationReplicationManager {
         }
     }
 
+    private void replicateExpiredAssociations(List<String> handles) {
+        if (log.isDebugEnabled()) {
+            log.debug("Starting to replicate removal of " + handles.size() + " expired associations");
+        }
+
+        for (int from = 0; from < handles.size(); from += MAX_HANDLES_PER_MESSAGE) {
+            int to = Math.min(from + MAX_HANDLES_PER_MESSAGE, handles.size());
+            sendExpiredAssociations(new ExpiredAssociationsClusterMessage(handles.subList(from, to)));
+        }
+    }
+
+    /**
+     * Send a chunk of the expired association handles to the cluster
+     *
+     * @param message cluster message carrying the handles
+     */
+    void sendExpiredAssociations(ExpiredAssociationsClusterMessage message) {
+        ClusteringAgent agent = IdentityProviderServiceComponent.getConfigContext().getAxisConfiguration().getClusteringAgent();
+        if (agent != null) {
+            try {
+                agent.sendMessage(message, true);
+            } catch (ClusteringFault e) {
+                log.error("Unable to send cluster message :" + e.getMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * Remove the associations of all the time buckets which have fully elapsed and replicate the removal to the
+     * cluster in messages of at most {@link #MAX_HANDLES_PER_MESSAGE} handles. Expired associations of the current
+     * bucket are left to the next run, these are already rejected when they are loaded.
+     */
     public void removeExpiredAssociations() {
-        Date currentTime = new Date();
-        for (Map.Entry<String, Association> entry : associationMap.entrySet()) {
-            Association association = entry.getValue();
-            if(currentTime.after(association.getExpiry())) {
-                if (log.isDebugEnabled()) {
-                    log.debug("Current time : " + currentTime.getTime() + ", expiry time : "
-                            + association.getExpiry().getTime() + ". Hence removing expired association : "
-                            + association.getHandle());
+        long currentTime = System.currentTimeMillis();
+        long currentBucket = currentTime / EXPIRY_BUCKET_WIDTH;
+        List<String> removedHandles = new ArrayList<String>();
+
+        Map.Entry<Long, Set<String>> bucket;
+        while ((bucket = expiryBuckets.firstEntry()) != null && bucket.getKey() < currentBucket) {
+            if (!expiryBuckets.remove(bucket.getKey(), bucket.getValue())) {
+                continue;
+            }
+            for (String handle : bucket.getValue()) {
+                Association association = associationMap.get(handle);
+                // the handle may have been re-added with a later expiry, which is indexed in another bucket
+                if (association != null && association.getExpiry().getTime() < currentTime
+                        && associationMap.remove(handle, association)) {
+                    removedHandles.add(handle);
                 }
-                removeAssociation(association.getHandle());
             }
         }
 
+        if (log.isDebugEnabled()) {
+            log.debug("Removed " + removedHandles.size() + " expired associations. Current time : " + currentTime);
+        }
+        if (!removedHandles.isEmpty()) {
+            replicateExpiredAssociations(removedHandles);
+        }
+    }
+
+    /**
+     * Holds the replication manager, which is created on its first use, so that loading this class does not schedule
+     * the cleanup task
+     */
+    private static class AssociationReplicationManagerHolder {
+        private static final OpenIDAssociationReplicationManager associationReplicationManager =
+                new OpenIDAssociationReplicationManager();
     }
 }
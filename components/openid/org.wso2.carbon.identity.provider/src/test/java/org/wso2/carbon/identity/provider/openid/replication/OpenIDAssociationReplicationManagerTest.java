@@ -0,0 +1,165 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.carbon.identity.provider.openid.replication;
+
+import junit.framework.TestCase;
+import org.openid4java.association.Association;
+
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Runs the association cleanup on a large association store and checks the expired association cluster messages it
+ * sends, which are recorded instead of being sent to the cluster, and the associations it reads
+ */
+public class OpenIDAssociationReplicationManagerTest extends TestCase {
+
+    private static final int ASSOCIATIONS = 100000;
+    private static final SecretKey MAC_KEY = new SecretKeySpec(new byte[20], "HmacSHA1");
+
+    private RecordingReplicationManager manager;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        manager = new RecordingReplicationManager();
+    }
+
+    public void testCleanupReadsOnlyElapsedBuckets() {
+
+        long now = System.currentTimeMillis();
+        // every other association expired two minutes ago, hence its time bucket has fully elapsed
+        Date expired = new Date(now - 2 * 60 * 1000L);
+        Date valid = new Date(now + 60 * 60 * 1000L);
+        List<CountingAssociation> associations = new ArrayList<CountingAssociation>();
+        for (int i = 0; i < ASSOCIATIONS; i++) {
+            CountingAssociation association = new CountingAssociation(handle(i), i % 2 == 0 ? expired : valid);
+            manager.storeAssociation(association);
+            associations.add(association);
+        }
+        for (CountingAssociation association : associations) {
+            association.expiryReads = 0;
+        }
+
+        manager.removeExpiredAssociations();
+
+        for (int i = 0; i < ASSOCIATIONS; i++) {
+            assertEquals("only the expired associations should be read by the cleanup", i % 2 == 0 ? 1 : 0,
+                    associations.get(i).expiryReads);
+        }
+        assertEquals(ASSOCIATIONS / 2, manager.getAssociationMap().size());
+        assertEquals("expired handles should be sent in full chunks",
+                ASSOCIATIONS / 2 / OpenIDAssociationReplicationManager.MAX_HANDLES_PER_MESSAGE,
+                manager.messages.size());
+        Set<String> replicated = new HashSet<String>();
+        for (ExpiredAssociationsClusterMessage message : manager.messages) {
+            assertTrue(message.getHandles().size() <= OpenIDAssociationReplicationManager.MAX_HANDLES_PER_MESSAGE);
+            replicated.addAll(message.getHandles());
+        }
+        assertEquals("each expired handle should be replicated once", ASSOCIATIONS / 2, replicated.size());
+        for (int i = 0; i < ASSOCIATIONS; i++) {
+            boolean isExpired = i % 2 == 0;
+            assertEquals(handle(i), isExpired, replicated.contains(handle(i)));
+            assertEquals(handle(i), !isExpired, manager.getAssociationMap().containsKey(handle(i)));
+        }
+
+        manager.messages.clear();
+        manager.removeExpiredAssociations();
+        assertTrue("nothing should be replicated when no association expired", manager.messages.isEmpty());
+        for (int i = 0; i < ASSOCIATIONS; i++) {
+            assertEquals("no association should be read when no bucket elapsed", i % 2 == 0 ? 1 : 0,
+                    associations.get(i).expiryReads);
+        }
+    }
+
+    public void testLastChunkHoldsRemainingHandles() {
+
+        int expiredCount = OpenIDAssociationReplicationManager.MAX_HANDLES_PER_MESSAGE * 2 + 1;
+        Date expired = new Date(System.currentTimeMillis() - 2 * 60 * 1000L);
+        for (int i = 0; i < expiredCount; i++) {
+            manager.storeAssociation(association(handle(i), expired));
+        }
+
+        manager.removeExpiredAssociations();
+
+        assertEquals(3, manager.messages.size());
+        assertEquals(1, manager.messages.get(2).getHandles().size());
+        assertTrue(manager.getAssociationMap().isEmpty());
+    }
+
+    public void testReAddedAssociationIsNotRemoved() {
+
+        long now = System.currentTimeMillis();
+        manager.storeAssociation(association("handle", new Date(now - 2 * 60 * 1000L)));
+        manager.storeAssociation(association("handle", new Date(now + 60 * 60 * 1000L)));
+
+        manager.removeExpiredAssociations();
+
+        assertTrue(manager.messages.isEmpty());
+        assertTrue(manager.getAssociationMap().containsKey("handle"));
+    }
+
+    private static Association association(String handle, Date expiry) {
+        return new Association(Association.TYPE_HMAC_SHA1, handle, MAC_KEY, expiry);
+    }
+
+    private static String handle(int i) {
+        return "h" + i;
+    }
+
+    /**
+     * Association which counts the reads of its expiry
+     */
+    private static class CountingAssociation extends Association {
+
+        private int expiryReads;
+
+        private CountingAssociation(String handle, Date expiry) {
+            super(Association.TYPE_HMAC_SHA1, handle, MAC_KEY, expiry);
+        }
+
+        @Override
+        public Date getExpiry() {
+            expiryReads++;
+            return super.getExpiry();
+        }
+    }
+
+    /**
+     * Replication manager which records the expired association cluster messages, without scheduling the cleanup task
+     */
+    private static class RecordingReplicationManager extends OpenIDAssociationReplicationManager {
+
+        private final List<ExpiredAssociationsClusterMessage> messages =
+                new ArrayList<ExpiredAssociationsClusterMessage>();
+
+        private RecordingReplicationManager() {
+            super(false);
+        }
+
+        @Override
+        void sendExpiredAssociations(ExpiredAssociationsClusterMessage message) {
+            messages.add(message);
+        }
+    }
+}
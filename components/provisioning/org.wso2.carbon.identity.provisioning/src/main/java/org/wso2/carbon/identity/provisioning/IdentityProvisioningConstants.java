@@ -87,6 +87,9 @@ public class IdentityProvisioningConstants {
 
         public static final String DELIMATOR = ",";
 
+        public static final String OUTBOUND_PROVISIONING_THREAD_POOL_SIZE = "OutboundProvisioning.ThreadPoolSize";
+        public static final String OUTBOUND_PROVISIONING_QUEUE_SIZE = "OutboundProvisioning.QueueSize";
+
         private PropertyConfig(){}
     }
 }
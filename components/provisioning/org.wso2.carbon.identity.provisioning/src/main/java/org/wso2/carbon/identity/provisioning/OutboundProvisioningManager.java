@@ -36,6 +36,7 @@ import org.wso2.carbon.identity.application.common.model.RoleMapping;
 import org.wso2.carbon.identity.application.common.model.ServiceProvider;
 import org.wso2.carbon.identity.application.common.util.IdentityApplicationManagementUtil;
 import org.wso2.carbon.identity.application.mgt.ApplicationManagementService;
+import org.wso2.carbon.identity.core.util.IdentityUtil;
 import org.wso2.carbon.identity.provisioning.cache.ServiceProviderProvisioningConnectorCache;
 import org.wso2.carbon.identity.provisioning.cache.ServiceProviderProvisioningConnectorCacheEntry;
 import org.wso2.carbon.identity.provisioning.cache.ServiceProviderProvisioningConnectorCacheKey;
@@ -65,7 +66,11 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  *
@@ -77,8 +82,17 @@ public class OutboundProvisioningManager {
     private static CacheBackedProvisioningMgtDAO dao = new CacheBackedProvisioningMgtDAO(
             new ProvisioningManagementDAO());
 
+    private static final int DEFAULT_THREAD_POOL_SIZE = 10;
+    private static final int DEFAULT_QUEUE_SIZE = 1000;
+
     private static OutboundProvisioningManager provisioningManager = new OutboundProvisioningManager();
 
+    /**
+     * Executor shared by all non blocking provisioning operations. When its queue is full the operation is run by
+     * the calling thread, which slows down the producer instead of queueing without a bound.
+     */
+    private volatile ThreadPoolExecutor provisioningExecutor;
+
     private OutboundProvisioningManager() {
 
     }
@@ -407,7 +421,7 @@ public class OutboundProvisioningManager {
             ExecutorService executors = null;
 
             if (MapUtils.isNotEmpty(connectors)) {
-                executors = Executors.newFixedThreadPool(connectors.size());
+                executors = getProvisioningExecutor();
             }
 
             for (Iterator<Entry<String, RuntimeProvisioningConfig>> iterator = connectors
@@ -573,16 +587,47 @@ public class OutboundProvisioningManager {
 
             }
 
-            if (executors != null) {
-                executors.shutdown();
-            }
-
         } catch (CarbonException | IdentityApplicationManagementException | IdentityProviderManagementException | UserStoreException e) {
             throw new IdentityProvisioningException("Error occurred while checking for user " +
                     "provisioning", e);
         }
     }
 
+    /**
+     * Stops the executor of non blocking provisioning operations. Queued operations are still run.
+     */
+    public void shutdown() {
+
+        synchronized (this) {
+            if (provisioningExecutor != null) {
+                provisioningExecutor.shutdown();
+                provisioningExecutor = null;
+            }
+        }
+    }
+
+    private ExecutorService getProvisioningExecutor() {
+
+        ThreadPoolExecutor executor = provisioningExecutor;
+        if (executor == null) {
+            synchronized (this) {
+                executor = provisioningExecutor;
+                if (executor == null) {
+                    int poolSize = IdentityUtil.getIntProperty(IdentityProvisioningConstants.PropertyConfig
+                            .OUTBOUND_PROVISIONING_THREAD_POOL_SIZE, DEFAULT_THREAD_POOL_SIZE);
+                    int queueSize = IdentityUtil.getIntProperty(IdentityProvisioningConstants.PropertyConfig
+                            .OUTBOUND_PROVISIONING_QUEUE_SIZE, DEFAULT_QUEUE_SIZE);
+                    executor = new ThreadPoolExecutor(poolSize, poolSize, 60L, TimeUnit.SECONDS,
+                            new LinkedBlockingQueue<Runnable>(queueSize), new ProvisioningThreadFactory(),
+                            new ThreadPoolExecutor.CallerRunsPolicy());
+                    executor.allowCoreThreadTimeOut(true);
+                    provisioningExecutor = executor;
+                }
+            }
+        }
+        return executor;
+    }
+
     private void executeOutboundProvisioning(ProvisioningEntity provisioningEntity, ExecutorService executors, String connectorType,
                                              String idPName, Callable<Boolean> proThread, boolean isBlocking) throws IdentityProvisioningException {
         if (!isBlocking) {
@@ -592,9 +637,6 @@ public class OutboundProvisioningManager {
 
                 boolean success = proThread.call();
                 if (!success) {
-                    if (executors != null) {
-                        executors.shutdown();
-                    }
                     throw new IdentityProvisioningException
                             (generateMessageOnFailureProvisioningOperation(idPName,
                                     connectorType, provisioningEntity));
@@ -1003,4 +1045,19 @@ public class OutboundProvisioningManager {
                 .setEntityName(UserCoreUtil.addDomainToName(provisionedEntityName, userStoreDomain));
         return provisioningEntity;
     }
+
+    /**
+     * Creates daemon threads for non blocking provisioning operations.
+     */
+    private static class ProvisioningThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "OutboundProvisioning-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
 }
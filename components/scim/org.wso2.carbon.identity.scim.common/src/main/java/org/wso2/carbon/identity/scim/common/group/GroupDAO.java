@@ -33,8 +33,11 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -46,6 +49,11 @@ public class GroupDAO {
 
     private static Log log = LogFactory.getLog(GroupDAO.class);
 
+    /**
+     * Maximum number of values bound to a single IN-list
+     */
+    private static final int IN_LIST_CHUNK_SIZE = 100;
+
     /**
      * Lists the groups that are created from SCIM
      *
@@ -80,90 +88,30 @@ public class GroupDAO {
     public boolean isExistingGroup(String groupName, int tenantId) throws IdentitySCIMException {
 
         Connection connection = IdentityDatabaseUtil.getDBConnection();
-        PreparedStatement prepStmt = null;
-        ResultSet rSet = null;
-
-        boolean isExistingGroup = false;
-
         try {
-            prepStmt = connection.prepareStatement(SQLQueries.CHECK_EXISTING_GROUP_SQL);
-            prepStmt.setInt(1, tenantId);
-            prepStmt.setString(2, SCIMCommonUtils.getGroupNameWithDomain(groupName));
-
-            rSet = prepStmt.executeQuery();
-            if (rSet.next()) {
-                isExistingGroup = true;
-            }
+            boolean isExistingGroup = isExistingGroup(connection, tenantId, groupName);
             connection.commit();
+            return isExistingGroup;
         } catch (SQLException e) {
             throw new IdentitySCIMException("Error when reading the group information from the persistence store.", e);
         } finally {
-            IdentityDatabaseUtil.closeAllConnections(connection, rSet, prepStmt);
+            IdentityDatabaseUtil.closeConnection(connection);
         }
-        return isExistingGroup;
     }
 
-    private boolean isExistingAttribute(String attributeName, String groupName, int tenantId)
+    public void addSCIMGroupAttributes(int tenantId, String roleName, Map<String, String> attributes)
             throws IdentitySCIMException {
-        Connection connection = IdentityDatabaseUtil.getDBConnection();
-        PreparedStatement prepStmt = null;
-        ResultSet rSet = null;
-
-        boolean isExistingAttribute = false;
 
+        Connection connection = IdentityDatabaseUtil.getDBConnection();
         try {
-            prepStmt = connection.prepareStatement(SQLQueries.CHECK_EXISTING_ATTRIBUTE_SQL);
-            prepStmt.setInt(1, tenantId);
-            prepStmt.setString(2, SCIMCommonUtils.getGroupNameWithDomain(groupName));
-            prepStmt.setString(3, attributeName);
-
-            rSet = prepStmt.executeQuery();
-            if (rSet.next()) {
-                isExistingAttribute = true;
-            }
+            addSCIMGroupAttributes(connection, tenantId, roleName, attributes);
             connection.commit();
         } catch (SQLException e) {
-            throw new IdentitySCIMException("Error when reading the group attribute information from " +
-                    "the persistence store.", e);
+            IdentityDatabaseUtil.rollBack(connection);
+            throw new IdentitySCIMException("Error when adding SCIM attributes for the group: "
+                    + roleName, e);
         } finally {
-            IdentityDatabaseUtil.closeAllConnections(connection, rSet, prepStmt);
-        }
-        return isExistingAttribute;
-    }
-
-    public void addSCIMGroupAttributes(int tenantId, String roleName, Map<String, String> attributes)
-            throws IdentitySCIMException {
-        Connection connection = IdentityDatabaseUtil.getDBConnection();
-        PreparedStatement prepStmt = null;
-
-        if (!isExistingGroup(SCIMCommonUtils.getGroupNameWithDomain(roleName), tenantId)) {
-            try {
-                prepStmt = connection.prepareStatement(SQLQueries.ADD_ATTRIBUTES_SQL);
-                prepStmt.setInt(1, tenantId);
-                prepStmt.setString(2, roleName);
-                for (Map.Entry<String, String> entry : attributes.entrySet()) {
-                    if (!isExistingAttribute(entry.getKey(),
-                            SCIMCommonUtils.getGroupNameWithDomain(roleName), tenantId)) {
-                        prepStmt.setString(3, entry.getKey());
-                        prepStmt.setString(4, entry.getValue());
-                        prepStmt.execute();
-                        connection.commit();
-                    } else {
-                        throw new IdentitySCIMException("Error when adding SCIM Attribute: "
-                                + entry.getKey()
-                                + " An attribute with the same name already exists.");
-                    }
-                }
-                connection.commit();
-            } catch (SQLException e) {
-                throw new IdentitySCIMException("Error when adding SCIM attributes for the group: "
-                        + roleName, e);
-            } finally {
-                IdentityDatabaseUtil.closeAllConnections(connection, null, prepStmt);
-            }
-        } else {
-            throw new IdentitySCIMException("Error when adding SCIM Attributes for the group: "
-                    + roleName + " A Group with the same name already exists.");
+            IdentityDatabaseUtil.closeConnection(connection);
         }
     }
 
@@ -171,39 +119,14 @@ public class GroupDAO {
                                           Map<String, String> attributes) throws IdentitySCIMException {
 
         Connection connection = IdentityDatabaseUtil.getDBConnection();
-        PreparedStatement prepStmt = null;
-
-        if (isExistingGroup(SCIMCommonUtils.getGroupNameWithDomain(roleName), tenantId)) {
-            try {
-                prepStmt = connection.prepareStatement(SQLQueries.UPDATE_ATTRIBUTES_SQL);
-
-                prepStmt.setInt(2, tenantId);
-                prepStmt.setString(3, roleName);
-
-                for (Map.Entry<String, String> entry : attributes.entrySet()) {
-                    if (isExistingAttribute(entry.getKey(),
-                            SCIMCommonUtils.getGroupNameWithDomain(roleName), tenantId)) {
-                        prepStmt.setString(4, entry.getKey());
-                        prepStmt.setString(1, entry.getValue());
-                        int count = prepStmt.executeUpdate();
-                        if (log.isDebugEnabled()) {
-                            log.debug("No. of records updated for updating SCIM Group : " + count);
-                        }
-                        connection.commit();
-                    } else {
-                        throw new IdentitySCIMException("Error when adding SCIM Attribute: "
-                                + entry.getKey()
-                                + " An attribute with the same name doesn't exists.");
-                    }
-                }
-            } catch (SQLException e) {
-                throw new IdentitySCIMException("Error updating the SCIM Group Attributes.", e);
-            } finally {
-                IdentityDatabaseUtil.closeAllConnections(connection, null, prepStmt);
-            }
-        } else {
-            throw new IdentitySCIMException("Error when updating SCIM Attributes for the group: "
-                    + roleName + " A Group with the same name doesn't exists.");
+        try {
+            updateSCIMGroupAttributes(connection, tenantId, roleName, attributes);
+            connection.commit();
+        } catch (SQLException e) {
+            IdentityDatabaseUtil.rollBack(connection);
+            throw new IdentitySCIMException("Error updating the SCIM Group Attributes.", e);
+        } finally {
+            IdentityDatabaseUtil.closeConnection(connection);
         }
     }
 
@@ -256,6 +179,32 @@ public class GroupDAO {
         return attributes;
     }
 
+    /**
+     * Reads the SCIM attributes of several groups, with one query per {@value #IN_LIST_CHUNK_SIZE} groups.
+     *
+     * @param tenantId  Tenant id
+     * @param roleNames Names of the groups
+     * @return Attributes of each group keyed by the group name as given. Groups without SCIM attributes are not
+     * included
+     * @throws IdentitySCIMException
+     */
+    public Map<String, Map<String, String>> getSCIMGroupAttributes(int tenantId, Collection<String> roleNames)
+            throws IdentitySCIMException {
+
+        Connection connection = IdentityDatabaseUtil.getDBConnection();
+        try {
+            Map<String, Map<String, String>> attributes = getSCIMGroupAttributes(connection, tenantId, roleNames);
+            connection.commit();
+            return attributes;
+        } catch (SQLException e) {
+            log.error("Error when executing the SQL : " + SQLQueries.GET_ATTRIBUTES_OF_GROUPS_SQL);
+            throw new IdentitySCIMException("Error when reading the SCIM Group information from the " +
+                    "persistence store.", e);
+        } finally {
+            IdentityDatabaseUtil.closeConnection(connection);
+        }
+    }
+
     public String getGroupNameById(int tenantId, String id) throws IdentitySCIMException {
         Connection connection = IdentityDatabaseUtil.getDBConnection();
         PreparedStatement prepStmt = null;
@@ -311,4 +260,164 @@ public class GroupDAO {
             throw new IdentitySCIMException("Error when updating role name of the role: " + oldRoleName);
         }
     }
+
+    boolean isExistingGroup(Connection connection, int tenantId, String groupName) throws SQLException {
+
+        PreparedStatement prepStmt = null;
+        ResultSet rSet = null;
+        try {
+            prepStmt = connection.prepareStatement(SQLQueries.CHECK_EXISTING_GROUP_SQL);
+            prepStmt.setInt(1, tenantId);
+            prepStmt.setString(2, SCIMCommonUtils.getGroupNameWithDomain(groupName));
+            rSet = prepStmt.executeQuery();
+            return rSet.next();
+        } finally {
+            IdentityDatabaseUtil.closeResultSet(rSet);
+            IdentityDatabaseUtil.closeStatement(prepStmt);
+        }
+    }
+
+    /**
+     * Inserts all the attributes of a new group in a single batch. Since the group must not exist yet, none of its
+     * attributes can exist either.
+     */
+    void addSCIMGroupAttributes(Connection connection, int tenantId, String roleName, Map<String, String> attributes)
+            throws SQLException, IdentitySCIMException {
+
+        if (isExistingGroup(connection, tenantId, roleName)) {
+            throw new IdentitySCIMException("Error when adding SCIM Attributes for the group: "
+                    + roleName + " A Group with the same name already exists.");
+        }
+        PreparedStatement prepStmt = null;
+        try {
+            prepStmt = connection.prepareStatement(SQLQueries.ADD_ATTRIBUTES_SQL);
+            for (Map.Entry<String, String> entry : attributes.entrySet()) {
+                prepStmt.setInt(1, tenantId);
+                prepStmt.setString(2, roleName);
+                prepStmt.setString(3, entry.getKey());
+                prepStmt.setString(4, entry.getValue());
+                prepStmt.addBatch();
+            }
+            prepStmt.executeBatch();
+        } finally {
+            IdentityDatabaseUtil.closeStatement(prepStmt);
+        }
+    }
+
+    /**
+     * Updates the attributes of a group in a single batch, after checking that all of them exist. Nothing is
+     * updated if any of the attributes does not exist.
+     */
+    void updateSCIMGroupAttributes(Connection connection, int tenantId, String roleName,
+                                   Map<String, String> attributes) throws SQLException, IdentitySCIMException {
+
+        // a group exists only if it has attributes, so reading the attribute names checks the group as well
+        Set<String> existingAttributes = getAttributeNames(connection, tenantId, roleName);
+        if (existingAttributes.isEmpty()) {
+            throw new IdentitySCIMException("Error when updating SCIM Attributes for the group: "
+                    + roleName + " A Group with the same name doesn't exists.");
+        }
+        for (String attributeName : attributes.keySet()) {
+            if (!existingAttributes.contains(attributeName)) {
+                throw new IdentitySCIMException("Error when adding SCIM Attribute: "
+                        + attributeName
+                        + " An attribute with the same name doesn't exists.");
+            }
+        }
+
+        PreparedStatement prepStmt = null;
+        try {
+            prepStmt = connection.prepareStatement(SQLQueries.UPDATE_ATTRIBUTES_SQL);
+            for (Map.Entry<String, String> entry : attributes.entrySet()) {
+                prepStmt.setString(1, entry.getValue());
+                prepStmt.setInt(2, tenantId);
+                prepStmt.setString(3, roleName);
+                prepStmt.setString(4, entry.getKey());
+                prepStmt.addBatch();
+            }
+            int[] counts = prepStmt.executeBatch();
+            if (log.isDebugEnabled()) {
+                log.debug("No. of statements executed for updating SCIM Group : " + counts.length);
+            }
+        } finally {
+            IdentityDatabaseUtil.closeStatement(prepStmt);
+        }
+    }
+
+    private Set<String> getAttributeNames(Connection connection, int tenantId, String roleName)
+            throws SQLException {
+
+        Set<String> attributeNames = new HashSet<>();
+        PreparedStatement prepStmt = null;
+        ResultSet rSet = null;
+        try {
+            prepStmt = connection.prepareStatement(SQLQueries.GET_ATTRIBUTES_SQL);
+            prepStmt.setInt(1, tenantId);
+            prepStmt.setString(2, SCIMCommonUtils.getGroupNameWithDomain(roleName));
+            rSet = prepStmt.executeQuery();
+            while (rSet.next()) {
+                attributeNames.add(rSet.getString(1));
+            }
+        } finally {
+            IdentityDatabaseUtil.closeResultSet(rSet);
+            IdentityDatabaseUtil.closeStatement(prepStmt);
+        }
+        return attributeNames;
+    }
+
+    Map<String, Map<String, String>> getSCIMGroupAttributes(Connection connection, int tenantId,
+                                                            Collection<String> roleNames) throws SQLException {
+
+        // attributes are stored against the domain qualified name, while the result is keyed by the given name
+        Map<String, String> roleNamesWithDomain = new HashMap<>();
+        for (String roleName : roleNames) {
+            roleNamesWithDomain.put(SCIMCommonUtils.getGroupNameWithDomain(roleName), roleName);
+        }
+
+        Map<String, Map<String, String>> groupAttributes = new HashMap<>();
+        List<String> names = new ArrayList<>(roleNamesWithDomain.keySet());
+        for (int from = 0; from < names.size(); from += IN_LIST_CHUNK_SIZE) {
+            List<String> chunk = names.subList(from, Math.min(from + IN_LIST_CHUNK_SIZE, names.size()));
+            PreparedStatement prepStmt = null;
+            ResultSet rSet = null;
+            try {
+                prepStmt = connection.prepareStatement(getInListQuery(SQLQueries.GET_ATTRIBUTES_OF_GROUPS_SQL,
+                        chunk.size()));
+                prepStmt.setInt(1, tenantId);
+                for (int i = 0; i < chunk.size(); i++) {
+                    prepStmt.setString(i + 2, chunk.get(i));
+                }
+                rSet = prepStmt.executeQuery();
+                while (rSet.next()) {
+                    String roleName = roleNamesWithDomain.get(rSet.getString(1));
+                    String attributeName = rSet.getString(2);
+                    if (roleName == null || StringUtils.isEmpty(attributeName)) {
+                        continue;
+                    }
+                    Map<String, String> attributes = groupAttributes.get(roleName);
+                    if (attributes == null) {
+                        attributes = new HashMap<>();
+                        groupAttributes.put(roleName, attributes);
+                    }
+                    attributes.put(attributeName, rSet.getString(3));
+                }
+            } finally {
+                IdentityDatabaseUtil.closeResultSet(rSet);
+                IdentityDatabaseUtil.closeStatement(prepStmt);
+            }
+        }
+        return groupAttributes;
+    }
+
+    private static String getInListQuery(String query, int size) {
+
+        StringBuilder sql = new StringBuilder(query);
+        for (int i = 0; i < size; i++) {
+            if (i > 0) {
+                sql.append(", ");
+            }
+            sql.append('?');
+        }
+        return sql.append(')').toString();
+    }
 }
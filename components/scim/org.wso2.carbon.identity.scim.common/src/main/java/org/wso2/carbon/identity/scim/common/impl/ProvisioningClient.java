@@ -19,7 +19,6 @@
 package org.wso2.carbon.identity.scim.common.impl;
 
 import org.apache.commons.collections.CollectionUtils;
-import org.apache.commons.httpclient.HttpClient;
 import org.apache.commons.httpclient.HttpException;
 import org.apache.commons.httpclient.methods.DeleteMethod;
 import org.apache.commons.httpclient.methods.GetMethod;
@@ -66,6 +65,7 @@ public class ProvisioningClient implements Runnable {
     int provisioningMethod;
     private int objectType;
     private Map<String, Object> additionalProvisioningInformation;
+    private ProvisioningHttpClientManager httpClientManager = ProvisioningHttpClientManager.getInstance();
 
     /**
      * Initialize parameters to be used in the SCIM User operation which will be invoked by the run operation
@@ -136,10 +136,8 @@ public class ProvisioningClient implements Runnable {
                     contentType, null);
             postMethod.setRequestEntity(requestEntity);
 
-            //create http client
-            HttpClient httpClient = new HttpClient();
             //send the request
-            int responseStatus = httpClient.executeMethod(postMethod);
+            int responseStatus = httpClientManager.executeMethod(postMethod);
 
             logger.info("SCIM - create user operation returned with response code: " + responseStatus);
 
@@ -193,10 +191,8 @@ public class ProvisioningClient implements Runnable {
             getMethod.addRequestHeader(SCIMConstants.AUTHORIZATION_HEADER,
                     BasicAuthUtil.getBase64EncodedBasicAuthHeader(userName, password));
 
-            //create http client
-            HttpClient httpFilterClient = new HttpClient();
             //send the request
-            int responseStatus = httpFilterClient.executeMethod(getMethod);
+            int responseStatus = httpClientManager.executeMethod(getMethod);
 
             String response = getMethod.getResponseBodyAsString();
             if (logger.isDebugEnabled()) {
@@ -221,8 +217,7 @@ public class ProvisioningClient implements Runnable {
                 deleteMethod.addRequestHeader(
                         SCIMConstants.AUTHORIZATION_HEADER,
                         BasicAuthUtil.getBase64EncodedBasicAuthHeader(userName, password));
-                HttpClient httpDeleteClient = new HttpClient();
-                int deleteResponseStatus = httpDeleteClient.executeMethod(deleteMethod);
+                int deleteResponseStatus = httpClientManager.executeMethod(deleteMethod);
                 String deleteResponse = deleteMethod.getResponseBodyAsString();
                 logger.info("SCIM - delete user operation returned with response code: " +
                         deleteResponseStatus);
@@ -267,10 +262,8 @@ public class ProvisioningClient implements Runnable {
             getMethod.addRequestHeader(SCIMConstants.AUTHORIZATION_HEADER,
                     BasicAuthUtil.getBase64EncodedBasicAuthHeader(userName, password));
 
-            //create http client
-            HttpClient httpFilterClient = new HttpClient();
             //send the request
-            int responseStatus = httpFilterClient.executeMethod(getMethod);
+            int responseStatus = httpClientManager.executeMethod(getMethod);
 
             String response = getMethod.getResponseBodyAsString();
             if (logger.isDebugEnabled()) {
@@ -306,8 +299,7 @@ public class ProvisioningClient implements Runnable {
                         encodedUser, contentType, null);
                 putMethod.setRequestEntity(putRequestEntity);
 
-                HttpClient httpUpdateClient = new HttpClient();
-                int updateResponseStatus = httpUpdateClient.executeMethod(putMethod);
+                int updateResponseStatus = httpClientManager.executeMethod(putMethod);
                 String updateResponse = putMethod.getResponseBodyAsString();
                 logger.info("SCIM - update user operation returned with response code: " +
                         updateResponseStatus);
@@ -353,10 +345,8 @@ public class ProvisioningClient implements Runnable {
             getMethod.addRequestHeader(SCIMConstants.AUTHORIZATION_HEADER,
                     BasicAuthUtil.getBase64EncodedBasicAuthHeader(userName, password));
 
-            //create http client
-            HttpClient httpFilterClient = new HttpClient();
             //send the request
-            int responseStatus = httpFilterClient.executeMethod(getMethod);
+            int responseStatus = httpClientManager.executeMethod(getMethod);
 
             String response = getMethod.getResponseBodyAsString();
             if (logger.isDebugEnabled()) {
@@ -397,8 +387,7 @@ public class ProvisioningClient implements Runnable {
                         encodedUser, contentType, null);
                 patchMethod.setRequestEntity(putRequestEntity);
 
-                HttpClient httpUpdateClient = new HttpClient();
-                int updateResponseStatus = httpUpdateClient.executeMethod(patchMethod);
+                int updateResponseStatus = httpClientManager.executeMethod(patchMethod);
                 String updateResponse = patchMethod.getResponseBodyAsString();
                 logger.info("SCIM - update user operation returned with response code: " +
                         updateResponseStatus);
@@ -445,8 +434,6 @@ public class ProvisioningClient implements Runnable {
                 copiedGroup = (Group) CopyUtil.deepCopy(scimObject);
                 //delete existing members in the group since we are going to update it with
                 copiedGroup.deleteAttribute(SCIMConstants.GroupSchemaConstants.MEMBERS);
-                //create http client
-                HttpClient httpFilterUserClient = new HttpClient();
                 //create get method for filtering
                 GetMethod getMethod = new GetMethod(userEPURL);
                 getMethod.addRequestHeader(SCIMConstants.AUTHORIZATION_HEADER,
@@ -456,7 +443,7 @@ public class ProvisioningClient implements Runnable {
                 for (String user : users) {
                     String filter = USER_FILTER + user;
                     getMethod.setQueryString(filter);
-                    int responseCode = httpFilterUserClient.executeMethod(getMethod);
+                    int responseCode = httpClientManager.executeMethod(getMethod);
                     String response = getMethod.getResponseBodyAsString();
                     if (logger.isDebugEnabled()) {
                         logger.debug("SCIM - 'filter user' operation inside 'create group' provisioning " +
@@ -487,7 +474,6 @@ public class ProvisioningClient implements Runnable {
             }
 
             //provision create group operation
-            HttpClient httpCreateGroupClient = new HttpClient();
 
             PostMethod postMethod = new PostMethod(groupEPURL);
             //add basic auth header
@@ -508,7 +494,7 @@ public class ProvisioningClient implements Runnable {
             postMethod.setRequestEntity(requestEntity);
 
             //send the request
-            int responseStatus = httpCreateGroupClient.executeMethod(postMethod);
+            int responseStatus = httpClientManager.executeMethod(postMethod);
 
             logger.info("SCIM - create group operation returned with response code: " + responseStatus);
 
@@ -554,10 +540,8 @@ public class ProvisioningClient implements Runnable {
             getMethod.addRequestHeader(SCIMConstants.AUTHORIZATION_HEADER,
                     BasicAuthUtil.getBase64EncodedBasicAuthHeader(userName, password));
 
-            //create http client
-            HttpClient httpFilterClient = new HttpClient();
             //send the request
-            int responseStatus = httpFilterClient.executeMethod(getMethod);
+            int responseStatus = httpClientManager.executeMethod(getMethod);
             String response = getMethod.getResponseBodyAsString();
 
             if (logger.isDebugEnabled()) {
@@ -582,8 +566,7 @@ public class ProvisioningClient implements Runnable {
                 deleteMethod.addRequestHeader(
                         SCIMConstants.AUTHORIZATION_HEADER,
                         BasicAuthUtil.getBase64EncodedBasicAuthHeader(userName, password));
-                HttpClient httpDeleteClient = new HttpClient();
-                int deleteResponseStatus = httpDeleteClient.executeMethod(deleteMethod);
+                int deleteResponseStatus = httpClientManager.executeMethod(deleteMethod);
                 String deleteResponse = deleteMethod.getResponseBodyAsString();
                 logger.info("SCIM - delete group operation returned with response code: " +
                         deleteResponseStatus);
@@ -636,10 +619,8 @@ public class ProvisioningClient implements Runnable {
             getMethod.addRequestHeader(SCIMConstants.AUTHORIZATION_HEADER,
                     BasicAuthUtil.getBase64EncodedBasicAuthHeader(userName, password));
 
-            //create http client
-            HttpClient httpFilterClient = new HttpClient();
             //send the request
-            int responseStatus = httpFilterClient.executeMethod(getMethod);
+            int responseStatus = httpClientManager.executeMethod(getMethod);
 
             String response = getMethod.getResponseBodyAsString();
             if (logger.isDebugEnabled()) {
@@ -673,8 +654,6 @@ public class ProvisioningClient implements Runnable {
                     copiedGroup = (Group) CopyUtil.deepCopy(scimObject);
                     //delete existing members in the group since we are going to update it with
                     copiedGroup.deleteAttribute(SCIMConstants.GroupSchemaConstants.MEMBERS);
-                    //create http client
-                    HttpClient httpFilterUserClient = new HttpClient();
                     //create get method for filtering
                     GetMethod getUserMethod = new GetMethod(userEPURL);
                     getUserMethod.addRequestHeader(SCIMConstants.AUTHORIZATION_HEADER,
@@ -684,7 +663,7 @@ public class ProvisioningClient implements Runnable {
                     for (String user : users) {
                         String filter = USER_FILTER + user;
                         getUserMethod.setQueryString(filter);
-                        int responseCode = httpFilterUserClient.executeMethod(getUserMethod);
+                        int responseCode = httpClientManager.executeMethod(getUserMethod);
                         String filterUserResponse = getUserMethod.getResponseBodyAsString();
                         if (logger.isDebugEnabled()) {
                             logger.debug("SCIM - 'filter user' operation inside 'update group' provisioning " +
@@ -725,8 +704,7 @@ public class ProvisioningClient implements Runnable {
                         encodedGroup, contentType, null);
                 putMethod.setRequestEntity(putRequestEntity);
 
-                HttpClient httpUpdateClient = new HttpClient();
-                int updateResponseStatus = httpUpdateClient.executeMethod(putMethod);
+                int updateResponseStatus = httpClientManager.executeMethod(putMethod);
                 String updateResponse = putMethod.getResponseBodyAsString();
 
                 logger.info("SCIM - update group operation returned with response code: " +
@@ -779,10 +757,8 @@ public class ProvisioningClient implements Runnable {
             getMethod.addRequestHeader(SCIMConstants.AUTHORIZATION_HEADER,
                                        BasicAuthUtil.getBase64EncodedBasicAuthHeader(userName, password));
 
-            //create http client
-            HttpClient httpFilterClient = new HttpClient();
             //send the request
-            int responseStatus = httpFilterClient.executeMethod(getMethod);
+            int responseStatus = httpClientManager.executeMethod(getMethod);
 
             String response = getMethod.getResponseBodyAsString();
             if (logger.isDebugEnabled()) {
@@ -816,8 +792,6 @@ public class ProvisioningClient implements Runnable {
                     copiedGroup = (Group) CopyUtil.deepCopy(scimObject);
                     //delete existing members in the group since we are going to update it with
                     copiedGroup.deleteAttribute(SCIMConstants.GroupSchemaConstants.MEMBERS);
-                    //create http client
-                    HttpClient httpFilterUserClient = new HttpClient();
                     //create get method for filtering
                     GetMethod getUserMethod = new GetMethod(userEPURL);
                     getUserMethod.addRequestHeader(SCIMConstants.AUTHORIZATION_HEADER,
@@ -827,7 +801,7 @@ public class ProvisioningClient implements Runnable {
                     for (String user : users) {
                         String filter = USER_FILTER + user;
                         getUserMethod.setQueryString(filter);
-                        int responseCode = httpFilterUserClient.executeMethod(getUserMethod);
+                        int responseCode = httpClientManager.executeMethod(getUserMethod);
                         String filterUserResponse = getUserMethod.getResponseBodyAsString();
                         if (logger.isDebugEnabled()) {
                             logger.debug("SCIM - 'filter user' operation inside 'update group' provisioning " +
@@ -873,8 +847,7 @@ public class ProvisioningClient implements Runnable {
                         encodedGroup, contentType, null);
                 patchMethod.setRequestEntity(putRequestEntity);
 
-                HttpClient httpUpdateClient = new HttpClient();
-                int updateResponseStatus = httpUpdateClient.executeMethod(patchMethod);
+                int updateResponseStatus = httpClientManager.executeMethod(patchMethod);
                 String updateResponse = patchMethod.getResponseBodyAsString();
 
                 logger.info("SCIM - update group operation returned with response code: " +
@@ -0,0 +1,140 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.scim.common.impl;
+
+import org.apache.commons.httpclient.HttpClient;
+import org.apache.commons.httpclient.HttpMethodBase;
+import org.apache.commons.httpclient.MultiThreadedHttpConnectionManager;
+import org.apache.commons.httpclient.params.HttpConnectionManagerParams;
+import org.wso2.carbon.identity.core.util.IdentityUtil;
+import org.wso2.carbon.identity.scim.common.utils.SCIMCommonConstants;
+
+import java.io.IOException;
+
+/**
+ * Holds the HTTP client shared by all outbound SCIM provisioning operations. Connections are pooled and kept alive
+ * per SCIM endpoint (host and port), so consecutive operations to the same provider reuse them instead of setting
+ * up a new connection each time.
+ * <p/>
+ * The number of connections to an endpoint is limited. When all of them are in use an operation waits for a free
+ * connection up to the configured timeout, which keeps a slow provider from taking up an unbounded number of
+ * connections and threads.
+ */
+public class ProvisioningHttpClientManager {
+
+    private static final int DEFAULT_MAX_CONNECTIONS_PER_ENDPOINT = 20;
+    private static final int DEFAULT_MAX_TOTAL_CONNECTIONS = 100;
+    private static final int DEFAULT_CONNECTION_WAIT_TIMEOUT = 30000;
+    private static final int DEFAULT_CONNECTION_TIMEOUT = 30000;
+    private static final int DEFAULT_SOCKET_TIMEOUT = 60000;
+
+    private static volatile ProvisioningHttpClientManager instance;
+
+    private final MultiThreadedHttpConnectionManager connectionManager;
+    private final HttpClient httpClient;
+
+    /**
+     * @param maxConnectionsPerEndpoint Maximum number of connections to a single SCIM endpoint
+     * @param maxTotalConnections       Maximum number of connections to all SCIM endpoints
+     * @param connectionWaitTimeout     Milliseconds to wait for a free connection to an endpoint
+     * @param connectionTimeout         Milliseconds to wait until a connection is established
+     * @param socketTimeout             Milliseconds to wait for data from an endpoint
+     */
+    public ProvisioningHttpClientManager(int maxConnectionsPerEndpoint, int maxTotalConnections,
+                                         long connectionWaitTimeout, int connectionTimeout, int socketTimeout) {
+
+        HttpConnectionManagerParams params = new HttpConnectionManagerParams();
+        params.setDefaultMaxConnectionsPerHost(maxConnectionsPerEndpoint);
+        params.setMaxTotalConnections(maxTotalConnections);
+        params.setConnectionTimeout(connectionTimeout);
+        params.setSoTimeout(socketTimeout);
+        params.setStaleCheckingEnabled(true);
+
+        connectionManager = new MultiThreadedHttpConnectionManager();
+        connectionManager.setParams(params);
+        httpClient = new HttpClient(connectionManager);
+        httpClient.getParams().setConnectionManagerTimeout(connectionWaitTimeout);
+    }
+
+    public static ProvisioningHttpClientManager getInstance() {
+
+        if (instance == null) {
+            synchronized (ProvisioningHttpClientManager.class) {
+                if (instance == null) {
+                    instance = new ProvisioningHttpClientManager(
+                            IdentityUtil.getIntProperty(SCIMCommonConstants.PROVISIONING_MAX_CONNECTIONS_PER_ENDPOINT,
+                                    DEFAULT_MAX_CONNECTIONS_PER_ENDPOINT),
+                            IdentityUtil.getIntProperty(SCIMCommonConstants.PROVISIONING_MAX_TOTAL_CONNECTIONS,
+                                    DEFAULT_MAX_TOTAL_CONNECTIONS),
+                            IdentityUtil.getIntProperty(SCIMCommonConstants.PROVISIONING_CONNECTION_WAIT_TIMEOUT,
+                                    DEFAULT_CONNECTION_WAIT_TIMEOUT),
+                            IdentityUtil.getIntProperty(SCIMCommonConstants.PROVISIONING_CONNECTION_TIMEOUT,
+                                    DEFAULT_CONNECTION_TIMEOUT),
+                            IdentityUtil.getIntProperty(SCIMCommonConstants.PROVISIONING_SOCKET_TIMEOUT,
+                                    DEFAULT_SOCKET_TIMEOUT));
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Closes the pooled connections of the shared client. A new client is created if provisioning is invoked
+     * afterwards
+     */
+    public static void shutdown() {
+
+        synchronized (ProvisioningHttpClientManager.class) {
+            if (instance != null) {
+                instance.close();
+                instance = null;
+            }
+        }
+    }
+
+    /**
+     * Sends the request and reads the response body, after which the connection is given back to the pool. The
+     * response body remains available through the method.
+     *
+     * @param method Request to send
+     * @return Response status code
+     * @throws IOException If the request fails or no connection becomes free within the wait timeout
+     */
+    public int executeMethod(HttpMethodBase method) throws IOException {
+
+        try {
+            int status = httpClient.executeMethod(method);
+            method.getResponseBody();
+            return status;
+        } finally {
+            method.releaseConnection();
+        }
+    }
+
+    /**
+     * @return Number of open connections to all endpoints, including the idle ones kept alive
+     */
+    public int getConnectionsInPool() {
+        return connectionManager.getConnectionsInPool();
+    }
+
+    public void close() {
+        connectionManager.shutdown();
+    }
+}
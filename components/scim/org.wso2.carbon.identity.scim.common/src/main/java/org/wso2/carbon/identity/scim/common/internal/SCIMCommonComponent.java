@@ -22,6 +22,7 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.osgi.service.component.ComponentContext;
 import org.wso2.carbon.identity.core.util.IdentityCoreInitializedEvent;
+import org.wso2.carbon.identity.scim.common.impl.ProvisioningHttpClientManager;
 import org.wso2.carbon.identity.scim.common.listener.SCIMUserOperationListener;
 import org.wso2.carbon.identity.scim.common.utils.SCIMCommonUtils;
 import org.wso2.carbon.user.core.listener.UserOperationEventListener;
@@ -78,6 +79,13 @@ public class SCIMCommonComponent {
         }
     }
 
+    protected void deactivate(ComponentContext ctx) {
+        ProvisioningHttpClientManager.shutdown();
+        if (logger.isDebugEnabled()) {
+            logger.debug("SCIM Common component deactivated.");
+        }
+    }
+
     protected void unsetIdentityCoreInitializedEventService(IdentityCoreInitializedEvent identityCoreInitializedEvent) {
         /* reference IdentityCoreInitializedEvent service to guarantee that this component will wait until identity core
          is started */
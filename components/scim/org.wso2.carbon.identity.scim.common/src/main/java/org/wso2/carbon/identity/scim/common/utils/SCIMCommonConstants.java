@@ -39,6 +39,14 @@ public class SCIMCommonConstants {
 
     public static final String SCIM_CLAIM_DIALECT = "urn:scim:schemas:core:1.0";
 
+    //outbound provisioning http client configuration in identity.xml
+    public static final String PROVISIONING_MAX_CONNECTIONS_PER_ENDPOINT =
+            "SCIM.Provisioning.MaxConnectionsPerEndpoint";
+    public static final String PROVISIONING_MAX_TOTAL_CONNECTIONS = "SCIM.Provisioning.MaxTotalConnections";
+    public static final String PROVISIONING_CONNECTION_WAIT_TIMEOUT = "SCIM.Provisioning.ConnectionWaitTimeout";
+    public static final String PROVISIONING_CONNECTION_TIMEOUT = "SCIM.Provisioning.ConnectionTimeout";
+    public static final String PROVISIONING_SOCKET_TIMEOUT = "SCIM.Provisioning.SocketTimeout";
+
     private  SCIMCommonConstants(){}
 
 }
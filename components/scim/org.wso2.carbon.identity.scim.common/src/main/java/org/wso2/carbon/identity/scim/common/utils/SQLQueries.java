@@ -33,7 +33,7 @@ public class SQLQueries {
     public static final String ADD_ATTRIBUTES_SQL =
             "INSERT INTO IDN_SCIM_GROUP (TENANT_ID, ROLE_NAME, ATTR_NAME, ATTR_VALUE) VALUES (?, ?, ?, ?)";
     public static final String UPDATE_ATTRIBUTES_SQL =
-            "UPDATE IDN_SCIM_GROUP SET UM_ATTR_VALUE=? WHERE TENANT_ID=? AND ROLE_NAME=? AND ATTR_NAME=?";
+            "UPDATE IDN_SCIM_GROUP SET ATTR_VALUE=? WHERE TENANT_ID=? AND ROLE_NAME=? AND ATTR_NAME=?";
     public static final String UPDATE_GROUP_NAME_SQL =
             "UPDATE IDN_SCIM_GROUP SET ROLE_NAME=? WHERE TENANT_ID=? AND ROLE_NAME=?";
     public static final String DELETE_GROUP_SQL =
@@ -43,6 +43,10 @@ public class SQLQueries {
     public static final String CHECK_EXISTING_ATTRIBUTE_SQL =
             "SELECT * FROM IDN_SCIM_GROUP WHERE IDN_SCIM_GROUP.TENANT_ID=? AND IDN_SCIM_GROUP.ROLE_NAME=? " +
                     "AND IDN_SCIM_GROUP.ATTR_NAME=?";
+    /*IN-list of this query is completed with one placeholder per group name and a closing bracket*/
+    public static final String GET_ATTRIBUTES_OF_GROUPS_SQL =
+            "SELECT ROLE_NAME, ATTR_NAME, ATTR_VALUE FROM IDN_SCIM_GROUP WHERE IDN_SCIM_GROUP.TENANT_ID=? AND " +
+                    "IDN_SCIM_GROUP.ROLE_NAME IN (";
 
     private SQLQueries(){}
 }
@@ -0,0 +1,202 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wso2.carbon.identity.scim.common.group;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.wso2.carbon.identity.scim.common.utils.IdentitySCIMException;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+public class GroupDAOTest {
+
+    private static final int TENANT_ID = -1234;
+    private static final String ROLE_NAME = "PRIMARY/engineering";
+    private static final int ATTRIBUTE_COUNT = 10000;
+
+    private GroupDAO groupDAO = new GroupDAO();
+    private Connection connection;
+    private int statementCount;
+
+    @Before
+    public void setUp() throws Exception {
+
+        Class.forName("org.h2.Driver");
+        connection = DriverManager.getConnection("jdbc:h2:mem:GroupDAOTest;DB_CLOSE_DELAY=-1");
+        connection.setAutoCommit(false);
+        Statement statement = connection.createStatement();
+        statement.execute("CREATE TABLE IDN_SCIM_GROUP (ID INTEGER NOT NULL AUTO_INCREMENT, " +
+                "TENANT_ID INTEGER NOT NULL, ROLE_NAME VARCHAR(255) NOT NULL, ATTR_NAME VARCHAR(1024) NOT NULL, " +
+                "ATTR_VALUE VARCHAR(1024), PRIMARY KEY (ID))");
+        // keeps each row of the large update from scanning the whole group
+        statement.execute("CREATE INDEX IDX_SCIM_GROUP_ATTR ON IDN_SCIM_GROUP (TENANT_ID, ROLE_NAME, ATTR_NAME)");
+        statement.close();
+        connection.commit();
+        statementCount = 0;
+    }
+
+    @After
+    public void tearDown() throws Exception {
+
+        Statement statement = connection.createStatement();
+        statement.execute("DROP ALL OBJECTS");
+        statement.close();
+        connection.close();
+    }
+
+    @Test
+    public void testLargeGroupIsAddedAndUpdatedInBatches() throws Exception {
+
+        Map<String, String> attributes = getAttributes("value");
+        Connection counting = countingConnection();
+        groupDAO.addSCIMGroupAttributes(counting, TENANT_ID, ROLE_NAME, attributes);
+        counting.commit();
+        Assert.assertEquals("group should be checked once and its attributes added in a single batch", 2,
+                statementCount);
+        Assert.assertEquals(attributes, read());
+
+        statementCount = 0;
+        Map<String, String> updated = getAttributes("updated");
+        groupDAO.updateSCIMGroupAttributes(counting, TENANT_ID, ROLE_NAME, updated);
+        counting.commit();
+        Assert.assertEquals("attributes should be checked with a single query and updated in a single batch", 2,
+                statementCount);
+        Assert.assertEquals(updated, read());
+    }
+
+    @Test
+    public void testUpdateOfMissingAttributeUpdatesNothing() throws Exception {
+
+        Map<String, String> attributes = getAttributes("value");
+        groupDAO.addSCIMGroupAttributes(connection, TENANT_ID, ROLE_NAME, attributes);
+        connection.commit();
+
+        Map<String, String> updated = getAttributes("updated");
+        updated.put("urn:scim:missing", "value");
+        try {
+            groupDAO.updateSCIMGroupAttributes(connection, TENANT_ID, ROLE_NAME, updated);
+            Assert.fail("update of a missing attribute should fail");
+        } catch (IdentitySCIMException e) {
+            connection.rollback();
+        }
+        Assert.assertEquals(attributes, read());
+    }
+
+    @Test(expected = IdentitySCIMException.class)
+    public void testExistingGroupIsNotAdded() throws Exception {
+
+        groupDAO.addSCIMGroupAttributes(connection, TENANT_ID, ROLE_NAME, Collections.singletonMap("id", "1"));
+        groupDAO.addSCIMGroupAttributes(connection, TENANT_ID, ROLE_NAME, Collections.singletonMap("id", "2"));
+    }
+
+    @Test
+    public void testAttributesOfGroupsAreReadInChunks() throws Exception {
+
+        String[] roleNames = new String[250];
+        for (int i = 0; i < roleNames.length; i++) {
+            roleNames[i] = "role" + i;
+            groupDAO.addSCIMGroupAttributes(connection, TENANT_ID, "PRIMARY/" + roleNames[i],
+                    Collections.singletonMap("id", Integer.toString(i)));
+        }
+        connection.commit();
+
+        statementCount = 0;
+        Map<String, Map<String, String>> groupAttributes = groupDAO.getSCIMGroupAttributes(countingConnection(),
+                TENANT_ID, Arrays.asList(roleNames));
+        Assert.assertEquals(3, statementCount);
+        Assert.assertEquals(roleNames.length, groupAttributes.size());
+        for (int i = 0; i < roleNames.length; i++) {
+            Assert.assertEquals(Integer.toString(i), groupAttributes.get(roleNames[i]).get("id"));
+        }
+    }
+
+    private Map<String, String> getAttributes(String valuePrefix) {
+
+        Map<String, String> attributes = new HashMap<>();
+        for (int i = 0; i < ATTRIBUTE_COUNT; i++) {
+            attributes.put("urn:scim:attribute" + i, valuePrefix + i);
+        }
+        return attributes;
+    }
+
+    private Map<String, String> read() throws Exception {
+
+        PreparedStatement prepStmt = connection.prepareStatement("SELECT ATTR_NAME, ATTR_VALUE FROM " +
+                "IDN_SCIM_GROUP WHERE TENANT_ID = ? AND ROLE_NAME = ?");
+        prepStmt.setInt(1, TENANT_ID);
+        prepStmt.setString(2, ROLE_NAME);
+        ResultSet results = prepStmt.executeQuery();
+        Map<String, String> attributes = new HashMap<>();
+        while (results.next()) {
+            attributes.put(results.getString(1), results.getString(2));
+        }
+        results.close();
+        prepStmt.close();
+        return attributes;
+    }
+
+    /**
+     * Wraps the connection so that each statement execution sent to the database is counted
+     */
+    private Connection countingConnection() {
+
+        return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class[]{Connection.class},
+                new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                        Object result = delegate(connection, method, args);
+                        if ("prepareStatement".equals(method.getName())) {
+                            final PreparedStatement prepStmt = (PreparedStatement) result;
+                            return Proxy.newProxyInstance(getClass().getClassLoader(),
+                                    new Class[]{PreparedStatement.class}, new InvocationHandler() {
+                                        @Override
+                                        public Object invoke(Object proxy, Method method, Object[] args)
+                                                throws Throwable {
+                                            if (method.getName().startsWith("execute")) {
+                                                statementCount++;
+                                            }
+                                            return delegate(prepStmt, method, args);
+                                        }
+                                    });
+                        }
+                        return result;
+                    }
+                });
+    }
+
+    private static Object delegate(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+}
@@ -0,0 +1,203 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wso2.carbon.identity.scim.common.impl;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.commons.httpclient.ConnectionPoolTimeoutException;
+import org.apache.commons.httpclient.methods.GetMethod;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ProvisioningHttpClientManagerTest {
+
+    private static final String RESPONSE = "{\"schemas\":[\"urn:scim:schemas:core:1.0\"]}";
+
+    private HttpServer server;
+    private String url;
+    private ExecutorService serverExecutor;
+    private ProvisioningHttpClientManager clientManager;
+
+    private final Set<String> clientAddresses = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+    private volatile long responseDelay;
+
+    @Before
+    public void setUp() throws IOException {
+
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/scim/Users", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                clientAddresses.add(exchange.getRemoteAddress().toString());
+                int current = inFlight.incrementAndGet();
+                int max;
+                while (current > (max = maxInFlight.get()) && !maxInFlight.compareAndSet(max, current)) {
+                    // retry until the maximum is updated
+                }
+                try {
+                    if (responseDelay > 0) {
+                        Thread.sleep(responseDelay);
+                    }
+                    byte[] body = RESPONSE.getBytes(StandardCharsets.UTF_8);
+                    exchange.getResponseHeaders().add("Content-Type", "application/json");
+                    exchange.sendResponseHeaders(200, body.length);
+                    OutputStream out = exchange.getResponseBody();
+                    out.write(body);
+                    out.close();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    inFlight.decrementAndGet();
+                }
+            }
+        });
+        serverExecutor = Executors.newCachedThreadPool();
+        server.setExecutor(serverExecutor);
+        server.start();
+        url = "http://127.0.0.1:" + server.getAddress().getPort() + "/scim/Users";
+    }
+
+    @After
+    public void tearDown() {
+
+        if (clientManager != null) {
+            clientManager.close();
+        }
+        server.stop(0);
+        serverExecutor.shutdownNow();
+    }
+
+    @Test
+    public void testConnectionIsReusedForSequentialRequests() throws IOException {
+
+        clientManager = new ProvisioningHttpClientManager(4, 10, 5000, 5000, 5000);
+        for (int i = 0; i < 20; i++) {
+            GetMethod getMethod = new GetMethod(url);
+            Assert.assertEquals(200, clientManager.executeMethod(getMethod));
+            Assert.assertEquals("Response body should be readable after the connection is released", RESPONSE,
+                    getMethod.getResponseBodyAsString());
+        }
+        Assert.assertEquals("All requests should be sent over a single kept alive connection", 1,
+                clientAddresses.size());
+        Assert.assertEquals(1, clientManager.getConnectionsInPool());
+    }
+
+    @Test
+    public void testReusedMethodReturnsFreshResponse() throws IOException {
+
+        clientManager = new ProvisioningHttpClientManager(4, 10, 5000, 5000, 5000);
+        GetMethod getMethod = new GetMethod(url);
+        getMethod.setQueryString("filter=userName%20Eq%20first");
+        clientManager.executeMethod(getMethod);
+        getMethod.setQueryString("filter=userName%20Eq%20second");
+        Assert.assertEquals(200, clientManager.executeMethod(getMethod));
+        Assert.assertEquals(RESPONSE, getMethod.getResponseBodyAsString());
+        Assert.assertEquals(1, clientAddresses.size());
+    }
+
+    @Test
+    public void testParallelRequestsAreLimitedPerEndpoint() throws Exception {
+
+        final int maxConnections = 4;
+        final int requests = 16;
+        responseDelay = 100;
+        clientManager = new ProvisioningHttpClientManager(maxConnections, 10, 10000, 5000, 5000);
+
+        ExecutorService executor = Executors.newFixedThreadPool(requests);
+        try {
+            final CountDownLatch start = new CountDownLatch(1);
+            List<Future<Integer>> results = new ArrayList<>();
+            for (int i = 0; i < requests; i++) {
+                results.add(executor.submit(new Callable<Integer>() {
+                    @Override
+                    public Integer call() throws Exception {
+                        start.await();
+                        return clientManager.executeMethod(new GetMethod(url));
+                    }
+                }));
+            }
+            long startTime = System.nanoTime();
+            start.countDown();
+            for (Future<Integer> result : results) {
+                Assert.assertEquals(Integer.valueOf(200), result.get(10, TimeUnit.SECONDS));
+            }
+            long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime);
+
+            Assert.assertTrue("Concurrent requests to the endpoint should not exceed the connection limit",
+                    maxInFlight.get() <= maxConnections);
+            Assert.assertTrue("Connections should be reused by waiting requests",
+                    clientAddresses.size() <= maxConnections);
+            Assert.assertTrue("Requests should be sent in parallel, took " + elapsed + " ms",
+                    elapsed < requests * responseDelay * 3 / 4);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testRequestFailsWhenNoConnectionIsFreedInTime() throws Exception {
+
+        responseDelay = 1000;
+        clientManager = new ProvisioningHttpClientManager(1, 10, 100, 5000, 5000);
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<Integer> slowRequest = executor.submit(new Callable<Integer>() {
+                @Override
+                public Integer call() throws Exception {
+                    return clientManager.executeMethod(new GetMethod(url));
+                }
+            });
+            long deadline = System.currentTimeMillis() + 5000;
+            while (inFlight.get() == 0 && !slowRequest.isDone() && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            Assert.assertEquals("Slow request should be in progress", 1, inFlight.get());
+            try {
+                clientManager.executeMethod(new GetMethod(url));
+                Assert.fail("Request should time out while waiting for the only connection of the endpoint");
+            } catch (ConnectionPoolTimeoutException e) {
+                // expected
+            }
+            Assert.assertEquals(Integer.valueOf(200), slowRequest.get(10, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
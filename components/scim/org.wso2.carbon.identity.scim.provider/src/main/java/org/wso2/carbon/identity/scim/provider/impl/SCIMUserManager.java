@@ -78,6 +78,8 @@ public class SCIMUserManager implements UserManager {
     public static final String SCIM_ENABLED =  "SCIMEnabled";
     public static final String APPLICATION_DOMAIN = "Application";
     public static final String INTERNAL_DOMAIN = "Internal";
+    public static final String SORT_ORDER_ASCENDING = "ascending";
+    public static final String SORT_ORDER_DESCENDING = "descending";
     private static Log log = LogFactory.getLog(SCIMUserManager.class);
     private UserStoreManager carbonUM = null;
     private ClaimManager carbonClaimManager = null;
@@ -236,32 +238,7 @@ public class SCIMUserManager implements UserManager {
     @Override
     public List<User> listUsers() throws CharonException {
 
-        ClaimMapping[] claims;
-        List<User> users = new ArrayList<>();
-        try {
-            String[] userNames = carbonUM.getUserList(SCIMConstants.ID_URI, "*", null);
-            if (userNames != null && userNames.length != 0) {
-                //get claims related to SCIM claim dialect
-                claims = carbonClaimManager.getAllClaimMappings(SCIMCommonConstants.SCIM_CLAIM_DIALECT);
-                List<String> claimURIList = new ArrayList<>();
-                for (ClaimMapping claim : claims) {
-                    claimURIList.add(claim.getClaim().getClaimUri());
-                }
-                for (String userName : userNames) {
-                    if (userName.contains(UserCoreConstants.NAME_COMBINER)) {
-                        userName = userName.split("\\" + UserCoreConstants.NAME_COMBINER)[0];
-                    }
-                    User scimUser = this.getSCIMMetaUser(userName);
-                    Map<String, Attribute> attrMap = scimUser.getAttributeList();
-                    if (attrMap != null && !attrMap.isEmpty()) {
-                        users.add(scimUser);
-                    }
-                }
-            }
-        } catch (UserStoreException e) {
-            throw new CharonException("Error while retrieving users from user store..", e);
-        }
-        return users;
+        return getSCIMMetaUsers(getSCIMUserNames(), false);
     }
 
     @Override
@@ -326,14 +303,62 @@ public class SCIMUserManager implements UserManager {
         return filteredUsers;
     }
 
+    /**
+     * Lists users sorted by the user name. The user names are listed from the user store, which limits the result to
+     * its configured maximum user list length. Only the meta attributes of the users are read, and users without a
+     * SCIM id are left out.
+     *
+     * @param sortBy    Attribute to sort on. Only userName is supported
+     * @param sortOrder ascending or descending. Ascending if not given
+     * @return Sorted users
+     * @throws CharonException If the attribute or the order is not supported, or the users could not be listed
+     */
     @Override
-    public List<User> listUsersBySort(String s, String s1) {
-        return Collections.emptyList();
+    public List<User> listUsersBySort(String sortBy, String sortOrder) throws CharonException {
+
+        if (!USER_NAME_STRING.equals(sortBy)) {
+            throw new CharonException("Sorting users by attribute : " + sortBy + " is not supported. Users can " +
+                    "only be sorted by " + USER_NAME_STRING);
+        }
+        if (sortOrder != null && !SORT_ORDER_ASCENDING.equalsIgnoreCase(sortOrder) &&
+                !SORT_ORDER_DESCENDING.equalsIgnoreCase(sortOrder)) {
+            throw new CharonException("Sort order : " + sortOrder + " is not supported. Sort order should be " +
+                    SORT_ORDER_ASCENDING + " or " + SORT_ORDER_DESCENDING);
+        }
+        List<String> userNames = listUserNames(-1);
+        Collections.sort(userNames, String.CASE_INSENSITIVE_ORDER);
+        if (SORT_ORDER_DESCENDING.equalsIgnoreCase(sortOrder)) {
+            Collections.reverse(userNames);
+        }
+        return getSCIMMetaUsers(userNames, true);
     }
 
+    /**
+     * Lists a page of users. The user store is asked for no more user names than the end of the requested page, and
+     * user attributes are read only for the users in the page. Users without a SCIM id are left out, hence a page
+     * may hold fewer users than requested.
+     *
+     * @param startIndex 1-based index of the first user of the page
+     * @param count      Maximum number of users in the page
+     * @return Users in the page
+     * @throws CharonException If the users could not be listed
+     */
     @Override
-    public List<User> listUsersWithPagination(int i, int i1) {
-        return Collections.emptyList();
+    public List<User> listUsersWithPagination(int startIndex, int count) throws CharonException {
+
+        if (startIndex < 1) {
+            startIndex = 1;
+        }
+        if (count <= 0) {
+            return Collections.emptyList();
+        }
+        int offset = startIndex - 1;
+        List<String> userNames = listUserNames(offset + count);
+        if (userNames.size() <= offset) {
+            return Collections.emptyList();
+        }
+        int end = Math.min(userNames.size(), offset + count);
+        return getSCIMMetaUsers(userNames.subList(offset, end), true);
     }
 
     @Override
@@ -723,8 +748,7 @@ public class SCIMUserManager implements UserManager {
         try {
             SCIMGroupHandler groupHandler = new SCIMGroupHandler(carbonUM.getTenantId());
             Set<String> roleNames = groupHandler.listSCIMRoles();
-            for (String roleName : roleNames) {
-                Group group = this.getGroupOnlyWithMetaAttributes(roleName);
+            for (Group group : groupHandler.getGroupsWithAttributes(roleNames)) {
                 if (group.getId() != null) {
                     groupList.add(group);
                 }
@@ -1267,6 +1291,85 @@ public class SCIMUserManager implements UserManager {
         }
     }
 
+    /**
+     * Lists the names of the users managed through SCIM, which are the users having a SCIM id. The anonymous user is
+     * left out.
+     *
+     * @return Names of the users, without the claim value appended by the user store
+     * @throws CharonException If the users cannot be listed
+     */
+    private List<String> getSCIMUserNames() throws CharonException {
+
+        String[] userNames;
+        try {
+            userNames = carbonUM.getUserList(SCIMConstants.ID_URI, "*", null);
+        } catch (UserStoreException e) {
+            throw new CharonException("Error while retrieving users from user store..", e);
+        }
+        List<String> scimUserNames = new ArrayList<>();
+        if (userNames == null) {
+            return scimUserNames;
+        }
+        for (String userName : userNames) {
+            if (userName.contains(UserCoreConstants.NAME_COMBINER)) {
+                userName = userName.split("\\" + UserCoreConstants.NAME_COMBINER)[0];
+            }
+            if (!CarbonConstants.REGISTRY_ANONNYMOUS_USERNAME.equals(userName)) {
+                scimUserNames.add(userName);
+            }
+        }
+        return scimUserNames;
+    }
+
+    /**
+     * Lists user names from the user store, the anonymous user left out
+     *
+     * @param limit Maximum number of user names, or -1 for the maximum user list length of the user store
+     * @return Names of the users
+     * @throws CharonException If the users cannot be listed
+     */
+    private List<String> listUserNames(int limit) throws CharonException {
+
+        String[] userNames;
+        try {
+            userNames = carbonUM.listUsers("*", limit);
+        } catch (UserStoreException e) {
+            throw new CharonException("Error while retrieving users from user store..", e);
+        }
+        List<String> listedUserNames = new ArrayList<>();
+        if (userNames == null) {
+            return listedUserNames;
+        }
+        for (String userName : userNames) {
+            if (!CarbonConstants.REGISTRY_ANONNYMOUS_USERNAME.equals(userName)) {
+                listedUserNames.add(userName);
+            }
+        }
+        return listedUserNames;
+    }
+
+    /**
+     * Builds the users with their meta attributes. Users without attributes are left out.
+     *
+     * @param userNames     Names of the users
+     * @param skipWithoutId   Whether users without a SCIM id are left out as well
+     * @return Users with their meta attributes
+     * @throws CharonException If the attributes of a user cannot be read
+     */
+    private List<User> getSCIMMetaUsers(List<String> userNames, boolean skipWithoutId) throws CharonException {
+
+        List<User> users = new ArrayList<>(userNames.size());
+        for (String userName : userNames) {
+            User scimUser = getSCIMMetaUser(userName);
+            Map<String, Attribute> attrMap = scimUser.getAttributeList();
+            if (attrMap == null || attrMap.isEmpty() || (skipWithoutId && scimUser.getId() == null)) {
+                continue;
+            }
+            users.add(scimUser);
+        }
+        return users;
+    }
+
     private User getSCIMMetaUser(String userName) throws CharonException {
 
         List<String> claimURIList = new ArrayList<>();
@@ -1316,6 +1419,7 @@ public class SCIMUserManager implements UserManager {
             scimUser = (User) AttributeMapper.constructSCIMObjectFromAttributes(
                     attributes, SCIMConstants.USER_INT);
             //add groups of user:
+            List<String> groupNames = new ArrayList<>();
             for (String role : roles) {
                 if (UserCoreUtil.isEveryoneRole(role, carbonUM.getRealmConfiguration())
                         || UserCoreUtil.isPrimaryAdminRole(role, carbonUM.getRealmConfiguration())
@@ -1327,10 +1431,16 @@ public class SCIMUserManager implements UserManager {
                     // skip intenal roles
                     continue;
                 }
-                Group group = getGroupOnlyWithMetaAttributes(role);
-                if (group != null) { // can be null for non SCIM groups
-                    scimUser.setGroup(null, group.getId(), role);
-                }
+                groupNames.add(role);
+            }
+            //read the SCIM info of all the groups together. Non SCIM groups are added without an id.
+            Map<String, String> groupIds = new HashMap<>();
+            SCIMGroupHandler groupHandler = new SCIMGroupHandler(carbonUM.getTenantId());
+            for (Group group : groupHandler.getGroupsWithAttributes(groupNames)) {
+                groupIds.put(group.getDisplayName(), group.getId());
+            }
+            for (String groupName : groupNames) {
+                scimUser.setGroup(null, groupIds.get(groupName), groupName);
             }
         } catch (UserStoreException | CharonException | NotFoundException | IdentitySCIMException e) {
             throw new CharonException("Error in getting user information for user: " + userName, e);
@@ -0,0 +1,171 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wso2.carbon.identity.scim.provider.impl;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.wso2.carbon.user.core.UserStoreManager;
+import org.wso2.charon.core.exceptions.CharonException;
+import org.wso2.charon.core.objects.User;
+import org.wso2.charon.core.schema.SCIMConstants;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Lists users of a user store holding 100000 users, where every tenth user has no SCIM id, and checks how much of the
+ * user store is read for each listing
+ */
+public class SCIMUserManagerTest {
+
+    private static final int USERS = 100000;
+
+    private final List<Integer> listLimits = new ArrayList<Integer>();
+    private int claimReads;
+    private int idLookups;
+    private SCIMUserManager userManager;
+
+    @Before
+    public void setUp() {
+        userManager = new SCIMUserManager(userStoreManager(), "admin", null);
+    }
+
+    @Test
+    public void testPageReadsOnlyItsWindow() throws CharonException {
+
+        List<User> users = userManager.listUsersWithPagination(50001, 20);
+
+        Assert.assertEquals("user store should be asked for the users up to the end of the page",
+                Arrays.asList(50020), listLimits);
+        Assert.assertEquals("attributes should be read only for the users of the page", 20, claimReads);
+        Assert.assertEquals("SCIM ids of all users should not be looked up", 0, idLookups);
+        List<String> expected = new ArrayList<String>();
+        for (int i = 50000; i < 50020; i++) {
+            if (hasId(i)) {
+                expected.add(userName(i));
+            }
+        }
+        Assert.assertEquals(expected, userNames(users));
+    }
+
+    @Test
+    public void testPagesBeyondTheUsersAreEmpty() throws CharonException {
+
+        Assert.assertTrue(userManager.listUsersWithPagination(USERS + 1, 10).isEmpty());
+        Assert.assertEquals(0, claimReads);
+        Assert.assertTrue(userManager.listUsersWithPagination(1, 0).isEmpty());
+    }
+
+    @Test
+    public void testSortDescendingByUserName() throws CharonException {
+
+        List<User> users = userManager.listUsersBySort(SCIMUserManager.USER_NAME_STRING,
+                SCIMUserManager.SORT_ORDER_DESCENDING);
+
+        Assert.assertEquals(Arrays.asList(-1), listLimits);
+        Assert.assertEquals(USERS - USERS / 10, users.size());
+        Assert.assertEquals(userName(USERS - 1), users.get(0).getUserName());
+        Assert.assertEquals(userName(1), users.get(users.size() - 1).getUserName());
+    }
+
+    @Test(expected = CharonException.class)
+    public void testUnsupportedSortAttributeIsRejected() throws CharonException {
+        userManager.listUsersBySort("emails", SCIMUserManager.SORT_ORDER_ASCENDING);
+    }
+
+    @Test(expected = CharonException.class)
+    public void testUnsupportedSortOrderIsRejected() throws CharonException {
+        userManager.listUsersBySort(SCIMUserManager.USER_NAME_STRING, "random");
+    }
+
+    @Test
+    public void testListUsersReturnsUsersHavingId() throws CharonException {
+
+        List<User> users = userManager.listUsers();
+
+        Assert.assertEquals(1, idLookups);
+        Assert.assertEquals(USERS - USERS / 10, users.size());
+        for (User user : users) {
+            Assert.assertNotNull(user.getId());
+        }
+    }
+
+    private static boolean hasId(int i) {
+        return i % 10 != 0;
+    }
+
+    private static String userName(int i) {
+        return String.format("user%06d", i);
+    }
+
+    private static List<String> userNames(List<User> users) throws CharonException {
+
+        List<String> userNames = new ArrayList<String>();
+        for (User user : users) {
+            userNames.add(user.getUserName());
+        }
+        return userNames;
+    }
+
+    /**
+     * User store whose users are listed in the order of their names, as the JDBC user store does
+     */
+    private UserStoreManager userStoreManager() {
+
+        return (UserStoreManager) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class[]{UserStoreManager.class}, new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        if ("listUsers".equals(method.getName())) {
+                            int limit = (Integer) args[1];
+                            listLimits.add(limit);
+                            int size = limit < 0 ? USERS : Math.min(limit, USERS);
+                            String[] userNames = new String[size];
+                            for (int i = 0; i < size; i++) {
+                                userNames[i] = userName(i);
+                            }
+                            return userNames;
+                        } else if ("getUserList".equals(method.getName())) {
+                            idLookups++;
+                            List<String> userNames = new ArrayList<String>();
+                            for (int i = 0; i < USERS; i++) {
+                                if (hasId(i)) {
+                                    userNames.add(userName(i));
+                                }
+                            }
+                            return userNames.toArray(new String[userNames.size()]);
+                        } else if ("getUserClaimValues".equals(method.getName())) {
+                            claimReads++;
+                            String userName = (String) args[0];
+                            Map<String, String> claims = new HashMap<String, String>();
+                            if (hasId(Integer.parseInt(userName.substring(4)))) {
+                                claims.put(SCIMConstants.ID_URI, "id-" + userName);
+                            }
+                            return claims;
+                        }
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+}
@@ -23,11 +23,14 @@ import org.wso2.carbon.registry.core.Registry;
 import org.wso2.carbon.registry.core.Resource;
 import org.wso2.carbon.registry.core.service.RegistryService;
 import org.wso2.carbon.registry.core.service.TenantRegistryLoader;
+import org.wso2.carbon.security.keystore.KeyStoreUpdateListener;
 import org.wso2.carbon.user.core.service.RealmService;
 import org.wso2.carbon.utils.ConfigurationContextService;
 
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 public class SecurityServiceHolder {
 
@@ -41,6 +44,8 @@ public class SecurityServiceHolder {
 
     private static Map<String, Resource> policyResourceMap = new HashMap<>();
 
+    private static List<KeyStoreUpdateListener> keyStoreUpdateListeners = new CopyOnWriteArrayList<>();
+
     private SecurityServiceHolder() {
 
     }
@@ -100,4 +105,16 @@ public class SecurityServiceHolder {
         return policyResourceMap;
     }
 
+    public static List<KeyStoreUpdateListener> getKeyStoreUpdateListeners() {
+        return keyStoreUpdateListeners;
+    }
+
+    public static void addKeyStoreUpdateListener(KeyStoreUpdateListener listener) {
+        keyStoreUpdateListeners.add(listener);
+    }
+
+    public static void removeKeyStoreUpdateListener(KeyStoreUpdateListener listener) {
+        keyStoreUpdateListeners.remove(listener);
+    }
+
 }
@@ -301,6 +301,7 @@ public class SecurityConfigAdmin {
             if (scenarioIDParam != null) {
                 service.removeParameter(scenarioIDParam);
             }
+            POXSecurityHandler.clearScenarioId(service.getName());
         } catch (AxisFault axisFault) {
             throw new SecurityConfigException("Error while removing parameters from service on disable security ",
                     axisFault);
@@ -351,9 +352,15 @@ public class SecurityConfigAdmin {
             if (scenarioIDParam != null) {
                 service.removeParameter(scenarioIDParam);
             }
+            POXSecurityHandler.clearScenarioId(service.getName());
 
             SecurityServiceAdmin admin = new SecurityServiceAdmin(axisConfig, registry);
-            admin.removeSecurityPolicyFromAllBindings(service, scenarioWsId);
+            try {
+                admin.removeSecurityPolicyFromAllBindings(service, scenarioWsId);
+            } finally {
+                // a scenario read while the bindings were being updated may have been cached, hence cleared again
+                POXSecurityHandler.clearScenarioId(service.getName());
+            }
         } catch (RegistryException e) {
             throw new SecurityConfigException("Error occurred while removing security policy", e);
         } catch (AxisFault axisFault) {
@@ -632,8 +639,14 @@ public class SecurityConfigAdmin {
             } catch (AxisFault axisFault) {
                 log.error("Error while adding Scenario ID parameter", axisFault);
             }
+            POXSecurityHandler.clearScenarioId(service.getName());
             SecurityServiceAdmin admin = new SecurityServiceAdmin(axisConfig, registry);
-            admin.addSecurityPolicyToAllBindings(service, policy);
+            try {
+                admin.addSecurityPolicyToAllBindings(service, policy);
+            } finally {
+                // a scenario read while the bindings were being updated may have been cached, hence cleared again
+                POXSecurityHandler.clearScenarioId(service.getName());
+            }
         } catch (RegistryException e) {
             throw new SecurityConfigException("Error occurred while creating callback handler", e);
         } catch (AxisFault e) {
@@ -63,6 +63,7 @@ import org.wso2.carbon.security.SecurityConstants;
 import org.wso2.carbon.security.SecurityScenario;
 import org.wso2.carbon.security.SecurityScenarioDatabase;
 import org.wso2.carbon.security.SecurityServiceHolder;
+import org.wso2.carbon.security.pox.POXSecurityHandler;
 import org.wso2.carbon.security.util.RahasUtil;
 import org.wso2.carbon.security.util.SecurityConfigParamBuilder;
 import org.wso2.carbon.security.util.ServerCrypto;
@@ -180,6 +181,11 @@ public class SecurityDeploymentInterceptor implements AxisObserver {
 
     @Override
     public void serviceUpdate(AxisEvent axisEvent, AxisService axisService) {
+        if (axisEvent.getEventType() == AxisEvent.SERVICE_DEPLOY
+                || axisEvent.getEventType() == AxisEvent.SERVICE_REMOVE) {
+            // policies of the service may change with the deployment, read the scenario again
+            POXSecurityHandler.clearScenarioId(axisService.getName());
+        }
         if (axisEvent.getEventType() == AxisEvent.SERVICE_DEPLOY) {
 
             Policy policy = null;
@@ -29,6 +29,7 @@ import org.wso2.carbon.registry.core.service.RegistryService;
 import org.wso2.carbon.registry.core.service.TenantRegistryLoader;
 import org.wso2.carbon.security.SecurityServiceHolder;
 import org.wso2.carbon.security.config.SecurityConfigAdmin;
+import org.wso2.carbon.security.keystore.KeyStoreUpdateListener;
 import org.wso2.carbon.user.core.service.RealmService;
 import org.wso2.carbon.utils.Axis2ConfigurationContextObserver;
 import org.wso2.carbon.utils.ConfigurationContextService;
@@ -52,6 +53,9 @@ import org.wso2.carbon.utils.ConfigurationContextService;
  * @scr.reference name="registry.loader.default"
  * interface="org.wso2.carbon.registry.core.service.TenantRegistryLoader"
  * cardinality="1..1" policy="dynamic" bind="setTenantRegistryLoader" unbind="unsetTenantRegistryLoader"
+ * @scr.reference name="keystore.update.listener"
+ * interface="org.wso2.carbon.security.keystore.KeyStoreUpdateListener"
+ * cardinality="0..n" policy="dynamic" bind="addKeyStoreUpdateListener" unbind="removeKeyStoreUpdateListener"
  */
 public class SecurityMgtServiceComponent {
     private static String POX_SECURITY_MODULE = "POXSecurityModule";
@@ -166,6 +170,20 @@ public class SecurityMgtServiceComponent {
         SecurityServiceHolder.setTenantRegistryLoader(null);
     }
 
+    protected void addKeyStoreUpdateListener(KeyStoreUpdateListener listener) {
+        if (log.isDebugEnabled()) {
+            log.debug("Adding key store update listener " + listener.getClass().getName());
+        }
+        SecurityServiceHolder.addKeyStoreUpdateListener(listener);
+    }
+
+    protected void removeKeyStoreUpdateListener(KeyStoreUpdateListener listener) {
+        if (log.isDebugEnabled()) {
+            log.debug("Removing key store update listener " + listener.getClass().getName());
+        }
+        SecurityServiceHolder.removeKeyStoreUpdateListener(listener);
+    }
+
     public static RegistryService getRegistryService(){
         return registryService;
     }
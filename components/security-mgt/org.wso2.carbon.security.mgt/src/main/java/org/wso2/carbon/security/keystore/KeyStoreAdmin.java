@@ -35,6 +35,7 @@ import org.wso2.carbon.registry.core.Resource;
 import org.wso2.carbon.registry.core.exceptions.RegistryException;
 import org.wso2.carbon.security.SecurityConfigException;
 import org.wso2.carbon.security.SecurityConstants;
+import org.wso2.carbon.security.SecurityServiceHolder;
 import org.wso2.carbon.security.keystore.service.CertData;
 import org.wso2.carbon.security.keystore.service.CertDataDetail;
 import org.wso2.carbon.security.keystore.service.KeyStoreData;
@@ -242,6 +243,7 @@ public class KeyStoreAdmin {
 
             resource.setContent(content);
             registry.put(path, resource);
+            notifyKeyStoreUpdate(filename);
         } catch (SecurityConfigException e) {
             throw e;
         } catch (Exception e) {
@@ -281,6 +283,7 @@ public class KeyStoreAdmin {
             resource.addProperty(SecurityConstants.PROP_TYPE, type);
             resource.setContent(content);
             registry.put(path, resource);
+            notifyKeyStoreUpdate(filename);
         } catch (SecurityConfigException e) {
             throw e;
         } catch (Exception e) {
@@ -314,6 +317,7 @@ public class KeyStoreAdmin {
                         " is already in use and can't be deleted");
             }
             registry.delete(path);
+            notifyKeyStoreUpdate(keyStoreName);
         } catch (RegistryException e) {
             String msg = "Error when deleting a keyStore";
             log.error(msg, e);
@@ -351,6 +355,7 @@ public class KeyStoreAdmin {
             ks.setCertificateEntry(fileName, cert);
 
             keyMan.updateKeyStore(keyStoreName, ks);
+            notifyKeyStoreUpdate(keyStoreName);
 
         } catch (SecurityConfigException e) {
             throw e;
@@ -393,6 +398,7 @@ public class KeyStoreAdmin {
             ks.setCertificateEntry(alias, cert);
 
             keyMan.updateKeyStore(keyStoreName, ks);
+            notifyKeyStoreUpdate(keyStoreName);
 
             return alias;
 
@@ -421,6 +427,7 @@ public class KeyStoreAdmin {
 
             ks.deleteEntry(alias);
             keyMan.updateKeyStore(keyStoreName, ks);
+            notifyKeyStoreUpdate(keyStoreName);
         } catch (SecurityConfigException e) {
             throw e;
         } catch (Exception e) {
@@ -630,6 +637,22 @@ public class KeyStoreAdmin {
         return bytes;
     }
 
+    /**
+     * Notifies the registered key store update listeners. A failing listener does not fail the key store operation.
+     *
+     * @param keyStoreName Name of the updated key store
+     */
+    private void notifyKeyStoreUpdate(String keyStoreName) {
+        for (KeyStoreUpdateListener listener : SecurityServiceHolder.getKeyStoreUpdateListeners()) {
+            try {
+                listener.onKeyStoreUpdate(tenantId, keyStoreName);
+            } catch (RuntimeException e) {
+                log.error("Error while notifying key store update of " + keyStoreName + " to " +
+                        listener.getClass().getName(), e);
+            }
+        }
+    }
+
     /**
      * This method is used to generate the file name of the pub. cert of a tenant
      *
@@ -0,0 +1,35 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.security.keystore;
+
+/**
+ * Listener which is notified when a key store of a tenant is added, updated or deleted through the key store admin.
+ * Components which keep keys or certificates loaded from a key store register an implementation as an OSGi service,
+ * so that they can drop the loaded material.
+ */
+public interface KeyStoreUpdateListener {
+
+    /**
+     * Called after a key store of the tenant is added, updated or deleted
+     *
+     * @param tenantId     Id of the tenant which owns the key store
+     * @param keyStoreName Name of the key store. eg wso2-com.jks
+     */
+    void onKeyStoreUpdate(int tenantId, String keyStoreName);
+}
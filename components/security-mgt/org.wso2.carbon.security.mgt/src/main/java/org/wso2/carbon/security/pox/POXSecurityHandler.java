@@ -46,6 +46,7 @@ import org.apache.ws.security.message.WSSecTimestamp;
 import org.apache.ws.security.message.WSSecUsernameToken;
 import org.w3c.dom.Document;
 import org.wso2.carbon.base.ServerConfiguration;
+import org.wso2.carbon.context.CarbonContext;
 import org.wso2.carbon.security.SecurityConfigException;
 import org.wso2.carbon.security.SecurityConstants;
 import org.wso2.carbon.security.config.SecurityConfigAdmin;
@@ -60,6 +61,8 @@ import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * Handler to convert the HTTP basic auth information into
@@ -71,6 +74,8 @@ public class POXSecurityHandler implements Handler {
     public static final String POX_ENABLED = "pox-security";
     private static Log log = LogFactory.getLog(POXSecurityHandler.class);
     private static String POX_SECURITY_MODULE = "POXSecurityModule";
+    // scenario IDs of services read from the security configuration, keyed by tenant ID and service name
+    private static final ConcurrentMap<String, ScenarioEntry> scenarioIds = new ConcurrentHashMap<>();
     private HandlerDescription description;
 
     @Override
@@ -330,27 +335,55 @@ public class POXSecurityHandler implements Handler {
         }//ignore
 
         if (scenarioID == null) {
-            synchronized (this) {
-                SecurityConfigAdmin securityAdmin = new SecurityConfigAdmin(msgCtx.
-                        getConfigurationContext().getAxisConfiguration());
-                SecurityScenarioData data = securityAdmin.getCurrentScenario(service.getName());
-                if (data != null) {
-                    scenarioID = data.getScenarioId();
-                    try {
-                        Parameter param = new Parameter();
-                        param.setName(SecurityConstants.SCENARIO_ID_PARAM_NAME);
-                        param.setValue(scenarioID);
-                        service.addParameter(param);
-                    } catch (AxisFault axisFault) {
-                        log.error("Error while adding Scenario ID parameter", axisFault);
-                    }
+            String scenarioKey = getScenarioKey(service.getName());
+            ScenarioEntry entry = scenarioIds.get(scenarioKey);
+            if (entry == null) {
+                // marks the read of the scenario, clearScenarioId removes the mark while the scenario is read
+                ScenarioEntry readEntry = new ScenarioEntry(false, null);
+                entry = scenarioIds.putIfAbsent(scenarioKey, readEntry);
+                if (entry == null) {
+                    entry = readEntry;
+                }
+            }
+            if (entry.isLoaded()) {
+                return entry.getScenarioId();
+            }
+
+            SecurityConfigAdmin securityAdmin = new SecurityConfigAdmin(msgCtx.
+                    getConfigurationContext().getAxisConfiguration());
+            SecurityScenarioData data = securityAdmin.getCurrentScenario(service.getName());
+            if (data != null) {
+                scenarioID = data.getScenarioId();
+                try {
+                    Parameter param = new Parameter();
+                    param.setName(SecurityConstants.SCENARIO_ID_PARAM_NAME);
+                    param.setValue(scenarioID);
+                    service.addParameter(param);
+                } catch (AxisFault axisFault) {
+                    log.error("Error while adding Scenario ID parameter", axisFault);
                 }
             }
+            // a scenario read while the scenario of the service was cleared is not kept
+            scenarioIds.replace(scenarioKey, entry, new ScenarioEntry(true, scenarioID));
         }
 
         return scenarioID;
     }
 
+    /**
+     * Clears the scenario ID of the service cached by the handler, so that it is read again from the
+     * security configuration. This should be called whenever a policy is applied to or removed from a service.
+     *
+     * @param serviceName name of the service of the current tenant
+     */
+    public static void clearScenarioId(String serviceName) {
+        scenarioIds.remove(getScenarioKey(serviceName));
+    }
+
+    private static String getScenarioKey(String serviceName) {
+        return CarbonContext.getThreadLocalCarbonContext().getTenantId() + ":" + serviceName;
+    }
+
     /**
      * @param msgCtx message going through the handler chain
      * @return true if its a soap message without a security header
@@ -450,4 +483,27 @@ public class POXSecurityHandler implements Handler {
         Cache<String, String> cache = manager.getCache(POXSecurityHandler.POX_ENABLED);
         return cache;
     }
+
+    /**
+     * Scenario ID of a service, which is null if the service has no scenario. Entries which are not loaded mark a
+     * read of the scenario in progress.
+     */
+    private static class ScenarioEntry {
+
+        private final boolean loaded;
+        private final String scenarioId;
+
+        private ScenarioEntry(boolean loaded, String scenarioId) {
+            this.loaded = loaded;
+            this.scenarioId = scenarioId;
+        }
+
+        private boolean isLoaded() {
+            return loaded;
+        }
+
+        private String getScenarioId() {
+            return scenarioId;
+        }
+    }
 }
\ No newline at end of file
@@ -0,0 +1,71 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.user.account.association.cache;
+
+import org.wso2.carbon.identity.application.common.cache.CacheEntry;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Users sharing an association key
+ */
+public class AssociatedUsersCacheEntry extends CacheEntry {
+
+    private static final long serialVersionUID = -1946652170338720519L;
+
+    private List<AssociatedUser> associatedUsers;
+
+    public AssociatedUsersCacheEntry(List<AssociatedUser> associatedUsers) {
+        this.associatedUsers = Collections.unmodifiableList(new ArrayList<>(associatedUsers));
+    }
+
+    public List<AssociatedUser> getAssociatedUsers() {
+        return associatedUsers;
+    }
+
+    public static class AssociatedUser implements Serializable {
+
+        private static final long serialVersionUID = 2386015417924590768L;
+
+        private int tenantId;
+        private String domainName;
+        private String userName;
+
+        public AssociatedUser(int tenantId, String domainName, String userName) {
+            this.tenantId = tenantId;
+            this.domainName = domainName;
+            this.userName = userName;
+        }
+
+        public int getTenantId() {
+            return tenantId;
+        }
+
+        public String getDomainName() {
+            return domainName;
+        }
+
+        public String getUserName() {
+            return userName;
+        }
+    }
+}
@@ -0,0 +1,46 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.user.account.association.cache;
+
+import org.wso2.carbon.identity.application.common.cache.BaseCache;
+
+/**
+ * Cache of the association key of users. Users without an association key are cached too.
+ */
+public class UserAssociationKeyCache extends BaseCache<UserAssociationKeyCacheKey, UserAssociationKeyCacheEntry> {
+
+    private static final String USER_ASSOCIATION_KEY_CACHE_NAME = "UserAssociationKeyCache";
+
+    private static volatile UserAssociationKeyCache instance;
+
+    private UserAssociationKeyCache() {
+        super(USER_ASSOCIATION_KEY_CACHE_NAME);
+    }
+
+    public static UserAssociationKeyCache getInstance() {
+        if (instance == null) {
+            synchronized (UserAssociationKeyCache.class) {
+                if (instance == null) {
+                    instance = new UserAssociationKeyCache();
+                }
+            }
+        }
+        return instance;
+    }
+}
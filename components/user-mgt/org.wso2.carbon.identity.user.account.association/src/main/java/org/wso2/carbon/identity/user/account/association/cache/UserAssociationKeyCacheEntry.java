@@ -0,0 +1,42 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.user.account.association.cache;
+
+import org.wso2.carbon.identity.application.common.cache.CacheEntry;
+
+public class UserAssociationKeyCacheEntry extends CacheEntry {
+
+    private static final long serialVersionUID = 8519426371065293357L;
+
+    private String associationKey;
+
+    /**
+     * @param associationKey association key of the user, or null if the user is not associated
+     */
+    public UserAssociationKeyCacheEntry(String associationKey) {
+        this.associationKey = associationKey;
+    }
+
+    /**
+     * @return association key of the user, or null if the user is not associated
+     */
+    public String getAssociationKey() {
+        return associationKey;
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.user.account.association.cache;
+
+import org.wso2.carbon.identity.application.common.cache.CacheKey;
+
+public class UserAssociationKeyCacheKey extends CacheKey {
+
+    private static final long serialVersionUID = -3261748103968452718L;
+
+    private int tenantId;
+    private String domainName;
+    private String userName;
+
+    public UserAssociationKeyCacheKey(int tenantId, String domainName, String userName) {
+        this.tenantId = tenantId;
+        this.domainName = domainName;
+        this.userName = userName;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        if (!super.equals(o)) {
+            return false;
+        }
+
+        UserAssociationKeyCacheKey that = (UserAssociationKeyCacheKey) o;
+
+        if (tenantId != that.tenantId) {
+            return false;
+        }
+        if (!domainName.equals(that.domainName)) {
+            return false;
+        }
+        if (!userName.equals(that.userName)) {
+            return false;
+        }
+
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = super.hashCode();
+        result = 31 * result + tenantId;
+        result = 31 * result + domainName.hashCode();
+        result = 31 * result + userName.hashCode();
+        return result;
+    }
+}
@@ -19,9 +19,17 @@
 package org.wso2.carbon.identity.user.account.association.dao;
 
 import org.wso2.carbon.context.CarbonContext;
+import org.wso2.carbon.identity.application.common.cache.BaseCache;
 import org.wso2.carbon.identity.application.common.util.IdentityApplicationManagementUtil;
 import org.wso2.carbon.identity.core.util.IdentityDatabaseUtil;
 import org.wso2.carbon.identity.core.util.IdentityUtil;
+import org.wso2.carbon.identity.user.account.association.cache.AssociatedUsersCache;
+import org.wso2.carbon.identity.user.account.association.cache.AssociatedUsersCacheEntry;
+import org.wso2.carbon.identity.user.account.association.cache.AssociatedUsersCacheEntry.AssociatedUser;
+import org.wso2.carbon.identity.user.account.association.cache.AssociatedUsersCacheKey;
+import org.wso2.carbon.identity.user.account.association.cache.UserAssociationKeyCache;
+import org.wso2.carbon.identity.user.account.association.cache.UserAssociationKeyCacheEntry;
+import org.wso2.carbon.identity.user.account.association.cache.UserAssociationKeyCacheKey;
 import org.wso2.carbon.identity.user.account.association.dto.UserAccountAssociationDTO;
 import org.wso2.carbon.identity.user.account.association.exception.UserAccountAssociationException;
 import org.wso2.carbon.identity.user.account.association.exception.UserAccountAssociationServerException;
@@ -37,11 +45,25 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class UserAccountAssociationDAO {
 
+    private final BaseCache<UserAssociationKeyCacheKey, UserAssociationKeyCacheEntry> associationKeyCache;
+    private final BaseCache<AssociatedUsersCacheKey, AssociatedUsersCacheEntry> associationCache;
+
+    // Incremented on every association change made through this node, so that associations read while they
+    // were being changed are not put back to the caches after they are cleared.
+    private final AtomicLong associationVersion = new AtomicLong();
+
     private UserAccountAssociationDAO() {
+        this(UserAssociationKeyCache.getInstance(), AssociatedUsersCache.getInstance());
+    }
 
+    UserAccountAssociationDAO(BaseCache<UserAssociationKeyCacheKey, UserAssociationKeyCacheEntry> associationKeyCache,
+                              BaseCache<AssociatedUsersCacheKey, AssociatedUsersCacheEntry> associationCache) {
+        this.associationKeyCache = associationKeyCache;
+        this.associationCache = associationCache;
     }
 
     public static UserAccountAssociationDAO getInstance() {
@@ -60,7 +82,7 @@ public class UserAccountAssociationDAO {
     public void createUserAssociation(String associationKey, String domainName, int tenantId,
                                       String userName) throws UserAccountAssociationException {
 
-        Connection dbConnection = IdentityDatabaseUtil.getDBConnection();
+        Connection dbConnection = getDBConnection();
         PreparedStatement preparedStatement = null;
 
         try {
@@ -82,6 +104,9 @@ public class UserAccountAssociationDAO {
         } finally {
             IdentityApplicationManagementUtil.closeStatement(preparedStatement);
             IdentityApplicationManagementUtil.closeConnection(dbConnection);
+            associationVersion.incrementAndGet();
+            associationKeyCache.clearCacheEntry(new UserAssociationKeyCacheKey(tenantId, domainName, userName));
+            associationCache.clearCacheEntry(new AssociatedUsersCacheKey(associationKey));
         }
     }
 
@@ -96,7 +121,8 @@ public class UserAccountAssociationDAO {
     public void deleteUserAssociation(String domainName, int tenantId,
                                       String userName) throws UserAccountAssociationException {
 
-        Connection dbConnection = IdentityDatabaseUtil.getDBConnection();
+        String associationKey = getAssociationKeyOfUser(domainName, tenantId, userName);
+        Connection dbConnection = getDBConnection();
         PreparedStatement preparedStatement = null;
 
         try {
@@ -117,6 +143,11 @@ public class UserAccountAssociationDAO {
         } finally {
             IdentityApplicationManagementUtil.closeStatement(preparedStatement);
             IdentityApplicationManagementUtil.closeConnection(dbConnection);
+            associationVersion.incrementAndGet();
+            associationKeyCache.clearCacheEntry(new UserAssociationKeyCacheKey(tenantId, domainName, userName));
+            if (associationKey != null) {
+                associationCache.clearCacheEntry(new AssociatedUsersCacheKey(associationKey));
+            }
         }
     }
 
@@ -133,49 +164,31 @@ public class UserAccountAssociationDAO {
                                                                  String userName)
             throws UserAccountAssociationException {
 
-        Connection dbConnection = IdentityDatabaseUtil.getDBConnection();
-        PreparedStatement preparedStatement = null;
-        ResultSet resultSet = null;
         List<UserAccountAssociationDTO> accountAssociations = new ArrayList<>();
-        RealmService realmService;
         String associationKey = getAssociationKeyOfUser(domainName, tenantId, userName);
 
         if (associationKey != null) {
             try {
-                realmService = IdentityAccountAssociationServiceComponent.getRealmService();
-                preparedStatement = dbConnection.prepareStatement(UserAccountAssociationConstants
-                        .SQLQueries.LIST_USER_ACCOUNT_ASSOCIATIONS);
-                preparedStatement.setString(1, associationKey);
-                resultSet = preparedStatement.executeQuery();
-
-                while (resultSet.next()) {
-                    int conUserTenantId = resultSet.getInt(1);
-                    String conUserDomain = resultSet.getString(2);
-                    String conUserName = resultSet.getString(3);
-
-                    if (domainName.equals(conUserDomain) && (tenantId == conUserTenantId) && userName.equals
-                            (conUserName)) {
+                RealmService realmService = IdentityAccountAssociationServiceComponent.getRealmService();
+
+                for (AssociatedUser associatedUser : getAssociatedUsers(associationKey)) {
+                    if (domainName.equals(associatedUser.getDomainName()) &&
+                            (tenantId == associatedUser.getTenantId()) &&
+                            userName.equals(associatedUser.getUserName())) {
                         continue;
                     }
 
                     UserAccountAssociationDTO associationDTO = new UserAccountAssociationDTO();
-                    associationDTO.setUsername(conUserName);
-                    associationDTO.setDomain(conUserDomain);
-                    associationDTO.setTenantDomain(realmService.getTenantManager().getDomain(conUserTenantId));
+                    associationDTO.setUsername(associatedUser.getUserName());
+                    associationDTO.setDomain(associatedUser.getDomainName());
+                    associationDTO.setTenantDomain(realmService.getTenantManager().getDomain(associatedUser
+                            .getTenantId()));
                     accountAssociations.add(associationDTO);
                 }
-                dbConnection.commit();
-            } catch (SQLException e) {
-                throw new UserAccountAssociationServerException(UserAccountAssociationConstants.ErrorMessages
-                        .CONN_DELETE_DB_ERROR.getDescription(), e);
             } catch (UserStoreException e) {
                 throw new UserAccountAssociationServerException(UserAccountAssociationConstants.ErrorMessages
                         .ERROR_WHILE_GETTING_TENANT_NAME
                         .getDescription(), e);
-            } finally {
-                IdentityApplicationManagementUtil.closeResultSet(resultSet);
-                IdentityApplicationManagementUtil.closeStatement(preparedStatement);
-                IdentityApplicationManagementUtil.closeConnection(dbConnection);
             }
         }
 
@@ -194,7 +207,14 @@ public class UserAccountAssociationDAO {
     public String getAssociationKeyOfUser(String domainName, int tenantId,
                                           String userName) throws UserAccountAssociationException {
 
-        Connection dbConnection = IdentityDatabaseUtil.getDBConnection();
+        UserAssociationKeyCacheKey cacheKey = new UserAssociationKeyCacheKey(tenantId, domainName, userName);
+        UserAssociationKeyCacheEntry cacheEntry = associationKeyCache.getValueFromCache(cacheKey);
+        if (cacheEntry != null) {
+            return cacheEntry.getAssociationKey();
+        }
+
+        long version = associationVersion.get();
+        Connection dbConnection = getDBConnection();
         PreparedStatement preparedStatement = null;
         ResultSet resultSet = null;
         String associationKey = null;
@@ -221,9 +241,72 @@ public class UserAccountAssociationDAO {
             IdentityApplicationManagementUtil.closeStatement(preparedStatement);
             IdentityApplicationManagementUtil.closeConnection(dbConnection);
         }
+
+        if (version == associationVersion.get()) {
+            associationKeyCache.addToCache(cacheKey, new UserAssociationKeyCacheEntry(associationKey));
+        }
         return associationKey;
     }
 
+    /**
+     * Retrieve users associated with an association key
+     *
+     * @param associationKey  Association key
+     * @return
+     * @throws UserAccountAssociationException
+     */
+    private List<AssociatedUser> getAssociatedUsers(String associationKey) throws UserAccountAssociationException {
+
+        AssociatedUsersCacheKey cacheKey = new AssociatedUsersCacheKey(associationKey);
+        AssociatedUsersCacheEntry cacheEntry = associationCache.getValueFromCache(cacheKey);
+        if (cacheEntry != null) {
+            return cacheEntry.getAssociatedUsers();
+        }
+
+        long version = associationVersion.get();
+        cacheEntry = new AssociatedUsersCacheEntry(loadAssociatedUsers(associationKey));
+        if (version == associationVersion.get()) {
+            associationCache.addToCache(cacheKey, cacheEntry);
+        }
+        return cacheEntry.getAssociatedUsers();
+    }
+
+    /**
+     * Retrieve users associated with an association key from the database
+     *
+     * @param associationKey  Association key
+     * @return
+     * @throws UserAccountAssociationException
+     */
+    private List<AssociatedUser> loadAssociatedUsers(String associationKey) throws UserAccountAssociationException {
+
+        Connection dbConnection = getDBConnection();
+        PreparedStatement preparedStatement = null;
+        ResultSet resultSet = null;
+        List<AssociatedUser> associatedUsers = new ArrayList<>();
+
+        try {
+            preparedStatement = dbConnection.prepareStatement(UserAccountAssociationConstants
+                    .SQLQueries.LIST_USER_ACCOUNT_ASSOCIATIONS);
+            preparedStatement.setString(1, associationKey);
+            resultSet = preparedStatement.executeQuery();
+
+            while (resultSet.next()) {
+                associatedUsers.add(new AssociatedUser(resultSet.getInt(1), resultSet.getString(2),
+                        resultSet.getString(3)));
+            }
+            dbConnection.commit();
+        } catch (SQLException e) {
+            throw new UserAccountAssociationServerException(UserAccountAssociationConstants.ErrorMessages
+                    .CONN_LIST_DB_ERROR.getDescription(), e);
+        } finally {
+            IdentityApplicationManagementUtil.closeResultSet(resultSet);
+            IdentityApplicationManagementUtil.closeStatement(preparedStatement);
+            IdentityApplicationManagementUtil.closeConnection(dbConnection);
+        }
+        return associatedUsers;
+    }
+
     /**
      * Update an association key
      *
@@ -234,7 +317,7 @@ public class UserAccountAssociationDAO {
     public void updateUserAssociationKey(String oldAssociationKey, String newAssociationKey) throws
             UserAccountAssociationException {
 
-        Connection dbConnection = IdentityDatabaseUtil.getDBConnection();
+        Connection dbConnection = getDBConnection();
         PreparedStatement preparedStatement = null;
 
         try {
@@ -254,6 +337,15 @@ public class UserAccountAssociationDAO {
         } finally {
             IdentityApplicationManagementUtil.closeStatement(preparedStatement);
             IdentityApplicationManagementUtil.closeConnection(dbConnection);
+            associationVersion.incrementAndGet();
+            associationCache.clearCacheEntry(new AssociatedUsersCacheKey(oldAssociationKey));
+            associationCache.clearCacheEntry(new AssociatedUsersCacheKey(newAssociationKey));
+        }
+
+        // the users of the old association key now have the new one
+        for (AssociatedUser associatedUser : loadAssociatedUsers(newAssociationKey)) {
+            associationKeyCache.clearCacheEntry(new UserAssociationKeyCacheKey(associatedUser.getTenantId(),
+                    associatedUser.getDomainName(), associatedUser.getUserName()));
         }
     }
 
@@ -269,40 +361,11 @@ public class UserAccountAssociationDAO {
     public boolean isValidUserAssociation(String domainName, int tenantId,
                                           String userName) throws UserAccountAssociationException {
 
-        Connection dbConnection = IdentityDatabaseUtil.getDBConnection();
-        PreparedStatement preparedStatement = null;
-        ResultSet resultSet = null;
-        boolean valid = false;
-
-        try {
-            preparedStatement = dbConnection.prepareStatement(UserAccountAssociationConstants
-                    .SQLQueries.IS_VALID_ASSOCIATION);
-
-            preparedStatement.setInt(1, tenantId);
-            preparedStatement.setString(2, domainName);
-            preparedStatement.setString(3, userName);
-            preparedStatement.setInt(4, CarbonContext.getThreadLocalCarbonContext().getTenantId());
-            preparedStatement.setString(5, IdentityUtil.extractDomainFromName(CarbonContext
-                    .getThreadLocalCarbonContext()
-                    .getUsername()));
-            preparedStatement.setString(6, UserAccountAssociationUtil.getUsernameWithoutDomain(CarbonContext
-                    .getThreadLocalCarbonContext().getUsername()));
-            resultSet = preparedStatement.executeQuery();
-
-            if (resultSet.next()) {
-                valid = resultSet.getInt(1) > 0;
-            }
-            dbConnection.commit();
-        } catch (SQLException e) {
-            throw new UserAccountAssociationServerException(UserAccountAssociationConstants.ErrorMessages
-                    .CHECK_ASSOCIATION_DB_ERROR.getDescription(), e);
-        } finally {
-            IdentityApplicationManagementUtil.closeResultSet(resultSet);
-            IdentityApplicationManagementUtil.closeStatement(preparedStatement);
-            IdentityApplicationManagementUtil.closeConnection(dbConnection);
-        }
-
-        return valid;
+        String loggedInUserName = CarbonContext.getThreadLocalCarbonContext().getUsername();
+        return isValidUserAssociation(domainName, tenantId, userName,
+                IdentityUtil.extractDomainFromName(loggedInUserName),
+                CarbonContext.getThreadLocalCarbonContext().getTenantId(),
+                UserAccountAssociationUtil.getUsernameWithoutDomain(loggedInUserName));
     }
 
     /**
@@ -320,37 +383,9 @@ public class UserAccountAssociationDAO {
     public boolean isValidUserAssociation(String domainName1, int tenantId1, String userName1, String domainName2,
                                           int tenantId2, String userName2) throws UserAccountAssociationException {
 
-        Connection dbConnection = IdentityDatabaseUtil.getDBConnection();
-        PreparedStatement preparedStatement = null;
-        ResultSet resultSet = null;
-        boolean valid = false;
-
-        try {
-            preparedStatement = dbConnection.prepareStatement(UserAccountAssociationConstants
-                    .SQLQueries.IS_VALID_ASSOCIATION);
-
-            preparedStatement.setInt(1, tenantId1);
-            preparedStatement.setString(2, domainName1);
-            preparedStatement.setString(3, userName1);
-            preparedStatement.setInt(4, tenantId2);
-            preparedStatement.setString(5, domainName2);
-            preparedStatement.setString(6, userName2);
-            resultSet = preparedStatement.executeQuery();
-
-            if (resultSet.next()) {
-                valid = resultSet.getInt(1) > 0;
-            }
-            dbConnection.commit();
-        } catch (SQLException e) {
-            throw new UserAccountAssociationServerException(UserAccountAssociationConstants.ErrorMessages
-                    .CHECK_ASSOCIATION_DB_ERROR.getDescription(), e);
-        } finally {
-            IdentityApplicationManagementUtil.closeResultSet(resultSet);
-            IdentityApplicationManagementUtil.closeStatement(preparedStatement);
-            IdentityApplicationManagementUtil.closeConnection(dbConnection);
-        }
-
-        return valid;
+        String associationKey = getAssociationKeyOfUser(domainName2, tenantId2, userName2);
+        return associationKey != null && associationKey.equals(getAssociationKeyOfUser(domainName1, tenantId1,
+                userName1));
     }
 
     /**
@@ -361,7 +396,7 @@ public class UserAccountAssociationDAO {
      */
     public void deleteUserAssociationsFromTenantId(int tenantId) throws UserAccountAssociationException {
 
-        Connection dbConnection = IdentityDatabaseUtil.getDBConnection();
+        Connection dbConnection = getDBConnection();
         PreparedStatement preparedStatement = null;
 
         try {
@@ -380,6 +415,7 @@ public class UserAccountAssociationDAO {
         } finally {
             IdentityApplicationManagementUtil.closeStatement(preparedStatement);
             IdentityApplicationManagementUtil.closeConnection(dbConnection);
+            clearCache();
         }
     }
 
@@ -394,7 +430,7 @@ public class UserAccountAssociationDAO {
     public void updateDomainNameOfAssociations(int tenantId, String currentDomainName, String newDomainName) throws
             UserAccountAssociationException {
 
-        Connection dbConnection = IdentityDatabaseUtil.getDBConnection();
+        Connection dbConnection = getDBConnection();
         PreparedStatement preparedStatement = null;
 
         try {
@@ -416,6 +452,7 @@ public class UserAccountAssociationDAO {
         } finally {
             IdentityApplicationManagementUtil.closeStatement(preparedStatement);
             IdentityApplicationManagementUtil.closeConnection(dbConnection);
+            clearCache();
         }
     }
 
@@ -429,7 +466,7 @@ public class UserAccountAssociationDAO {
     public void deleteAssociationsFromDomain(int tenantId, String domainName) throws
             UserAccountAssociationException {
 
-        Connection dbConnection = IdentityDatabaseUtil.getDBConnection();
+        Connection dbConnection = getDBConnection();
         PreparedStatement preparedStatement = null;
 
         try {
@@ -450,9 +487,20 @@ public class UserAccountAssociationDAO {
         } finally {
             IdentityApplicationManagementUtil.closeStatement(preparedStatement);
             IdentityApplicationManagementUtil.closeConnection(dbConnection);
+            clearCache();
         }
     }
 
+    private void clearCache() {
+        associationVersion.incrementAndGet();
+        associationKeyCache.clear();
+        associationCache.clear();
+    }
+
+    Connection getDBConnection() {
+        return IdentityDatabaseUtil.getDBConnection();
+    }
+
     private static class LazyHolder {
         private static final UserAccountAssociationDAO INSTANCE = new UserAccountAssociationDAO();
     }
@@ -0,0 +1,229 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.user.account.association.dao;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.wso2.carbon.identity.application.common.cache.BaseCache;
+import org.wso2.carbon.identity.user.account.association.cache.AssociatedUsersCacheEntry;
+import org.wso2.carbon.identity.user.account.association.cache.AssociatedUsersCacheKey;
+import org.wso2.carbon.identity.user.account.association.cache.UserAssociationKeyCacheEntry;
+import org.wso2.carbon.identity.user.account.association.cache.UserAssociationKeyCacheKey;
+
+import java.io.Serializable;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Counts the queries sent to an in-memory H2 database by {@link UserAccountAssociationDAO}. The caches are
+ * represented by maps, as the Carbon cache runtime is not available to unit tests.
+ */
+public class UserAccountAssociationDAOTest {
+
+    private static final String DB_URL = "jdbc:h2:mem:UserAccountAssociationDAOTest;DB_CLOSE_DELAY=-1";
+    private static final int TENANT_ID = -1234;
+    private static final String DOMAIN_NAME = "PRIMARY";
+
+    private Connection connection;
+    private int statementCount;
+    private Runnable afterQuery;
+    private UserAccountAssociationDAO associationDAO;
+
+    @Before
+    public void setUp() throws Exception {
+
+        Class.forName("org.h2.Driver");
+        connection = DriverManager.getConnection(DB_URL);
+        Statement statement = connection.createStatement();
+        statement.execute("CREATE TABLE IDN_USER_ACCOUNT_ASSOCIATION (ASSOCIATION_KEY VARCHAR(255) NOT NULL, " +
+                "TENANT_ID INTEGER, DOMAIN_NAME VARCHAR(255) NOT NULL, USER_NAME VARCHAR(255) NOT NULL, " +
+                "PRIMARY KEY (TENANT_ID, DOMAIN_NAME, USER_NAME))");
+        statement.close();
+
+        associationDAO = new UserAccountAssociationDAO(
+                new MapCache<UserAssociationKeyCacheKey, UserAssociationKeyCacheEntry>(),
+                new MapCache<AssociatedUsersCacheKey, AssociatedUsersCacheEntry>()) {
+            @Override
+            Connection getDBConnection() {
+                try {
+                    Connection dbConnection = DriverManager.getConnection(DB_URL);
+                    dbConnection.setAutoCommit(false);
+                    return countingConnection(dbConnection);
+                } catch (SQLException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        };
+        associationDAO.createUserAssociation("key1", DOMAIN_NAME, TENANT_ID, "user1");
+        associationDAO.createUserAssociation("key1", DOMAIN_NAME, TENANT_ID, "user2");
+        statementCount = 0;
+    }
+
+    @After
+    public void tearDown() throws Exception {
+
+        Statement statement = connection.createStatement();
+        statement.execute("DROP ALL OBJECTS");
+        statement.close();
+        connection.close();
+    }
+
+    @Test
+    public void testAssociationChecksAreServedFromCache() throws Exception {
+
+        for (int i = 0; i < 100; i++) {
+            Assert.assertTrue(isValidUserAssociation("user1", "user2"));
+        }
+        Assert.assertEquals("the association key of each user should be read once", 2, statementCount);
+
+        for (int i = 0; i < 100; i++) {
+            Assert.assertFalse(isValidUserAssociation("user3", "user1"));
+        }
+        Assert.assertEquals("a user without an association should be read once", 3, statementCount);
+    }
+
+    @Test
+    public void testChangesClearCachedAssociations() throws Exception {
+
+        Assert.assertFalse(isValidUserAssociation("user3", "user1"));
+        associationDAO.createUserAssociation("key1", DOMAIN_NAME, TENANT_ID, "user3");
+        Assert.assertTrue(isValidUserAssociation("user3", "user1"));
+
+        associationDAO.deleteUserAssociation(DOMAIN_NAME, TENANT_ID, "user2");
+        Assert.assertFalse(isValidUserAssociation("user1", "user2"));
+
+        associationDAO.updateUserAssociationKey("key1", "key2");
+        Assert.assertEquals("key2", associationDAO.getAssociationKeyOfUser(DOMAIN_NAME, TENANT_ID, "user1"));
+        Assert.assertEquals("key2", associationDAO.getAssociationKeyOfUser(DOMAIN_NAME, TENANT_ID, "user3"));
+
+        associationDAO.deleteAssociationsFromDomain(TENANT_ID, DOMAIN_NAME);
+        Assert.assertNull(associationDAO.getAssociationKeyOfUser(DOMAIN_NAME, TENANT_ID, "user1"));
+    }
+
+    @Test
+    public void testAssociationReadDuringChangeIsNotCached() throws Exception {
+
+        afterQuery = new Runnable() {
+            @Override
+            public void run() {
+                afterQuery = null;
+                try {
+                    associationDAO.createUserAssociation("key1", DOMAIN_NAME, TENANT_ID, "user3");
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        };
+        Assert.assertNull("the association should be read before it is created",
+                associationDAO.getAssociationKeyOfUser(DOMAIN_NAME, TENANT_ID, "user3"));
+
+        statementCount = 0;
+        Assert.assertEquals("key1", associationDAO.getAssociationKeyOfUser(DOMAIN_NAME, TENANT_ID, "user3"));
+        Assert.assertEquals(1, statementCount);
+    }
+
+    private boolean isValidUserAssociation(String userName1, String userName2) throws Exception {
+        return associationDAO.isValidUserAssociation(DOMAIN_NAME, TENANT_ID, userName1, DOMAIN_NAME, TENANT_ID,
+                userName2);
+    }
+
+    /**
+     * Wraps the connection so that each statement execution sent to the database is counted
+     */
+    private Connection countingConnection(final Connection dbConnection) {
+
+        return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class[]{Connection.class},
+                new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                        Object result = delegate(dbConnection, method, args);
+                        if ("prepareStatement".equals(method.getName())) {
+                            final PreparedStatement prepStmt = (PreparedStatement) result;
+                            return Proxy.newProxyInstance(getClass().getClassLoader(),
+                                    new Class[]{PreparedStatement.class}, new InvocationHandler() {
+                                        @Override
+                                        public Object invoke(Object proxy, Method method, Object[] args)
+                                                throws Throwable {
+                                            if (method.getName().startsWith("execute")) {
+                                                statementCount++;
+                                            }
+                                            Object result = delegate(prepStmt, method, args);
+                                            if ("executeQuery".equals(method.getName()) && afterQuery != null) {
+                                                afterQuery.run();
+                                            }
+                                            return result;
+                                        }
+                                    });
+                        }
+                        return result;
+                    }
+                });
+    }
+
+    private static Object delegate(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Cache kept in a map
+     */
+    private static class MapCache<K extends Serializable, V extends Serializable> extends BaseCache<K, V> {
+
+        private final Map<K, V> entries = new ConcurrentHashMap<>();
+
+        private MapCache() {
+            super("MapCache");
+        }
+
+        @Override
+        public void addToCache(K key, V entry) {
+            entries.put(key, entry);
+        }
+
+        @Override
+        public V getValueFromCache(K key) {
+            return entries.get(key);
+        }
+
+        @Override
+        public void clearCacheEntry(K key) {
+            entries.remove(key);
+        }
+
+        @Override
+        public void clear() {
+            entries.clear();
+        }
+    }
+}
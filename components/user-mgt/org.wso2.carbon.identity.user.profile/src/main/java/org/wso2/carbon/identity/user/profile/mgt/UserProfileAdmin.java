@@ -29,6 +29,10 @@ import org.wso2.carbon.context.CarbonContext;
 import org.wso2.carbon.core.AbstractAdmin;
 import org.wso2.carbon.identity.base.IdentityConstants;
 import org.wso2.carbon.identity.core.util.IdentityDatabaseUtil;
+import org.wso2.carbon.identity.user.profile.mgt.cache.SupportedProfileClaimsCache;
+import org.wso2.carbon.identity.user.profile.mgt.cache.SupportedProfileClaimsCacheEntry;
+import org.wso2.carbon.identity.user.profile.mgt.cache.SupportedProfileClaimsCacheEntry.ProfileClaim;
+import org.wso2.carbon.identity.user.profile.mgt.cache.SupportedProfileClaimsCacheKey;
 import org.wso2.carbon.user.api.Claim;
 import org.wso2.carbon.user.api.ClaimMapping;
 import org.wso2.carbon.user.api.UserStoreManager;
@@ -216,39 +220,17 @@ public class UserProfileAdmin extends AbstractAdmin {
             }
 
             profiles = new UserProfileDTO[profileNames.length];
-            Claim[] claims = getAllSupportedClaims(realm, UserCoreConstants.DEFAULT_CARBON_DIALECT);
-            String[] claimUris = new String[claims.length + 1];
-            for (int i = 0; i < claims.length; i++) {
-                claimUris[i] = claims[i].getClaimUri();
-            }
-
-            claimUris[claims.length] = UserCoreConstants.PROFILE_CONFIGURATION;
+            SupportedProfileClaimsCacheEntry supportedClaims = getSupportedProfileClaims(realm);
+            String[] claimUris = supportedClaims.getClaimUris();
 
             for (int i = 0; i < profileNames.length; i++) {
                 String profile = profileNames[i];
                 Map<String, String> valueMap =
                         userStoreManager.getUserClaimValues(username, claimUris, profile);
-                List<UserFieldDTO> userFields = new ArrayList<UserFieldDTO>();
-                for (int j = 0; j < claims.length; j++) {
-                    UserFieldDTO data = new UserFieldDTO();
-                    Claim claim = claims[j];
-                    String claimUri = claim.getClaimUri();
-                    if (!UserCoreConstants.PROFILE_CONFIGURATION.equals(claimUri)) {
-                        data.setClaimUri(claimUri);
-                        data.setFieldValue(valueMap.get(claimUri));
-                        data.setDisplayName(claim.getDisplayTag());
-                        data.setRegEx(claim.getRegEx());
-                        data.setRequired(claim.isRequired());
-                        data.setDisplayOrder(claim.getDisplayOrder());
-                        data.setCheckedAttribute(claim.isCheckedAttribute());
-                        data.setReadOnly(claim.isReadOnly());
-                        userFields.add(data);
-                    }
-                }
 
                 UserProfileDTO temp = new UserProfileDTO();
                 temp.setProfileName(profile);
-                temp.setFieldValues(userFields.toArray(new UserFieldDTO[userFields.size()]));
+                temp.setFieldValues(getUserFields(supportedClaims, valueMap));
                 temp.setProfileConfigurations(availableProfileConfigurations);
 
                 profileConfig = valueMap.get(UserCoreConstants.PROFILE_CONFIGURATION);
@@ -279,7 +261,7 @@ public class UserProfileAdmin extends AbstractAdmin {
         String[] availableProfileConfigurations = new String[0];
         try {
             UserRealm realm = getUserRealm();
-            Claim[] claims = getClaimsToEnterData(realm);
+            ProfileClaim[] claims = getSupportedProfileClaims(realm).getClaims();
 
             ProfileConfigurationManager profileAdmin = realm
                     .getProfileConfigurationManager();
@@ -287,24 +269,9 @@ public class UserProfileAdmin extends AbstractAdmin {
                 availableProfileConfigurations = getAvailableProfileConfiguration(profileAdmin);
             }
 
-            String[] claimUris = new String[claims.length];
-            for (int i = 0; i < claims.length; i++) {
-                claimUris[i] = claims[i].getClaimUri();
-            }
             datas = new UserFieldDTO[claims.length];
             for (int j = 0; j < claims.length; j++) {
-                UserFieldDTO data = new UserFieldDTO();
-                Claim claim = claims[j];
-                String claimUri = claim.getClaimUri();
-                data.setClaimUri(claimUri);
-                data.setDisplayName(claim.getDisplayTag());
-                data.setRegEx(claim.getRegEx());
-                data.setRequired(claim.isRequired());
-                data.setDisplayOrder(claim.getDisplayOrder());
-                data.setRegEx(claim.getRegEx());
-                data.setCheckedAttribute(claim.isCheckedAttribute());
-                data.setReadOnly(claim.isReadOnly());
-                datas[j] = data;
+                datas[j] = getUserField(claims[j]);
             }
 
         } catch (Exception e) {
@@ -404,35 +371,11 @@ public class UserProfileAdmin extends AbstractAdmin {
                 availableProfileConfigurations = getAvailableProfileConfiguration(profileAdmin);
             }
 
-            Claim[] claims = getClaimsToEnterData(realm);
-            String[] claimUris = new String[claims.length + 1];
-            for (int i = 0; i < claims.length; i++) {
-                claimUris[i] = claims[i].getClaimUri();
-            }
-
-            claimUris[claims.length] = UserCoreConstants.PROFILE_CONFIGURATION;
+            SupportedProfileClaimsCacheEntry supportedClaims = getSupportedProfileClaims(realm);
 
             Map<String, String> valueMap =
                     userStoreManager
-                            .getUserClaimValues(username, claimUris, profileName);
-            List<UserFieldDTO> userFields = new ArrayList<UserFieldDTO>();
-
-            for (int j = 0; j < claims.length; j++) {
-                UserFieldDTO data = new UserFieldDTO();
-                Claim claim = claims[j];
-                String claimUri = claim.getClaimUri();
-                if (!UserCoreConstants.PROFILE_CONFIGURATION.equals(claimUri)) {
-                    data.setClaimUri(claimUri);
-                    data.setFieldValue(valueMap.get(claimUri));
-                    data.setDisplayName(claim.getDisplayTag());
-                    data.setRegEx(claim.getRegEx());
-                    data.setRequired(claim.isRequired());
-                    data.setDisplayOrder(claim.getDisplayOrder());
-                    data.setReadOnly(claim.isReadOnly());
-                    data.setCheckedAttribute(claim.isCheckedAttribute());
-                    userFields.add(data);
-                }
-            }
+                            .getUserClaimValues(username, supportedClaims.getClaimUris(), profileName);
 
             profile.setProfileName(profileName);
             profile.setProfileConfigurations(availableProfileConfigurations);
@@ -447,7 +390,7 @@ public class UserProfileAdmin extends AbstractAdmin {
             }
 
             profile.setProfileConifuration(profileConfig);
-            profile.setFieldValues(userFields.toArray(new UserFieldDTO[userFields.size()]));
+            profile.setFieldValues(getUserFields(supportedClaims, valueMap));
 
         } catch (Exception e) {
             // Not logging. Already logged.
@@ -507,6 +450,52 @@ public class UserProfileAdmin extends AbstractAdmin {
     }
 
 
+    /**
+     * Returns the claims shown in user profiles of the current tenant. These are cached per tenant, so that they are
+     * not filtered from all the claim mappings for every profile request. Updated claim mappings are picked up after
+     * the timeout of SupportedProfileClaimsCache in identity.xml.
+     *
+     * @param realm user realm of the current tenant
+     * @return supported claims with their display metadata
+     * @throws UserStoreException
+     */
+    private SupportedProfileClaimsCacheEntry getSupportedProfileClaims(UserRealm realm) throws UserStoreException {
+        SupportedProfileClaimsCacheKey cacheKey =
+                new SupportedProfileClaimsCacheKey(CarbonContext.getThreadLocalCarbonContext().getTenantDomain());
+        SupportedProfileClaimsCacheEntry supportedClaims =
+                SupportedProfileClaimsCache.getInstance().getValueFromCache(cacheKey);
+        if (supportedClaims == null) {
+            supportedClaims = new SupportedProfileClaimsCacheEntry(getClaimsToEnterData(realm));
+            SupportedProfileClaimsCache.getInstance().addToCache(cacheKey, supportedClaims);
+        }
+        return supportedClaims;
+    }
+
+    private UserFieldDTO[] getUserFields(SupportedProfileClaimsCacheEntry supportedClaims,
+                                         Map<String, String> valueMap) {
+        List<UserFieldDTO> userFields = new ArrayList<UserFieldDTO>();
+        for (ProfileClaim claim : supportedClaims.getClaims()) {
+            if (!UserCoreConstants.PROFILE_CONFIGURATION.equals(claim.getClaimUri())) {
+                UserFieldDTO data = getUserField(claim);
+                data.setFieldValue(valueMap.get(claim.getClaimUri()));
+                userFields.add(data);
+            }
+        }
+        return userFields.toArray(new UserFieldDTO[userFields.size()]);
+    }
+
+    private UserFieldDTO getUserField(ProfileClaim claim) {
+        UserFieldDTO data = new UserFieldDTO();
+        data.setClaimUri(claim.getClaimUri());
+        data.setDisplayName(claim.getDisplayName());
+        data.setRegEx(claim.getRegEx());
+        data.setRequired(claim.isRequired());
+        data.setDisplayOrder(claim.getDisplayOrder());
+        data.setCheckedAttribute(claim.isCheckedAttribute());
+        data.setReadOnly(claim.isReadOnly());
+        return data;
+    }
+
     private boolean isAuthorized(String targetUser) throws UserStoreException, CarbonException {
         boolean isAuthrized = false;
         MessageContext msgContext = MessageContext.getCurrentMessageContext();
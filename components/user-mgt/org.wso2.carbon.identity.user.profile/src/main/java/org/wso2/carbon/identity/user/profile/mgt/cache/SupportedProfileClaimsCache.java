@@ -0,0 +1,47 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.user.profile.mgt.cache;
+
+import org.wso2.carbon.identity.application.common.cache.BaseCache;
+
+/**
+ * Cache of the claims shown in user profiles of a tenant.
+ */
+public class SupportedProfileClaimsCache
+        extends BaseCache<SupportedProfileClaimsCacheKey, SupportedProfileClaimsCacheEntry> {
+
+    private static final String SUPPORTED_PROFILE_CLAIMS_CACHE_NAME = "SupportedProfileClaimsCache";
+
+    private static volatile SupportedProfileClaimsCache instance;
+
+    private SupportedProfileClaimsCache() {
+        super(SUPPORTED_PROFILE_CLAIMS_CACHE_NAME);
+    }
+
+    public static SupportedProfileClaimsCache getInstance() {
+        if (instance == null) {
+            synchronized (SupportedProfileClaimsCache.class) {
+                if (instance == null) {
+                    instance = new SupportedProfileClaimsCache();
+                }
+            }
+        }
+        return instance;
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.user.profile.mgt.cache;
+
+import org.wso2.carbon.identity.application.common.cache.CacheEntry;
+import org.wso2.carbon.user.api.Claim;
+import org.wso2.carbon.user.core.UserCoreConstants;
+
+import java.io.Serializable;
+
+/**
+ * Claims shown in user profiles of a tenant, with their display metadata and the claim URIs to read from the user
+ * store for a profile.
+ */
+public class SupportedProfileClaimsCacheEntry extends CacheEntry {
+
+    private static final long serialVersionUID = -4512297630148392613L;
+
+    private ProfileClaim[] claims;
+    private String[] claimUris;
+
+    public SupportedProfileClaimsCacheEntry(Claim[] supportedClaims) {
+        claims = new ProfileClaim[supportedClaims.length];
+        claimUris = new String[supportedClaims.length + 1];
+        for (int i = 0; i < supportedClaims.length; i++) {
+            claims[i] = new ProfileClaim(supportedClaims[i]);
+            claimUris[i] = supportedClaims[i].getClaimUri();
+        }
+        claimUris[supportedClaims.length] = UserCoreConstants.PROFILE_CONFIGURATION;
+    }
+
+    public ProfileClaim[] getClaims() {
+        return claims.clone();
+    }
+
+    /**
+     * @return URIs of the supported claims followed by the profile configuration claim URI
+     */
+    public String[] getClaimUris() {
+        return claimUris.clone();
+    }
+
+    public static class ProfileClaim implements Serializable {
+
+        private static final long serialVersionUID = 6305983526271410427L;
+
+        private String claimUri;
+        private String displayName;
+        private String regEx;
+        private boolean required;
+        private int displayOrder;
+        private boolean checkedAttribute;
+        private boolean readOnly;
+
+        private ProfileClaim(Claim claim) {
+            claimUri = claim.getClaimUri();
+            displayName = claim.getDisplayTag();
+            regEx = claim.getRegEx();
+            required = claim.isRequired();
+            displayOrder = claim.getDisplayOrder();
+            checkedAttribute = claim.isCheckedAttribute();
+            readOnly = claim.isReadOnly();
+        }
+
+        public String getClaimUri() {
+            return claimUri;
+        }
+
+        public String getDisplayName() {
+            return displayName;
+        }
+
+        public String getRegEx() {
+            return regEx;
+        }
+
+        public boolean isRequired() {
+            return required;
+        }
+
+        public int getDisplayOrder() {
+            return displayOrder;
+        }
+
+        public boolean isCheckedAttribute() {
+            return checkedAttribute;
+        }
+
+        public boolean isReadOnly() {
+            return readOnly;
+        }
+    }
+}
@@ -22,6 +22,7 @@ import org.apache.axis2.context.ConfigurationContextFactory;
 import org.apache.axis2.description.TransportOutDescription;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.wso2.carbon.identity.user.store.remote.RemoteServerPool.RemoteOperation;
 import org.wso2.carbon.um.ws.api.WSUserStoreManager;
 import org.wso2.carbon.user.api.ClaimManager;
 import org.wso2.carbon.user.api.Permission;
@@ -36,24 +37,28 @@ import org.wso2.carbon.user.core.tenant.Tenant;
 import org.wso2.carbon.user.core.util.UserCoreUtil;
 
 import java.util.Date;
-import java.util.HashMap;
-import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.Map;
-import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 public class CarbonRemoteUserStoreManger implements UserStoreManager {
 
-    private static final String CONNECTION_REFUSED = "Connection refused";
     private static final Log log = LogFactory.getLog(CarbonRemoteUserStoreManger.class);
     public static final String SERVER_URLS = "serverUrls";
     public static final String REMOTE_USER_NAME = "remoteUserName";
     public static final String PASSWORD = "password";
-    private WSUserStoreManager remoteUserStore;
+    public static final String MAX_FAILURES = "maxFailures";
+    public static final String HEALTH_CHECK_INTERVAL = "healthCheckInterval";
+    private static final int DEFAULT_MAX_FAILURES = 3;
+    private static final long DEFAULT_HEALTH_CHECK_INTERVAL = 10000;
+    private static final ConcurrentMap<String, CarbonRemoteUserStoreManger> activeManagers =
+            new ConcurrentHashMap<String, CarbonRemoteUserStoreManger>();
     private RealmConfiguration realmConfig;
     private String domainName;
     private UserStoreManager secondaryUserStoreManager;
-    private Map<String, WSUserStoreManager> remoteServers = new HashMap<String, WSUserStoreManager>();
-    private static final String REMOTE_ERROR_MSG = "Error occured while getting remote store value: ignoring the error";
+    private RemoteServerPool<WSUserStoreManager> remoteServers;
+    private String managerKey;
 
     public CarbonRemoteUserStoreManger() {
 
@@ -77,9 +82,10 @@ public class CarbonRemoteUserStoreManger implements UserStoreManager {
         }
 
         String[] serverUrls = realmConfig.getUserStoreProperty(SERVER_URLS).split(",");
+        Map<String, WSUserStoreManager> servers = new LinkedHashMap<String, WSUserStoreManager>();
 
         for (int i = 0; i < serverUrls.length; i++) {
-            remoteUserStore = new WSUserStoreManager(
+            WSUserStoreManager remoteUserStore = new WSUserStoreManager(
                     realmConfig.getUserStoreProperty(REMOTE_USER_NAME),
                     realmConfig.getUserStoreProperty(PASSWORD), serverUrls[i],
                     configurationContext);
@@ -88,11 +94,74 @@ public class CarbonRemoteUserStoreManger implements UserStoreManager {
                 log.debug("Remote Servers for User Management : " + serverUrls[i]);
             }
 
-            remoteServers.put(serverUrls[i], remoteUserStore);
+            servers.put(serverUrls[i], remoteUserStore);
         }
 
+        int maxFailures = (int) getPositiveProperty(realmConfig, MAX_FAILURES, DEFAULT_MAX_FAILURES);
+        long healthCheckInterval = getPositiveProperty(realmConfig, HEALTH_CHECK_INTERVAL,
+                DEFAULT_HEALTH_CHECK_INTERVAL);
+
+        remoteServers = new RemoteServerPool<WSUserStoreManager>(servers,
+                new RemoteOperation<WSUserStoreManager, Boolean>() {
+                    @Override
+                    public Boolean execute(WSUserStoreManager remoteStore) throws UserStoreException {
+                        return remoteStore.isReadOnly();
+                    }
+                }, maxFailures, healthCheckInterval);
+
         this.realmConfig = realmConfig;
         domainName = realmConfig.getUserStoreProperty(UserStoreConfigConstants.DOMAIN_NAME);
+
+        // the realm is built again when the user store configuration changes, so the manager built
+        // before for the same user store is closed
+        managerKey = realmConfig.getTenantId() + ":" + domainName;
+        CarbonRemoteUserStoreManger previousManager = activeManagers.put(managerKey, this);
+        if (previousManager != null) {
+            previousManager.close();
+        }
+    }
+
+    /**
+     * Closes the user store manager. The health checks of the remote servers which can not be reached
+     * are stopped.
+     */
+    public void close() {
+
+        if (remoteServers != null) {
+            remoteServers.close();
+        }
+        if (managerKey != null) {
+            activeManagers.remove(managerKey, this);
+        }
+    }
+
+    /**
+     * Closes all the remote user store managers
+     */
+    public static void closeAll() {
+
+        for (CarbonRemoteUserStoreManger manager : activeManagers.values()) {
+            manager.close();
+        }
+    }
+
+    private static long getPositiveProperty(RealmConfiguration realmConfig, String name, long defaultValue) {
+
+        String value = realmConfig.getUserStoreProperty(name);
+        if (value == null || value.trim().length() == 0) {
+            return defaultValue;
+        }
+        try {
+            long parsedValue = Long.parseLong(value.trim());
+            if (parsedValue > 0 && parsedValue <= Integer.MAX_VALUE) {
+                return parsedValue;
+            }
+        } catch (NumberFormatException e) {
+            // the default value is used
+        }
+        log.warn("Invalid value : " + value + " for the user store property : " + name +
+                ". Using the default value : " + defaultValue);
+        return defaultValue;
     }
 
     /**
@@ -119,6 +188,13 @@ public class CarbonRemoteUserStoreManger implements UserStoreManager {
                 "Remote Server URL(s)#Remote server URLs. e.g.: https://ca-datacenter/services,https://va-datacenter/services",
                 null);
         Property disabled = new Property("Disabled", "false", "Disabled#Check to disable the user store", null);
+        Property maxFailures = new Property(MAX_FAILURES, String.valueOf(DEFAULT_MAX_FAILURES),
+                "Maximum Connection Failures#Number of consecutive connection failures after which a remote " +
+                        "server is not used until it is reachable again", null);
+        Property healthCheckInterval = new Property(HEALTH_CHECK_INTERVAL,
+                String.valueOf(DEFAULT_HEALTH_CHECK_INTERVAL),
+                "Health Check Interval#Interval in milliseconds to check whether an unreachable remote server " +
+                        "is reachable again", null);
 
         Property passwordJavaScriptRegEx = new Property(
                 UserStoreConfigConstants.passwordJavaScriptRegEx, "^[\\S]{5,30}$",
@@ -135,127 +211,58 @@ public class CarbonRemoteUserStoreManger implements UserStoreManager {
 
         mandatoryProperties = new Property[] {remoteServerUserName, password, serverUrls, passwordJavaScriptRegEx,
                 usernameJavaScriptRegEx, roleNameJavaScriptRegEx};
-        optionalProperties = new Property[] {disabled};
+        optionalProperties = new Property[] {disabled, maxFailures, healthCheckInterval};
 
         properties.setOptionalProperties(optionalProperties);
         properties.setMandatoryProperties(mandatoryProperties);
         return properties;
     }
 
-    /**
-     *
-     */
     @Override
-    public boolean isExistingRole(String roleName, boolean isShared)
+    public boolean isExistingRole(final String roleName, final boolean isShared)
             throws org.wso2.carbon.user.api.UserStoreException {
-        boolean rolesExists = false;
-        try {
-            rolesExists = remoteUserStore.isExistingRole(roleName, isShared);
-        } catch (UserStoreException e) {
-            if (!CONNECTION_REFUSED.equalsIgnoreCase(e.getMessage())) {
-                throw e;
+        return remoteServers.execute(new RemoteOperation<WSUserStoreManager, Boolean>() {
+            @Override
+            public Boolean execute(WSUserStoreManager remoteStore) throws org.wso2.carbon.user.api.UserStoreException {
+                return remoteStore.isExistingRole(roleName, isShared);
             }
-            synchronized (this) {
-                for (Iterator<Entry<String, WSUserStoreManager>> iterator = remoteServers
-                        .entrySet().iterator(); iterator.hasNext(); ) {
-                    Entry<String, WSUserStoreManager> remoteStore = iterator.next();
-                    try {
-                        rolesExists = remoteStore.getValue().isExistingRole(roleName, isShared);
-                        remoteUserStore = remoteStore.getValue();
-                        break;
-                    } catch (UserStoreException ex) {
-                        if (!CONNECTION_REFUSED.equalsIgnoreCase(e.getMessage())) {
-
-                            if(log.isDebugEnabled()){
-
-                                log.debug(REMOTE_ERROR_MSG,ex);
-
-                            }
-
-                            throw e;
-                        }
-                        log.error("Failed to connect to the remote server : "
-                                + remoteStore.getKey());
-                    }
-                }
-            }
-        }
-        return rolesExists;
+        });
     }
 
     @Override
-    public void addRole(String roleName, String[] userList, Permission[] permissions,
-                        boolean isSharedRole) throws org.wso2.carbon.user.api.UserStoreException {
-
-        for (Iterator<Entry<String, WSUserStoreManager>> iterator = remoteServers.entrySet()
-                .iterator(); iterator.hasNext(); ) {
-            Entry<String, WSUserStoreManager> remoteStore = iterator.next();
-            try {
-                remoteStore.getValue().addRole(roleName, userList, permissions);
-            } catch (UserStoreException e) {
-                if (!CONNECTION_REFUSED.equalsIgnoreCase(e.getMessage())) {
-                    throw e;
-                }
-                log.error("Failed to update the remote server : " + remoteStore.getKey());
+    public void addRole(final String roleName, final String[] userList, final Permission[] permissions,
+                        final boolean isSharedRole) throws org.wso2.carbon.user.api.UserStoreException {
+        remoteServers.executeOnAll(new RemoteOperation<WSUserStoreManager, Void>() {
+            @Override
+            public Void execute(WSUserStoreManager remoteStore) throws org.wso2.carbon.user.api.UserStoreException {
+                remoteStore.addRole(roleName, userList, permissions);
+                return null;
             }
-        }
-
+        });
     }
 
     @Override
-    public void addRole(String roleName, String[] userList, Permission[] permissions)
+    public void addRole(final String roleName, final String[] userList, final Permission[] permissions)
             throws org.wso2.carbon.user.api.UserStoreException {
-        for (Iterator<Entry<String, WSUserStoreManager>> iterator = remoteServers.entrySet()
-                .iterator(); iterator.hasNext(); ) {
-            Entry<String, WSUserStoreManager> remoteStore = iterator.next();
-
-            try {
-                remoteStore.getValue().addRole(roleName, userList, permissions);
-            } catch (org.wso2.carbon.user.api.UserStoreException e) {
-                if (!CONNECTION_REFUSED.equalsIgnoreCase(e.getMessage())) {
-                    throw e;
-                }
-                log.error("Failed to update the remote server : " + remoteStore.getKey());
+        remoteServers.executeOnAll(new RemoteOperation<WSUserStoreManager, Void>() {
+            @Override
+            public Void execute(WSUserStoreManager remoteStore) throws org.wso2.carbon.user.api.UserStoreException {
+                remoteStore.addRole(roleName, userList, permissions);
+                return null;
             }
-        }
+        });
     }
 
     @Override
-    public Map<String, String> getProperties(org.wso2.carbon.user.api.Tenant tenant)
+    public Map<String, String> getProperties(final org.wso2.carbon.user.api.Tenant tenant)
             throws org.wso2.carbon.user.api.UserStoreException {
-        Map<String, String> properties = new HashMap<String, String>();
-        try {
-            properties = remoteUserStore.getProperties(tenant);
-        } catch (org.wso2.carbon.user.api.UserStoreException e) {
-            if (!CONNECTION_REFUSED.equalsIgnoreCase(e.getMessage())) {
-                throw e;
+        return remoteServers.execute(new RemoteOperation<WSUserStoreManager, Map<String, String>>() {
+            @Override
+            public Map<String, String> execute(WSUserStoreManager remoteStore)
+                    throws org.wso2.carbon.user.api.UserStoreException {
+                return remoteStore.getProperties(tenant);
             }
-            synchronized (this) {
-                for (Iterator<Entry<String, WSUserStoreManager>> iterator = remoteServers
-                        .entrySet().iterator(); iterator.hasNext(); ) {
-                    Entry<String, WSUserStoreManager> remoteStore = iterator.next();
-                    try {
-                        properties = remoteStore.getValue().getProperties(tenant);
-                        remoteUserStore = remoteStore.getValue();
-                        break;
-                    } catch (UserStoreException ex) {
-                        if (!CONNECTION_REFUSED.equalsIgnoreCase(e.getMessage())) {
-
-                            if(log.isDebugEnabled()){
-
-                                log.debug(REMOTE_ERROR_MSG,ex);
-
-                            }
-
-                            throw e;
-                        }
-                        log.error("Failed to connect to the remote server : "
-                                + remoteStore.getKey());
-                    }
-                }
-            }
-        }
-        return properties;
+        });
     }
 
     @Override
@@ -279,7 +286,13 @@ public class CarbonRemoteUserStoreManger implements UserStoreManager {
 
     @Override
     public ClaimManager getClaimManager() throws org.wso2.carbon.user.api.UserStoreException {
-        return remoteUserStore.getClaimManager();
+        return remoteServers.execute(new RemoteOperation<WSUserStoreManager, ClaimManager>() {
+            @Override
+            public ClaimManager execute(WSUserStoreManager remoteStore)
+                    throws org.wso2.carbon.user.api.UserStoreException {
+                return remoteStore.getClaimManager();
+            }
+        });
     }
 
     @Override
@@ -295,1050 +308,364 @@ public class CarbonRemoteUserStoreManger implements UserStoreManager {
     }
 
     @Override
-    public String[] listUsers(String filter, int maxItemLimit) throws UserStoreException {
-
-        String[] users = null;
-
-        try {
-            users = remoteUserStore.listUsers(filter, maxItemLimit);
-        } catch (UserStoreException e) {
-            if (!CONNECTION_REFUSED.equalsIgnoreCase(e.getMessage())) {
-                throw e;
-            }
-            synchronized (this) {
-                for (Iterator<Entry<String, WSUserStoreManager>> iterator = remoteServers
-                        .entrySet().iterator(); iterator.hasNext(); ) {
-                    Entry<String, WSUserStoreManager> remoteStore = iterator.next();
-                    try {
-                        users = remoteStore.getValue().listUsers(filter, maxItemLimit);
-                        remoteUserStore = remoteStore.getValue();
-                        break;
-                    } catch (UserStoreException ex) {
-                        if (!CONNECTION_REFUSED.equalsIgnoreCase(e.getMessage())) {
-
-                            if(log.isDebugEnabled()){
-
-                                log.debug(REMOTE_ERROR_MSG,ex);
-
-                            }
-
-                            throw e;
-                        }
-                        log.error("Failed to connect to the remote server : "
-                                + remoteStore.getKey());
-                    }
-                }
+    public String[] listUsers(final String filter, final int maxItemLimit) throws UserStoreException {
+        return addDomainName(execute(new RemoteOperation<WSUserStoreManager, String[]>() {
+            @Override
+            public String[] execute(WSUserStoreManager remoteStore) throws UserStoreException {
+                return remoteStore.listUsers(filter, maxItemLimit);
             }
-        }
-
-        if (users != null) {
-            for (int i = 0; i < users.length; i++) {
-                users[i] = domainName + "/" + users[i];
-            }
-        } else {
-            users = new String[0];
-        }
-
-        return users;
+        }));
     }
 
     @Override
-    public boolean isExistingUser(String userName) throws UserStoreException {
-        boolean usersExists = false;
-        try {
-            usersExists = remoteUserStore.isExistingUser(userName);
-        } catch (UserStoreException e) {
-            if (!CONNECTION_REFUSED.equalsIgnoreCase(e.getMessage())) {
-                throw e;
+    public boolean isExistingUser(final String userName) throws UserStoreException {
+        return execute(new RemoteOperation<WSUserStoreManager, Boolean>() {
+            @Override
+            public Boolean execute(WSUserStoreManager remoteStore) throws UserStoreException {
+                return remoteStore.isExistingUser(userName);
             }
-            synchronized (this) {
-                for (Iterator<Entry<String, WSUserStoreManager>> iterator = remoteServers
-                        .entrySet().iterator(); iterator.hasNext(); ) {
-                    Entry<String, WSUserStoreManager> remoteStore = iterator.next();
-                    try {
-                        usersExists = remoteStore.getValue().isExistingUser(userName);
-                        remoteUserStore = remoteStore.getValue();
-                        break;
-                    } catch (UserStoreException ex) {
-                        if (!CONNECTION_REFUSED.equalsIgnoreCase(e.getMessage())) {
-
-                            if(log.isDebugEnabled()){
-
-                                log.debug(REMOTE_ERROR_MSG,ex);
-
-                            }
-
-                            throw e;
-                        }
-                        log.error("Failed to connect to the remote server : "
-                                + remoteStore.getKey());
-                    }
-                }
-            }
-        }
-        return usersExists;
+        });
     }
 
     @Override
-    public boolean isExistingRole(String roleName) throws UserStoreException {
-        boolean roleExists = false;
-        try {
-            roleExists = remoteUserStore.isExistingRole(roleName);
-        } catch (UserStoreException e) {
-            if (!CONNECTION_REFUSED.equalsIgnoreCase(e.getMessage())) {
-                throw e;
-            }
-            synchronized (this) {
-                for (Iterator<Entry<String, WSUserStoreManager>> iterator = remoteServers
-                        .entrySet().iterator(); iterator.hasNext(); ) {
-                    Entry<String, WSUserStoreManager> remoteStore = iterator.next();
-                    try {
-                        roleExists = remoteStore.getValue().isExistingRole(roleName);
-                        remoteUserStore = remoteStore.getValue();
-                        break;
-                    } catch (UserStoreException ex) {
-                        if (!CONNECTION_REFUSED.equalsIgnoreCase(e.getMessage())) {
-
-                            if(log.isDebugEnabled()){
-
-                                log.debug(REMOTE_ERROR_MSG,ex);
-
-                            }
-
-                            throw e;
-                        }
-                        log.error("Failed to connect to the remote server : "
-                                + remoteStore.getKey());
-                    }
-                }
+    public boolean isExistingRole(final String roleName) throws UserStoreException {
+        return execute(new RemoteOperation<WSUserStoreManager, Boolean>() {
+            @Override
+            public Boolean execute(WSUserStoreManager remoteStore) throws UserStoreException {
+                return remoteStore.isExistingRole(roleName);
             }
-        }
-        return roleExists;
+        });
     }
 
     @Override
     public String[] getRoleNames() throws UserStoreException {
-
-        String[] roles = null;
-
-        try {
-            roles = remoteUserStore.getRoleNames();
-        } catch (UserStoreException e) {
-            if (!CONNECTION_REFUSED.equalsIgnoreCase(e.getMessage())) {
-                throw e;
+        return addDomainName(execute(new RemoteOperation<WSUserStoreManager, String[]>() {
+            @Override
+            public String[] execute(WSUserStoreManager remoteStore) throws UserStoreException {
+                return remoteStore.getRoleNames();
             }
-            synchronized (this) {
-                for (Iterator<Entry<String, WSUserStoreManager>> iterator = remoteServers
-                        .entrySet().iterator(); iterator.hasNext(); ) {
-                    Entry<String, WSUserStoreManager> remoteStore = iterator.next();
-                    try {
-                        roles = remoteStore.getValue().getRoleNames();
-                        remoteUserStore = remoteStore.getValue();
-                        break;
-                    } catch (UserStoreException ex) {
-                        if (!CONNECTION_REFUSED.equalsIgnoreCase(e.getMessage())) {
-
-                            if(log.isDebugEnabled()){
-
-                                log.debug(REMOTE_ERROR_MSG,ex);
-
-                            }
-
-                            throw e;
-                        }
-                        log.error("Failed to connect to the remote server : "
-                                + remoteStore.getKey());
-                    }
-                }
-            }
-        }
-
-        if (roles != null) {
-            for (int i = 0; i < roles.length; i++) {
-                roles[i] = domainName + "/" + roles[i];
-            }
-        } else {
-            roles = new String[0];
-        }
-
-        return roles;
+        }));
     }
 
     @Override
-    public String[] getRoleNames(boolean noHybridRoles) throws UserStoreException {
-        String[] roles = null;
-
-        try {
-            roles = remoteUserStore.getRoleNames(noHybridRoles);
-        } catch (UserStoreException e) {
-            if (!CONNECTION_REFUSED.equalsIgnoreCase(e.getMessage())) {
-                throw e;
-            }
-            synchronized (this) {
-                for (Iterator<Entry<String, WSUserStoreManager>> iterator = remoteServers
-                        .entrySet().iterator(); iterator.hasNext(); ) {
-                    Entry<String, WSUserStoreManager> remoteStore = iterator.next();
-                    try {
-                        roles = remoteStore.getValue().getRoleNames(noHybridRoles);
-                        remoteUserStore = remoteStore.getValue();
-                        break;
-                    } catch (UserStoreException ex) {
-                        if (!CONNECTION_REFUSED.equalsIgnoreCase(e.getMessage())) {
-
-                            if(log.isDebugEnabled()){
-
-                                log.debug(REMOTE_ERROR_MSG,ex);
-
-                            }
-                            throw e;
-                        }
-                        log.error("Failed to connect to the remote server : "
-                                + remoteStore.getKey());
-                    }
-                }
-            }
-        }
-        if (roles != null) {
-            for (int i = 0; i < roles.length; i++) {
-                roles[i] = domainName + "/" + roles[i];
+    public String[] getRoleNames(final boolean noHybridRoles) throws UserStoreException {
+        return addDomainName(execute(new RemoteOperation<WSUserStoreManager, String[]>() {
+            @Override
+            public String[] execute(WSUserStoreManager remoteStore) throws UserStoreException {
+                return remoteStore.getRoleNames(noHybridRoles);
             }
-        } else {
-            roles = new String[0];
-        }
-
-        return roles;
+        }));
     }
 
     @Override
-    public String[] getProfileNames(String userName) throws UserStoreException {
-
-        String[] profileNames = new String[0];
-
-        try {
-            profileNames = remoteUserStore.getProfileNames(userName);
-        } catch (UserStoreException e) {
-            if (!CONNECTION_REFUSED.equalsIgnoreCase(e.getMessage())) {
-                throw e;
-            }
-            synchronized (this) {
-                for (Iterator<Entry<String, WSUserStoreManager>> iterator = remoteServers
-                        .entrySet().iterator(); iterator.hasNext(); ) {
-                    Entry<String, WSUserStoreManager> remoteStore = iterator.next();
-                    try {
-                        profileNames = remoteStore.getValue().getRoleListOfUser(userName);
-                        remoteUserStore = remoteStore.getValue();
-                        break;
-                    } catch (UserStoreException ex) {
-                        if (!CONNECTION_REFUSED.equalsIgnoreCase(e.getMessage())) {
-
-                            if(log.isDebugEnabled()){
-
-                                log.debug(REMOTE_ERROR_MSG,ex);
-
-                            }
-
-                            throw e;
-                        }
-                        log.error("Failed to connect to the remote server : "
-                                + remoteStore.getKey());
-                    }
-                }
+    public String[] getProfileNames(final String userName) throws UserStoreException {
+        return execute(new RemoteOperation<WSUserStoreManager, String[]>() {
+            @Override
+            public String[] execute(WSUserStoreManager remoteStore) throws UserStoreException {
+                return remoteStore.getProfileNames(userName);
             }
-        }
-        return profileNames;
+        });
     }
 
     @Override
-    public String[] getRoleListOfUser(String userName) throws UserStoreException {
-        String[] roles = null;
-
-        try {
-            roles = remoteUserStore.getRoleListOfUser(userName);
-        } catch (UserStoreException e) {
-            if (!CONNECTION_REFUSED.equalsIgnoreCase(e.getMessage())) {
-                throw e;
-            }
-            synchronized (this) {
-                for (Iterator<Entry<String, WSUserStoreManager>> iterator = remoteServers
-                        .entrySet().iterator(); iterator.hasNext(); ) {
-                    Entry<String, WSUserStoreManager> remoteStore = iterator.next();
-                    try {
-                        roles = remoteStore.getValue().getRoleListOfUser(userName);
-                        remoteUserStore = remoteStore.getValue();
-                        break;
-                    } catch (UserStoreException ex) {
-                        if (!CONNECTION_REFUSED.equalsIgnoreCase(e.getMessage())) {
-
-                            if(log.isDebugEnabled()){
-
-                                log.debug(REMOTE_ERROR_MSG,ex);
-
-                            }
-
-                            throw e;
-                        }
-                        log.error("Failed to connect to the remote server : "
-                                + remoteStore.getKey());
-                    }
-                }
-            }
-        }
-        if (roles != null) {
-            for (int i = 0; i < roles.length; i++) {
-                roles[i] = domainName + "/" + roles[i];
+    public String[] getRoleListOfUser(final String userName) throws UserStoreException {
+        return addDomainName(execute(new RemoteOperation<WSUserStoreManager, String[]>() {
+            @Override
+            public String[] execute(WSUserStoreManager remoteStore) throws UserStoreException {
+                return remoteStore.getRoleListOfUser(userName);
             }
-        } else {
-            roles = new String[0];
-        }
-        return roles;
+        }));
     }
 
     @Override
-    public String[] getUserListOfRole(String roleName) throws UserStoreException {
-        String[] users = null;
-
-        try {
-            users = remoteUserStore.getUserListOfRole(roleName);
-        } catch (UserStoreException e) {
-            if (!CONNECTION_REFUSED.equalsIgnoreCase(e.getMessage())) {
-                throw e;
-            }
-            synchronized (this) {
-                for (Iterator<Entry<String, WSUserStoreManager>> iterator = remoteServers
-                        .entrySet().iterator(); iterator.hasNext(); ) {
-                    Entry<String, WSUserStoreManager> remoteStore = iterator.next();
-                    try {
-                        users = remoteStore.getValue().getUserListOfRole(roleName);
-                        remoteUserStore = remoteStore.getValue();
-                        break;
-                    } catch (UserStoreException ex) {
-                        if (!CONNECTION_REFUSED.equalsIgnoreCase(e.getMessage())) {
-
-                            if(log.isDebugEnabled()){
-
-                                log.debug(REMOTE_ERROR_MSG,ex);
-
-                            }
-
-                            throw e;
-                        }
-                        log.error("Failed to connect to the remote server : "
-                                + remoteStore.getKey());
-                    }
-                }
-            }
-        }
-
-        if (users != null) {
-            for (int i = 0; i < users.length; i++) {
-                users[i] = domainName + "/" + users[i];
+    public String[] getUserListOfRole(final String roleName) throws UserStoreException {
+        return addDomainName(execute(new RemoteOperation<WSUserStoreManager, String[]>() {
+            @Override
+            public String[] execute(WSUserStoreManager remoteStore) throws UserStoreException {
+                return remoteStore.getUserListOfRole(roleName);
             }
-        } else {
-            users = new String[0];
-        }
-
-        return users;
+        }));
     }
 
     @Override
-    public String getUserClaimValue(String userName, String claim, String profileName)
+    public String getUserClaimValue(final String userName, final String claim, final String profileName)
             throws UserStoreException {
-        String claimValue = null;
-        try {
-            claimValue = remoteUserStore.getUserClaimValue(userName, claim, profileName);
-        } catch (UserStoreException e) {
-            if (!CONNECTION_REFUSED.equalsIgnoreCase(e.getMessage())) {
-                throw e;
-            }
-            synchronized (this) {
-                for (Iterator<Entry<String, WSUserStoreManager>> iterator = remoteServers
-                        .entrySet().iterator(); iterator.hasNext(); ) {
-                    Entry<String, WSUserStoreManager> remoteStore = iterator.next();
-                    try {
-                        claimValue = remoteStore.getValue().getUserClaimValue(userName, claim,
-                                profileName);
-                        remoteUserStore = remoteStore.getValue();
-                        break;
-                    } catch (UserStoreException ex) {
-                        if (!CONNECTION_REFUSED.equalsIgnoreCase(e.getMessage())) {
-
-                            if(log.isDebugEnabled()){
-
-                                log.debug(REMOTE_ERROR_MSG,ex);
-
-                            }
-
-                            throw e;
-                        }
-                        log.error("Failed to connect to the remote server : "
-                                + remoteStore.getKey());
-                    }
-                }
+        return execute(new RemoteOperation<WSUserStoreManager, String>() {
+            @Override
+            public String execute(WSUserStoreManager remoteStore) throws UserStoreException {
+                return remoteStore.getUserClaimValue(userName, claim, profileName);
             }
-        }
-        return claimValue;
+        });
     }
 
     @Override
-    public Map<String, String> getUserClaimValues(String userName, String[] claims,
-                                                  String profileName) throws UserStoreException {
-        Map<String, String> claimValue = new HashMap<String, String>();
-
-        try {
-            claimValue = remoteUserStore.getUserClaimValues(userName, claims, profileName);
-        } catch (UserStoreException e) {
-            if (!CONNECTION_REFUSED.equalsIgnoreCase(e.getMessage())) {
-                throw e;
+    public Map<String, String> getUserClaimValues(final String userName, final String[] claims,
+                                                  final String profileName) throws UserStoreException {
+        return execute(new RemoteOperation<WSUserStoreManager, Map<String, String>>() {
+            @Override
+            public Map<String, String> execute(WSUserStoreManager remoteStore) throws UserStoreException {
+                return remoteStore.getUserClaimValues(userName, claims, profileName);
             }
-            synchronized (this) {
-                for (Iterator<Entry<String, WSUserStoreManager>> iterator = remoteServers
-                        .entrySet().iterator(); iterator.hasNext(); ) {
-                    Entry<String, WSUserStoreManager> remoteStore = iterator.next();
-                    try {
-                        claimValue = remoteStore.getValue().getUserClaimValues(userName, claims,
-                                profileName);
-                        remoteUserStore = remoteStore.getValue();
-                        break;
-                    } catch (UserStoreException ex) {
-                        if (!CONNECTION_REFUSED.equalsIgnoreCase(e.getMessage())) {
-
-                            if(log.isDebugEnabled()){
-
-                                log.debug(REMOTE_ERROR_MSG,ex);
-
-                            }
-
-                            throw e;
-                        }
-                        log.error("Failed to connect to the remote server : "
-                                + remoteStore.getKey());
-                    }
-                }
-            }
-        }
-        return claimValue;
+        });
     }
 
-    /**
-     *
-     */
     @Override
-    public Claim[] getUserClaimValues(String userName, String profileName)
-            throws UserStoreException {
-        Claim[] claim = new Claim[0];
-        try {
-            claim = remoteUserStore.getUserClaimValues(userName, profileName);
-        } catch (UserStoreException e) {
-            if (!CONNECTION_REFUSED.equalsIgnoreCase(e.getMessage())) {
-                throw e;
-            }
-            synchronized (this) {
-                for (Iterator<Entry<String, WSUserStoreManager>> iterator = remoteServers
-                        .entrySet().iterator(); iterator.hasNext(); ) {
-                    Entry<String, WSUserStoreManager> remoteStore = iterator.next();
-                    try {
-                        claim = remoteStore.getValue().getUserClaimValues(userName, profileName);
-                        remoteUserStore = remoteStore.getValue();
-                        break;
-                    } catch (UserStoreException ex) {
-                        if (!CONNECTION_REFUSED.equalsIgnoreCase(e.getMessage())) {
-
-                            if(log.isDebugEnabled()){
-
-                                log.debug(REMOTE_ERROR_MSG,ex);
-
-                            }
-
-                            throw e;
-                        }
-                        log.error("Failed to connect to the remote server : "
-                                + remoteStore.getKey());
-                    }
-                }
+    public Claim[] getUserClaimValues(final String userName, final String profileName) throws UserStoreException {
+        return execute(new RemoteOperation<WSUserStoreManager, Claim[]>() {
+            @Override
+            public Claim[] execute(WSUserStoreManager remoteStore) throws UserStoreException {
+                return remoteStore.getUserClaimValues(userName, profileName);
             }
-        }
-        return claim;
+        });
     }
 
-    /**
-     *
-     */
     @Override
     public String[] getAllProfileNames() throws UserStoreException {
-        String[] profileNames = new String[0];
-        try {
-            profileNames = remoteUserStore.getAllProfileNames();
-        } catch (UserStoreException e) {
-            if (!CONNECTION_REFUSED.equalsIgnoreCase(e.getMessage())) {
-                throw e;
-            }
-            synchronized (this) {
-                for (Iterator<Entry<String, WSUserStoreManager>> iterator = remoteServers
-                        .entrySet().iterator(); iterator.hasNext(); ) {
-                    Entry<String, WSUserStoreManager> remoteStore = iterator.next();
-                    try {
-                        profileNames = remoteStore.getValue().getAllProfileNames();
-                        remoteUserStore = remoteStore.getValue();
-                        break;
-                    } catch (UserStoreException ex) {
-                        if (!CONNECTION_REFUSED.equalsIgnoreCase(e.getMessage())) {
-
-                            if(log.isDebugEnabled()){
-
-                                log.debug(REMOTE_ERROR_MSG,ex);
-
-                            }
-
-                            throw e;
-                        }
-                        log.error("Failed to connect to the remote server : "
-                                + remoteStore.getKey());
-                    }
-                }
+        return execute(new RemoteOperation<WSUserStoreManager, String[]>() {
+            @Override
+            public String[] execute(WSUserStoreManager remoteStore) throws UserStoreException {
+                return remoteStore.getAllProfileNames();
             }
-        }
-        return profileNames;
+        });
     }
 
     @Override
     public boolean isReadOnly() throws UserStoreException {
-        boolean readOnly = false;
-        try {
-            readOnly = remoteUserStore.isReadOnly();
-        } catch (UserStoreException e) {
-            if (!CONNECTION_REFUSED.equalsIgnoreCase(e.getMessage())) {
-                throw e;
+        return execute(new RemoteOperation<WSUserStoreManager, Boolean>() {
+            @Override
+            public Boolean execute(WSUserStoreManager remoteStore) throws UserStoreException {
+                return remoteStore.isReadOnly();
             }
-            synchronized (this) {
-                for (Iterator<Entry<String, WSUserStoreManager>> iterator = remoteServers
-                        .entrySet().iterator(); iterator.hasNext(); ) {
-                    Entry<String, WSUserStoreManager> remoteStore = iterator.next();
-                    try {
-                        readOnly = remoteStore.getValue().isReadOnly();
-                        remoteUserStore = remoteStore.getValue();
-                        break;
-                    } catch (UserStoreException ex) {
-                        if (!CONNECTION_REFUSED.equalsIgnoreCase(e.getMessage())) {
-
-                            if(log.isDebugEnabled()){
-
-                                log.debug(REMOTE_ERROR_MSG,ex);
-
-                            }
-
-                            throw e;
-                        }
-                        log.error("Failed to connect to the remote server : "
-                                + remoteStore.getKey());
-                    }
-                }
-            }
-        }
-        return readOnly;
+        });
     }
 
     @Override
-    public void addUser(String userName, Object credential, String[] roleList,
-                        Map<String, String> claims, String profileName) throws UserStoreException {
-
-        for (Iterator<Entry<String, WSUserStoreManager>> iterator = remoteServers.entrySet()
-                .iterator(); iterator.hasNext(); ) {
-            Entry<String, WSUserStoreManager> remoteStore = iterator.next();
-            try {
-                remoteStore.getValue().addUser(userName, credential, roleList, claims, profileName);
-            } catch (UserStoreException e) {
-                if (!CONNECTION_REFUSED.equalsIgnoreCase(e.getMessage())) {
-
-
-                    throw e;
-                }
-                log.error("Failed to connect to the remote server : " + remoteStore.getKey());
+    public void addUser(final String userName, final Object credential, final String[] roleList,
+                        final Map<String, String> claims, final String profileName) throws UserStoreException {
+        executeOnAll(new RemoteOperation<WSUserStoreManager, Void>() {
+            @Override
+            public Void execute(WSUserStoreManager remoteStore) throws UserStoreException {
+                remoteStore.addUser(userName, credential, roleList, claims, profileName);
+                return null;
             }
-        }
+        });
     }
 
     @Override
-    public void addUser(String userName, Object credential, String[] roleList,
-                        Map<String, String> claims, String profileName, boolean requirePasswordChange)
-            throws UserStoreException {
-        for (Iterator<Entry<String, WSUserStoreManager>> iterator = remoteServers.entrySet()
-                .iterator(); iterator.hasNext(); ) {
-            Entry<String, WSUserStoreManager> remoteStore = iterator.next();
-            try {
-                remoteStore.getValue().addUser(userName, credential, roleList, claims, profileName);
-            } catch (UserStoreException e) {
-                if (!CONNECTION_REFUSED.equalsIgnoreCase(e.getMessage())) {
-                    throw e;
-                }
-                log.error("Failed to connect to the remote server : " + remoteStore.getKey());
+    public void addUser(final String userName, final Object credential, final String[] roleList,
+                        final Map<String, String> claims, final String profileName,
+                        final boolean requirePasswordChange) throws UserStoreException {
+        executeOnAll(new RemoteOperation<WSUserStoreManager, Void>() {
+            @Override
+            public Void execute(WSUserStoreManager remoteStore) throws UserStoreException {
+                remoteStore.addUser(userName, credential, roleList, claims, profileName);
+                return null;
             }
-        }
+        });
     }
 
     @Override
-    public void updateCredential(String userName, Object newCredential, Object oldCredential)
+    public void updateCredential(final String userName, final Object newCredential, final Object oldCredential)
             throws UserStoreException {
-        for (Iterator<Entry<String, WSUserStoreManager>> iterator = remoteServers.entrySet()
-                .iterator(); iterator.hasNext(); ) {
-            Entry<String, WSUserStoreManager> remoteStore = iterator.next();
-            try {
-                remoteStore.getValue().updateCredential(userName, newCredential, oldCredential);
-            } catch (UserStoreException e) {
-                if (!CONNECTION_REFUSED.equalsIgnoreCase(e.getMessage())) {
-                    throw e;
-                }
-                log.error("Failed to connect to the remote server : " + remoteStore.getKey());
+        executeOnAll(new RemoteOperation<WSUserStoreManager, Void>() {
+            @Override
+            public Void execute(WSUserStoreManager remoteStore) throws UserStoreException {
+                remoteStore.updateCredential(userName, newCredential, oldCredential);
+                return null;
             }
-        }
+        });
     }
 
     @Override
-    public void updateCredentialByAdmin(String userName, Object newCredential)
-            throws UserStoreException {
-        for (Iterator<Entry<String, WSUserStoreManager>> iterator = remoteServers.entrySet()
-                .iterator(); iterator.hasNext(); ) {
-            Entry<String, WSUserStoreManager> remoteStore = iterator.next();
-            try {
-                remoteStore.getValue().updateCredentialByAdmin(userName, newCredential);
-            } catch (UserStoreException e) {
-                if (!CONNECTION_REFUSED.equalsIgnoreCase(e.getMessage())) {
-                    throw e;
-                }
-                log.error("Failed to connect to the remote server : " + remoteStore.getKey());
+    public void updateCredentialByAdmin(final String userName, final Object newCredential) throws UserStoreException {
+        executeOnAll(new RemoteOperation<WSUserStoreManager, Void>() {
+            @Override
+            public Void execute(WSUserStoreManager remoteStore) throws UserStoreException {
+                remoteStore.updateCredentialByAdmin(userName, newCredential);
+                return null;
             }
-        }
+        });
     }
 
     @Override
-    public void deleteUser(String userName) throws UserStoreException {
-
-        String domainAwareUserName = UserCoreUtil.removeDomainFromName(userName);
-
-        for (Iterator<Entry<String, WSUserStoreManager>> iterator = remoteServers.entrySet()
-                .iterator(); iterator.hasNext(); ) {
-            Entry<String, WSUserStoreManager> remoteStore = iterator.next();
-            try {
-                remoteStore.getValue().deleteUser(domainAwareUserName);
-            } catch (UserStoreException e) {
-                if (!CONNECTION_REFUSED.equalsIgnoreCase(e.getMessage())) {
-                    throw e;
-                }
-                log.error("Failed to connect to the remote server : " + remoteStore.getKey());
+    public void deleteUser(final String userName) throws UserStoreException {
+
+        final String domainAwareUserName = UserCoreUtil.removeDomainFromName(userName);
+
+        executeOnAll(new RemoteOperation<WSUserStoreManager, Void>() {
+            @Override
+            public Void execute(WSUserStoreManager remoteStore) throws UserStoreException {
+                remoteStore.deleteUser(domainAwareUserName);
+                return null;
             }
-        }
+        });
     }
 
     @Override
-    public void deleteRole(String roleName) throws UserStoreException {
-
-        String domainAwareRoleName = UserCoreUtil.removeDomainFromName(roleName);
-
-        for (Iterator<Entry<String, WSUserStoreManager>> iterator = remoteServers.entrySet()
-                .iterator(); iterator.hasNext(); ) {
-            Entry<String, WSUserStoreManager> remoteStore = iterator.next();
-            try {
-                remoteStore.getValue().deleteRole(domainAwareRoleName);
-            } catch (UserStoreException e) {
-                if (!CONNECTION_REFUSED.equalsIgnoreCase(e.getMessage())) {
-                    throw e;
-                }
-                log.error("Failed to connect to the remote server : " + remoteStore.getKey());
+    public void deleteRole(final String roleName) throws UserStoreException {
+
+        final String domainAwareRoleName = UserCoreUtil.removeDomainFromName(roleName);
+
+        executeOnAll(new RemoteOperation<WSUserStoreManager, Void>() {
+            @Override
+            public Void execute(WSUserStoreManager remoteStore) throws UserStoreException {
+                remoteStore.deleteRole(domainAwareRoleName);
+                return null;
             }
-        }
+        });
     }
 
     @Override
-    public void updateUserListOfRole(String roleName, String[] deletedUsers, String[] newUsers)
+    public void updateUserListOfRole(final String roleName, final String[] deletedUsers, final String[] newUsers)
             throws UserStoreException {
-        for (Iterator<Entry<String, WSUserStoreManager>> iterator = remoteServers.entrySet()
-                .iterator(); iterator.hasNext(); ) {
-            Entry<String, WSUserStoreManager> remoteStore = iterator.next();
-            try {
-                remoteStore.getValue().updateUserListOfRole(roleName, deletedUsers, newUsers);
-            } catch (UserStoreException e) {
-                if (!CONNECTION_REFUSED.equalsIgnoreCase(e.getMessage())) {
-                    throw e;
-                }
-                log.error("Failed to connect to the remote server : " + remoteStore.getKey());
+        executeOnAll(new RemoteOperation<WSUserStoreManager, Void>() {
+            @Override
+            public Void execute(WSUserStoreManager remoteStore) throws UserStoreException {
+                remoteStore.updateUserListOfRole(roleName, deletedUsers, newUsers);
+                return null;
             }
-        }
+        });
     }
 
     @Override
-    public void updateRoleListOfUser(String userName, String[] deletedRoles, String[] newRoles)
+    public void updateRoleListOfUser(final String userName, final String[] deletedRoles, final String[] newRoles)
             throws UserStoreException {
-        for (Iterator<Entry<String, WSUserStoreManager>> iterator = remoteServers.entrySet()
-                .iterator(); iterator.hasNext(); ) {
-            Entry<String, WSUserStoreManager> remoteStore = iterator.next();
-            try {
-                remoteStore.getValue().updateRoleListOfUser(userName, deletedRoles, newRoles);
-            } catch (UserStoreException e) {
-                if (!CONNECTION_REFUSED.equalsIgnoreCase(e.getMessage())) {
-                    throw e;
-                }
-                log.error("Failed to connect to the remote server : " + remoteStore.getKey());
+        executeOnAll(new RemoteOperation<WSUserStoreManager, Void>() {
+            @Override
+            public Void execute(WSUserStoreManager remoteStore) throws UserStoreException {
+                remoteStore.updateRoleListOfUser(userName, deletedRoles, newRoles);
+                return null;
             }
-        }
+        });
     }
 
     @Override
-    public void setUserClaimValue(String userName, String claimURI, String claimValue,
-                                  String profileName) throws UserStoreException {
-        for (Iterator<Entry<String, WSUserStoreManager>> iterator = remoteServers.entrySet()
-                .iterator(); iterator.hasNext(); ) {
-            Entry<String, WSUserStoreManager> remoteStore = iterator.next();
-            try {
-                remoteStore.getValue().setUserClaimValue(userName, claimURI, claimValue,
-                        profileName);
-            } catch (UserStoreException e) {
-                if (!CONNECTION_REFUSED.equalsIgnoreCase(e.getMessage())) {
-                    throw e;
-                }
-                log.error("Failed to connect to the remote server : " + remoteStore.getKey());
+    public void setUserClaimValue(final String userName, final String claimURI, final String claimValue,
+                                  final String profileName) throws UserStoreException {
+        executeOnAll(new RemoteOperation<WSUserStoreManager, Void>() {
+            @Override
+            public Void execute(WSUserStoreManager remoteStore) throws UserStoreException {
+                remoteStore.setUserClaimValue(userName, claimURI, claimValue, profileName);
+                return null;
             }
-        }
+        });
     }
 
     @Override
-    public void setUserClaimValues(String userName, Map<String, String> claims, String profileName)
-            throws UserStoreException {
-        for (Iterator<Entry<String, WSUserStoreManager>> iterator = remoteServers.entrySet()
-                .iterator(); iterator.hasNext(); ) {
-            Entry<String, WSUserStoreManager> remoteStore = iterator.next();
-            try {
-                remoteStore.getValue().setUserClaimValues(userName, claims, profileName);
-            } catch (UserStoreException e) {
-                if (!CONNECTION_REFUSED.equalsIgnoreCase(e.getMessage())) {
-                    throw e;
-                }
-                log.error("Failed to connect to the remote server : " + remoteStore.getKey());
+    public void setUserClaimValues(final String userName, final Map<String, String> claims,
+                                   final String profileName) throws UserStoreException {
+        executeOnAll(new RemoteOperation<WSUserStoreManager, Void>() {
+            @Override
+            public Void execute(WSUserStoreManager remoteStore) throws UserStoreException {
+                remoteStore.setUserClaimValues(userName, claims, profileName);
+                return null;
             }
-        }
+        });
     }
 
     @Override
-    public void deleteUserClaimValue(String userName, String claimURI, String profileName)
+    public void deleteUserClaimValue(final String userName, final String claimURI, final String profileName)
             throws UserStoreException {
-        for (Iterator<Entry<String, WSUserStoreManager>> iterator = remoteServers.entrySet()
-                .iterator(); iterator.hasNext(); ) {
-            Entry<String, WSUserStoreManager> remoteStore = iterator.next();
-            try {
-                remoteStore.getValue().deleteUserClaimValue(userName, claimURI, profileName);
-            } catch (UserStoreException e) {
-                if (!CONNECTION_REFUSED.equalsIgnoreCase(e.getMessage())) {
-                    throw e;
-                }
-                log.error("Failed to connect to the remote server : " + remoteStore.getKey());
+        executeOnAll(new RemoteOperation<WSUserStoreManager, Void>() {
+            @Override
+            public Void execute(WSUserStoreManager remoteStore) throws UserStoreException {
+                remoteStore.deleteUserClaimValue(userName, claimURI, profileName);
+                return null;
             }
-        }
+        });
     }
 
     @Override
-    public void deleteUserClaimValues(String userName, String[] claims, String profileName)
+    public void deleteUserClaimValues(final String userName, final String[] claims, final String profileName)
             throws UserStoreException {
-        for (Iterator<Entry<String, WSUserStoreManager>> iterator = remoteServers.entrySet()
-                .iterator(); iterator.hasNext(); ) {
-            Entry<String, WSUserStoreManager> remoteStore = iterator.next();
-            try {
-                remoteStore.getValue().deleteUserClaimValues(userName, claims, profileName);
-            } catch (UserStoreException e) {
-                if (!CONNECTION_REFUSED.equalsIgnoreCase(e.getMessage())) {
-                    throw e;
-                }
-                log.error("Failed to connect to the remote server : " + remoteStore.getKey());
+        executeOnAll(new RemoteOperation<WSUserStoreManager, Void>() {
+            @Override
+            public Void execute(WSUserStoreManager remoteStore) throws UserStoreException {
+                remoteStore.deleteUserClaimValues(userName, claims, profileName);
+                return null;
             }
-        }
+        });
     }
 
     @Override
     public String[] getHybridRoles() throws UserStoreException {
-        String[] roles = new String[0];
-        try {
-            roles = remoteUserStore.getHybridRoles();
-        } catch (UserStoreException e) {
-            if (!CONNECTION_REFUSED.equalsIgnoreCase(e.getMessage())) {
-                throw e;
-            }
-            synchronized (this) {
-                for (Iterator<Entry<String, WSUserStoreManager>> iterator = remoteServers
-                        .entrySet().iterator(); iterator.hasNext(); ) {
-                    Entry<String, WSUserStoreManager> remoteStore = iterator.next();
-                    try {
-                        roles = remoteStore.getValue().getHybridRoles();
-                        remoteUserStore = remoteStore.getValue();
-                        break;
-                    } catch (UserStoreException ex) {
-                        if (!CONNECTION_REFUSED.equalsIgnoreCase(e.getMessage())) {
-
-                            if(log.isDebugEnabled()){
-
-                                log.debug(REMOTE_ERROR_MSG,ex);
-
-                            }
-
-                            throw e;
-                        }
-                        log.error("Failed to connect to the remote server : "
-                                + remoteStore.getKey());
-                    }
-                }
-            }
-        }
-
-        if (roles != null) {
-            for (int i = 0; i < roles.length; i++) {
-                roles[i] = domainName + "/" + roles[i];
+        return addDomainName(execute(new RemoteOperation<WSUserStoreManager, String[]>() {
+            @Override
+            public String[] execute(WSUserStoreManager remoteStore) throws UserStoreException {
+                return remoteStore.getHybridRoles();
             }
-        } else {
-            return new String[0];
-        }
-        return roles;
+        }));
     }
 
     @Override
     public String[] getAllSecondaryRoles() throws UserStoreException {
-        String[] roles = new String[0];
-
-        try {
-            roles = remoteUserStore.getAllSecondaryRoles();
-        } catch (UserStoreException e) {
-            if (!CONNECTION_REFUSED.equalsIgnoreCase(e.getMessage())) {
-                throw e;
-            }
-            synchronized (this) {
-                for (Iterator<Entry<String, WSUserStoreManager>> iterator = remoteServers
-                        .entrySet().iterator(); iterator.hasNext(); ) {
-                    Entry<String, WSUserStoreManager> remoteStore = iterator.next();
-                    try {
-                        roles = remoteStore.getValue().getAllSecondaryRoles();
-                        remoteUserStore = remoteStore.getValue();
-                        break;
-                    } catch (UserStoreException ex) {
-                        if (!CONNECTION_REFUSED.equalsIgnoreCase(e.getMessage())) {
-
-                            if(log.isDebugEnabled()){
-
-                                log.debug(REMOTE_ERROR_MSG,ex);
-
-                            }
-
-                            throw e;
-                        }
-                        log.error("Failed to connect to the remote server : "
-                                + remoteStore.getKey());
-                    }
-                }
-            }
-        }
-        if (roles != null) {
-            for (int i = 0; i < roles.length; i++) {
-                roles[i] = domainName + "/" + roles[i];
+        return addDomainName(execute(new RemoteOperation<WSUserStoreManager, String[]>() {
+            @Override
+            public String[] execute(WSUserStoreManager remoteStore) throws UserStoreException {
+                return remoteStore.getAllSecondaryRoles();
             }
-        } else {
-            return new String[0];
-        }
-        return roles;
+        }));
     }
 
     @Override
-    public Date getPasswordExpirationTime(String username) throws UserStoreException {
-        Date date = null;
-        try {
-            date = remoteUserStore.getPasswordExpirationTime(username);
-        } catch (UserStoreException e) {
-            if (!CONNECTION_REFUSED.equalsIgnoreCase(e.getMessage())) {
-                throw e;
+    public Date getPasswordExpirationTime(final String username) throws UserStoreException {
+        return execute(new RemoteOperation<WSUserStoreManager, Date>() {
+            @Override
+            public Date execute(WSUserStoreManager remoteStore) throws UserStoreException {
+                return remoteStore.getPasswordExpirationTime(username);
             }
-            synchronized (this) {
-                for (Iterator<Entry<String, WSUserStoreManager>> iterator = remoteServers
-                        .entrySet().iterator(); iterator.hasNext(); ) {
-                    Entry<String, WSUserStoreManager> remoteStore = iterator.next();
-                    try {
-                        date = remoteStore.getValue().getPasswordExpirationTime(username);
-                        remoteUserStore = remoteStore.getValue();
-                        break;
-                    } catch (UserStoreException ex) {
-                        if (!CONNECTION_REFUSED.equalsIgnoreCase(e.getMessage())) {
-
-                            if(log.isDebugEnabled()){
-
-                                log.debug(REMOTE_ERROR_MSG,ex);
-
-                            }
-
-                            throw e;
-                        }
-                        log.error("Failed to connect to the remote server : "
-                                + remoteStore.getKey());
-                    }
-                }
-            }
-        }
-        return date;
+        });
     }
 
     @Override
-    public int getUserId(String username) throws UserStoreException {
-        int userId = -1;
-        try {
-            userId = remoteUserStore.getUserId(username);
-        } catch (UserStoreException e) {
-            if (!CONNECTION_REFUSED.equalsIgnoreCase(e.getMessage())) {
-                throw e;
-            }
-            synchronized (this) {
-                for (Iterator<Entry<String, WSUserStoreManager>> iterator = remoteServers
-                        .entrySet().iterator(); iterator.hasNext(); ) {
-                    Entry<String, WSUserStoreManager> remoteStore = iterator.next();
-                    try {
-                        userId = remoteStore.getValue().getUserId(username);
-                        remoteUserStore = remoteStore.getValue();
-                        break;
-                    } catch (UserStoreException ex) {
-                        if (!CONNECTION_REFUSED.equalsIgnoreCase(e.getMessage())) {
-
-                            if(log.isDebugEnabled()){
-
-                                log.debug(REMOTE_ERROR_MSG,ex);
-
-                            }
-
-                            throw e;
-                        }
-                        log.error("Failed to connect to the remote server : "
-                                + remoteStore.getKey());
-                    }
-                }
+    public int getUserId(final String username) throws UserStoreException {
+        return execute(new RemoteOperation<WSUserStoreManager, Integer>() {
+            @Override
+            public Integer execute(WSUserStoreManager remoteStore) throws UserStoreException {
+                return remoteStore.getUserId(username);
             }
-        }
-        return userId;
+        });
     }
 
     @Override
-    public int getTenantId(String username) throws UserStoreException {
-        int tenantId = -1;
-        try {
-            tenantId = remoteUserStore.getTenantId(username);
-        } catch (UserStoreException e) {
-            if (!CONNECTION_REFUSED.equalsIgnoreCase(e.getMessage())) {
-                throw e;
-            }
-            synchronized (this) {
-                for (Iterator<Entry<String, WSUserStoreManager>> iterator = remoteServers
-                        .entrySet().iterator(); iterator.hasNext(); ) {
-                    Entry<String, WSUserStoreManager> remoteStore = iterator.next();
-                    try {
-                        tenantId = remoteStore.getValue().getTenantId(username);
-                        remoteUserStore = remoteStore.getValue();
-                        break;
-                    } catch (UserStoreException ex) {
-                        if (!CONNECTION_REFUSED.equalsIgnoreCase(e.getMessage())) {
-
-                            if(log.isDebugEnabled()){
-
-                                log.debug(REMOTE_ERROR_MSG,ex);
-
-                            }
-
-                            throw e;
-                        }
-                        log.error("Failed to connect to the remote server : "
-                                + remoteStore.getKey());
-                    }
-                }
+    public int getTenantId(final String username) throws UserStoreException {
+        return execute(new RemoteOperation<WSUserStoreManager, Integer>() {
+            @Override
+            public Integer execute(WSUserStoreManager remoteStore) throws UserStoreException {
+                return remoteStore.getTenantId(username);
             }
-        }
-        return tenantId;
+        });
     }
 
     @Override
     public int getTenantId() throws UserStoreException {
-        int tenantId = -1;
-        try {
-            tenantId = remoteUserStore.getTenantId();
-        } catch (UserStoreException e) {
-            if (!CONNECTION_REFUSED.equalsIgnoreCase(e.getMessage())) {
-                throw e;
+        return execute(new RemoteOperation<WSUserStoreManager, Integer>() {
+            @Override
+            public Integer execute(WSUserStoreManager remoteStore) throws UserStoreException {
+                return remoteStore.getTenantId();
             }
-            synchronized (this) {
-                for (Iterator<Entry<String, WSUserStoreManager>> iterator = remoteServers
-                        .entrySet().iterator(); iterator.hasNext(); ) {
-                    Entry<String, WSUserStoreManager> remoteStore = iterator.next();
-                    try {
-                        tenantId = remoteStore.getValue().getTenantId();
-                        remoteUserStore = remoteStore.getValue();
-                        break;
-                    } catch (UserStoreException ex) {
-                        if (!CONNECTION_REFUSED.equalsIgnoreCase(e.getMessage())) {
-
-                            if(log.isDebugEnabled()){
-
-                                log.debug(REMOTE_ERROR_MSG,ex);
-
-                            }
-
-                            throw e;
-                        }
-                        log.error("Failed to connect to the remote server : "
-                                + remoteStore.getKey());
-                    }
-                }
-            }
-        }
-        return tenantId;
+        });
     }
 
     @Override
-    public Map<String, String> getProperties(Tenant tenant) throws UserStoreException {
-        Map<String, String> properties = new HashMap<String, String>();
-        try {
-            properties = remoteUserStore.getProperties(tenant);
-        } catch (UserStoreException e) {
-            if (!CONNECTION_REFUSED.equalsIgnoreCase(e.getMessage())) {
-                throw e;
-            }
-            synchronized (this) {
-                for (Iterator<Entry<String, WSUserStoreManager>> iterator = remoteServers
-                        .entrySet().iterator(); iterator.hasNext(); ) {
-                    Entry<String, WSUserStoreManager> remoteStore = iterator.next();
-                    try {
-                        properties = remoteStore.getValue().getProperties(tenant);
-                        remoteUserStore = remoteStore.getValue();
-                        break;
-                    } catch (UserStoreException ex) {
-                        if (!CONNECTION_REFUSED.equalsIgnoreCase(e.getMessage())) {
-
-                            if(log.isDebugEnabled()){
-
-                                log.debug(REMOTE_ERROR_MSG,ex);
-
-                            }
-
-                            throw e;
-                        }
-                        log.error("Failed to connect to the remote server : "
-                                + remoteStore.getKey());
-                    }
-                }
+    public Map<String, String> getProperties(final Tenant tenant) throws UserStoreException {
+        return execute(new RemoteOperation<WSUserStoreManager, Map<String, String>>() {
+            @Override
+            public Map<String, String> execute(WSUserStoreManager remoteStore) throws UserStoreException {
+                return remoteStore.getProperties(tenant);
             }
-        }
-        return properties;
+        });
     }
 
     @Override
-    public void updateRoleName(String roleName, String newRoleName) throws UserStoreException {
-        for (Iterator<Entry<String, WSUserStoreManager>> iterator = remoteServers.entrySet()
-                .iterator(); iterator.hasNext(); ) {
-            Entry<String, WSUserStoreManager> remoteStore = iterator.next();
-            try {
-                remoteStore.getValue().updateRoleName(roleName, newRoleName);
-            } catch (UserStoreException e) {
-                if (!CONNECTION_REFUSED.equalsIgnoreCase(e.getMessage())) {
-                    throw e;
-                }
-                log.error("Failed to connect to the remote server : " + remoteStore.getKey());
+    public void updateRoleName(final String roleName, final String newRoleName) throws UserStoreException {
+        executeOnAll(new RemoteOperation<WSUserStoreManager, Void>() {
+            @Override
+            public Void execute(WSUserStoreManager remoteStore) throws UserStoreException {
+                remoteStore.updateRoleName(roleName, newRoleName);
+                return null;
             }
-        }
+        });
     }
 
     @Override
@@ -1347,49 +674,14 @@ public class CarbonRemoteUserStoreManger implements UserStoreManager {
     }
 
     @Override
-    public String[] getUserList(String claim, String claimValue, String profileName)
+    public String[] getUserList(final String claim, final String claimValue, final String profileName)
             throws UserStoreException {
-        String[] users = new String[0];
-        try {
-            users = remoteUserStore.getUserList(claim, claimValue, profileName);
-        } catch (UserStoreException e) {
-            if (!CONNECTION_REFUSED.equalsIgnoreCase(e.getMessage())) {
-                throw e;
-            }
-            synchronized (this) {
-                for (Iterator<Entry<String, WSUserStoreManager>> iterator = remoteServers
-                        .entrySet().iterator(); iterator.hasNext(); ) {
-                    Entry<String, WSUserStoreManager> remoteStore = iterator.next();
-                    try {
-                        users = remoteStore.getValue().getUserList(claim, claimValue, profileName);
-                        remoteUserStore = remoteStore.getValue();
-                        break;
-                    } catch (UserStoreException ex) {
-                        if (!CONNECTION_REFUSED.equalsIgnoreCase(e.getMessage())) {
-
-                            if(log.isDebugEnabled()){
-
-                                log.debug(REMOTE_ERROR_MSG,ex);
-
-                            }
-
-                            throw e;
-                        }
-                        log.error("Failed to connect to the remote server : "
-                                + remoteStore.getKey());
-                    }
-                }
-            }
-        }
-
-        if (users != null) {
-            for (int i = 0; i < users.length; i++) {
-                users[i] = domainName + "/" + users[i];
+        return addDomainName(execute(new RemoteOperation<WSUserStoreManager, String[]>() {
+            @Override
+            public String[] execute(WSUserStoreManager remoteStore) throws UserStoreException {
+                return remoteStore.getUserList(claim, claimValue, profileName);
             }
-        } else {
-            return new String[0];
-        }
-        return users;
+        }));
     }
 
     @Override
@@ -1418,4 +710,40 @@ public class CarbonRemoteUserStoreManger implements UserStoreManager {
         return realmConfig;
     }
 
+    /**
+     * Executes a read operation on one of the remote servers
+     */
+    private <T> T execute(RemoteOperation<WSUserStoreManager, T> operation) throws UserStoreException {
+        try {
+            return remoteServers.execute(operation);
+        } catch (UserStoreException e) {
+            throw e;
+        } catch (org.wso2.carbon.user.api.UserStoreException e) {
+            throw new UserStoreException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Executes a write operation on all the remote servers
+     */
+    private void executeOnAll(RemoteOperation<WSUserStoreManager, ?> operation) throws UserStoreException {
+        try {
+            remoteServers.executeOnAll(operation);
+        } catch (UserStoreException e) {
+            throw e;
+        } catch (org.wso2.carbon.user.api.UserStoreException e) {
+            throw new UserStoreException(e.getMessage(), e);
+        }
+    }
+
+    private String[] addDomainName(String[] names) {
+        if (names == null) {
+            return new String[0];
+        }
+        for (int i = 0; i < names.length; i++) {
+            names[i] = domainName + "/" + names[i];
+        }
+        return names;
+    }
+
 }
@@ -0,0 +1,318 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.carbon.identity.user.store.remote;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.carbon.user.api.UserStoreException;
+
+import java.io.InterruptedIOException;
+import java.net.SocketException;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pool of remote servers which serve the same user store. Read operations are sent to the available
+ * server with the least number of operations in flight, taking servers in turn when several have the
+ * same number. A server is ejected from the pool after a number of consecutive connection failures and
+ * is probed in the background until it is reachable again, or until the pool is closed.
+ *
+ * @param <S> type of the client used to connect to a server
+ */
+public class RemoteServerPool<S> {
+
+    public static final String CONNECTION_REFUSED = "Connection refused";
+
+    private static final Log log = LogFactory.getLog(RemoteServerPool.class);
+
+    private static final ScheduledExecutorService healthChecker = Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "RemoteUserStoreHealthChecker");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+
+    private final List<RemoteServer<S>> servers;
+    private final RemoteOperation<S, ?> healthCheck;
+    private final int maxFailures;
+    private final long healthCheckInterval;
+    private final AtomicInteger nextServer = new AtomicInteger();
+    private volatile boolean closed;
+
+    /**
+     * @param servers             clients of the servers by server URL
+     * @param healthCheck         operation used to check whether an ejected server is reachable again
+     * @param maxFailures         number of consecutive connection failures after which a server is ejected
+     * @param healthCheckInterval interval in milliseconds between the checks of an ejected server
+     */
+    public RemoteServerPool(Map<String, S> servers, RemoteOperation<S, ?> healthCheck, int maxFailures,
+                            long healthCheckInterval) {
+
+        List<RemoteServer<S>> serverList = new ArrayList<RemoteServer<S>>();
+        for (Map.Entry<String, S> server : servers.entrySet()) {
+            serverList.add(new RemoteServer<S>(server.getKey(), server.getValue()));
+        }
+        this.servers = Collections.unmodifiableList(serverList);
+        this.healthCheck = healthCheck;
+        this.maxFailures = maxFailures;
+        this.healthCheckInterval = healthCheckInterval;
+    }
+
+    /**
+     * Executes a read operation on one of the servers. If the server can not be connected, the operation
+     * is retried on the other servers, preferring the ones which are not ejected.
+     *
+     * @param operation operation to execute
+     * @param <T>       type of the result
+     * @return result of the operation
+     * @throws UserStoreException if the operation fails, or if none of the servers can be connected
+     */
+    public <T> T execute(RemoteOperation<S, T> operation) throws UserStoreException {
+
+        List<RemoteServer<S>> tried = new ArrayList<RemoteServer<S>>();
+        UserStoreException connectionFailure = null;
+
+        RemoteServer<S> server;
+        while ((server = select(tried)) != null) {
+            tried.add(server);
+            server.inFlight.incrementAndGet();
+            try {
+                T result = operation.execute(server.client);
+                onSuccess(server);
+                return result;
+            } catch (UserStoreException e) {
+                if (!isConnectionFailure(e)) {
+                    onSuccess(server);
+                    throw e;
+                }
+                connectionFailure = e;
+                onFailure(server);
+                log.error("Failed to connect to the remote server : " + server.url);
+            } finally {
+                server.inFlight.decrementAndGet();
+            }
+        }
+
+        if (connectionFailure == null) {
+            throw new UserStoreException("No remote servers are configured");
+        }
+        throw connectionFailure;
+    }
+
+    /**
+     * Executes a write operation on every server, so that all of them are kept up to date. Servers that
+     * can not be connected are skipped.
+     *
+     * @param operation operation to execute
+     * @throws UserStoreException if the operation fails on a server
+     */
+    public void executeOnAll(RemoteOperation<S, ?> operation) throws UserStoreException {
+
+        for (RemoteServer<S> server : servers) {
+            server.inFlight.incrementAndGet();
+            try {
+                operation.execute(server.client);
+                onSuccess(server);
+            } catch (UserStoreException e) {
+                if (!isConnectionFailure(e)) {
+                    onSuccess(server);
+                    throw e;
+                }
+                onFailure(server);
+                log.error("Failed to update the remote server : " + server.url);
+            } finally {
+                server.inFlight.decrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Returns the servers of the pool and whether each of them is available
+     *
+     * @return availability of the servers by server URL
+     */
+    public Map<String, Boolean> getServerStatus() {
+
+        Map<String, Boolean> status = new LinkedHashMap<String, Boolean>();
+        for (RemoteServer<S> server : servers) {
+            status.put(server.url, server.available);
+        }
+        return status;
+    }
+
+    /**
+     * Stops checking the ejected servers. Operations can still be executed on the pool, but an ejected
+     * server is readmitted only when an operation on it succeeds.
+     */
+    public void close() {
+
+        closed = true;
+        for (RemoteServer<S> server : servers) {
+            ScheduledFuture<?> healthCheckFuture = server.healthCheckFuture;
+            if (healthCheckFuture != null) {
+                healthCheckFuture.cancel(false);
+            }
+        }
+    }
+
+    /**
+     * Checks whether the server could not be reached. The remote stubs wrap the I/O error of the
+     * transport, so the causes of the exception are checked for connection errors (refused, reset,
+     * unknown host) and for connect or read timeouts.
+     *
+     * @param e error of an operation
+     * @return true if the server could not be reached
+     */
+    protected boolean isConnectionFailure(UserStoreException e) {
+
+        if (CONNECTION_REFUSED.equalsIgnoreCase(e.getMessage())) {
+            return true;
+        }
+        for (Throwable cause = e.getCause(); cause != null && cause != cause.getCause(); cause = cause.getCause()) {
+            if (cause instanceof SocketException || cause instanceof UnknownHostException ||
+                cause instanceof InterruptedIOException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Selects the server with the least operations in flight, out of the available servers which are
+     * not tried yet. Servers are scanned starting from the next one in turn, so that the load is spread
+     * when the servers are equally busy. Ejected servers are selected only if no available server is left.
+     */
+    private RemoteServer<S> select(List<RemoteServer<S>> tried) {
+
+        int size = servers.size();
+        if (size == 0) {
+            return null;
+        }
+
+        int start = (nextServer.getAndIncrement() & Integer.MAX_VALUE) % size;
+        RemoteServer<S> selected = null;
+        RemoteServer<S> ejected = null;
+        for (int i = 0; i < size; i++) {
+            RemoteServer<S> server = servers.get((start + i) % size);
+            if (tried.contains(server)) {
+                continue;
+            }
+            if (!server.available) {
+                if (ejected == null) {
+                    ejected = server;
+                }
+            } else if (selected == null || server.inFlight.get() < selected.inFlight.get()) {
+                selected = server;
+            }
+        }
+        return selected != null ? selected : ejected;
+    }
+
+    private void onSuccess(RemoteServer<S> server) {
+
+        server.failures.set(0);
+        if (!server.available) {
+            server.available = true;
+            log.info("Remote server : " + server.url + " is available again");
+        }
+    }
+
+    private void onFailure(RemoteServer<S> server) {
+
+        if (server.failures.incrementAndGet() >= maxFailures && server.available) {
+            server.available = false;
+            log.warn("Remote server : " + server.url + " is ejected after " + maxFailures +
+                    " consecutive connection failures");
+            scheduleHealthCheck(server);
+        }
+    }
+
+    private void scheduleHealthCheck(final RemoteServer<S> server) {
+
+        if (closed || !server.healthCheckScheduled.compareAndSet(false, true)) {
+            return;
+        }
+        server.healthCheckFuture = healthChecker.schedule(new Runnable() {
+            @Override
+            public void run() {
+                server.healthCheckScheduled.set(false);
+                if (server.available || closed) {
+                    return;
+                }
+                try {
+                    healthCheck.execute(server.client);
+                    onSuccess(server);
+                } catch (UserStoreException e) {
+                    if (!isConnectionFailure(e)) {
+                        // the server responded, so it is reachable
+                        onSuccess(server);
+                        return;
+                    }
+                    if (log.isDebugEnabled()) {
+                        log.debug("Remote server : " + server.url + " is still not reachable");
+                    }
+                    scheduleHealthCheck(server);
+                } catch (RuntimeException e) {
+                    log.error("Error while checking the remote server : " + server.url, e);
+                    scheduleHealthCheck(server);
+                }
+            }
+        }, healthCheckInterval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Operation executed on a remote server
+     *
+     * @param <S> type of the client used to connect to the server
+     * @param <T> type of the result
+     */
+    public interface RemoteOperation<S, T> {
+
+        T execute(S server) throws UserStoreException;
+    }
+
+    private static class RemoteServer<S> {
+
+        private final String url;
+        private final S client;
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final AtomicInteger failures = new AtomicInteger();
+        private final AtomicBoolean healthCheckScheduled = new AtomicBoolean();
+        private volatile ScheduledFuture<?> healthCheckFuture;
+        private volatile boolean available = true;
+
+        private RemoteServer(String url, S client) {
+            this.url = url;
+            this.client = client;
+        }
+    }
+}
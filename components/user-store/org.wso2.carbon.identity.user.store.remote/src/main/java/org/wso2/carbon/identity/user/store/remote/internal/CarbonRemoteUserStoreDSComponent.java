@@ -50,6 +50,7 @@ public class CarbonRemoteUserStoreDSComponent {
     }
 
     protected void deactivate(ComponentContext ctxt) {
+        CarbonRemoteUserStoreManger.closeAll();
         if (log.isDebugEnabled()) {
             log.debug("Carbon Carbon Remote User Store is deactivated ");
         }
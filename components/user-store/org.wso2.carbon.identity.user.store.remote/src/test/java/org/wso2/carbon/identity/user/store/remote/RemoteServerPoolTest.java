@@ -0,0 +1,260 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.carbon.identity.user.store.remote;
+
+import junit.framework.TestCase;
+import org.apache.axis2.AxisFault;
+import org.wso2.carbon.identity.user.store.remote.RemoteServerPool.RemoteOperation;
+import org.wso2.carbon.user.api.UserStoreException;
+
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class RemoteServerPoolTest extends TestCase {
+
+    private static final int MAX_FAILURES = 2;
+    private static final long HEALTH_CHECK_INTERVAL = 50;
+    private static final long OPERATION_TIME = 200;
+
+    private static final RemoteOperation<StubServer, String> READ = new RemoteOperation<StubServer, String>() {
+        @Override
+        public String execute(StubServer server) throws UserStoreException {
+            return server.call();
+        }
+    };
+
+    private static final RemoteOperation<StubServer, Boolean> PROBE = new RemoteOperation<StubServer, Boolean>() {
+        @Override
+        public Boolean execute(StubServer server) throws UserStoreException {
+            return server.probe();
+        }
+    };
+
+    private StubServer first;
+    private StubServer second;
+    private RemoteServerPool<StubServer> pool;
+
+    public void setUp() throws Exception {
+        super.setUp();
+        first = new StubServer("first");
+        second = new StubServer("second");
+        Map<String, StubServer> servers = new LinkedHashMap<String, StubServer>();
+        servers.put(first.name, first);
+        servers.put(second.name, second);
+        pool = new RemoteServerPool<StubServer>(servers, PROBE, MAX_FAILURES, HEALTH_CHECK_INTERVAL);
+    }
+
+    public void tearDown() throws Exception {
+        pool.close();
+        super.tearDown();
+    }
+
+    public void testConcurrentReadsAreSpreadAcrossServers() throws Exception {
+
+        first.delay = OPERATION_TIME;
+        second.delay = OPERATION_TIME;
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Callable<String>> reads = new ArrayList<Callable<String>>();
+            for (int i = 0; i < threads; i++) {
+                reads.add(new Callable<String>() {
+                    @Override
+                    public String call() throws Exception {
+                        return pool.execute(READ);
+                    }
+                });
+            }
+            long start = System.currentTimeMillis();
+            for (Future<String> future : executor.invokeAll(reads)) {
+                future.get();
+            }
+            long elapsed = System.currentTimeMillis() - start;
+
+            assertTrue("reads should not be serialized, took " + elapsed + " ms",
+                    elapsed < threads * OPERATION_TIME / 2);
+            assertEquals(threads, first.calls.get() + second.calls.get());
+            assertTrue(first.calls.get() > 0);
+            assertTrue(second.calls.get() > 0);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    public void testReadFailsOverAndServerIsEjected() throws Exception {
+
+        first.down = true;
+        for (int i = 0; i < 10; i++) {
+            long start = System.currentTimeMillis();
+            assertEquals(second.name, pool.execute(READ));
+            assertTrue("failover should be immediate", System.currentTimeMillis() - start < OPERATION_TIME);
+        }
+        assertEquals("ejected server should not be used", MAX_FAILURES, first.calls.get());
+        assertFalse(pool.getServerStatus().get(first.name));
+        assertTrue(pool.getServerStatus().get(second.name));
+    }
+
+    public void testEjectedServerIsReadmittedAfterHealthCheck() throws Exception {
+
+        first.down = true;
+        for (int i = 0; i < 2 * MAX_FAILURES; i++) {
+            pool.execute(READ);
+        }
+        assertFalse(pool.getServerStatus().get(first.name));
+
+        first.down = false;
+        long deadline = System.currentTimeMillis() + 20 * HEALTH_CHECK_INTERVAL;
+        while (!pool.getServerStatus().get(first.name) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(HEALTH_CHECK_INTERVAL / 5);
+        }
+        assertTrue("server should be readmitted", pool.getServerStatus().get(first.name));
+
+        int calls = first.calls.get();
+        for (int i = 0; i < 4; i++) {
+            pool.execute(READ);
+        }
+        assertEquals(calls + 2, first.calls.get());
+    }
+
+    public void testReadFailsWhenAllServersAreDown() throws Exception {
+
+        first.down = true;
+        second.down = true;
+        try {
+            pool.execute(READ);
+            fail("Should expect connection failure");
+        } catch (UserStoreException e) {
+            assertEquals(RemoteServerPool.CONNECTION_REFUSED, e.getMessage());
+        }
+        assertEquals(1, first.calls.get());
+        assertEquals(1, second.calls.get());
+    }
+
+    public void testErrorOfServerIsNotRetried() throws Exception {
+
+        first.error = true;
+        second.error = true;
+        try {
+            pool.execute(READ);
+            fail("Should expect the error of the server");
+        } catch (UserStoreException e) {
+            assertEquals("error", e.getMessage());
+        }
+        assertEquals(1, first.calls.get() + second.calls.get());
+        assertTrue(pool.getServerStatus().get(first.name));
+        assertTrue(pool.getServerStatus().get(second.name));
+    }
+
+    public void testTimedOutServerIsEjected() throws Exception {
+
+        first.timeout = true;
+        for (int i = 0; i < 10; i++) {
+            assertEquals(second.name, pool.execute(READ));
+        }
+        assertEquals(MAX_FAILURES, first.calls.get());
+        assertFalse(pool.getServerStatus().get(first.name));
+    }
+
+    public void testHealthChecksStopWhenPoolIsClosed() throws Exception {
+
+        first.down = true;
+        for (int i = 0; i < MAX_FAILURES; i++) {
+            pool.execute(READ);
+        }
+        long deadline = System.currentTimeMillis() + 20 * HEALTH_CHECK_INTERVAL;
+        while (first.probes.get() < 2 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(HEALTH_CHECK_INTERVAL / 5);
+        }
+        assertTrue("ejected server should be checked", first.probes.get() >= 2);
+
+        pool.close();
+        // a check which is running while the pool is closed may still complete
+        Thread.sleep(HEALTH_CHECK_INTERVAL);
+        int probes = first.probes.get();
+        Thread.sleep(5 * HEALTH_CHECK_INTERVAL);
+        assertEquals("closed pool should not check the servers", probes, first.probes.get());
+        assertFalse(pool.getServerStatus().get(first.name));
+    }
+
+    public void testWriteIsSentToAllServers() throws Exception {
+
+        first.down = true;
+        pool.executeOnAll(READ);
+        pool.executeOnAll(READ);
+        assertEquals(2, first.calls.get());
+        assertEquals(2, second.calls.get());
+        assertFalse(pool.getServerStatus().get(first.name));
+    }
+
+    /**
+     * In-process server which can be made unreachable or failing on demand
+     */
+    private static class StubServer {
+
+        private final String name;
+        private final AtomicInteger calls = new AtomicInteger();
+        private final AtomicInteger probes = new AtomicInteger();
+        private volatile boolean down;
+        private volatile boolean timeout;
+        private volatile boolean error;
+        private volatile long delay;
+
+        private StubServer(String name) {
+            this.name = name;
+        }
+
+        private boolean probe() throws UserStoreException {
+            probes.incrementAndGet();
+            if (down) {
+                throw new UserStoreException(RemoteServerPool.CONNECTION_REFUSED);
+            }
+            return true;
+        }
+
+        private String call() throws UserStoreException {
+            calls.incrementAndGet();
+            if (down) {
+                throw new UserStoreException(RemoteServerPool.CONNECTION_REFUSED);
+            }
+            if (timeout) {
+                // as thrown by the remote stubs when a read times out
+                throw new UserStoreException("Read timed out", new AxisFault("Read timed out",
+                        new SocketTimeoutException("Read timed out")));
+            }
+            if (error) {
+                throw new UserStoreException("error");
+            }
+            if (delay > 0) {
+                try {
+                    Thread.sleep(delay);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return name;
+        }
+    }
+}
@@ -53,6 +53,10 @@ public class CFConstants {
     public static final String PASSWORD_PROPERTY = "password";
     public static final String UM_USER_NAME_INDEX = "UM_USER_NAME_INDEX";
     public static final String AUTH_WITH_ANY_CREDENTIAL = "AuthenticateWithAnyCredential";
+    public static final String LIST_PAGE_SIZE_XML_ATTRIB = "ListPageSize";
+    public static final String READ_CONSISTENCY_LEVEL_XML_ATTRIB = "ReadConsistencyLevel";
+    public static final String WRITE_CONSISTENCY_LEVEL_XML_ATTRIB = "WriteConsistencyLevel";
+    public static final int DEFAULT_LIST_PAGE_SIZE = 100;
 
     private CFConstants() {
 
@@ -20,6 +20,7 @@ package org.wso2.carbon.user.cassandra;
 
 import me.prettyprint.cassandra.model.BasicColumnDefinition;
 import me.prettyprint.cassandra.model.BasicColumnFamilyDefinition;
+import me.prettyprint.cassandra.model.ConfigurableConsistencyLevel;
 import me.prettyprint.cassandra.serializers.CompositeSerializer;
 import me.prettyprint.cassandra.serializers.StringSerializer;
 import me.prettyprint.cassandra.service.CassandraHostConfigurator;
@@ -28,6 +29,7 @@ import me.prettyprint.cassandra.service.template.ColumnFamilyResult;
 import me.prettyprint.cassandra.service.template.ColumnFamilyTemplate;
 import me.prettyprint.cassandra.service.template.ThriftColumnFamilyTemplate;
 import me.prettyprint.hector.api.Cluster;
+import me.prettyprint.hector.api.HConsistencyLevel;
 import me.prettyprint.hector.api.Keyspace;
 import me.prettyprint.hector.api.beans.Composite;
 import me.prettyprint.hector.api.beans.HColumn;
@@ -65,8 +67,8 @@ import javax.sql.DataSource;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
-import java.util.Iterator;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Random;
 import java.util.UUID;
@@ -83,11 +85,23 @@ public class CassandraUserStoreManager extends AbstractUserStoreManager {
     private Keyspace keyspace;
     private String tenantIdString;
     private String domain = null;
+    private int listPageSize = CFConstants.DEFAULT_LIST_PAGE_SIZE;
 
     public CassandraUserStoreManager() {
 
     }
 
+    /**
+     * Creates a user store manager of a tenant without connecting to Cassandra. The mutations are
+     * executed by the mutators returned by {@link #createMutator()}.
+     *
+     * @param tenantId The tenant id.
+     */
+    CassandraUserStoreManager(int tenantId) {
+        this.tenantIdString = Integer.toString(tenantId);
+        this.tenantId = tenantId;
+    }
+
     public CassandraUserStoreManager(RealmConfiguration realmConfig, int tenantId) throws UserStoreException {
         this.realmConfig = realmConfig;
         Util.setRealmConfig(realmConfig);
@@ -129,11 +143,47 @@ public class CassandraUserStoreManager extends AbstractUserStoreManager {
         // set Cassandra specific properties
         cluster = HFactory.getOrCreateCluster(realmConfig.getUserStoreProperty(CFConstants.KEYSPACE_NAME_XML_ATTRIB),
                 hostConf, credentials);
+
+        ConfigurableConsistencyLevel consistencyLevel = new ConfigurableConsistencyLevel();
+        consistencyLevel.setDefaultReadConsistencyLevel(
+                getConsistencyLevel(CFConstants.READ_CONSISTENCY_LEVEL_XML_ATTRIB));
+        consistencyLevel.setDefaultWriteConsistencyLevel(
+                getConsistencyLevel(CFConstants.WRITE_CONSISTENCY_LEVEL_XML_ATTRIB));
         keyspace = HFactory.createKeyspace(realmConfig.getUserStoreProperty(CFConstants.KEYSPACE_NAME_XML_ATTRIB),
-                cluster);
+                cluster, consistencyLevel);
+
+        String pageSize = realmConfig.getUserStoreProperty(CFConstants.LIST_PAGE_SIZE_XML_ATTRIB);
+        if (pageSize != null) {
+            try {
+                listPageSize = Integer.parseInt(pageSize.trim());
+            } catch (NumberFormatException e) {
+                log.warn("Invalid " + CFConstants.LIST_PAGE_SIZE_XML_ATTRIB + " : " + pageSize + ". Using " +
+                        CFConstants.DEFAULT_LIST_PAGE_SIZE + " instead");
+            }
+            if (listPageSize <= 0) {
+                listPageSize = CFConstants.DEFAULT_LIST_PAGE_SIZE;
+            }
+        }
         insertInitialData(keyspace);
     }
 
+    /**
+     * Reads the consistency level given by the user store property. Hector's default, QUORUM, is used if
+     * the property is not set or is not a valid consistency level.
+     */
+    private HConsistencyLevel getConsistencyLevel(String property) {
+
+        String level = realmConfig.getUserStoreProperty(property);
+        if (level != null && !level.trim().isEmpty()) {
+            try {
+                return HConsistencyLevel.valueOf(level.trim().toUpperCase(Locale.ENGLISH));
+            } catch (IllegalArgumentException e) {
+                log.warn("Invalid " + property + " : " + level + ". Using " + HConsistencyLevel.QUORUM + " instead");
+            }
+        }
+        return HConsistencyLevel.QUORUM;
+    }
+
     public CassandraUserStoreManager(RealmConfiguration realmConfig, Map<String, Object> properties,
                                      ClaimManager claimManager, ProfileConfigurationManager profileManager, UserRealm realm, Integer tenantId)
             throws UserStoreException {
@@ -295,7 +345,7 @@ public class CassandraUserStoreManager extends AbstractUserStoreManager {
             throw userStoreException;
         } else {
 
-            Mutator<Composite> mutator = HFactory.createMutator(keyspace, CompositeSerializer.get());
+            Mutator<Composite> mutator = createMutator();
 
             Composite key = new Composite();
             key.addComponent(userName, stringSerializer);
@@ -330,8 +380,6 @@ public class CassandraUserStoreManager extends AbstractUserStoreManager {
                 // and handle it efficiently.
                 throw new UserStoreException("Adding user failed.", e);
             }
-            mutator.execute();
-
         }
     }
 
@@ -341,27 +389,21 @@ public class CassandraUserStoreManager extends AbstractUserStoreManager {
     @Override
     public void doDeleteUser(String userName) throws UserStoreException {
 
-        Mutator<Composite> mutator = HFactory.createMutator(keyspace, CompositeSerializer.get());
+        // the user is removed from the index of each role in the same batch as the user rows
+        Mutator<Composite> mutator = createMutator();
         String[] roles = doGetExternalRoleListOfUser(userName, "");
         for (String role : roles) {
-            Composite key = new Composite();
-            key.addComponent(role, stringSerializer);
-            key.addComponent(tenantIdString, stringSerializer);
-            ColumnFamilyTemplate<Composite, String> userCFTemplate = new ThriftColumnFamilyTemplate<Composite, String>(
-                    keyspace, CFConstants.UM_ROLE_USER_INDEX, CompositeSerializer.get(), StringSerializer.get());
-            try {
-                userCFTemplate.deleteColumn(key, userName);
-            } catch (HectorException e) {
-                log.error("Error during deletion ", e);
-            }
+            mutator.addDeletion(createKey(role), CFConstants.UM_ROLE_USER_INDEX, userName, stringSerializer);
         }
 
-        Composite userKey = new Composite();
-        userKey.addComponent(userName, stringSerializer);
-        userKey.addComponent(tenantIdString, stringSerializer);
+        Composite userKey = createKey(userName);
         mutator.addDeletion(userKey, CFConstants.UM_USER_ROLE, null, CompositeSerializer.get());
         mutator.addDeletion(userKey, CFConstants.UM_USER, null, CompositeSerializer.get());
-        mutator.execute();
+        try {
+            mutator.execute();
+        } catch (HectorException e) {
+            throw new UserStoreException("Deleting user failed.", e);
+        }
 
         if (log.isDebugEnabled()) {
             log.debug("Deleted user " + userName + " successfully");
@@ -391,7 +433,7 @@ public class CassandraUserStoreManager extends AbstractUserStoreManager {
             saltValue = Util.getSaltValue();
         }
         String password = Util.preparePassword((String) newCredential, saltValue);
-        Mutator<Composite> mutator = HFactory.createMutator(keyspace, CompositeSerializer.get());
+        Mutator<Composite> mutator = createMutator();
         Composite key = new Composite();
         key.addComponent(userName, stringSerializer);
         key.addComponent(tenantIdString, stringSerializer);
@@ -441,21 +483,13 @@ public class CassandraUserStoreManager extends AbstractUserStoreManager {
     @Override
     public void doAddRole(String roleName, String[] userList, boolean shared) throws UserStoreException {
 
-        Mutator<Composite> mutator = HFactory.createMutator(keyspace, CompositeSerializer.get());
-        Composite composite = new Composite();
-        composite.addComponent(roleName, stringSerializer);
-        composite.addComponent(tenantIdString, stringSerializer);
-
-        mutator.addInsertion(composite, CFConstants.UM_ROLES,
-                HFactory.createColumn(CFConstants.UM_ROLE_NAME, roleName, stringSerializer, stringSerializer));
-        mutator.addInsertion(composite, CFConstants.UM_ROLES,
-                HFactory.createColumn(CFConstants.UM_TENANT_ID, tenantIdString, stringSerializer, stringSerializer));
-
-        if (userList != null && userList.length > 0) {
-            addRoleToUsersList(userList, roleName, mutator);
+        Mutator<Composite> mutator = createMutator();
+        addRole(roleName, userList, mutator);
+        try {
+            mutator.execute();
+        } catch (HectorException e) {
+            throw new UserStoreException("Adding role failed.", e);
         }
-
-        mutator.execute();
     }
 
     /**
@@ -464,26 +498,8 @@ public class CassandraUserStoreManager extends AbstractUserStoreManager {
     @Override
     public void doDeleteRole(String roleName) throws UserStoreException {
 
-        Mutator<Composite> mutator = HFactory.createMutator(keyspace, CompositeSerializer.get());
-        String[] users = getUserListOfRole(roleName);
-        for (String userName : users) {
-            Composite key = new Composite();
-            key.addComponent(userName, stringSerializer);
-            key.addComponent(tenantIdString, stringSerializer);
-            ColumnFamilyTemplate<Composite, String> userCFTemplate = new ThriftColumnFamilyTemplate<Composite, String>(
-                    keyspace, CFConstants.UM_USER_ROLE, CompositeSerializer.get(), StringSerializer.get());
-            try {
-                userCFTemplate.deleteColumn(key, roleName);
-            } catch (HectorException e) {
-                throw new UserStoreException("Exception occured when deleting Role", e);
-            }
-        }
-
-        Composite roleKey = new Composite();
-        roleKey.addComponent(roleName, stringSerializer);
-        roleKey.addComponent(tenantIdString, stringSerializer);
-        mutator.addDeletion(roleKey, CFConstants.UM_ROLE_USER_INDEX, null, CompositeSerializer.get());
-        mutator.addDeletion(roleKey, CFConstants.UM_ROLES, null, CompositeSerializer.get());
+        Mutator<Composite> mutator = createMutator();
+        deleteRole(roleName, doGetUserListOfRole(roleName, "*"), mutator);
 
         try {
             mutator.execute();
@@ -496,43 +512,80 @@ public class CassandraUserStoreManager extends AbstractUserStoreManager {
     }
 
     /**
-     * Updates the role name in the role store.
+     * Updates the role name in the role store. The new role is added and the old one is deleted in a
+     * single batch.
      */
     @Override
     public void doUpdateRoleName(String roleName, String newRoleName) throws UserStoreException {
-        doAddRole(newRoleName, getUserListOfRole(roleName), false);
-        doDeleteRole(roleName);
 
+        String[] users = doGetUserListOfRole(roleName, "*");
+        Mutator<Composite> mutator = createMutator();
+        addRole(newRoleName, users, mutator);
+        deleteRole(roleName, users, mutator);
+        try {
+            mutator.execute();
+        } catch (HectorException e) {
+            throw new UserStoreException("Updating role name failed.", e);
+        }
     }
 
     /**
-     * Maps the users to a role list. Adds the (username, tenantId) -> roleList
-     * and (role, tenantId) -> userName
+     * Adds the insertions of a role and its user list to the mutator.
      *
-     * @param userName The username of the user the roles need to be added to.
-     * @param roleList The list of roles that needs to be mapped against the user.
+     * @param roleName The name of the role.
+     * @param userList The users of the role.
+     * @param mutator  The mutator the insertions are added to.
      */
-    private void addUserToRoleList(String userName, String[] roleList) {
+    private void addRole(String roleName, String[] userList, Mutator<Composite> mutator) {
 
-        Mutator<Composite> mutator = HFactory.createMutator(keyspace, CompositeSerializer.get());
+        Composite composite = createKey(roleName);
+        mutator.addInsertion(composite, CFConstants.UM_ROLES,
+                HFactory.createColumn(CFConstants.UM_ROLE_NAME, roleName, stringSerializer, stringSerializer));
+        mutator.addInsertion(composite, CFConstants.UM_ROLES,
+                HFactory.createColumn(CFConstants.UM_TENANT_ID, tenantIdString, stringSerializer, stringSerializer));
 
-        if (roleList != null) {
-            for (String role : roleList) {
-                Composite key = new Composite();
-                key.addComponent(userName, stringSerializer);
-                key.addComponent(tenantIdString, stringSerializer);
+        if (userList != null && userList.length > 0) {
+            addRoleToUsersList(userList, roleName, mutator);
+        }
+    }
 
-                mutator.addInsertion(key, CFConstants.UM_USER_ROLE, HFactory.createColumn(role, role));
+    /**
+     * Adds the deletions of a role and of its mappings to the users to the mutator.
+     *
+     * @param roleName The name of the role.
+     * @param users    The users of the role.
+     * @param mutator  The mutator the deletions are added to.
+     */
+    private void deleteRole(String roleName, String[] users, Mutator<Composite> mutator) {
 
-                Composite keyRole = new Composite();
-                keyRole.addComponent(role, stringSerializer);
-                keyRole.addComponent(tenantIdString, stringSerializer);
+        for (String userName : users) {
+            mutator.addDeletion(createKey(userName), CFConstants.UM_USER_ROLE, roleName, stringSerializer);
+        }
 
-                mutator.addInsertion(keyRole, CFConstants.UM_ROLE_USER_INDEX, HFactory.createColumn(userName, userName));
+        Composite roleKey = createKey(roleName);
+        mutator.addDeletion(roleKey, CFConstants.UM_ROLE_USER_INDEX, null, CompositeSerializer.get());
+        mutator.addDeletion(roleKey, CFConstants.UM_ROLES, null, CompositeSerializer.get());
+    }
 
-            }
-            mutator.execute();
-        }
+    /**
+     * Creates the mutator of a write operation. All the insertions and deletions of an operation are
+     * added to one mutator, which is executed once as a single batch.
+     *
+     * @return A mutator of the keyspace of the user store.
+     */
+    protected Mutator<Composite> createMutator() {
+        return HFactory.createMutator(keyspace, CompositeSerializer.get());
+    }
+
+    /**
+     * Creates the row key of a user or a role of this tenant.
+     */
+    private Composite createKey(String name) {
+
+        Composite key = new Composite();
+        key.addComponent(name, stringSerializer);
+        key.addComponent(tenantIdString, stringSerializer);
+        return key;
     }
 
     /**
@@ -545,19 +598,11 @@ public class CassandraUserStoreManager extends AbstractUserStoreManager {
      */
     private Mutator<Composite> addUserToRoleList(String userName, String[] roleList, Mutator<Composite> mutator) {
         if (roleList != null && mutator != null) {
+            Composite key = createKey(userName);
             for (String role : roleList) {
-                Composite key = new Composite();
-                key.addComponent(userName, stringSerializer);
-                key.addComponent(tenantIdString, stringSerializer);
-
                 mutator.addInsertion(key, CFConstants.UM_USER_ROLE, HFactory.createColumn(role, role));
-
-                Composite keyRole = new Composite();
-                keyRole.addComponent(role, stringSerializer);
-                keyRole.addComponent(tenantIdString, stringSerializer);
-
-                mutator.addInsertion(keyRole, CFConstants.UM_ROLE_USER_INDEX, HFactory.createColumn(userName, userName));
-
+                mutator.addInsertion(createKey(role), CFConstants.UM_ROLE_USER_INDEX,
+                        HFactory.createColumn(userName, userName));
             }
         }
         return mutator;
@@ -573,20 +618,11 @@ public class CassandraUserStoreManager extends AbstractUserStoreManager {
      */
     private Mutator<Composite> addRoleToUsersList(String[] userNames, String roleName, Mutator<Composite> mutator) {
         if (userNames != null) {
+            Composite keyRole = createKey(roleName);
             for (String userName : userNames) {
-
-                Composite key = new Composite();
-                key.addComponent(userName, stringSerializer);
-                key.addComponent(tenantIdString, stringSerializer);
-
-                mutator.addInsertion(key, CFConstants.UM_USER_ROLE, HFactory.createColumn(roleName, roleName));
-
-                Composite keyRole = new Composite();
-                keyRole.addComponent(roleName, stringSerializer);
-                keyRole.addComponent(tenantIdString, stringSerializer);
-
+                mutator.addInsertion(createKey(userName), CFConstants.UM_USER_ROLE,
+                        HFactory.createColumn(roleName, roleName));
                 mutator.addInsertion(keyRole, CFConstants.UM_ROLE_USER_INDEX, HFactory.createColumn(userName, userName));
-
             }
 
         }
@@ -644,7 +680,6 @@ public class CassandraUserStoreManager extends AbstractUserStoreManager {
     protected String[] doListUsers(String filter, int maxItemLimit) throws UserStoreException {
 
         List<String> users = new ArrayList<String>();
-        int arrayLength = 0;
 
         if (maxItemLimit == 0) {
             return new String[0];
@@ -667,41 +702,13 @@ public class CassandraUserStoreManager extends AbstractUserStoreManager {
             maxItemLimit = givenMax;
         }
 
-        RangeSlicesQuery<String, String, String> rangeSliceQuery = HFactory.createRangeSlicesQuery(keyspace,
-                stringSerializer, stringSerializer, stringSerializer);
-
-        rangeSliceQuery.setColumnFamily(CFConstants.UM_USER);
-        rangeSliceQuery.setRange(filter, null, false, Integer.MAX_VALUE);
-        rangeSliceQuery.addEqualsExpression(CFConstants.UM_TENANT_ID, tenantIdString);
-
         // TODO - Need to check how to use the filter for range
-        rangeSliceQuery.setKeys("", "");
-        rangeSliceQuery.setRowCount(maxItemLimit);
-        QueryResult<OrderedRows<String, String, String>> result = rangeSliceQuery.execute();
-        if (result != null) {
-            OrderedRows<String, String, String> rows = result.get();
-            if (rows.getCount() <= 0) {
-                // reformatted to avoid nesting too many blocks
-                return users.toArray(new String[arrayLength]);
-
-            }
-            arrayLength = rows.getCount();
-
-            Iterator<Row<String, String, String>> rowsIterator = rows.iterator();
-
-            while (rowsIterator.hasNext()) {
-                Row<String, String, String> row = rowsIterator.next();
-                if (row.getColumnSlice().getColumnByName(CFConstants.UM_USER_ID).getValue() != null) {
-                    String name = row.getColumnSlice().getColumnByName(CFConstants.UM_USER_NAME).getValue();
-                    // append the domain if exist
-                    name = UserCoreUtil.addDomainToName(name, domain);
-                    users.add(name);
-                }
-            }
-
+        for (String name : getColumnValues(CFConstants.UM_USER, filter, CFConstants.UM_USER_ID,
+                CFConstants.UM_USER_NAME, maxItemLimit)) {
+            // append the domain if exist
+            users.add(UserCoreUtil.addDomainToName(name, domain));
         }
-        return users.toArray(new String[arrayLength]);
-
+        return users.toArray(new String[users.size()]);
     }
 
     /**
@@ -732,37 +739,73 @@ public class CassandraUserStoreManager extends AbstractUserStoreManager {
             maxItemLimit = givenMax;
         }
 
-        int arrayLength = 0;
         String domain = realmConfig.getUserStoreProperty(UserCoreConstants.RealmConfig.PROPERTY_DOMAIN_NAME);
-        RangeSlicesQuery<String, String, String> rangeSliceQuery = HFactory.createRangeSlicesQuery(keyspace,
-                stringSerializer, stringSerializer, stringSerializer);
-        rangeSliceQuery.setColumnFamily(CFConstants.UM_ROLES);
-        rangeSliceQuery.setRange(null, null, false, Integer.MAX_VALUE);
-        rangeSliceQuery.addEqualsExpression(CFConstants.UM_TENANT_ID, tenantIdString);
-        rangeSliceQuery.setKeys("", "");
-        rangeSliceQuery.setRowCount(maxItemLimit);
-        QueryResult<OrderedRows<String, String, String>> result = rangeSliceQuery.execute();
-        if (result != null) {
-            OrderedRows<String, String, String> rows = result.get();
-            if (rows.getCount() <= 0) {
-                return roles.toArray(new String[arrayLength]);
+        for (String name : getColumnValues(CFConstants.UM_ROLES, null, CFConstants.UM_ROLE_NAME,
+                CFConstants.UM_ROLE_NAME, maxItemLimit)) {
+            // append the domain if exist
+            roles.add(UserCoreUtil.addDomainToName(name, domain));
+        }
+        return roles.toArray(new String[roles.size()]);
+    }
+
+    /**
+     * Reads the rows of this tenant from a column family page by page, so that a large column family is
+     * not read at once, until the given number of values are found.
+     *
+     * @param columnFamily   The column family to read.
+     * @param columnStart    The first column name of the column range to read.
+     * @param requiredColumn The column a row must have to be included.
+     * @param valueColumn    The column whose values are returned.
+     * @param maxItemLimit   The maximum number of values to return.
+     * @return The values of the value column.
+     */
+    private List<String> getColumnValues(String columnFamily, String columnStart, String requiredColumn,
+                                         String valueColumn, int maxItemLimit) {
+
+        List<String> values = new ArrayList<String>();
+        String startKey = "";
+        boolean firstPage = true;
+
+        while (values.size() < maxItemLimit) {
+            int rowCount = Math.min(listPageSize, maxItemLimit - values.size());
+            if (!firstPage) {
+                // a page starts with the last row of the previous page
+                rowCount++;
             }
-            arrayLength = rows.getCount();
 
-            Iterator<Row<String, String, String>> rowsIterator = rows.iterator();
+            RangeSlicesQuery<String, String, String> rangeSliceQuery = HFactory.createRangeSlicesQuery(keyspace,
+                    stringSerializer, stringSerializer, stringSerializer);
+            rangeSliceQuery.setColumnFamily(columnFamily);
+            rangeSliceQuery.setRange(columnStart, null, false, Integer.MAX_VALUE);
+            rangeSliceQuery.addEqualsExpression(CFConstants.UM_TENANT_ID, tenantIdString);
+            rangeSliceQuery.setKeys(startKey, "");
+            rangeSliceQuery.setRowCount(rowCount);
+            QueryResult<OrderedRows<String, String, String>> result = rangeSliceQuery.execute();
+            if (result == null || result.get() == null) {
+                break;
+            }
 
-            while (rowsIterator.hasNext()) {
-                Row<String, String, String> row = rowsIterator.next();
-                if (row.getColumnSlice().getColumnByName(CFConstants.UM_ROLE_NAME).getValue() != null) {
-                    String name = row.getColumnSlice().getColumnByName(CFConstants.UM_ROLE_NAME).getValue();
-                    // append the domain if exist
-                    name = UserCoreUtil.addDomainToName(name, domain);
-                    roles.add(name);
+            List<Row<String, String, String>> rows = result.get().getList();
+            for (Row<String, String, String> row : rows) {
+                if (!firstPage && startKey.equals(row.getKey())) {
+                    continue;
+                }
+                HColumn<String, String> required = row.getColumnSlice().getColumnByName(requiredColumn);
+                HColumn<String, String> value = row.getColumnSlice().getColumnByName(valueColumn);
+                // deleted rows are returned without columns until they are compacted
+                if (required != null && required.getValue() != null && value != null &&
+                        values.size() < maxItemLimit) {
+                    values.add(value.getValue());
                 }
             }
 
+            if (rows.size() < rowCount) {
+                break;
+            }
+            startKey = rows.get(rows.size() - 1).getKey();
+            firstPage = false;
         }
-        return roles.toArray(new String[arrayLength]);
+        return values;
     }
 
     /**
@@ -828,9 +871,9 @@ public class CassandraUserStoreManager extends AbstractUserStoreManager {
         for (Map.Entry<String, String> claimsVals : claims.entrySet()) {
             mutator.addInsertion(key, CFConstants.UM_USER_ATTRIBUTE,
                     HFactory.createColumn(claimsVals.getKey(), claimsVals.getValue()));
-            mutator.addInsertion(key, CFConstants.UM_USER_ATTRIBUTE,
-                    HFactory.createColumn(CFConstants.UM_TENANT_ID, tenantIdString));
         }
+        mutator.addInsertion(key, CFConstants.UM_USER_ATTRIBUTE,
+                HFactory.createColumn(CFConstants.UM_TENANT_ID, tenantIdString));
         return mutator;
     }
 
@@ -871,7 +914,7 @@ public class CassandraUserStoreManager extends AbstractUserStoreManager {
         String[] sharedRoles;
 
         try {
-            Mutator<Composite> mutator = HFactory.createMutator(keyspace, CompositeSerializer.get());
+            Mutator<Composite> mutator = createMutator();
             // if user name and role names are prefixed with domain name, remove
             // the domain name
             String[] userNames = userName.split(CarbonConstants.DOMAIN_SEPARATOR);
@@ -886,33 +929,16 @@ public class CassandraUserStoreManager extends AbstractUserStoreManager {
                 sharedRoles = breakdown.getSharedRoles();
 
                 if (roles.length > 0) {
-
-                    Composite userKey = new Composite();
-                    userKey.addComponent(userName, stringSerializer);
-                    userKey.addComponent(tenantIdString, stringSerializer);
-
+                    Composite userKey = createKey(userName);
                     for (String role : roles) {
-                        Composite key = new Composite();
-                        key.addComponent(role, stringSerializer);
-                        key.addComponent(tenantIdString, stringSerializer);
-
-                        ColumnFamilyTemplate<Composite, String> userCFTemplate = new ThriftColumnFamilyTemplate<Composite, String>(
-                                keyspace, CFConstants.UM_USER_ROLE, CompositeSerializer.get(), StringSerializer.get());
-                        ColumnFamilyTemplate<Composite, String> roleCFTemplate = new ThriftColumnFamilyTemplate<Composite, String>(
-                                keyspace, CFConstants.UM_ROLE_USER_INDEX, CompositeSerializer.get(),
-                                StringSerializer.get());
-                        try {
-                            roleCFTemplate.deleteColumn(mutator, key, userName);
-                            userCFTemplate.deleteColumn(mutator, userKey, role);
-                        } catch (HectorException e) {
-                            throw new UserStoreException("Ex eption occured when updating role list of a user", e);
-                        }
+                        mutator.addDeletion(createKey(role), CFConstants.UM_ROLE_USER_INDEX, userName,
+                                stringSerializer);
+                        mutator.addDeletion(userKey, CFConstants.UM_USER_ROLE, role, stringSerializer);
                     }
                 }
                 if (sharedRoles != null && sharedRoles.length > 0) {
                     //TODO TO-Be Completed
                 }
-                clearUserRolesCacheByTenant(this.tenantId);
             }
 
             if (newRoles != null && newRoles.length > 0) {
@@ -924,16 +950,21 @@ public class CassandraUserStoreManager extends AbstractUserStoreManager {
                 sharedRoles = breakdown.getSharedRoles();
 
                 if (roles.length > 0) {
-                    addUserToRoleList(userName, roles);
+                    addUserToRoleList(userName, roles, mutator);
                 }
                 if (sharedRoles != null && sharedRoles.length > 0) {
                     //TODO TO-Be Completed
                 }
             }
 
+            // deleted and new roles are written in a single batch
+            mutator.execute();
         } catch (HectorException e) {
             throw new UserStoreException(e.getMessage(), e);
         }
+        if (deletedRoles != null && deletedRoles.length > 0) {
+            clearUserRolesCacheByTenant(this.tenantId);
+        }
     }
 
     /**
@@ -943,7 +974,7 @@ public class CassandraUserStoreManager extends AbstractUserStoreManager {
     public void doUpdateUserListOfRole(String roleName, String[] deletedUsers, String[] newUsers)
             throws UserStoreException {
 
-        Mutator<Composite> mutator = HFactory.createMutator(keyspace, CompositeSerializer.get());
+        Mutator<Composite> mutator = createMutator();
         RoleContext ctx = createRoleContext(roleName);
         roleName = ctx.getRoleName();
         boolean isShared = ctx.isShared();
@@ -954,36 +985,13 @@ public class CassandraUserStoreManager extends AbstractUserStoreManager {
             if (isShared) {
                 //TODO TO BE Implemented
             } else {
-                if (deletedUsers.length > 0) {
-                    Composite key = new Composite();
-                    key.addComponent(roleName, stringSerializer);
-                    key.addComponent(tenantIdString, stringSerializer);
-
-                    for (String user : deletedUsers) {
-
-                        Composite userKey = new Composite();
-                        userKey.addComponent(user, stringSerializer);
-                        userKey.addComponent(tenantIdString, stringSerializer);
-
-                        ColumnFamilyTemplate<Composite, String> userCFTemplate = new ThriftColumnFamilyTemplate<Composite, String>(
-                                keyspace, CFConstants.UM_USER_ROLE, CompositeSerializer.get(), StringSerializer.get());
-                        ColumnFamilyTemplate<Composite, String> roleCFTemplate = new ThriftColumnFamilyTemplate<Composite, String>(
-                                keyspace, CFConstants.UM_ROLE_USER_INDEX, CompositeSerializer.get(),
-                                StringSerializer.get());
-                        try {
-                            roleCFTemplate.deleteColumn(mutator, key, user);
-                            userCFTemplate.deleteColumn(mutator, userKey, roleName);
-                        } catch (HectorException e) {
-                            log.error(e.getMessage(), e);
-                            throw new UserStoreException("Error during the updating of a user's role list");
-                        }
-                    }
+                Composite key = createKey(roleName);
+                for (String user : deletedUsers) {
+                    mutator.addDeletion(key, CFConstants.UM_ROLE_USER_INDEX, user, stringSerializer);
+                    mutator.addDeletion(createKey(user), CFConstants.UM_USER_ROLE, roleName, stringSerializer);
                 }
-
             }
         }
-        // need to clear user roles cache upon roles update
-        clearUserRolesCacheByTenant(this.tenantId);
 
         if (newUsers != null && newUsers.length > 0) {
             if (isShared) {
@@ -992,7 +1000,16 @@ public class CassandraUserStoreManager extends AbstractUserStoreManager {
                 addRoleToUsersList(newUsers, roleName, mutator);
             }
         }
-        mutator.execute();
+
+        // deleted and new users are written in a single batch
+        try {
+            mutator.execute();
+        } catch (HectorException e) {
+            log.error(e.getMessage(), e);
+            throw new UserStoreException("Error during the updating of a user's role list");
+        }
+        // need to clear user roles cache upon roles update
+        clearUserRolesCacheByTenant(this.tenantId);
 
     }
 
@@ -0,0 +1,192 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.carbon.user.cassandra;
+
+import junit.framework.TestCase;
+import me.prettyprint.hector.api.beans.Composite;
+import me.prettyprint.hector.api.mutation.Mutator;
+import org.wso2.carbon.user.api.RealmConfiguration;
+import org.wso2.carbon.user.core.UserCoreConstants;
+import org.wso2.carbon.user.core.jdbc.JDBCRealmConstants;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Checks that each write operation of the Cassandra user store is sent as a single batch, and counts the
+ * mutations of the batch
+ */
+public class CassandraUserStoreManagerTest extends TestCase {
+
+    private static final String[] ROLES_OF_USER = {"role1", "role2"};
+    private static final String[] USERS_OF_ROLE = {"user1", "user2", "user3"};
+
+    private RecordingStoreManager storeManager;
+
+    public void setUp() throws Exception {
+        super.setUp();
+        storeManager = new RecordingStoreManager();
+    }
+
+    public void testAddUser() throws Exception {
+
+        RealmConfiguration realmConfig = new RealmConfiguration();
+        realmConfig.getUserStoreProperties().put(JDBCRealmConstants.DIGEST_FUNCTION,
+                UserCoreConstants.RealmConfig.PASSWORD_HASH_METHOD_PLAIN_TEXT);
+        realmConfig.getUserStoreProperties().put(JDBCRealmConstants.STORE_SALTED_PASSWORDS, "true");
+        storeManager.setRealmConfig(realmConfig);
+        Map<String, String> claims = new LinkedHashMap<String, String>();
+        claims.put("http://wso2.org/claims/givenname", "given");
+        claims.put("http://wso2.org/claims/lastname", "last");
+
+        storeManager.doAddUser("user", "password", ROLES_OF_USER, claims, null, false);
+
+        // 6 user columns, 2 mappings per role and the claims with the tenant id
+        assertMutations(6 + 2 * 2 + 3, 0);
+    }
+
+    public void testDeleteUser() throws Exception {
+
+        storeManager.doDeleteUser("user");
+
+        // the user from the index of each role, the role list and the user row
+        assertMutations(0, 2 + 2);
+    }
+
+    public void testAddRole() throws Exception {
+
+        storeManager.doAddRole("role", USERS_OF_ROLE, false);
+
+        // 2 role columns and 2 mappings per user
+        assertMutations(2 + 3 * 2, 0);
+    }
+
+    public void testDeleteRole() throws Exception {
+
+        storeManager.doDeleteRole("role");
+
+        // the role from the role list of each user, the user index and the role row
+        assertMutations(0, 3 + 2);
+    }
+
+    public void testUpdateRoleName() throws Exception {
+
+        storeManager.doUpdateRoleName("role", "newRole");
+
+        assertMutations(2 + 3 * 2, 3 + 2);
+    }
+
+    public void testUpdateRoleListOfUser() throws Exception {
+
+        storeManager.doUpdateRoleListOfUser("user", new String[]{"role1"}, new String[]{"role2", "role3"});
+
+        assertMutations(2 * 2, 2);
+    }
+
+    public void testUpdateUserListOfRole() throws Exception {
+
+        storeManager.doUpdateUserListOfRole("role", new String[]{"user1"}, new String[]{"user2", "user3"});
+
+        assertMutations(2 * 2, 2);
+    }
+
+    private void assertMutations(int insertions, int deletions) {
+
+        assertEquals("one batch should be executed", 1, storeManager.batches.size());
+        Batch batch = storeManager.batches.get(0);
+        assertEquals("insertions", insertions, batch.insertions);
+        assertEquals("deletions", deletions, batch.deletions);
+        assertEquals(1, batch.executions);
+    }
+
+    /**
+     * Mutations added to a mutator
+     */
+    private static class Batch {
+
+        private int insertions;
+        private int deletions;
+        private int executions;
+    }
+
+    /**
+     * User store manager which records the mutations of each mutator instead of sending them to Cassandra
+     */
+    private static class RecordingStoreManager extends CassandraUserStoreManager {
+
+        private final List<Batch> batches = new ArrayList<Batch>();
+
+        private RecordingStoreManager() {
+            super(1);
+        }
+
+        private void setRealmConfig(RealmConfiguration realmConfig) {
+            this.realmConfig = realmConfig;
+            Util.setRealmConfig(realmConfig);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        protected Mutator<Composite> createMutator() {
+
+            final Batch batch = new Batch();
+            batches.add(batch);
+            return (Mutator<Composite>) Proxy.newProxyInstance(getClass().getClassLoader(),
+                    new Class[]{Mutator.class}, new InvocationHandler() {
+                        @Override
+                        public Object invoke(Object proxy, Method method, Object[] args) {
+                            if ("addInsertion".equals(method.getName())) {
+                                batch.insertions++;
+                                return proxy;
+                            } else if ("addDeletion".equals(method.getName())) {
+                                batch.deletions++;
+                                return proxy;
+                            } else if ("execute".equals(method.getName())) {
+                                batch.executions++;
+                                return null;
+                            }
+                            throw new UnsupportedOperationException(method.getName());
+                        }
+                    });
+        }
+
+        @Override
+        protected boolean doCheckExistingUser(String userName) {
+            return false;
+        }
+
+        @Override
+        public String[] doGetExternalRoleListOfUser(String userName, String filter) {
+            return ROLES_OF_USER;
+        }
+
+        @Override
+        public String[] doGetUserListOfRole(String roleName, String filter) {
+            return USERS_OF_ROLE;
+        }
+
+        @Override
+        protected void clearUserRolesCacheByTenant(int tenantId) {
+        }
+    }
+}